@@ -0,0 +1,152 @@
+package com.moxe.health.aop.timing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Aspect timing the methods of the services and repositories, in the {@value #METRIC_NAME} timer tagged with their class
+ * and method names.
+ * <p>
+ * The timers are looked up once per method, and the arguments of the calls are never read, so that it can run in
+ * production. Only the sampled calls are timed, the counts of the timers being those of the samples. It can be turned off
+ * or sampled differently at runtime, through the {@link MethodTimingEndpoint}. The calls made before the meter registry
+ * binds it, while the application starts, are not timed.
+ */
+@Aspect
+public class MethodTimingAspect implements MeterBinder {
+
+    /**
+     * Name of the timers, one per method.
+     */
+    public static final String METRIC_NAME = "method.timed";
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Timer>> timers = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+
+    private volatile double sampleRate;
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * @param enabled whether the methods are timed.
+     * @param sampleRate the fraction of the calls timed, between 0 and 1.
+     */
+    public MethodTimingAspect(boolean enabled, double sampleRate) {
+        this.enabled = enabled;
+        setSampleRate(sampleRate);
+    }
+
+    /**
+     * Pointcut that matches all services.
+     */
+    @Pointcut("within(com.moxe.health.service..*) && within(@org.springframework.stereotype.Service *)")
+    public void servicePointcut() {
+        // Method is empty as this is just a Pointcut, the implementations are in the advices.
+    }
+
+    /**
+     * Pointcut that matches all Spring Data repositories, whose proxies are not within the repository package.
+     */
+    @Pointcut("this(org.springframework.data.repository.Repository)")
+    public void repositoryPointcut() {
+        // Method is empty as this is just a Pointcut, the implementations are in the advices.
+    }
+
+    /**
+     * Advice that times the sampled calls, failed or not.
+     *
+     * @param joinPoint join point for advice.
+     * @return result.
+     * @throws Throwable the exception of the method.
+     */
+    @Around("servicePointcut() || repositoryPointcut()")
+    public Object timeAround(ProceedingJoinPoint joinPoint) throws Throwable {
+        MeterRegistry registry = meterRegistry;
+        double rate = sampleRate;
+        if (registry == null || !enabled || (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return joinPoint.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            timer(joinPoint, registry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        timers.clear();
+        meterRegistry = registry;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("The sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * The timer of the method, per proxy class rather than target class, as all the Spring Data repositories share theirs.
+     */
+    private Timer timer(ProceedingJoinPoint joinPoint, MeterRegistry registry) {
+        Object proxy = joinPoint.getThis();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        ConcurrentMap<Method, Timer> proxyTimers = timers.get(proxy.getClass());
+        if (proxyTimers == null) {
+            proxyTimers = timers.computeIfAbsent(proxy.getClass(), proxyClass -> new ConcurrentHashMap<>());
+        }
+        Timer timer = proxyTimers.get(method);
+        if (timer == null) {
+            // The overloads of a method share its timer
+            timer =
+                proxyTimers.computeIfAbsent(
+                    method,
+                    key ->
+                        Timer
+                            .builder(METRIC_NAME)
+                            .description("Time spent in the methods of the services and repositories")
+                            .tag("class", className(proxy))
+                            .tag("method", key.getName())
+                            .register(registry)
+                );
+        }
+        return timer;
+    }
+
+    private static String className(Object proxy) {
+        if (Proxy.isProxyClass(proxy.getClass())) {
+            // The repository interface, before those of Spring Data
+            return AopProxyUtils.proxiedUserInterfaces(proxy)[0].getSimpleName();
+        }
+        return ClassUtils.getUserClass(proxy).getSimpleName();
+    }
+}
@@ -0,0 +1,50 @@
+package com.moxe.health.aop.timing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+/**
+ * Management endpoint turning the {@link MethodTimingAspect} on or off, or changing its sample rate, until the next
+ * restart.
+ */
+@Endpoint(id = MethodTimingEndpoint.ID)
+public class MethodTimingEndpoint {
+
+    public static final String ID = "methodtiming";
+
+    private final MethodTimingAspect methodTimingAspect;
+
+    public MethodTimingEndpoint(MethodTimingAspect methodTimingAspect) {
+        this.methodTimingAspect = methodTimingAspect;
+    }
+
+    @ReadOperation
+    public Map<String, Object> settings() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("enabled", methodTimingAspect.isEnabled());
+        settings.put("sampleRate", methodTimingAspect.getSampleRate());
+        return settings;
+    }
+
+    /**
+     * Change the settings given, keeping the other ones.
+     *
+     * @param enabled whether the methods are timed.
+     * @param sampleRate the fraction of the calls timed, between 0 and 1.
+     * @return the settings.
+     */
+    @WriteOperation
+    public Map<String, Object> configure(@Nullable Boolean enabled, @Nullable Double sampleRate) {
+        if (sampleRate != null) {
+            methodTimingAspect.setSampleRate(sampleRate);
+        }
+        if (enabled != null) {
+            methodTimingAspect.setEnabled(enabled);
+        }
+        return settings();
+    }
+}
@@ -1,6 +1,10 @@
 package com.moxe.health.config;
 
+import com.moxe.health.service.CountStrategy;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Properties specific to Moxe.
@@ -10,7 +14,803 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Export export = new Export();
+
+    private final Bulk bulk = new Bulk();
+
+    private final Count count = new Count();
+
+    private final Cache cache = new Cache();
+
+    private final UserInfo userInfo = new UserInfo();
+
+    private final Jwt jwt = new Jwt();
+
+    private final IdpClient idpClient = new IdpClient();
+
+    private final ResponseCache responseCache = new ResponseCache();
+
+    private final Session session = new Session();
+
+    private final MethodTiming methodTiming = new MethodTiming();
+
+    private final StatementTelemetry statementTelemetry = new StatementTelemetry();
+
     // jhipster-needle-application-properties-property
+
+    public Export getExport() {
+        return export;
+    }
+
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    public Count getCount() {
+        return count;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public UserInfo getUserInfo() {
+        return userInfo;
+    }
+
+    public Jwt getJwt() {
+        return jwt;
+    }
+
+    public IdpClient getIdpClient() {
+        return idpClient;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public MethodTiming getMethodTiming() {
+        return methodTiming;
+    }
+
+    public StatementTelemetry getStatementTelemetry() {
+        return statementTelemetry;
+    }
+
     // jhipster-needle-application-properties-property-getter
+
+    public static class Export {
+
+        /**
+         * Number of rows fetched from the database per round trip.
+         */
+        private int fetchSize = 500;
+
+        /**
+         * Number of rows after which the persistence context is cleared; it must be positive.
+         */
+        private int clearInterval = 500;
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        public int getClearInterval() {
+            return clearInterval;
+        }
+
+        public void setClearInterval(int clearInterval) {
+            this.clearInterval = clearInterval;
+        }
+    }
+
+    public static class Bulk {
+
+        /**
+         * Number of rows saved per transaction by bulk requests.
+         */
+        private int chunkSize = 500;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+    }
+
+    public static class Count {
+
+        /**
+         * Strategy used to count the entities of paginated lists, when the request does not select one.
+         */
+        private CountStrategy defaultStrategy = CountStrategy.EXACT;
+
+        /**
+         * Number of rows estimated by the planner statistics above which the estimate is returned instead of a count.
+         */
+        private long estimateThreshold = 100_000;
+
+        /**
+         * Time to live of cached counts, which are also evicted when the entities are written.
+         */
+        private int cacheTimeToLiveSeconds = 60;
+
+        public CountStrategy getDefaultStrategy() {
+            return defaultStrategy;
+        }
+
+        public void setDefaultStrategy(CountStrategy defaultStrategy) {
+            this.defaultStrategy = defaultStrategy;
+        }
+
+        public long getEstimateThreshold() {
+            return estimateThreshold;
+        }
+
+        public void setEstimateThreshold(long estimateThreshold) {
+            this.estimateThreshold = estimateThreshold;
+        }
+
+        public int getCacheTimeToLiveSeconds() {
+            return cacheTimeToLiveSeconds;
+        }
+
+        public void setCacheTimeToLiveSeconds(int cacheTimeToLiveSeconds) {
+            this.cacheTimeToLiveSeconds = cacheTimeToLiveSeconds;
+        }
+    }
+
+    public static class Cache {
+
+        /**
+         * Settings of the caches, keyed by cache name, such as {@code "[com.moxe.health.domain.Patient]"}. The caches
+         * without settings use the {@code jhipster.cache.ehcache} ones.
+         */
+        private final Map<String, Region> regions = new LinkedHashMap<>();
+
+        private final Invalidation invalidation = new Invalidation();
+
+        private final WarmUp warmUp = new WarmUp();
+
+        public Map<String, Region> getRegions() {
+            return regions;
+        }
+
+        public Invalidation getInvalidation() {
+            return invalidation;
+        }
+
+        public WarmUp getWarmUp() {
+            return warmUp;
+        }
+
+        public static class Region {
+
+            /**
+             * Maximum number of entries on the heap, which defaults to {@code jhipster.cache.ehcache.max-entries}.
+             */
+            private Long maxEntries;
+
+            /**
+             * Maximum size of the entries on the heap, measured by walking their objects, instead of a number of entries.
+             */
+            private DataSize maxHeapSize;
+
+            /**
+             * Size of an off-heap tier, which holds the serialized entries evicted from the heap, out of the reach of the
+             * garbage collector.
+             */
+            private DataSize offHeapSize;
+
+            /**
+             * Time to live of the entries after they are written, which defaults to the one of the cache.
+             */
+            private Integer timeToLiveSeconds;
+
+            /**
+             * Time to idle of the entries: once read, an entry expires this long after its last read, rather than its
+             * time to live after it was written.
+             */
+            private Integer timeToIdleSeconds;
+
+            public Long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(Long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public DataSize getMaxHeapSize() {
+                return maxHeapSize;
+            }
+
+            public void setMaxHeapSize(DataSize maxHeapSize) {
+                this.maxHeapSize = maxHeapSize;
+            }
+
+            public DataSize getOffHeapSize() {
+                return offHeapSize;
+            }
+
+            public void setOffHeapSize(DataSize offHeapSize) {
+                this.offHeapSize = offHeapSize;
+            }
+
+            public Integer getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(Integer timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public Integer getTimeToIdleSeconds() {
+                return timeToIdleSeconds;
+            }
+
+            public void setTimeToIdleSeconds(Integer timeToIdleSeconds) {
+                this.timeToIdleSeconds = timeToIdleSeconds;
+            }
+        }
+
+        public static class Invalidation {
+
+            /**
+             * Transport of the evictions to the other nodes: {@code database}, through the {@code cache_invalidation}
+             * table, or {@code none} for a single node, or to declare another {@code CacheInvalidationTransport} bean.
+             */
+            private String transport = "database";
+
+            /**
+             * Delay between two batches of evictions sent to the other nodes.
+             */
+            private int publishIntervalMillis = 200;
+
+            /**
+             * Delay between two polls of the evictions of the other nodes.
+             */
+            private int pollIntervalMillis = 1000;
+
+            /**
+             * Period during which the database transport reads the evictions again, in case they were committed out of
+             * order, which must be longer than the transactions writing them.
+             */
+            private int lookbackSeconds = 60;
+
+            /**
+             * Period after which the database transport deletes the evictions.
+             */
+            private int retentionSeconds = 3600;
+
+            public String getTransport() {
+                return transport;
+            }
+
+            public void setTransport(String transport) {
+                this.transport = transport;
+            }
+
+            public int getPublishIntervalMillis() {
+                return publishIntervalMillis;
+            }
+
+            public void setPublishIntervalMillis(int publishIntervalMillis) {
+                this.publishIntervalMillis = publishIntervalMillis;
+            }
+
+            public int getPollIntervalMillis() {
+                return pollIntervalMillis;
+            }
+
+            public void setPollIntervalMillis(int pollIntervalMillis) {
+                this.pollIntervalMillis = pollIntervalMillis;
+            }
+
+            public int getLookbackSeconds() {
+                return lookbackSeconds;
+            }
+
+            public void setLookbackSeconds(int lookbackSeconds) {
+                this.lookbackSeconds = lookbackSeconds;
+            }
+
+            public int getRetentionSeconds() {
+                return retentionSeconds;
+            }
+
+            public void setRetentionSeconds(int retentionSeconds) {
+                this.retentionSeconds = retentionSeconds;
+            }
+        }
+
+        public static class WarmUp {
+
+            /**
+             * Whether the second-level cache is loaded once the application is started, before it reports ready.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Number of entities loaded per select, the batches being loaded in parallel on the task executor; it must be
+             * positive.
+             */
+            private int batchSize = 100;
+
+            /**
+             * Number of the latest patients loaded, besides those of the providers.
+             */
+            private int patients = 1000;
+
+            /**
+             * Maximum number of patients loaded with the collections of the providers, the smallest collections first;
+             * the providers whose patients do not fit are loaded without them.
+             */
+            private int providerPatients = 10_000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public int getPatients() {
+                return patients;
+            }
+
+            public void setPatients(int patients) {
+                this.patients = patients;
+            }
+
+            public int getProviderPatients() {
+                return providerPatients;
+            }
+
+            public void setProviderPatients(int providerPatients) {
+                this.providerPatients = providerPatients;
+            }
+        }
+    }
+
+    public static class UserInfo {
+
+        /**
+         * Maximum number of users from the userinfo endpoint held in memory, the least recently used being evicted.
+         */
+        private int cacheMaxEntries = 10_000;
+
+        /**
+         * Time after which a user is loaded again from the userinfo endpoint before the request proceeds.
+         */
+        private int cacheTimeToLiveSeconds = 900;
+
+        /**
+         * Time after which a user is loaded again in the background, while the requests still use the one held.
+         */
+        private int cacheRefreshAfterSeconds = 300;
+
+        public int getCacheMaxEntries() {
+            return cacheMaxEntries;
+        }
+
+        public void setCacheMaxEntries(int cacheMaxEntries) {
+            this.cacheMaxEntries = cacheMaxEntries;
+        }
+
+        public int getCacheTimeToLiveSeconds() {
+            return cacheTimeToLiveSeconds;
+        }
+
+        public void setCacheTimeToLiveSeconds(int cacheTimeToLiveSeconds) {
+            this.cacheTimeToLiveSeconds = cacheTimeToLiveSeconds;
+        }
+
+        public int getCacheRefreshAfterSeconds() {
+            return cacheRefreshAfterSeconds;
+        }
+
+        public void setCacheRefreshAfterSeconds(int cacheRefreshAfterSeconds) {
+            this.cacheRefreshAfterSeconds = cacheRefreshAfterSeconds;
+        }
+    }
+
+    public static class Jwt {
+
+        /**
+         * Maximum number of decoded access tokens held in memory, the least recently used being evicted.
+         */
+        private int cacheMaxEntries = 10_000;
+
+        /**
+         * Time before their expiry under which the access tokens are decoded for each request, rather than cached.
+         */
+        private int cacheMinTimeToLiveSeconds = 30;
+
+        /**
+         * Maximum time an access token is cached, which must not exceed the metadata refresh interval, for a key removed
+         * from the JWK set to be rejected as soon as without the cache.
+         */
+        private int cacheMaxTimeToLiveSeconds = 300;
+
+        /**
+         * File keeping the discovery metadata and JWK set of the issuer, read at startup instead of calling the issuer,
+         * which must be owned by the user running the application and accessible by it only; unset, they are kept in
+         * memory only.
+         */
+        private String metadataFile;
+
+        /**
+         * Interval between the refreshes of the metadata and JWK set of the issuer, in the background.
+         */
+        private int metadataRefreshIntervalSeconds = 300;
+
+        /**
+         * Minimum interval between the refreshes caused by tokens signed with a key missing from the JWK set.
+         */
+        private int unknownKeyRefreshIntervalSeconds = 30;
+
+        /**
+         * Connect and read timeout of the requests for the metadata of the issuer, made in the background, instead of
+         * those of the IdP client.
+         */
+        private int issuerTimeoutMillis = 5000;
+
+        public int getCacheMaxEntries() {
+            return cacheMaxEntries;
+        }
+
+        public void setCacheMaxEntries(int cacheMaxEntries) {
+            this.cacheMaxEntries = cacheMaxEntries;
+        }
+
+        public int getCacheMinTimeToLiveSeconds() {
+            return cacheMinTimeToLiveSeconds;
+        }
+
+        public void setCacheMinTimeToLiveSeconds(int cacheMinTimeToLiveSeconds) {
+            this.cacheMinTimeToLiveSeconds = cacheMinTimeToLiveSeconds;
+        }
+
+        public int getCacheMaxTimeToLiveSeconds() {
+            return cacheMaxTimeToLiveSeconds;
+        }
+
+        public void setCacheMaxTimeToLiveSeconds(int cacheMaxTimeToLiveSeconds) {
+            this.cacheMaxTimeToLiveSeconds = cacheMaxTimeToLiveSeconds;
+        }
+
+        public String getMetadataFile() {
+            return metadataFile;
+        }
+
+        public void setMetadataFile(String metadataFile) {
+            this.metadataFile = metadataFile;
+        }
+
+        public int getMetadataRefreshIntervalSeconds() {
+            return metadataRefreshIntervalSeconds;
+        }
+
+        public void setMetadataRefreshIntervalSeconds(int metadataRefreshIntervalSeconds) {
+            this.metadataRefreshIntervalSeconds = metadataRefreshIntervalSeconds;
+        }
+
+        public int getUnknownKeyRefreshIntervalSeconds() {
+            return unknownKeyRefreshIntervalSeconds;
+        }
+
+        public void setUnknownKeyRefreshIntervalSeconds(int unknownKeyRefreshIntervalSeconds) {
+            this.unknownKeyRefreshIntervalSeconds = unknownKeyRefreshIntervalSeconds;
+        }
+
+        public int getIssuerTimeoutMillis() {
+            return issuerTimeoutMillis;
+        }
+
+        public void setIssuerTimeoutMillis(int issuerTimeoutMillis) {
+            this.issuerTimeoutMillis = issuerTimeoutMillis;
+        }
+    }
+
+    public static class IdpClient {
+
+        /**
+         * Maximum number of connections to the OAuth provider, idle or in use.
+         */
+        private int maxConnections = 50;
+
+        /**
+         * Maximum number of connections to each host of the OAuth provider.
+         */
+        private int maxConnectionsPerRoute = 20;
+
+        /**
+         * Time a request waits for a connection of the pool, once they are all in use.
+         */
+        private int connectionRequestTimeoutMillis = 500;
+
+        /**
+         * Time a request waits for a new connection to be established.
+         */
+        private int connectTimeoutMillis = 1000;
+
+        /**
+         * Time a request waits for the response, between two packets.
+         */
+        private int readTimeoutMillis = 2000;
+
+        /**
+         * Maximum time an idle connection is kept, shorter if the OAuth provider says so.
+         */
+        private int keepAliveSeconds = 30;
+
+        /**
+         * Number of consecutive failures of the userinfo endpoint after which it is no longer called, the requests using
+         * the claims of their token.
+         */
+        private int circuitBreakerFailureThreshold = 5;
+
+        /**
+         * Time the userinfo endpoint is not called once failing, before a single request tries it again.
+         */
+        private int circuitBreakerOpenSeconds = 30;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public int getConnectionRequestTimeoutMillis() {
+            return connectionRequestTimeoutMillis;
+        }
+
+        public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+            this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+        }
+
+        public int getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+        }
+
+        public int getReadTimeoutMillis() {
+            return readTimeoutMillis;
+        }
+
+        public void setReadTimeoutMillis(int readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+        }
+
+        public int getKeepAliveSeconds() {
+            return keepAliveSeconds;
+        }
+
+        public void setKeepAliveSeconds(int keepAliveSeconds) {
+            this.keepAliveSeconds = keepAliveSeconds;
+        }
+
+        public int getCircuitBreakerFailureThreshold() {
+            return circuitBreakerFailureThreshold;
+        }
+
+        public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+            this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+        }
+
+        public int getCircuitBreakerOpenSeconds() {
+            return circuitBreakerOpenSeconds;
+        }
+
+        public void setCircuitBreakerOpenSeconds(int circuitBreakerOpenSeconds) {
+            this.circuitBreakerOpenSeconds = circuitBreakerOpenSeconds;
+        }
+    }
+
+    public static class ResponseCache {
+
+        /**
+         * Whether the responses of the hospital, provider and patient list endpoints are cached, until a hospital,
+         * provider or patient is written.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum size of the cached responses, the least recently used being evicted.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(16);
+
+        /**
+         * Time after which a response is computed again, even though no write invalidated it.
+         */
+        private int timeToLiveSeconds = 300;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+    public static class Session {
+
+        /**
+         * Where the HTTP sessions are stored: "memory", each node keeping its own, or "database", any node serving the
+         * requests of any session.
+         */
+        private String store = "memory";
+
+        /**
+         * Time after which the last access of a database session is written again, the sessions expiring up to this time
+         * before their timeout.
+         */
+        private int touchIntervalSeconds = 60;
+
+        /**
+         * Interval between the deletions of the expired database sessions.
+         */
+        private int cleanupIntervalSeconds = 300;
+
+        /**
+         * Number of expired database sessions deleted per transaction.
+         */
+        private int cleanupBatchSize = 500;
+
+        public String getStore() {
+            return store;
+        }
+
+        public void setStore(String store) {
+            this.store = store;
+        }
+
+        public int getTouchIntervalSeconds() {
+            return touchIntervalSeconds;
+        }
+
+        public void setTouchIntervalSeconds(int touchIntervalSeconds) {
+            this.touchIntervalSeconds = touchIntervalSeconds;
+        }
+
+        public int getCleanupIntervalSeconds() {
+            return cleanupIntervalSeconds;
+        }
+
+        public void setCleanupIntervalSeconds(int cleanupIntervalSeconds) {
+            this.cleanupIntervalSeconds = cleanupIntervalSeconds;
+        }
+
+        public int getCleanupBatchSize() {
+            return cleanupBatchSize;
+        }
+
+        public void setCleanupBatchSize(int cleanupBatchSize) {
+            this.cleanupBatchSize = cleanupBatchSize;
+        }
+    }
+
+    public static class MethodTiming {
+
+        /**
+         * Whether the methods of the services and repositories are timed, at startup, until changed through the
+         * management endpoint.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Fraction of the calls timed, between 0 and 1.
+         */
+        private double sampleRate = 1;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+    }
+
+    public static class StatementTelemetry {
+
+        /**
+         * Whether the statements are measured, per request and shape of query.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Time over which a statement is logged, with its literals masked and the types of its parameters.
+         */
+        private long slowStatementThresholdMillis = 500;
+
+        /**
+         * Maximum number of shapes of query the statements are tagged with, the others sharing a single tag.
+         */
+        private int maxShapes = 100;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getSlowStatementThresholdMillis() {
+            return slowStatementThresholdMillis;
+        }
+
+        public void setSlowStatementThresholdMillis(long slowStatementThresholdMillis) {
+            this.slowStatementThresholdMillis = slowStatementThresholdMillis;
+        }
+
+        public int getMaxShapes() {
+            return maxShapes;
+        }
+
+        public void setMaxShapes(int maxShapes) {
+            this.maxShapes = maxShapes;
+        }
+    }
     // jhipster-needle-application-properties-property-class
 }
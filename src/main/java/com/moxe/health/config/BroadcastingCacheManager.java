@@ -0,0 +1,121 @@
+package com.moxe.health.config;
+
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Decorates a {@link CacheManager} so that the evictions from its caches, such as those of {@code @CacheEvict} or of
+ * {@code UserService}, are published to the other nodes. Reads and writes are not: an entry loaded on a node is not
+ * stale on the others.
+ */
+class BroadcastingCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+
+    private final ObjectProvider<CacheInvalidationBus> cacheInvalidationBus;
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    BroadcastingCacheManager(CacheManager delegate, ObjectProvider<CacheInvalidationBus> cacheInvalidationBus) {
+        this.delegate = delegate;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache == null) {
+            Cache delegateCache = delegate.getCache(name);
+            if (delegateCache == null) {
+                return null;
+            }
+            cache = caches.computeIfAbsent(name, ignored -> new BroadcastingCache(delegateCache));
+        }
+        return cache;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+
+    private class BroadcastingCache implements Cache {
+
+        private final Cache delegate;
+
+        BroadcastingCache(Cache delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return delegate.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            return delegate.get(key);
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            return delegate.get(key, type);
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            return delegate.get(key, valueLoader);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            delegate.put(key, value);
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            return delegate.putIfAbsent(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            delegate.evict(key);
+            publish(CacheInvalidation.cacheEntry(getName(), key));
+        }
+
+        @Override
+        public boolean evictIfPresent(Object key) {
+            // Another node may hold the entry even if this one does not
+            publish(CacheInvalidation.cacheEntry(getName(), key));
+            return delegate.evictIfPresent(key);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+            publish(CacheInvalidation.cache(getName()));
+        }
+
+        @Override
+        public boolean invalidate() {
+            publish(CacheInvalidation.cache(getName()));
+            return delegate.invalidate();
+        }
+
+        private void publish(CacheInvalidation invalidation) {
+            cacheInvalidationBus.ifAvailable(bus -> bus.publish(invalidation));
+        }
+    }
+}
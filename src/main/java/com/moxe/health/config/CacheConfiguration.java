@@ -1,7 +1,14 @@
 package com.moxe.health.config;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import org.ehcache.config.builders.*;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.expiry.ExpiryPolicy;
+import org.ehcache.impl.serialization.PlainJavaSerializer;
 import org.ehcache.jsr107.Eh107Configuration;
 import org.hibernate.cache.jcache.ConfigSettings;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,18 +28,14 @@ public class CacheConfiguration {
 
     private GitProperties gitProperties;
     private BuildProperties buildProperties;
-    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
-
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
-        JHipsterProperties.Cache.Ehcache ehcache = jHipsterProperties.getCache().getEhcache();
-
-        jcacheConfiguration =
-            Eh107Configuration.fromEhcacheCacheConfiguration(
-                CacheConfigurationBuilder
-                    .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
-                    .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
-                    .build()
-            );
+    private final JHipsterProperties.Cache.Ehcache ehcache;
+    private final int countCacheTimeToLiveSeconds;
+    private final Map<String, ApplicationProperties.Cache.Region> regions;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        this.ehcache = jHipsterProperties.getCache().getEhcache();
+        this.countCacheTimeToLiveSeconds = applicationProperties.getCount().getCacheTimeToLiveSeconds();
+        this.regions = applicationProperties.getCache().getRegions();
     }
 
     @Bean
@@ -45,6 +48,7 @@ public class CacheConfiguration {
         return cm -> {
             createCache(cm, com.moxe.health.repository.UserRepository.USERS_BY_LOGIN_CACHE);
             createCache(cm, com.moxe.health.repository.UserRepository.USERS_BY_EMAIL_CACHE);
+            createCache(cm, com.moxe.health.service.UserService.SYNCED_USERS_CACHE);
             createCache(cm, com.moxe.health.domain.User.class.getName());
             createCache(cm, com.moxe.health.domain.Authority.class.getName());
             createCache(cm, com.moxe.health.domain.User.class.getName() + ".authorities");
@@ -53,17 +57,75 @@ public class CacheConfiguration {
             createCache(cm, com.moxe.health.domain.Provider.class.getName());
             createCache(cm, com.moxe.health.domain.Provider.class.getName() + ".patients");
             createCache(cm, com.moxe.health.domain.Patient.class.getName());
+            createCache(cm, com.moxe.health.service.PatientQueryService.COUNT_CACHE, countCacheTimeToLiveSeconds);
+            createCache(cm, com.moxe.health.service.ProviderQueryService.COUNT_CACHE, countCacheTimeToLiveSeconds);
             // jhipster-needle-ehcache-add-entry
+
+            Set<String> unknownRegions = new TreeSet<>(regions.keySet());
+            cm.getCacheNames().forEach(unknownRegions::remove);
+            if (!unknownRegions.isEmpty()) {
+                throw new IllegalArgumentException("No cache is named after the regions " + unknownRegions);
+            }
         };
     }
 
     private void createCache(javax.cache.CacheManager cm, String cacheName) {
+        createCache(cm, cacheName, ehcache.getTimeToLiveSeconds());
+    }
+
+    private void createCache(javax.cache.CacheManager cm, String cacheName, int defaultTimeToLiveSeconds) {
         javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
         if (cache != null) {
             cache.clear();
         } else {
-            cm.createCache(cacheName, jcacheConfiguration);
+            cm.createCache(cacheName, cacheConfiguration(cacheName, defaultTimeToLiveSeconds));
+        }
+    }
+
+    /**
+     * Build the configuration of a cache from the settings of its region, if any, and the defaults otherwise.
+     */
+    javax.cache.configuration.Configuration<Object, Object> cacheConfiguration(String cacheName, int defaultTimeToLiveSeconds) {
+        ApplicationProperties.Cache.Region region = regions.getOrDefault(cacheName, new ApplicationProperties.Cache.Region());
+
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.newResourcePoolsBuilder();
+        if (region.getMaxHeapSize() != null) {
+            if (region.getMaxEntries() != null) {
+                throw new IllegalArgumentException("The cache " + cacheName + " cannot limit both its entries and its heap size");
+            }
+            resourcePools = resourcePools.heap(region.getMaxHeapSize().toBytes(), MemoryUnit.B);
+        } else {
+            long maxEntries = region.getMaxEntries() != null ? region.getMaxEntries() : ehcache.getMaxEntries();
+            resourcePools = resourcePools.heap(maxEntries, EntryUnit.ENTRIES);
+        }
+        if (region.getOffHeapSize() != null) {
+            resourcePools = resourcePools.offheap(region.getOffHeapSize().toBytes(), MemoryUnit.B);
+        }
+
+        Duration timeToLive = Duration.ofSeconds(
+            region.getTimeToLiveSeconds() != null ? region.getTimeToLiveSeconds() : defaultTimeToLiveSeconds
+        );
+        ExpiryPolicy<Object, Object> expiry = region.getTimeToIdleSeconds() == null
+            ? ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive)
+            : ExpiryPolicyBuilder
+                .expiry()
+                .create(timeToLive)
+                .access(Duration.ofSeconds(region.getTimeToIdleSeconds()))
+                .update(timeToLive)
+                .build();
+
+        CacheConfigurationBuilder<Object, Object> configuration = CacheConfigurationBuilder
+            .newCacheConfigurationBuilder(Object.class, Object.class, resourcePools)
+            .withExpiry(expiry);
+        if (region.getOffHeapSize() != null) {
+            // The entries of the caches are serializable, but not declared as such
+            ClassLoader classLoader = CacheConfiguration.class.getClassLoader();
+            configuration =
+                configuration
+                    .withKeySerializer(new PlainJavaSerializer<>(classLoader))
+                    .withValueSerializer(new PlainJavaSerializer<>(classLoader));
         }
+        return Eh107Configuration.fromEhcacheCacheConfiguration(configuration.build());
     }
 
     @Autowired(required = false)
@@ -0,0 +1,134 @@
+package com.moxe.health.config;
+
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
+import com.moxe.health.service.cache.CacheInvalidationTransport;
+import com.moxe.health.service.cache.DatabaseCacheInvalidationTransport;
+import java.io.Serializable;
+import java.time.Duration;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Sends the evictions of the second-level cache and of the Spring caches to the other nodes, and applies theirs.
+ */
+@Configuration
+public class CacheInvalidationConfiguration {
+
+    private final ApplicationProperties.Cache.Invalidation invalidation;
+
+    public CacheInvalidationConfiguration(ApplicationProperties applicationProperties) {
+        this.invalidation = applicationProperties.getCache().getInvalidation();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "application.cache.invalidation.transport", havingValue = "database", matchIfMissing = true)
+    public CacheInvalidationTransport databaseCacheInvalidationTransport(
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager
+    ) {
+        return new DatabaseCacheInvalidationTransport(
+            jdbcTemplate,
+            transactionManager,
+            Duration.ofSeconds(invalidation.getLookbackSeconds()),
+            Duration.ofSeconds(invalidation.getRetentionSeconds())
+        );
+    }
+
+    /**
+     * The bus, which evicts the invalidations of the other nodes from the local caches directly, and the listener
+     * publishing those of Hibernate.
+     *
+     * @param transport the transport to the other nodes, if any.
+     * @param entityManagerFactory the entity manager factory whose second-level cache is invalidated.
+     * @param cacheManager the cache manager of the Spring caches and of the second-level cache.
+     * @return the started bus.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public CacheInvalidationBus cacheInvalidationBus(
+        ObjectProvider<CacheInvalidationTransport> transport,
+        EntityManagerFactory entityManagerFactory,
+        javax.cache.CacheManager cacheManager
+    ) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        CacheInvalidationBus bus = new CacheInvalidationBus(
+            transport.getIfUnique(),
+            received -> evict(sessionFactory.getCache(), cacheManager, received),
+            Duration.ofMillis(invalidation.getPublishIntervalMillis()),
+            Duration.ofMillis(invalidation.getPollIntervalMillis())
+        );
+
+        CacheInvalidationEventListener listener = new CacheInvalidationEventListener(bus);
+        EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_UPDATE, listener);
+        listeners.appendListeners(EventType.POST_DELETE, listener);
+        listeners.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+        listeners.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+        listeners.appendListeners(EventType.POST_COLLECTION_REMOVE, listener);
+        return bus;
+    }
+
+    /**
+     * Decorate the Spring cache manager, to publish the evictions from its caches.
+     *
+     * @param cacheInvalidationBus the bus, looked up on the first eviction.
+     * @return the post-processor decorating the {@link CacheManager}.
+     */
+    @Bean
+    public static BeanPostProcessor broadcastingCacheManagerPostProcessor(ObjectProvider<CacheInvalidationBus> cacheInvalidationBus) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof CacheManager && !(bean instanceof BroadcastingCacheManager)) {
+                    return new BroadcastingCacheManager((CacheManager) bean, cacheInvalidationBus);
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static void evict(Cache secondLevelCache, javax.cache.CacheManager cacheManager, CacheInvalidation invalidation) {
+        Serializable key = (Serializable) invalidation.getKey();
+        switch (invalidation.getKind()) {
+            case ENTITY:
+                if (key == null) {
+                    secondLevelCache.evictEntityData(invalidation.getRegion());
+                } else {
+                    secondLevelCache.evictEntityData(invalidation.getRegion(), key);
+                }
+                break;
+            case COLLECTION:
+                if (key == null) {
+                    secondLevelCache.evictCollectionData(invalidation.getRegion());
+                } else {
+                    secondLevelCache.evictCollectionData(invalidation.getRegion(), key);
+                }
+                break;
+            case CACHE:
+                // Through the native cache, as the Spring one would publish the eviction again
+                javax.cache.Cache<Object, Object> cache = cacheManager.getCache(invalidation.getRegion());
+                if (cache != null) {
+                    if (key == null) {
+                        cache.clear();
+                    } else {
+                        cache.remove(key);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cache invalidation " + invalidation);
+        }
+    }
+}
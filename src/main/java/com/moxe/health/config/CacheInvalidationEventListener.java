@@ -0,0 +1,92 @@
+package com.moxe.health.config;
+
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Publishes the entities and collections of the second-level cache which Hibernate updates or deletes, for the other
+ * nodes to evict them once the transaction is committed. The inserted ones are not cached by the other nodes yet.
+ */
+class CacheInvalidationEventListener
+    implements
+        PostUpdateEventListener,
+        PostDeleteEventListener,
+        PostCollectionRecreateEventListener,
+        PostCollectionUpdateEventListener,
+        PostCollectionRemoveEventListener {
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    CacheInvalidationEventListener(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publishEntity(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publishEntity(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        publishCollection(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        publishCollection(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        publishCollection(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Still abstract in Hibernate 5, which calls the method above instead.
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    private void publishEntity(EntityPersister persister, Object id) {
+        if (persister.canWriteToCache()) {
+            cacheInvalidationBus.publish(CacheInvalidation.entity(persister.getEntityName(), id));
+        }
+    }
+
+    private void publishCollection(AbstractCollectionEvent event) {
+        String role = event.getCollection().getRole();
+        if (role == null || event.getAffectedOwnerIdOrNull() == null) {
+            return;
+        }
+        CollectionPersister persister = event.getSession().getFactory().getMetamodel().collectionPersister(role);
+        if (persister.hasCache()) {
+            cacheInvalidationBus.publish(CacheInvalidation.collection(role, event.getAffectedOwnerIdOrNull()));
+        }
+    }
+}
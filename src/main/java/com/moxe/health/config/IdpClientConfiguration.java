@@ -0,0 +1,91 @@
+package com.moxe.health.config;
+
+import com.moxe.health.security.oauth2.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.httpcomponents.MicrometerHttpRequestExecutor;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+/**
+ * The HTTP client of the OAuth provider, for its userinfo endpoint and its metadata.
+ * <p>
+ * Its connections are pooled and kept alive between the requests, and its timeouts keep a slow provider from holding
+ * the request threads decoding the access tokens.
+ */
+@Configuration
+public class IdpClientConfiguration {
+
+    /**
+     * Name of the client, in the {@code httpclient} and {@code client} tags of its meters.
+     */
+    public static final String NAME = "idp";
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient idpHttpClient(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        return createHttpClient(applicationProperties.getIdpClient(), meterRegistry);
+    }
+
+    /**
+     * Static, as the meter registry binds it, which the security configuration depends on.
+     */
+    @Bean
+    static CircuitBreaker userInfoCircuitBreaker(ApplicationProperties applicationProperties) {
+        ApplicationProperties.IdpClient idpClient = applicationProperties.getIdpClient();
+        return new CircuitBreaker(
+            "userinfo",
+            idpClient.getCircuitBreakerFailureThreshold(),
+            Duration.ofSeconds(idpClient.getCircuitBreakerOpenSeconds()),
+            // Rejecting the token of one user is no failure of the provider, unlike rejecting them all for a while
+            e ->
+                !(e instanceof HttpClientErrorException) ||
+                ((HttpClientErrorException) e).getStatusCode() == HttpStatus.TOO_MANY_REQUESTS
+        );
+    }
+
+    static CloseableHttpClient createHttpClient(ApplicationProperties.IdpClient properties, MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConnectionsPerRoute());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, NAME).bindTo(meterRegistry);
+
+        long keepAliveMillis = Duration.ofSeconds(properties.getKeepAliveSeconds()).toMillis();
+        return HttpClients
+            .custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(
+                RequestConfig
+                    .custom()
+                    .setConnectionRequestTimeout(properties.getConnectionRequestTimeoutMillis())
+                    .setConnectTimeout(properties.getConnectTimeoutMillis())
+                    .setSocketTimeout(properties.getReadTimeoutMillis())
+                    .build()
+            )
+            .setKeepAliveStrategy((response, context) -> {
+                long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return keepAlive < 0 ? keepAliveMillis : Math.min(keepAlive, keepAliveMillis);
+            })
+            .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+            .evictExpiredConnections()
+            .setRequestExecutor(
+                MicrometerHttpRequestExecutor
+                    .builder(meterRegistry)
+                    .tags(Tags.of("client", NAME))
+                    // The paths of the provider, without the query strings
+                    .uriMapper(request -> URI.create(request.getRequestLine().getUri()).getPath())
+                    .build()
+            )
+            .build();
+    }
+}
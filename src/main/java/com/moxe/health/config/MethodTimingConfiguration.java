@@ -0,0 +1,29 @@
+package com.moxe.health.config;
+
+import com.moxe.health.aop.timing.MethodTimingAspect;
+import com.moxe.health.aop.timing.MethodTimingEndpoint;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+/**
+ * Times the methods of the services and repositories, in every profile.
+ */
+@Configuration
+@EnableAspectJAutoProxy
+public class MethodTimingConfiguration {
+
+    /**
+     * Bound by the meter registry, rather than depending on it, as creating it calls the services this aspect times.
+     */
+    @Bean
+    public MethodTimingAspect methodTimingAspect(ApplicationProperties applicationProperties) {
+        ApplicationProperties.MethodTiming methodTiming = applicationProperties.getMethodTiming();
+        return new MethodTimingAspect(methodTiming.isEnabled(), methodTiming.getSampleRate());
+    }
+
+    @Bean
+    public MethodTimingEndpoint methodTimingEndpoint(MethodTimingAspect methodTimingAspect) {
+        return new MethodTimingEndpoint(methodTimingAspect);
+    }
+}
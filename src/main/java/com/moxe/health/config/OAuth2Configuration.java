@@ -1,6 +1,6 @@
 package com.moxe.health.config;
 
-import java.time.Duration;
+import com.moxe.health.web.filter.OAuth2RefreshTokensWebFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
@@ -26,7 +26,7 @@ public class OAuth2Configuration {
             OAuth2AuthorizedClientProviderBuilder
                 .builder()
                 .authorizationCode()
-                .refreshToken(builder -> builder.clockSkew(Duration.ofMinutes(1)))
+                .refreshToken(builder -> builder.clockSkew(OAuth2RefreshTokensWebFilter.CLOCK_SKEW))
                 .clientCredentials()
                 .password()
                 .build()
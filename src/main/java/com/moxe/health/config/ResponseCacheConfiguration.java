@@ -0,0 +1,109 @@
+package com.moxe.health.config;
+
+import com.moxe.health.domain.Hospital;
+import com.moxe.health.domain.Patient;
+import com.moxe.health.domain.Provider;
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
+import com.moxe.health.web.filter.ResponseCache;
+import com.moxe.health.web.filter.ResponseCacheFilter;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caches the responses of the hospital, provider and patient list endpoints, when enabled.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.response-cache", name = "enabled", havingValue = "true")
+public class ResponseCacheConfiguration {
+
+    /**
+     * The cached endpoints, with the entities serialized in their responses.
+     */
+    static final Map<String, Set<String>> TAGS_BY_PATH = Map.of(
+        "/api/hospitals",
+        Set.of(Hospital.class.getName(), Provider.class.getName()),
+        "/api/providers",
+        Set.of(Provider.class.getName(), Hospital.class.getName(), Patient.class.getName()),
+        "/api/patients",
+        Set.of(Patient.class.getName(), Provider.class.getName())
+    );
+
+    private final ApplicationProperties.ResponseCache properties;
+
+    public ResponseCacheConfiguration(ApplicationProperties applicationProperties) {
+        this.properties = applicationProperties.getResponseCache();
+    }
+
+    @Bean
+    public ResponseCache responseCache() {
+        return new ResponseCache(properties.getMaxSize().toBytes(), Duration.ofSeconds(properties.getTimeToLiveSeconds()));
+    }
+
+    /**
+     * The filter serving the cached responses, after the authentication, and the invalidation of the responses when
+     * their entities are written: by Hibernate, or by the statements publishing their own invalidations, on any node.
+     *
+     * @param responseCache the cache of the responses.
+     * @param cacheInvalidationBus the bus of the invalidations of this node and of the other ones.
+     * @param entityManagerFactory the entity manager factory whose writes invalidate the responses.
+     * @return the registration of the filter.
+     */
+    @Bean
+    public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter(
+        ResponseCache responseCache,
+        CacheInvalidationBus cacheInvalidationBus,
+        EntityManagerFactory entityManagerFactory
+    ) {
+        Set<String> tags = TAGS_BY_PATH.values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+        cacheInvalidationBus.addListener(invalidation -> invalidate(responseCache, tags, invalidation));
+        ResponseCacheEventListener listener = new ResponseCacheEventListener(cacheInvalidationBus, tags);
+        EventListenerRegistry listeners = entityManagerFactory
+            .unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_INSERT, listener);
+        listeners.appendListeners(EventType.POST_UPDATE, listener);
+        listeners.appendListeners(EventType.POST_DELETE, listener);
+
+        FilterRegistrationBean<ResponseCacheFilter> registration = new FilterRegistrationBean<>(
+            new ResponseCacheFilter(responseCache, TAGS_BY_PATH)
+        );
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
+    private static void invalidate(ResponseCache responseCache, Set<String> tags, CacheInvalidation invalidation) {
+        switch (invalidation.getKind()) {
+            case ENTITY:
+                // Published by the updates done with a statement rather than by Hibernate, or for the second-level cache
+                if (tags.contains(invalidation.getRegion())) {
+                    responseCache.invalidate(invalidation.getRegion());
+                }
+                break;
+            case CACHE:
+                if (ResponseCache.NAME.equals(invalidation.getRegion())) {
+                    if (invalidation.getKey() == null) {
+                        responseCache.invalidateAll();
+                    } else {
+                        responseCache.invalidate((String) invalidation.getKey());
+                    }
+                }
+                break;
+            default:
+                // The collections of these entities are mapped by the other side, whose writes are published as well
+                break;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.moxe.health.config;
+
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
+import com.moxe.health.web.filter.ResponseCache;
+import java.util.Set;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Publishes the entities which the responses of the {@link ResponseCache} are made of, when Hibernate inserts, updates
+ * or deletes one of them, for the responses tagged with it to be evicted on all the nodes once the transaction is
+ * committed. Unlike those of the second-level cache, inserts are published, as they change the lists.
+ */
+class ResponseCacheEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final Set<String> tags;
+
+    ResponseCacheEventListener(CacheInvalidationBus cacheInvalidationBus, Set<String> tags) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.tags = tags;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publish(event.getPersister());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publish(event.getPersister());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publish(event.getPersister());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Still abstract in Hibernate 5, which calls the method above instead.
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    private void publish(EntityPersister persister) {
+        if (tags.contains(persister.getEntityName())) {
+            cacheInvalidationBus.publish(CacheInvalidation.cacheEntry(ResponseCache.NAME, persister.getEntityName()));
+        }
+    }
+}
@@ -3,15 +3,27 @@ package com.moxe.health.config;
 import com.moxe.health.security.*;
 import com.moxe.health.security.SecurityUtils;
 import com.moxe.health.security.oauth2.AudienceValidator;
+import com.moxe.health.security.oauth2.CachingJwtDecoder;
+import com.moxe.health.security.oauth2.CircuitBreaker;
 import com.moxe.health.security.oauth2.CustomClaimConverter;
+import com.moxe.health.security.oauth2.IssuerJwkSource;
 import com.moxe.health.security.oauth2.JwtGrantedAuthorityConverter;
+import com.moxe.health.security.oauth2.UserInfoCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Executor;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -29,6 +41,7 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.csrf.CsrfFilter;
 import org.springframework.security.web.header.writers.ReferrerPolicyHeaderWriter;
+import org.springframework.util.StringUtils;
 import org.springframework.web.filter.CorsFilter;
 import org.zalando.problem.spring.web.advice.security.SecurityProblemSupport;
 import tech.jhipster.config.JHipsterProperties;
@@ -77,20 +90,9 @@ public class SecurityConfiguration {
         .and()
             .authorizeRequests()
             .antMatchers(HttpMethod.OPTIONS, "/**").permitAll()
-            .antMatchers("/app/**/*.{js,html}").permitAll()
-            .antMatchers("/i18n/**").permitAll()
-            .antMatchers("/content/**").permitAll()
-            .antMatchers("/swagger-ui/**").permitAll()
-            .antMatchers("/test/**").permitAll()
-            .antMatchers("/h2-console/**").permitAll()
-            .antMatchers("/api/authenticate").permitAll()
-            .antMatchers("/api/auth-info").permitAll()
+            .antMatchers(PublicPaths.PATTERNS).permitAll()
             .antMatchers("/api/admin/**").hasAuthority(AuthoritiesConstants.ADMIN)
             .antMatchers("/api/**").authenticated()
-            .antMatchers("/management/health").permitAll()
-            .antMatchers("/management/health/**").permitAll()
-            .antMatchers("/management/info").permitAll()
-            .antMatchers("/management/prometheus").permitAll()
             .antMatchers("/management/**").hasAuthority(AuthoritiesConstants.ADMIN)
         .and()
             .oauth2Login()
@@ -134,9 +136,60 @@ public class SecurityConfiguration {
         };
     }
 
+    /**
+     * Static, as the meter registry binds it, which the security configuration depends on.
+     */
+    @Bean
+    static UserInfoCache userInfoCache(ApplicationProperties applicationProperties, @Qualifier("taskExecutor") Executor taskExecutor) {
+        ApplicationProperties.UserInfo userInfo = applicationProperties.getUserInfo();
+        return new UserInfoCache(
+            userInfo.getCacheMaxEntries(),
+            Duration.ofSeconds(userInfo.getCacheTimeToLiveSeconds()),
+            Duration.ofSeconds(userInfo.getCacheRefreshAfterSeconds()),
+            taskExecutor
+        );
+    }
+
+    /**
+     * Lazy, as only the decoder of the access tokens uses it, which the tests replace.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @Lazy
+    IssuerJwkSource issuerJwkSource(
+        CloseableHttpClient idpHttpClient,
+        RestTemplateBuilder restTemplateBuilder,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.Jwt jwt = applicationProperties.getJwt();
+        Duration issuerTimeout = Duration.ofMillis(jwt.getIssuerTimeoutMillis());
+        return new IssuerJwkSource(
+            issuerUri,
+            StringUtils.hasText(jwt.getMetadataFile()) ? Paths.get(jwt.getMetadataFile()) : null,
+            restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(idpHttpClient))
+                .setConnectTimeout(issuerTimeout)
+                .setReadTimeout(issuerTimeout)
+                .build(),
+            Duration.ofSeconds(jwt.getMetadataRefreshIntervalSeconds()),
+            Duration.ofSeconds(jwt.getUnknownKeyRefreshIntervalSeconds()),
+            meterRegistry
+        );
+    }
+
     @Bean
-    JwtDecoder jwtDecoder(ClientRegistrationRepository clientRegistrationRepository, RestTemplateBuilder restTemplateBuilder) {
-        NimbusJwtDecoder jwtDecoder = JwtDecoders.fromOidcIssuerLocation(issuerUri);
+    JwtDecoder jwtDecoder(
+        IssuerJwkSource issuerJwkSource,
+        ClientRegistrationRepository clientRegistrationRepository,
+        CloseableHttpClient idpHttpClient,
+        RestTemplateBuilder restTemplateBuilder,
+        UserInfoCache userInfoCache,
+        CircuitBreaker userInfoCircuitBreaker,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        // Rather than discovering the issuer at startup, which fails when it is unreachable
+        NimbusJwtDecoder jwtDecoder = issuerJwkSource.jwtDecoder();
 
         OAuth2TokenValidator<Jwt> audienceValidator = new AudienceValidator(jHipsterProperties.getSecurity().getOauth2().getAudience());
         OAuth2TokenValidator<Jwt> withIssuer = JwtValidators.createDefaultWithIssuer(issuerUri);
@@ -144,9 +197,23 @@ public class SecurityConfiguration {
 
         jwtDecoder.setJwtValidator(withAudience);
         jwtDecoder.setClaimSetConverter(
-            new CustomClaimConverter(clientRegistrationRepository.findByRegistrationId("oidc"), restTemplateBuilder.build())
+            new CustomClaimConverter(
+                clientRegistrationRepository.findByRegistrationId("oidc"),
+                restTemplateBuilder.requestFactory(() -> new HttpComponentsClientHttpRequestFactory(idpHttpClient)).build(),
+                userInfoCache,
+                userInfoCircuitBreaker
+            )
         );
 
-        return jwtDecoder;
+        // Bound here rather than as a MeterBinder bean, which the meter registry would create with this configuration
+        ApplicationProperties.Jwt jwt = applicationProperties.getJwt();
+        CachingJwtDecoder cachingJwtDecoder = new CachingJwtDecoder(
+            jwtDecoder,
+            jwt.getCacheMaxEntries(),
+            Duration.ofSeconds(jwt.getCacheMinTimeToLiveSeconds()),
+            Duration.ofSeconds(jwt.getCacheMaxTimeToLiveSeconds())
+        );
+        cachingJwtDecoder.bindTo(meterRegistry);
+        return cachingJwtDecoder;
     }
 }
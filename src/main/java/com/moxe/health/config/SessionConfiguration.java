@@ -0,0 +1,96 @@
+package com.moxe.health.config;
+
+import com.moxe.health.web.session.DatabaseSessionFilter;
+import com.moxe.health.web.session.DatabaseSessionRepository;
+import com.moxe.health.web.session.SessionAttributeCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.server.Session;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.HttpSessionOAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Stores the HTTP sessions in the database, when enabled, instead of the memory of the node which created them.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.session", name = "store", havingValue = "database")
+public class SessionConfiguration {
+
+    private final ApplicationProperties.Session properties;
+
+    private final Session session;
+
+    public SessionConfiguration(ApplicationProperties applicationProperties, ServerProperties serverProperties) {
+        this.properties = applicationProperties.getSession();
+        this.session = serverProperties.getServlet().getSession();
+    }
+
+    @Bean
+    public DatabaseSessionRepository databaseSessionRepository(
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        ClientRegistrationRepository clientRegistrationRepository,
+        MeterRegistry meterRegistry
+    ) {
+        return new DatabaseSessionRepository(
+            jdbcTemplate,
+            transactionManager,
+            new SessionAttributeCodec(clientRegistrationRepository),
+            session.getTimeout(),
+            Duration.ofSeconds(properties.getTouchIntervalSeconds()),
+            properties.getCleanupBatchSize(),
+            meterRegistry,
+            Clock.systemUTC()
+        );
+    }
+
+    /**
+     * The filter replacing the sessions of the container, before any filter using them.
+     */
+    @Bean
+    public FilterRegistrationBean<DatabaseSessionFilter> databaseSessionFilter(
+        DatabaseSessionRepository databaseSessionRepository,
+        MeterRegistry meterRegistry
+    ) {
+        Session.Cookie cookie = session.getCookie();
+        FilterRegistrationBean<DatabaseSessionFilter> registration = new FilterRegistrationBean<>(
+            new DatabaseSessionFilter(
+                databaseSessionRepository,
+                cookie.getName(),
+                !Boolean.FALSE.equals(cookie.getHttpOnly()),
+                cookie.getSecure(),
+                meterRegistry
+            )
+        );
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 50);
+        return registration;
+    }
+
+    /**
+     * The authorized clients, kept in the session rather than in the memory of the node which authorized them.
+     */
+    @Bean
+    public OAuth2AuthorizedClientRepository authorizedClientRepository() {
+        return new HttpSessionOAuth2AuthorizedClientRepository();
+    }
+
+    @Bean
+    public SchedulingConfigurer databaseSessionCleanup(DatabaseSessionRepository databaseSessionRepository) {
+        return registrar ->
+            registrar.addFixedDelayTask(
+                databaseSessionRepository::deleteExpired,
+                Duration.ofSeconds(properties.getCleanupIntervalSeconds()).toMillis()
+            );
+    }
+}
@@ -0,0 +1,57 @@
+package com.moxe.health.config;
+
+import com.moxe.health.repository.jdbc.InstrumentedDataSource;
+import com.moxe.health.repository.jdbc.StatementTelemetry;
+import com.moxe.health.web.filter.StatementTelemetryFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Measures the statements run through the data source, per request and shape of query, and logs the slow ones.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.statement-telemetry", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class StatementTelemetryConfiguration {
+
+    /**
+     * Static, as the data source it measures is created before this configuration.
+     */
+    @Bean
+    public static StatementTelemetry statementTelemetry(ApplicationProperties applicationProperties) {
+        ApplicationProperties.StatementTelemetry properties = applicationProperties.getStatementTelemetry();
+        return new StatementTelemetry(Duration.ofMillis(properties.getSlowStatementThresholdMillis()), properties.getMaxShapes());
+    }
+
+    @Bean
+    public static BeanPostProcessor instrumentedDataSourcePostProcessor(ObjectProvider<StatementTelemetry> statementTelemetry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof InstrumentedDataSource)) {
+                    return new InstrumentedDataSource((DataSource) bean, statementTelemetry.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * The filter measuring the requests, before the session one, whose statements it counts.
+     */
+    @Bean
+    public FilterRegistrationBean<StatementTelemetryFilter> statementTelemetryFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<StatementTelemetryFilter> registration = new FilterRegistrationBean<>(
+            new StatementTelemetryFilter(meterRegistry)
+        );
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 40);
+        return registration;
+    }
+}
@@ -15,10 +15,20 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 @Entity
 @Table(name = "patient")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedEntityGraph(
+    name = Patient.PROVIDER_GRAPH,
+    attributeNodes = @NamedAttributeNode(value = "provider", subgraph = "provider"),
+    subgraphs = @NamedSubgraph(name = "provider", attributeNodes = @NamedAttributeNode("hospital"))
+)
 public class Patient implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Fetch plan loading the provider of a patient, and the hospital of the provider, with the patient.
+     */
+    public static final String PROVIDER_GRAPH = "Patient.provider";
+
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
     @SequenceGenerator(name = "sequenceGenerator")
@@ -38,6 +48,10 @@ public class Patient implements Serializable {
     @Column(name = "sex", nullable = false)
     private Sex sex;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @ManyToOne
     @JsonIgnoreProperties(value = { "patients", "hospital" }, allowSetters = true)
     private Provider provider;
@@ -96,6 +110,19 @@ public class Patient implements Serializable {
         this.sex = sex;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public Patient version(Long version) {
+        this.setVersion(version);
+        return this;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Provider getProvider() {
         return this.provider;
     }
@@ -136,6 +163,7 @@ public class Patient implements Serializable {
             ", name='" + getName() + "'" +
             ", dateOfBirth='" + getDateOfBirth() + "'" +
             ", sex='" + getSex() + "'" +
+            ", version=" + getVersion() +
             "}";
     }
 }
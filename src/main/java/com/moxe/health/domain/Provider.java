@@ -15,10 +15,16 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 @Entity
 @Table(name = "provider")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedEntityGraph(name = Provider.HOSPITAL_GRAPH, attributeNodes = @NamedAttributeNode("hospital"))
 public class Provider implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Fetch plan loading the hospital of a provider with the provider.
+     */
+    public static final String HOSPITAL_GRAPH = "Provider.hospital";
+
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
     @SequenceGenerator(name = "sequenceGenerator")
@@ -32,6 +38,10 @@ public class Provider implements Serializable {
     @Column(name = "specialty")
     private String specialty;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "provider")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonIgnoreProperties(value = { "provider" }, allowSetters = true)
@@ -82,6 +92,19 @@ public class Provider implements Serializable {
         this.specialty = specialty;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public Provider version(Long version) {
+        this.setVersion(version);
+        return this;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Set<Patient> getPatients() {
         return this.patients;
     }
@@ -152,6 +175,7 @@ public class Provider implements Serializable {
             "id=" + getId() +
             ", name='" + getName() + "'" +
             ", specialty='" + getSpecialty() + "'" +
+            ", version=" + getVersion() +
             "}";
     }
 }
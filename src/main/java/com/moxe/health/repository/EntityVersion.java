@@ -0,0 +1,11 @@
+package com.moxe.health.repository;
+
+/**
+ * Projection on the versions the representation of an entity depends on: the version of the entity, and the version of
+ * the associated entity its representation embeds, which is {@code null} when there is none.
+ */
+public interface EntityVersion {
+    Long getVersion();
+
+    Long getAssociationVersion();
+}
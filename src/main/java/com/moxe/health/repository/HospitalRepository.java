@@ -1,7 +1,11 @@
 package com.moxe.health.repository;
 
 import com.moxe.health.domain.Hospital;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -9,4 +13,22 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface HospitalRepository extends JpaRepository<Hospital, Long> {}
+public interface HospitalRepository extends HospitalRepositoryWithVersionedUpdates, JpaRepository<Hospital, Long> {
+    /**
+     * Find the version of a hospital, without loading it.
+     */
+    @Query("select h.version from Hospital h where h.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Find the ids of all the hospitals.
+     */
+    @Query("select h.id from Hospital h order by h.id")
+    List<Long> findAllIds();
+
+    /**
+     * Find the hospitals with the given ids, with their providers loaded in the same select.
+     */
+    @Query("select distinct h from Hospital h left join fetch h.providers where h.id in :ids")
+    List<Hospital> findAllWithProvidersByIdIn(@Param("ids") Collection<Long> ids);
+}
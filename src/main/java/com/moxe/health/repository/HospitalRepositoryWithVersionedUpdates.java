@@ -0,0 +1,26 @@
+package com.moxe.health.repository;
+
+import com.moxe.health.domain.Hospital;
+
+/**
+ * Utility repository to update hospitals with a single statement, conditioned on their version rather than loading them.
+ */
+public interface HospitalRepositoryWithVersionedUpdates {
+    /**
+     * Replace the columns of a hospital, and increment its version.
+     *
+     * @param hospital the new state of the hospital.
+     * @param version the version the hospital must have, or {@code null} to replace any version.
+     * @return {@code 1}, or {@code 0} if there is no hospital with this id and this version.
+     */
+    int updateIfVersionMatches(Hospital hospital, Long version);
+
+    /**
+     * Replace the non-null columns of a hospital, and increment its version.
+     *
+     * @param hospital the columns to replace, the others being {@code null}.
+     * @param version the version the hospital must have, or {@code null} to update any version.
+     * @return {@code 1}, or {@code 0} if there is no hospital with this id and this version.
+     */
+    int partialUpdateIfVersionMatches(Hospital hospital, Long version);
+}
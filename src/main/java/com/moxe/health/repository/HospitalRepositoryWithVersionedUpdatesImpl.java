@@ -0,0 +1,35 @@
+package com.moxe.health.repository;
+
+import com.moxe.health.domain.Hospital;
+import com.moxe.health.domain.Hospital_;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Utility repository to update hospitals with a single statement, conditioned on their version rather than loading them.
+ */
+public class HospitalRepositoryWithVersionedUpdatesImpl implements HospitalRepositoryWithVersionedUpdates {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateIfVersionMatches(Hospital hospital, Long version) {
+        return versionedUpdate(hospital, version)
+            .set(Hospital_.name, hospital.getName())
+            .set(Hospital_.description, hospital.getDescription())
+            .execute();
+    }
+
+    @Override
+    public int partialUpdateIfVersionMatches(Hospital hospital, Long version) {
+        return versionedUpdate(hospital, version)
+            .setIfNotNull(Hospital_.name, hospital.getName())
+            .setIfNotNull(Hospital_.description, hospital.getDescription())
+            .execute();
+    }
+
+    private VersionedUpdate<Hospital> versionedUpdate(Hospital hospital, Long version) {
+        return new VersionedUpdate<>(entityManager, Hospital.class, Hospital_.id, hospital.getId(), Hospital_.version, version);
+    }
+}
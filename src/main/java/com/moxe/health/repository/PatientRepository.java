@@ -1,7 +1,13 @@
 package com.moxe.health.repository;
 
 import com.moxe.health.domain.Patient;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -9,4 +15,31 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, Long>, JpaSpecificationExecutor<Patient> {}
+public interface PatientRepository
+    extends PatientRepositoryWithVersionedUpdates, JpaRepository<Patient, Long>, JpaSpecificationExecutor<Patient> {
+    /**
+     * Find the patients matching the specification, with their provider and its hospital loaded in the same select.
+     */
+    @Override
+    @EntityGraph(Patient.PROVIDER_GRAPH)
+    List<Patient> findAll(Specification<Patient> spec);
+
+    /**
+     * Find a page of the patients matching the specification, with their provider and its hospital loaded in the same select.
+     */
+    @Override
+    @EntityGraph(Patient.PROVIDER_GRAPH)
+    Page<Patient> findAll(Specification<Patient> spec, Pageable pageable);
+
+    /**
+     * Find the version of a patient and the one of its provider, without loading them.
+     */
+    @Query("select p.version as version, pr.version as associationVersion from Patient p left join p.provider pr where p.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+
+    /**
+     * Find the ids of the latest patients created, the latest first.
+     */
+    @Query("select p.id from Patient p order by p.id desc")
+    List<Long> findLatestIds(Pageable pageable);
+}
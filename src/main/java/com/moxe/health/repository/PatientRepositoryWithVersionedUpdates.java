@@ -0,0 +1,28 @@
+package com.moxe.health.repository;
+
+import com.moxe.health.domain.Patient;
+
+/**
+ * Utility repository to update patients with a single statement, conditioned on their version rather than loading them.
+ */
+public interface PatientRepositoryWithVersionedUpdates {
+    /**
+     * Replace the columns of a patient, and increment its version.
+     *
+     * @param patient the new state of the patient.
+     * @param version the version the patient must have, or {@code null} to replace any version.
+     * @param providerVersion the version its current provider must have, or {@code null} not to check it.
+     * @return {@code 1}, or {@code 0} if there is no patient with this id and these versions.
+     */
+    int updateIfVersionMatches(Patient patient, Long version, Long providerVersion);
+
+    /**
+     * Replace the non-null basic columns of a patient, and increment its version.
+     *
+     * @param patient the columns to replace, the others being {@code null}.
+     * @param version the version the patient must have, or {@code null} to update any version.
+     * @param providerVersion the version its current provider must have, or {@code null} not to check it.
+     * @return {@code 1}, or {@code 0} if there is no patient with this id and these versions.
+     */
+    int partialUpdateIfVersionMatches(Patient patient, Long version, Long providerVersion);
+}
@@ -0,0 +1,41 @@
+package com.moxe.health.repository;
+
+import com.moxe.health.domain.Patient;
+import com.moxe.health.domain.Patient_;
+import com.moxe.health.domain.Provider;
+import com.moxe.health.domain.Provider_;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Utility repository to update patients with a single statement, conditioned on their version rather than loading them.
+ */
+public class PatientRepositoryWithVersionedUpdatesImpl implements PatientRepositoryWithVersionedUpdates {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateIfVersionMatches(Patient patient, Long version, Long providerVersion) {
+        return versionedUpdate(patient, version, providerVersion)
+            .set(Patient_.name, patient.getName())
+            .set(Patient_.dateOfBirth, patient.getDateOfBirth())
+            .set(Patient_.sex, patient.getSex())
+            .set(Patient_.provider, patient.getProvider())
+            .execute();
+    }
+
+    @Override
+    public int partialUpdateIfVersionMatches(Patient patient, Long version, Long providerVersion) {
+        return versionedUpdate(patient, version, providerVersion)
+            .setIfNotNull(Patient_.name, patient.getName())
+            .setIfNotNull(Patient_.dateOfBirth, patient.getDateOfBirth())
+            .setIfNotNull(Patient_.sex, patient.getSex())
+            .execute();
+    }
+
+    private VersionedUpdate<Patient> versionedUpdate(Patient patient, Long version, Long providerVersion) {
+        return new VersionedUpdate<>(entityManager, Patient.class, Patient_.id, patient.getId(), Patient_.version, version)
+            .associationVersion(Patient_.provider, Provider.class, Provider_.version, providerVersion);
+    }
+}
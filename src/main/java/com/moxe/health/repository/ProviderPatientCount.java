@@ -0,0 +1,10 @@
+package com.moxe.health.repository;
+
+/**
+ * Projection on the id of a provider and the number of its patients.
+ */
+public interface ProviderPatientCount {
+    Long getId();
+
+    Long getPatientCount();
+}
@@ -1,7 +1,14 @@
 package com.moxe.health.repository;
 
 import com.moxe.health.domain.Provider;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -9,4 +16,40 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface ProviderRepository extends JpaRepository<Provider, Long>, JpaSpecificationExecutor<Provider> {}
+public interface ProviderRepository
+    extends ProviderRepositoryWithVersionedUpdates, JpaRepository<Provider, Long>, JpaSpecificationExecutor<Provider> {
+    /**
+     * Find the providers matching the specification, with their hospital loaded in the same select.
+     */
+    @Override
+    @EntityGraph(Provider.HOSPITAL_GRAPH)
+    List<Provider> findAll(Specification<Provider> spec);
+
+    /**
+     * Find a page of the providers matching the specification, with their hospital loaded in the same select.
+     */
+    @Override
+    @EntityGraph(Provider.HOSPITAL_GRAPH)
+    Page<Provider> findAll(Specification<Provider> spec, Pageable pageable);
+
+    /**
+     * Find the version of a provider and the one of its hospital, without loading them.
+     */
+    @Query("select p.version as version, h.version as associationVersion from Provider p left join p.hospital h where p.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+
+    /**
+     * Find the ids of all the providers with the number of their patients, the providers with the fewest patients first.
+     */
+    @Query(
+        "select p.id as id, count(pa.id) as patientCount from Provider p left join p.patients pa " +
+        "group by p.id order by count(pa.id), p.id"
+    )
+    List<ProviderPatientCount> findAllIdsWithPatientCount();
+
+    /**
+     * Find the providers with the given ids, with their patients loaded in the same select.
+     */
+    @Query("select distinct p from Provider p left join fetch p.patients where p.id in :ids")
+    List<Provider> findAllWithPatientsByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,28 @@
+package com.moxe.health.repository;
+
+import com.moxe.health.domain.Provider;
+
+/**
+ * Utility repository to update providers with a single statement, conditioned on their version rather than loading them.
+ */
+public interface ProviderRepositoryWithVersionedUpdates {
+    /**
+     * Replace the columns of a provider, and increment its version.
+     *
+     * @param provider the new state of the provider.
+     * @param version the version the provider must have, or {@code null} to replace any version.
+     * @param hospitalVersion the version its current hospital must have, or {@code null} not to check it.
+     * @return {@code 1}, or {@code 0} if there is no provider with this id and these versions.
+     */
+    int updateIfVersionMatches(Provider provider, Long version, Long hospitalVersion);
+
+    /**
+     * Replace the non-null basic columns of a provider, and increment its version.
+     *
+     * @param provider the columns to replace, the others being {@code null}.
+     * @param version the version the provider must have, or {@code null} to update any version.
+     * @param hospitalVersion the version its current hospital must have, or {@code null} not to check it.
+     * @return {@code 1}, or {@code 0} if there is no provider with this id and these versions.
+     */
+    int partialUpdateIfVersionMatches(Provider provider, Long version, Long hospitalVersion);
+}
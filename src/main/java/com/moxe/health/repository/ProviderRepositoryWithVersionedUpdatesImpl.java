@@ -0,0 +1,39 @@
+package com.moxe.health.repository;
+
+import com.moxe.health.domain.Hospital;
+import com.moxe.health.domain.Hospital_;
+import com.moxe.health.domain.Provider;
+import com.moxe.health.domain.Provider_;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Utility repository to update providers with a single statement, conditioned on their version rather than loading them.
+ */
+public class ProviderRepositoryWithVersionedUpdatesImpl implements ProviderRepositoryWithVersionedUpdates {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateIfVersionMatches(Provider provider, Long version, Long hospitalVersion) {
+        return versionedUpdate(provider, version, hospitalVersion)
+            .set(Provider_.name, provider.getName())
+            .set(Provider_.specialty, provider.getSpecialty())
+            .set(Provider_.hospital, provider.getHospital())
+            .execute();
+    }
+
+    @Override
+    public int partialUpdateIfVersionMatches(Provider provider, Long version, Long hospitalVersion) {
+        return versionedUpdate(provider, version, hospitalVersion)
+            .setIfNotNull(Provider_.name, provider.getName())
+            .setIfNotNull(Provider_.specialty, provider.getSpecialty())
+            .execute();
+    }
+
+    private VersionedUpdate<Provider> versionedUpdate(Provider provider, Long version, Long hospitalVersion) {
+        return new VersionedUpdate<>(entityManager, Provider.class, Provider_.id, provider.getId(), Provider_.version, version)
+            .associationVersion(Provider_.hospital, Hospital.class, Hospital_.version, hospitalVersion);
+    }
+}
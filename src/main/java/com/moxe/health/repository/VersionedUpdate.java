@@ -0,0 +1,198 @@
+package com.moxe.health.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.SingularAttribute;
+import org.hibernate.Cache;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+
+/**
+ * Builds the {@code UPDATE} statement of an entity, conditioned on its version, and that of an associated entity, so
+ * that it can be updated without being loaded first.
+ * <p>
+ * The statement increments the version of the entity. It is run on the connection of the session rather than as a bulk
+ * query, after which Hibernate would evict the whole entity region, and the collection regions of its table, from the
+ * second-level cache: only the updated entity is evicted, and detached from the persistence context if it is managed.
+ * The collections mapping the other side of an association are left as for any update by Hibernate.
+ *
+ * @param <T> the type of the entity.
+ */
+class VersionedUpdate<T> {
+
+    private final EntityManager entityManager;
+
+    private final Class<T> domainClass;
+
+    private final AbstractEntityPersister persister;
+
+    private final Long id;
+
+    private final List<String> assignments = new ArrayList<>();
+
+    private final List<String> conditions = new ArrayList<>();
+
+    private final List<Parameter> assignmentParameters = new ArrayList<>();
+
+    private final List<Parameter> conditionParameters = new ArrayList<>();
+
+    /**
+     * @param id the id of the entity to update.
+     * @param version the version the entity must have, or {@code null} to update any version.
+     */
+    VersionedUpdate(
+        EntityManager entityManager,
+        Class<T> domainClass,
+        SingularAttribute<? super T, Long> idAttribute,
+        Long id,
+        SingularAttribute<? super T, Long> versionAttribute,
+        Long version
+    ) {
+        this.entityManager = entityManager;
+        this.domainClass = domainClass;
+        this.persister = persister(entityManager, domainClass);
+        this.id = id;
+
+        String versionColumn = column(persister, versionAttribute);
+        assignments.add(versionColumn + " = " + versionColumn + " + 1");
+        condition(idAttribute, id);
+        if (version != null) {
+            condition(versionAttribute, version);
+        }
+    }
+
+    /**
+     * Set the column of the attribute, to {@code null} if the value is.
+     */
+    <Y> VersionedUpdate<T> set(SingularAttribute<? super T, Y> attribute, Y value) {
+        assignments.add(column(persister, attribute) + " = ?");
+        assignmentParameters.add(new Parameter(persister.toType(attribute.getName()), value));
+        return this;
+    }
+
+    /**
+     * Set the column of the attribute, unless the value is {@code null}, as in a merge patch.
+     */
+    <Y> VersionedUpdate<T> setIfNotNull(SingularAttribute<? super T, Y> attribute, Y value) {
+        if (value != null) {
+            set(attribute, value);
+        }
+        return this;
+    }
+
+    /**
+     * Require the entity currently associated through the attribute to have the version.
+     *
+     * @param version the version the associated entity must have, or {@code null} not to check it.
+     */
+    <A> VersionedUpdate<T> associationVersion(
+        SingularAttribute<? super T, A> association,
+        Class<A> associationClass,
+        SingularAttribute<? super A, Long> associationVersionAttribute,
+        Long version
+    ) {
+        if (version != null) {
+            AbstractEntityPersister associationPersister = persister(entityManager, associationClass);
+            String associationTable = associationPersister.getTableName();
+            conditions.add(
+                "exists (select 1 from " +
+                associationTable +
+                " where " +
+                associationTable +
+                "." +
+                associationPersister.getIdentifierColumnNames()[0] +
+                " = " +
+                persister.getTableName() +
+                "." +
+                column(persister, association) +
+                " and " +
+                associationTable +
+                "." +
+                column(associationPersister, associationVersionAttribute) +
+                " = ?)"
+            );
+            conditionParameters.add(new Parameter(associationPersister.toType(associationVersionAttribute.getName()), version));
+        }
+        return this;
+    }
+
+    /**
+     * Run the statement.
+     *
+     * @return {@code 1}, or {@code 0} if there is no entity with the id and the versions.
+     */
+    int execute() {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        session.flush();
+        String sql =
+            "update " + persister.getTableName() + " set " + String.join(", ", assignments) + " where " + String.join(" and ", conditions);
+        int updated = executeUpdate(session, sql);
+        if (updated > 0) {
+            Cache cache = session.getFactory().getCache();
+            cache.evictEntityData(domainClass, id);
+            // Again once the transaction is completed, as another one may cache the previous row until then
+            session.getActionQueue().registerProcess((success, completedSession) -> cache.evictEntityData(domainClass, id));
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                // It no longer matches its row; the other entities of the caller are kept
+                session.evict(managed);
+            }
+        }
+        return updated;
+    }
+
+    private int executeUpdate(SessionImplementor session, String sql) {
+        JdbcCoordinator jdbcCoordinator = session.getJdbcCoordinator();
+        PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(sql, false);
+        try {
+            int index = 1;
+            for (List<Parameter> parameters : List.of(assignmentParameters, conditionParameters)) {
+                for (Parameter parameter : parameters) {
+                    parameter.type.nullSafeSet(statement, parameter.value, index, session);
+                    index += parameter.type.getColumnSpan(session.getFactory());
+                }
+            }
+            return jdbcCoordinator.getResultSetReturn().executeUpdate(statement);
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper().convert(e, "Could not run the versioned update", sql);
+        } finally {
+            jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbcCoordinator.afterStatementExecution();
+        }
+    }
+
+    private void condition(SingularAttribute<? super T, Long> attribute, Long value) {
+        conditions.add(persister.getTableName() + "." + column(persister, attribute) + " = ?");
+        conditionParameters.add(new Parameter(persister.toType(attribute.getName()), value));
+    }
+
+    private static AbstractEntityPersister persister(EntityManager entityManager, Class<?> domainClass) {
+        return (AbstractEntityPersister) entityManager
+            .getEntityManagerFactory()
+            .unwrap(SessionFactoryImplementor.class)
+            .getMetamodel()
+            .entityPersister(domainClass);
+    }
+
+    private static String column(AbstractEntityPersister persister, SingularAttribute<?, ?> attribute) {
+        return persister.getPropertyColumnNames(attribute.getName())[0];
+    }
+
+    private static final class Parameter {
+
+        private final Type type;
+
+        private final Object value;
+
+        private Parameter(Type type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.moxe.health.repository.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Data source reporting the statements run through its connections, and the rows they fetch, to the
+ * {@link StatementTelemetry}.
+ * <p>
+ * Only the types of the parameters bound to the statements are kept, never their values.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private final StatementTelemetry telemetry;
+
+    public InstrumentedDataSource(DataSource targetDataSource, StatementTelemetry telemetry) {
+        super(targetDataSource);
+        this.telemetry = telemetry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        return proxy(Connection.class, new ConnectionHandler(connection));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Connection connection = super.getConnection(username, password);
+        return proxy(Connection.class, new ConnectionHandler(connection));
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Handler delegating to its target, with the methods of {@link Object} applying to the proxy itself.
+     */
+    private abstract static class Handler implements InvocationHandler {
+
+        private final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return getClass().getSimpleName() + '[' + target + ']';
+                case "unwrap":
+                    return ((Class<?>) args[0]).isInstance(proxy) ? proxy : delegate(method, args);
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy) || (Boolean) delegate(method, args);
+                default:
+                    return handle(proxy, method, args);
+            }
+        }
+
+        abstract Object handle(Object proxy, Method method, Object[] args) throws Throwable;
+
+        Object delegate(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+    private final class ConnectionHandler extends Handler {
+
+        ConnectionHandler(Connection connection) {
+            super(connection);
+        }
+
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = delegate(method, args);
+            if (result instanceof CallableStatement) {
+                return proxy(CallableStatement.class, new StatementHandler(result, (String) args[0]));
+            }
+            if (result instanceof PreparedStatement) {
+                return proxy(PreparedStatement.class, new StatementHandler(result, (String) args[0]));
+            }
+            if (result instanceof Statement) {
+                return proxy(Statement.class, new StatementHandler(result, null));
+            }
+            return result;
+        }
+    }
+
+    private final class StatementHandler extends Handler {
+
+        private final String preparedSql;
+
+        private final List<String> parameterTypes = new ArrayList<>();
+
+        StatementHandler(Object statement, String preparedSql) {
+            super(statement);
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bound((Integer) args[0], name, args[1]);
+            } else if ("clearParameters".equals(name)) {
+                parameterTypes.clear();
+            } else if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            Object result = delegate(method, args);
+            if (result instanceof ResultSet && "getResultSet".equals(name)) {
+                return proxy(ResultSet.class, new ResultSetHandler(result));
+            }
+            return result;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            // Null for the batches of plain statements, whose SQL is only given to addBatch
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = delegate(method, args);
+            } finally {
+                long nanos = System.nanoTime() - start;
+                telemetry.statementExecuted(sql, Collections.unmodifiableList(new ArrayList<>(parameterTypes)), nanos);
+            }
+            if (result instanceof ResultSet) {
+                return proxy(ResultSet.class, new ResultSetHandler(result));
+            }
+            return result;
+        }
+
+        private void bound(int index, String setter, Object value) {
+            while (parameterTypes.size() < index) {
+                parameterTypes.add("?");
+            }
+            String type;
+            if ("setNull".equals(setter) || value == null) {
+                type = "null";
+            } else {
+                type = value.getClass().getSimpleName();
+            }
+            parameterTypes.set(index - 1, type);
+        }
+    }
+
+    private final class ResultSetHandler extends Handler {
+
+        ResultSetHandler(Object resultSet) {
+            super(resultSet);
+        }
+
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = delegate(method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                telemetry.rowFetched();
+            }
+            return result;
+        }
+    }
+}
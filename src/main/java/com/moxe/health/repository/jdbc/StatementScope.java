@@ -0,0 +1,114 @@
+package com.moxe.health.repository.jdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The statements run by the current thread while serving a request, counted by the {@link InstrumentedDataSource}.
+ * <p>
+ * A scope is opened around each request, and closed once it is served. The statements run outside of any scope, such
+ * as those of the background tasks, are only measured as a whole. A scope opened within another one, such as by a test
+ * around the requests it makes, adds its counts to the enclosing scope once closed.
+ */
+public final class StatementScope implements AutoCloseable {
+
+    private static final ThreadLocal<StatementScope> CURRENT = new ThreadLocal<>();
+
+    private final StatementScope previous;
+
+    private final Map<String, Integer> statementsByKind = new HashMap<>();
+
+    private int statements;
+
+    private long rows;
+
+    private long nanos;
+
+    private String shape;
+
+    private StatementScope(StatementScope previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Open a scope on the current thread, until it is closed.
+     *
+     * @return the scope.
+     */
+    public static StatementScope open() {
+        StatementScope scope = new StatementScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the scope of the current thread, or {@code null} if none is open.
+     */
+    public static StatementScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Tag the statements run next in the scope of the current thread, if any, with the shape of their query.
+     *
+     * @param shape the shape of the query, such as the filters of its criteria without their values, only computed if
+     * there is a scope.
+     */
+    public static void tagShape(Supplier<String> shape) {
+        StatementScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.shape = shape.get();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            previous.statements += statements;
+            statementsByKind.forEach((kind, count) -> previous.statementsByKind.merge(kind, count, Integer::sum));
+            previous.rows += rows;
+            previous.nanos += nanos;
+            CURRENT.set(previous);
+        }
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * @param kind the kind of statement, such as {@code select} or {@code update}.
+     * @return the number of statements of this kind run in the scope.
+     */
+    public int getStatements(String kind) {
+        return statementsByKind.getOrDefault(kind, 0);
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return the shape of the query last tagged, or {@code null} if none was.
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    void statementExecuted(String kind, long statementNanos) {
+        statements++;
+        statementsByKind.merge(kind, 1, Integer::sum);
+        nanos += statementNanos;
+    }
+
+    void rowFetched() {
+        rows++;
+    }
+}
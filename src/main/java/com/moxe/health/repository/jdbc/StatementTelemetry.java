@@ -0,0 +1,148 @@
+package com.moxe.health.repository.jdbc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the statements run through the {@link InstrumentedDataSource}, in the {@value #METRIC_NAME} timer tagged with
+ * their kind and the shape of their query, and logs the slow ones.
+ * <p>
+ * A slow statement is logged with its literals masked and the types of its parameters, as their values may be those of
+ * patients. The shapes beyond the maximum number share the {@value #OTHER_SHAPE} tag, so that the criteria of the
+ * requests cannot create any number of timers.
+ */
+public class StatementTelemetry implements MeterBinder {
+
+    /**
+     * Name of the timers of the statements.
+     */
+    public static final String METRIC_NAME = "jdbc.statements";
+
+    static final String NO_SHAPE = "none";
+
+    static final String OTHER_SHAPE = "other";
+
+    // Quoted strings, then numbers not part of an identifier
+    private static final Pattern LITERALS = Pattern.compile("'(?:[^']|'')*'|(?<![\\w.])\\d+(?:\\.\\d+)?(?![\\w.])");
+
+    private final Logger log = LoggerFactory.getLogger(StatementTelemetry.class);
+
+    private final long slowStatementNanos;
+
+    private final int maxShapes;
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Set<String> shapes = ConcurrentHashMap.newKeySet();
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * @param slowStatementThreshold the time over which a statement is logged.
+     * @param maxShapes the maximum number of shapes the statements are tagged with.
+     */
+    public StatementTelemetry(Duration slowStatementThreshold, int maxShapes) {
+        this.slowStatementNanos = slowStatementThreshold.toNanos();
+        this.maxShapes = maxShapes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        timers.clear();
+        shapes.clear();
+        meterRegistry = registry;
+    }
+
+    void statementExecuted(String sql, List<String> parameterTypes, long nanos) {
+        StatementScope scope = StatementScope.current();
+        String shape = scope == null || scope.getShape() == null ? NO_SHAPE : scope.getShape();
+        String kind = kind(sql);
+        if (scope != null) {
+            scope.statementExecuted(kind, nanos);
+        }
+        if (nanos >= slowStatementNanos) {
+            log.warn(
+                "Slow statement of {} ms, shape {}: {} with parameters {}",
+                TimeUnit.NANOSECONDS.toMillis(nanos),
+                shape,
+                mask(sql),
+                parameterTypes
+            );
+        }
+        MeterRegistry registry = meterRegistry;
+        if (registry != null) {
+            timer(registry, kind, shape).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void rowFetched() {
+        StatementScope scope = StatementScope.current();
+        if (scope != null) {
+            scope.rowFetched();
+        }
+    }
+
+    /**
+     * Replace the literals of the statement by placeholders.
+     */
+    static String mask(String sql) {
+        return sql == null ? null : LITERALS.matcher(sql).replaceAll("?");
+    }
+
+    private Timer timer(MeterRegistry registry, String kind, String shape) {
+        String key = kind + ' ' + shape;
+        Timer timer = timers.get(key);
+        if (timer != null) {
+            return timer;
+        }
+        if (!NO_SHAPE.equals(shape) && !OTHER_SHAPE.equals(shape) && !shapes.contains(shape)) {
+            if (shapes.size() >= maxShapes) {
+                return timer(registry, kind, OTHER_SHAPE);
+            }
+            shapes.add(shape);
+        }
+        return timers.computeIfAbsent(
+            key,
+            k ->
+                Timer
+                    .builder(METRIC_NAME)
+                    .description("Time spent running the statements, per kind and shape of query")
+                    .tag("statement", kind)
+                    .tag("shape", shape)
+                    .register(registry)
+        );
+    }
+
+    private static String kind(String sql) {
+        if (sql == null) {
+            return "batch";
+        }
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        String keyword = trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+        switch (keyword) {
+            case "select":
+            case "insert":
+            case "update":
+            case "delete":
+            case "merge":
+                return keyword;
+            default:
+                return "other";
+        }
+    }
+}
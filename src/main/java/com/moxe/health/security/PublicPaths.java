@@ -0,0 +1,24 @@
+package com.moxe.health.security;
+
+/**
+ * Ant patterns of the paths permitted to all the requests, authenticated or not.
+ */
+public final class PublicPaths {
+
+    public static final String[] PATTERNS = {
+        "/app/**/*.{js,html}",
+        "/i18n/**",
+        "/content/**",
+        "/swagger-ui/**",
+        "/test/**",
+        "/h2-console/**",
+        "/api/authenticate",
+        "/api/auth-info",
+        "/management/health",
+        "/management/health/**",
+        "/management/info",
+        "/management/prometheus",
+    };
+
+    private PublicPaths() {}
+}
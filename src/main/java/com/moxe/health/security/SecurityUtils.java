@@ -19,6 +19,12 @@ public final class SecurityUtils {
 
     public static final String CLAIMS_NAMESPACE = "https://www.jhipster.tech/";
 
+    /**
+     * Claim added to the claims of a token when the user info could not be retrieved, which then lack the login, names
+     * and authorities of the user.
+     */
+    public static final String USER_INFO_UNAVAILABLE_CLAIM = CLAIMS_NAMESPACE + "user_info_unavailable";
+
     private SecurityUtils() {}
 
     /**
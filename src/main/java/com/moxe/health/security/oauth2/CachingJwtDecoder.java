@@ -0,0 +1,182 @@
+package com.moxe.health.security.oauth2;
+
+import com.moxe.health.security.SecurityUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * {@link JwtDecoder} caching the tokens decoded by another one, so that a token sent with many requests is parsed, and
+ * its signature and claims validated, only once.
+ * <p>
+ * A token is cached until it expires, unless it expires too soon to be worth it, and for at most the maximum time to
+ * live: no longer than the decoder caches its JWK set, so that a token signed with a key removed from the JWK set is not
+ * accepted for longer than without this cache. The tokens are keyed by their SHA-256 hash, and the least recently used
+ * are evicted. The tokens decoded without the user info are not cached, so that the next request retrieves it.
+ */
+public class CachingJwtDecoder implements JwtDecoder, MeterBinder {
+
+    /**
+     * Name of the cache, in the {@code cache} tag of its meters.
+     */
+    public static final String NAME = "jwt";
+
+    private final JwtDecoder delegate;
+
+    private final Duration minTimeToLive;
+
+    private final Duration maxTimeToLive;
+
+    private final Clock clock;
+
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param delegate the decoder of the tokens which are not cached.
+     * @param maxEntries the maximum number of tokens held.
+     * @param minTimeToLive the time before its expiry under which a token is not cached.
+     * @param maxTimeToLive the maximum time a token is cached, at most the lifespan of the JWK set cache.
+     */
+    public CachingJwtDecoder(JwtDecoder delegate, int maxEntries, Duration minTimeToLive, Duration maxTimeToLive) {
+        this(delegate, maxEntries, minTimeToLive, maxTimeToLive, Clock.systemUTC());
+    }
+
+    CachingJwtDecoder(JwtDecoder delegate, int maxEntries, Duration minTimeToLive, Duration maxTimeToLive, Clock clock) {
+        this.delegate = delegate;
+        this.minTimeToLive = minTimeToLive;
+        this.maxTimeToLive = maxTimeToLive;
+        this.clock = clock;
+        // Access ordered, to evict the least recently used tokens
+        this.entries =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > maxEntries) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = hash(token);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        Instant now = clock.instant();
+        if (entry != null && now.isBefore(entry.expiresAt)) {
+            hits.increment();
+            return entry.jwt;
+        }
+
+        misses.increment();
+        Jwt jwt = delegate.decode(token);
+        // Without an expiry, a token is only checked by the decoder
+        Instant expiresAt = jwt.getExpiresAt();
+        boolean withUserInfo = !jwt.hasClaim(SecurityUtils.USER_INFO_UNAVAILABLE_CLAIM);
+        if (withUserInfo && expiresAt != null && expiresAt.isAfter(now.plus(minTimeToLive))) {
+            Instant cachedUntil = now.plus(maxTimeToLive);
+            synchronized (entries) {
+                entries.put(key, new Entry(jwt, expiresAt.isBefore(cachedUntil) ? expiresAt : cachedUntil));
+            }
+            puts.increment();
+        }
+        return jwt;
+    }
+
+    public long size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new Metrics(this).bindTo(registry);
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Jwt jwt;
+
+        private final Instant expiresAt;
+
+        private Entry(Jwt jwt, Instant expiresAt) {
+            this.jwt = jwt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Metrics extends CacheMeterBinder<CachingJwtDecoder> {
+
+        private final CachingJwtDecoder decoder;
+
+        private Metrics(CachingJwtDecoder decoder) {
+            super(decoder, NAME, Tags.empty());
+            this.decoder = decoder;
+        }
+
+        @Override
+        protected Long size() {
+            return decoder.size();
+        }
+
+        @Override
+        protected long hitCount() {
+            return decoder.hits.sum();
+        }
+
+        @Override
+        protected Long missCount() {
+            return decoder.misses.sum();
+        }
+
+        @Override
+        protected Long evictionCount() {
+            return decoder.evictions.sum();
+        }
+
+        @Override
+        protected long putCount() {
+            return decoder.puts.sum();
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {}
+    }
+}
@@ -0,0 +1,165 @@
+package com.moxe.health.security.oauth2;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker of the calls to a remote service, failing them at once while it is failing them itself.
+ * <p>
+ * It opens after a number of consecutive failures, rejecting the calls for the open duration. Then it lets a single
+ * call through, and closes if it succeeds or opens again if it fails. Only the exceptions matching the failure
+ * predicate count as failures, so that the remote service rejecting a caller does not open it for all of them.
+ */
+public class CircuitBreaker implements MeterBinder {
+
+    private final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String name;
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private final Predicate<RuntimeException> failure;
+
+    private final LongSupplier ticker;
+
+    private final LongAdder successes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    private boolean open;
+
+    private boolean trying;
+
+    /**
+     * @param name the name of the remote service, in the {@code name} tag of the meters.
+     * @param failureThreshold the number of consecutive failures opening the circuit.
+     * @param openDuration the time the circuit stays open before trying a call again.
+     * @param failure whether an exception thrown by a call counts as a failure.
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, Predicate<RuntimeException> failure) {
+        this(name, failureThreshold, openDuration, failure, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration, Predicate<RuntimeException> failure, LongSupplier ticker) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.failure = failure;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Make the call, unless the circuit is open.
+     *
+     * @param call the call to the remote service.
+     * @return the result of the call.
+     * @throws OpenException if the circuit is open.
+     */
+    public <T> T call(Supplier<T> call) {
+        if (!acquire()) {
+            rejections.increment();
+            throw new OpenException(name);
+        }
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            if (failure.test(e)) {
+                onFailure();
+            } else {
+                onSuccess();
+            }
+            throw e;
+        }
+        onSuccess();
+        return result;
+    }
+
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge
+            .builder("circuit.breaker.open", this, breaker -> breaker.isOpen() ? 1 : 0)
+            .tag("name", name)
+            .description("Whether the calls to the remote service are rejected, or only one is tried")
+            .register(registry);
+        bindCalls(registry, successes, "success", "Calls to the remote service which succeeded");
+        bindCalls(registry, failures, "failure", "Calls to the remote service which failed");
+        bindCalls(registry, rejections, "rejected", "Calls rejected as the circuit was open");
+    }
+
+    private void bindCalls(MeterRegistry registry, LongAdder calls, String result, String description) {
+        FunctionCounter
+            .builder("circuit.breaker.calls", calls, LongAdder::sum)
+            .tag("name", name)
+            .tag("result", result)
+            .description(description)
+            .register(registry);
+    }
+
+    private synchronized boolean acquire() {
+        if (!open) {
+            return true;
+        }
+        if (trying || ticker.getAsLong() - openedAt < openNanos) {
+            return false;
+        }
+        trying = true;
+        return true;
+    }
+
+    private synchronized void onSuccess() {
+        successes.increment();
+        consecutiveFailures = 0;
+        if (open) {
+            log.info("Closing the circuit of {}", name);
+            open = false;
+            trying = false;
+        }
+    }
+
+    private synchronized void onFailure() {
+        failures.increment();
+        consecutiveFailures++;
+        if (trying || (!open && consecutiveFailures >= failureThreshold)) {
+            if (!open) {
+                log.warn("Opening the circuit of {} after {} consecutive failures", name, consecutiveFailures);
+            }
+            open = true;
+            trying = false;
+            openedAt = ticker.getAsLong();
+        }
+    }
+
+    /**
+     * Thrown instead of calling the remote service while the circuit is open.
+     */
+    public static class OpenException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(String name) {
+            super("The circuit of " + name + " is open");
+        }
+    }
+}
@@ -7,9 +7,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -19,6 +20,7 @@ import org.springframework.security.oauth2.client.registration.ClientRegistratio
 import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
 import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
 import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
@@ -26,9 +28,15 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 
 /**
  * Claim converter to add custom claims by retrieving the user from the userinfo endpoint.
+ * <p>
+ * When the userinfo endpoint fails, or its circuit is open, the claims of the token are used as they are, marked with
+ * the {@link SecurityUtils#USER_INFO_UNAVAILABLE_CLAIM} claim so that they are neither cached nor synchronized with the
+ * local users.
  */
 public class CustomClaimConverter implements Converter<Map<String, Object>, Map<String, Object>> {
 
+    private final Logger log = LoggerFactory.getLogger(CustomClaimConverter.class);
+
     private final BearerTokenResolver bearerTokenResolver = new DefaultBearerTokenResolver();
 
     private final MappedJwtClaimSetConverter delegate = MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
@@ -37,12 +45,20 @@ public class CustomClaimConverter implements Converter<Map<String, Object>, Map<
 
     private final ClientRegistration registration;
 
-    // todo: optimize for scale https://github.com/jhipster/generator-jhipster/issues/18868
-    private final Map<String, ObjectNode> users = new ConcurrentHashMap<>();
+    private final UserInfoCache users;
+
+    private final CircuitBreaker circuitBreaker;
 
-    public CustomClaimConverter(ClientRegistration registration, RestTemplate restTemplate) {
+    public CustomClaimConverter(
+        ClientRegistration registration,
+        RestTemplate restTemplate,
+        UserInfoCache users,
+        CircuitBreaker circuitBreaker
+    ) {
         this.registration = registration;
         this.restTemplate = restTemplate;
+        this.users = users;
+        this.circuitBreaker = circuitBreaker;
     }
 
     public Map<String, Object> convert(Map<String, Object> claims) {
@@ -58,19 +74,28 @@ public class CustomClaimConverter implements Converter<Map<String, Object>, Map<
             HttpHeaders headers = new HttpHeaders();
             headers.set("Authorization", buildBearer(token));
 
-            // Retrieve user info from OAuth provider if not already loaded
-            ObjectNode user = users.computeIfAbsent(
-                claims.get("sub").toString(),
-                s -> {
-                    ResponseEntity<ObjectNode> userInfo = restTemplate.exchange(
-                        registration.getProviderDetails().getUserInfoEndpoint().getUri(),
-                        HttpMethod.GET,
-                        new HttpEntity<String>(headers),
-                        ObjectNode.class
+            // Retrieve user info from OAuth provider if not already loaded, or in the background if loaded a while ago
+            ObjectNode user;
+            try {
+                user =
+                    users.get(
+                        claims.get("sub").toString(),
+                        () ->
+                            circuitBreaker.call(() -> {
+                                ResponseEntity<ObjectNode> userInfo = restTemplate.exchange(
+                                    registration.getProviderDetails().getUserInfoEndpoint().getUri(),
+                                    HttpMethod.GET,
+                                    new HttpEntity<String>(headers),
+                                    ObjectNode.class
+                                );
+                                return userInfo.getBody();
+                            })
                     );
-                    return userInfo.getBody();
-                }
-            );
+            } catch (RestClientException | CircuitBreaker.OpenException e) {
+                log.debug("Using the claims of the token of {} without its user info: {}", claims.get("sub"), e.toString());
+                convertedClaims.put(SecurityUtils.USER_INFO_UNAVAILABLE_CLAIM, true);
+                user = null;
+            }
 
             // Add custom claims
             if (user != null) {
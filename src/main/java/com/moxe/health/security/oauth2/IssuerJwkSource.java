@@ -0,0 +1,409 @@
+package com.moxe.health.security.oauth2;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * The JWK set of an OIDC issuer, which neither blocks nor fails the startup when the issuer is slow or unreachable.
+ * <p>
+ * The discovery metadata and JWK set of the issuer are kept in a file, read when the source is created, and refreshed
+ * in the background every refresh interval. A token signed with a key missing from the JWK set refreshes it at once,
+ * as the issuer rotated its keys, unless an unknown key already refreshed it less than the unknown key interval ago, so
+ * that tokens with made-up key ids cannot flood the issuer. The requests missing the same key wait for the same refresh. When the
+ * issuer cannot be reached, the keys last fetched are kept, however old.
+ * <p>
+ * As the keys in the file are trusted to verify the tokens, it is created readable and writable by its owner only, in a
+ * directory created accessible by its owner only, and ignored when owned by another user or accessible by others.
+ */
+public class IssuerJwkSource implements JWKSource<SecurityContext> {
+
+    private static final String DISCOVERY_PATH = "/.well-known/openid-configuration";
+
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    private final Logger log = LoggerFactory.getLogger(IssuerJwkSource.class);
+
+    private final String issuer;
+
+    private final Path metadataFile;
+
+    private final RestTemplate restTemplate;
+
+    private final Duration refreshInterval;
+
+    private final Duration unknownKeyRefreshInterval;
+
+    private final Clock clock;
+
+    private final AtomicReference<CompletableFuture<Metadata>> refreshing = new AtomicReference<>();
+
+    private final Timer refreshed;
+
+    private final Timer failed;
+
+    private final Counter unknownKeys;
+
+    private volatile Metadata metadata;
+
+    private volatile Instant lastUnknownKeyRefresh = Instant.MIN;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param issuer the issuer, as in its tokens.
+     * @param metadataFile the file keeping the metadata and JWK set of the issuer, or {@code null} to keep them in memory
+     *     only.
+     * @param restTemplate the client of the issuer, with timeouts.
+     * @param refreshInterval the interval between the refreshes in the background.
+     * @param unknownKeyRefreshInterval the minimum interval between the refreshes caused by unknown keys.
+     */
+    public IssuerJwkSource(
+        String issuer,
+        Path metadataFile,
+        RestTemplate restTemplate,
+        Duration refreshInterval,
+        Duration unknownKeyRefreshInterval,
+        MeterRegistry meterRegistry
+    ) {
+        this(issuer, metadataFile, restTemplate, refreshInterval, unknownKeyRefreshInterval, meterRegistry, Clock.systemUTC());
+    }
+
+    IssuerJwkSource(
+        String issuer,
+        Path metadataFile,
+        RestTemplate restTemplate,
+        Duration refreshInterval,
+        Duration unknownKeyRefreshInterval,
+        MeterRegistry meterRegistry,
+        Clock clock
+    ) {
+        this.issuer = issuer;
+        this.metadataFile = metadataFile;
+        this.restTemplate = restTemplate;
+        this.refreshInterval = refreshInterval;
+        this.unknownKeyRefreshInterval = unknownKeyRefreshInterval;
+        this.clock = clock;
+        this.refreshed = refreshTimer(meterRegistry, "success");
+        this.failed = refreshTimer(meterRegistry, "failure");
+        this.unknownKeys =
+            Counter
+                .builder("oidc.metadata.unknown.keys")
+                .description("Tokens signed with a key missing from the JWK set of the issuer")
+                .register(meterRegistry);
+        Gauge
+            .builder(
+                "oidc.metadata.staleness",
+                this,
+                source -> source.metadata == null ? Double.NaN : source.staleness().toMillis() / 1000.0
+            )
+            .description("Time since the metadata and JWK set of the issuer were fetched")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        this.metadata = read();
+    }
+
+    /**
+     * A decoder of the tokens signed with the keys of the issuer, whose claims are left to its validators.
+     *
+     * @return the decoder.
+     */
+    public NimbusJwtDecoder jwtDecoder() {
+        // The algorithms of the asymmetric keys the issuer may publish, rather than only RS256
+        Set<JWSAlgorithm> algorithms = new HashSet<>(JWSAlgorithm.Family.RSA);
+        algorithms.addAll(JWSAlgorithm.Family.EC);
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(algorithms, this));
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {});
+        return new NimbusJwtDecoder(jwtProcessor);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        Metadata current = metadata;
+        if (current != null) {
+            List<JWK> keys = jwkSelector.select(current.jwkSet);
+            if (!keys.isEmpty()) {
+                return keys;
+            }
+        }
+        unknownKeys.increment();
+        CompletableFuture<Metadata> pending = refreshing.get();
+        if (pending == null) {
+            Instant now = clock.instant();
+            if (now.isBefore(lastUnknownKeyRefresh.plus(unknownKeyRefreshInterval))) {
+                return List.of();
+            }
+            lastUnknownKeyRefresh = now;
+        }
+        try {
+            return jwkSelector.select((pending != null ? join(pending) : refresh()).jwkSet);
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh the JWK set of {} for an unknown key: {}", issuer, e.toString());
+            return List.of();
+        }
+    }
+
+    /**
+     * Start refreshing the metadata in the background, at once if there is none or it is older than the interval.
+     */
+    public void start() {
+        scheduler =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "oidc-metadata");
+                thread.setDaemon(true);
+                return thread;
+            });
+        long initialDelay = metadata == null ? 0 : Math.max(0, refreshInterval.minus(staleness()).toMillis());
+        scheduler.scheduleWithFixedDelay(this::refreshInBackground, initialDelay, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * The time since the metadata in use were fetched, which there must be.
+     */
+    Duration staleness() {
+        return Duration.between(metadata.fetchedAt, clock.instant());
+    }
+
+    private void refreshInBackground() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            Metadata current = metadata;
+            log.warn(
+                "Could not refresh the metadata of {}, {}: {}",
+                issuer,
+                current == null ? "which has none" : "keeping those fetched at " + current.fetchedAt,
+                e.toString()
+            );
+        }
+    }
+
+    /**
+     * Fetch the metadata and JWK set of the issuer, or wait for the refresh in progress, then save them.
+     */
+    Metadata refresh() {
+        CompletableFuture<Metadata> refresh = new CompletableFuture<>();
+        CompletableFuture<Metadata> pending = refreshing.compareAndExchange(null, refresh);
+        if (pending != null) {
+            return join(pending);
+        }
+
+        long start = System.nanoTime();
+        try {
+            Metadata fetched = fetch();
+            refreshed.record(Duration.ofNanos(System.nanoTime() - start));
+            metadata = fetched;
+            write(fetched);
+            refresh.complete(fetched);
+            return fetched;
+        } catch (RuntimeException e) {
+            failed.record(Duration.ofNanos(System.nanoTime() - start));
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally {
+            refreshing.set(null);
+        }
+    }
+
+    private Metadata fetch() {
+        String discoveryUri = UriComponentsBuilder.fromUriString(issuer).path(DISCOVERY_PATH).toUriString();
+        Map<String, Object> discovery = restTemplate
+            .exchange(discoveryUri, HttpMethod.GET, null, new ParameterizedTypeReference<Map<String, Object>>() {})
+            .getBody();
+        if (discovery == null || !issuer.equals(discovery.get("issuer"))) {
+            throw new IllegalStateException("The discovery metadata of " + discoveryUri + " is not those of " + issuer);
+        }
+        Object jwksUri = discovery.get("jwks_uri");
+        if (!(jwksUri instanceof String)) {
+            throw new IllegalStateException("The discovery metadata of " + issuer + " has no jwks_uri");
+        }
+        String jwks = restTemplate.getForObject((String) jwksUri, String.class);
+        try {
+            return new Metadata(discovery, JWKSet.parse(jwks).toPublicJWKSet(), clock.instant());
+        } catch (ParseException | NullPointerException e) {
+            throw new IllegalStateException("Could not parse the JWK set of " + issuer, e);
+        }
+    }
+
+    /**
+     * Read the metadata saved by the last refresh, on this node or another one sharing the file.
+     */
+    private Metadata read() {
+        if (metadataFile == null) {
+            log.info("No metadata file for {}, fetching its metadata in the background", issuer);
+            return null;
+        }
+        if (!Files.isRegularFile(metadataFile, LinkOption.NOFOLLOW_LINKS)) {
+            log.info("No metadata of {} in {}, fetching them in the background", issuer, metadataFile);
+            return null;
+        }
+        try {
+            if (!isPrivate(metadataFile)) {
+                return null;
+            }
+            Map<String, Object> json = JSONObjectUtils.parse(Files.readString(metadataFile, StandardCharsets.UTF_8));
+            if (!issuer.equals(JSONObjectUtils.getString(json, "issuer"))) {
+                log.info("The metadata in {} are not those of {}", metadataFile, issuer);
+                return null;
+            }
+            Metadata saved = new Metadata(
+                JSONObjectUtils.getJSONObject(json, "discovery"),
+                JWKSet.parse(JSONObjectUtils.getJSONObject(json, "jwks")),
+                Instant.ofEpochSecond(JSONObjectUtils.getLong(json, "fetched_at"))
+            );
+            log.debug("Read the metadata of {} fetched at {}", issuer, saved.fetchedAt);
+            return saved;
+        } catch (IOException | ParseException | RuntimeException e) {
+            log.warn("Could not read the metadata of {} from {}: {}", issuer, metadataFile, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Save the metadata, replacing the file at once so that it is never read half written.
+     */
+    private void write(Metadata saved) {
+        if (metadataFile == null) {
+            return;
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("issuer", issuer);
+        json.put("fetched_at", saved.fetchedAt.getEpochSecond());
+        json.put("discovery", saved.discovery);
+        json.put("jwks", saved.jwkSet.toJSONObject(true));
+        try {
+            Path directory = metadataFile.toAbsolutePath().getParent();
+            boolean posix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+            Path temporaryFile;
+            if (posix) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+                temporaryFile =
+                    Files.createTempFile(
+                        directory,
+                        metadataFile.getFileName().toString(),
+                        ".tmp",
+                        PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS)
+                    );
+            } else {
+                Files.createDirectories(directory);
+                temporaryFile = Files.createTempFile(directory, metadataFile.getFileName().toString(), ".tmp");
+            }
+            Files.writeString(temporaryFile, JSONObjectUtils.toJSONString(json), StandardCharsets.UTF_8);
+            Files.move(temporaryFile, metadataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save the metadata of {} to {}: {}", issuer, metadataFile, e.toString());
+        }
+    }
+
+    /**
+     * Whether the file is owned by the user running the application, and not accessible by the other users.
+     */
+    private boolean isPrivate(Path file) throws IOException {
+        UserPrincipal owner = Files.getOwner(file, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = file.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+        if (!owner.equals(user)) {
+            log.warn("Ignoring the metadata in {}, owned by {} rather than {}", file, owner.getName(), user.getName());
+            return false;
+        }
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file, LinkOption.NOFOLLOW_LINKS);
+            if (!FILE_PERMISSIONS.containsAll(permissions)) {
+                log.warn(
+                    "Ignoring the metadata in {}, whose permissions {} are wider than {}",
+                    file,
+                    PosixFilePermissions.toString(permissions),
+                    PosixFilePermissions.toString(FILE_PERMISSIONS)
+                );
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Metadata join(CompletableFuture<Metadata> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Timer refreshTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer
+            .builder("oidc.metadata.refresh")
+            .description("Fetches of the discovery metadata and JWK set of the issuer")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    /**
+     * The discovery metadata and public JWK set of the issuer, as fetched at the same time.
+     */
+    static final class Metadata {
+
+        private final Map<String, Object> discovery;
+
+        private final JWKSet jwkSet;
+
+        private final Instant fetchedAt;
+
+        Metadata(Map<String, Object> discovery, JWKSet jwkSet, Instant fetchedAt) {
+            this.discovery = discovery;
+            this.jwkSet = jwkSet;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
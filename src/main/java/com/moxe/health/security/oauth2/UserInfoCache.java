@@ -0,0 +1,254 @@
+package com.moxe.health.security.oauth2;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the users returned by the userinfo endpoint of the OAuth provider, keyed by subject.
+ * <p>
+ * It holds a bounded number of users, evicting the least recently used, each for at most its time to live. A user
+ * needed by several requests at once is loaded by only one of them, outside of any lock, so that a slow userinfo call
+ * only delays the requests of that user. Once older than the refresh delay, a user is still returned while it is
+ * loaded again in the background, and kept if that load fails, until it expires.
+ */
+public class UserInfoCache implements MeterBinder {
+
+    /**
+     * Name of the cache, in the {@code cache} tag of its meters.
+     */
+    public static final String NAME = "userInfo";
+
+    private final Logger log = LoggerFactory.getLogger(UserInfoCache.class);
+
+    private final long timeToLiveNanos;
+
+    private final long refreshAfterNanos;
+
+    private final Executor refreshExecutor;
+
+    private final LongSupplier ticker;
+
+    private final Map<String, Entry> entries;
+
+    private final ConcurrentMap<String, Load> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * @param maxEntries the maximum number of users held.
+     * @param timeToLive the time after which a user is loaded again before being returned.
+     * @param refreshAfter the time after which a user is loaded again in the background, shorter than its time to live.
+     * @param refreshExecutor the executor of the background loads.
+     */
+    public UserInfoCache(int maxEntries, Duration timeToLive, Duration refreshAfter, Executor refreshExecutor) {
+        this(maxEntries, timeToLive, refreshAfter, refreshExecutor, System::nanoTime);
+    }
+
+    UserInfoCache(int maxEntries, Duration timeToLive, Duration refreshAfter, Executor refreshExecutor, LongSupplier ticker) {
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.refreshExecutor = refreshExecutor;
+        this.ticker = ticker;
+        // Access ordered, to evict the least recently used users
+        this.entries =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > maxEntries) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    }
+
+    /**
+     * Return the user of the given subject, loading it if it is not cached or has expired.
+     *
+     * @param subject the subject of the user.
+     * @param loader the call to the userinfo endpoint, which may be run in the background.
+     * @return the user, or {@code null} if the userinfo endpoint returned none.
+     */
+    public ObjectNode get(String subject, Supplier<ObjectNode> loader) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(subject);
+        }
+        long age = entry == null ? Long.MAX_VALUE : ticker.getAsLong() - entry.loadedAt;
+        if (age < timeToLiveNanos) {
+            hits.increment();
+            if (age >= refreshAfterNanos) {
+                refresh(subject, loader);
+            }
+            return entry.user;
+        }
+
+        misses.increment();
+        Load load = new Load();
+        Load pending = loading.putIfAbsent(subject, load);
+        if (pending == null) {
+            pending = load;
+        }
+        // Unless another thread is running it already, such as a refresh still queued on the executor
+        load(subject, loader, pending);
+        try {
+            return pending.user.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public long size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new Metrics(this).bindTo(registry);
+    }
+
+    private void refresh(String subject, Supplier<ObjectNode> loader) {
+        Load load = new Load();
+        if (loading.putIfAbsent(subject, load) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> load(subject, loader, load));
+        } catch (RejectedExecutionException e) {
+            load(subject, loader, load);
+        }
+    }
+
+    private void load(String subject, Supplier<ObjectNode> loader, Load load) {
+        if (!load.started.compareAndSet(false, true)) {
+            return;
+        }
+        long start = ticker.getAsLong();
+        try {
+            ObjectNode user = loader.get();
+            if (user != null) {
+                synchronized (entries) {
+                    entries.put(subject, new Entry(user, ticker.getAsLong()));
+                }
+                puts.increment();
+            }
+            load.user.complete(user);
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            log.debug("Could not load the user info of {}: {}", subject, e.toString());
+            load.user.completeExceptionally(e);
+        } finally {
+            loads.increment();
+            loadNanos.add(ticker.getAsLong() - start);
+            loading.remove(subject, load);
+        }
+    }
+
+    private static final class Load {
+
+        private final CompletableFuture<ObjectNode> user = new CompletableFuture<>();
+
+        private final AtomicBoolean started = new AtomicBoolean();
+    }
+
+    private static final class Entry {
+
+        private final ObjectNode user;
+
+        private final long loadedAt;
+
+        private Entry(ObjectNode user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class Metrics extends CacheMeterBinder<UserInfoCache> {
+
+        private final UserInfoCache cache;
+
+        private Metrics(UserInfoCache cache) {
+            super(cache, NAME, Tags.empty());
+            this.cache = cache;
+        }
+
+        @Override
+        protected Long size() {
+            return cache.size();
+        }
+
+        @Override
+        protected long hitCount() {
+            return cache.hits.sum();
+        }
+
+        @Override
+        protected Long missCount() {
+            return cache.misses.sum();
+        }
+
+        @Override
+        protected Long evictionCount() {
+            return cache.evictions.sum();
+        }
+
+        @Override
+        protected long putCount() {
+            return cache.puts.sum();
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+            FunctionCounter
+                .builder("cache.load", cache.loadFailures, LongAdder::sum)
+                .tags(getTagsWithCacheName())
+                .tag("result", "failure")
+                .description("Calls to the userinfo endpoint which failed")
+                .register(registry);
+            FunctionTimer
+                .builder("cache.load.duration", cache, c -> c.loads.sum(), c -> c.loadNanos.sum(), TimeUnit.NANOSECONDS)
+                .tags(getTagsWithCacheName())
+                .description("Time spent calling the userinfo endpoint, in the requests or in the background")
+                .register(registry);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.moxe.health.service;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * How the total number of entities matching a query is obtained.
+ */
+public enum CountStrategy {
+    /**
+     * A {@code count(*)} query, run after the page query.
+     */
+    EXACT,
+
+    /**
+     * An exact count, cached per criteria until the entities are written or the cache entry expires.
+     */
+    CACHED,
+
+    /**
+     * The row count estimated by the database planner statistics, when the query has no filter and the estimate is above a
+     * threshold; an exact count otherwise.
+     */
+    ESTIMATED,
+
+    /**
+     * An exact count, run in parallel with the page query in its own transaction.
+     */
+    PARALLEL;
+
+    public static Optional<CountStrategy> of(String strategy) {
+        return Arrays.stream(values()).filter(value -> value.name().equalsIgnoreCase(strategy)).findFirst();
+    }
+
+    /**
+     * @return the name of the strategy, as given in requests and returned in responses.
+     */
+    public String value() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
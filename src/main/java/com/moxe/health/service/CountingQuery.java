@@ -0,0 +1,232 @@
+package com.moxe.health.service;
+
+import com.moxe.health.service.dto.CountedPage;
+import com.moxe.health.service.dto.TotalCount;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs page queries for the entities matching a {@link Specification}, obtaining their total with a {@link CountStrategy}.
+ * The entities are loaded with the entity graph {@code fetchGraph}, which the repository must also apply to its
+ * {@link JpaSpecificationExecutor#findAll(Specification, Pageable)}.
+ * <p>
+ * Whatever the strategy, no count is run when the total can be deduced from a partial page, in which case the total is
+ * reported as {@link CountStrategy#EXACT}. Cached counts are keyed by the criteria the specification was built from, and
+ * must be cleared by the services writing the entities.
+ *
+ * @param <T> the type of the entity.
+ */
+public class CountingQuery<T> {
+
+    private final Logger log = LoggerFactory.getLogger(CountingQuery.class);
+
+    private final EntityManager entityManager;
+
+    private final Class<T> domainClass;
+
+    private final JpaSpecificationExecutor<T> repository;
+
+    private final String fetchGraph;
+
+    private final Cache countCache;
+
+    private final Executor executor;
+
+    private final CountStrategy defaultStrategy;
+
+    private final long estimateThreshold;
+
+    private final String tableName;
+
+    private final String estimateQuery;
+
+    public CountingQuery(
+        EntityManager entityManager,
+        Class<T> domainClass,
+        JpaSpecificationExecutor<T> repository,
+        String fetchGraph,
+        Cache countCache,
+        Executor executor,
+        CountStrategy defaultStrategy,
+        long estimateThreshold
+    ) {
+        this.entityManager = entityManager;
+        this.domainClass = domainClass;
+        this.repository = repository;
+        this.fetchGraph = fetchGraph;
+        this.countCache = countCache;
+        this.executor = executor;
+        this.defaultStrategy = defaultStrategy;
+        this.estimateThreshold = estimateThreshold;
+
+        SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+        this.tableName = ((AbstractEntityPersister) sessionFactory.getMetamodel().entityPersister(domainClass)).getTableName();
+        this.estimateQuery =
+            sessionFactory.getJdbcServices().getDialect() instanceof PostgreSQL81Dialect
+                ? "select cast(reltuples as bigint) from pg_class where oid = to_regclass(:tableName)"
+                : null;
+    }
+
+    /**
+     * Return a page of the entities matching the specification, and their total.
+     *
+     * @param key the criteria the specification was built from, which identifies its cached count.
+     * @param specification the filters the entities should match.
+     * @param pageable the page to return.
+     * @param strategy the strategy used to count the entities, or {@code null} for the default one.
+     * @return the page, which carries the strategy actually used.
+     */
+    public CountedPage<T> findPage(Object key, Specification<T> specification, Pageable pageable, CountStrategy strategy) {
+        CountStrategy countStrategy = strategy == null ? defaultStrategy : strategy;
+        if (countStrategy == CountStrategy.EXACT) {
+            Page<T> page = repository.findAll(specification, pageable);
+            return new CountedPage<>(page.getContent(), pageable, page.getTotalElements(), CountStrategy.EXACT);
+        }
+
+        if (countStrategy == CountStrategy.PARALLEL) {
+            CompletableFuture<Long> total = CompletableFuture.supplyAsync(() -> repository.count(specification), executor);
+            List<T> content;
+            try {
+                content = findContent(specification, pageable);
+            } catch (RuntimeException e) {
+                total.cancel(false);
+                throw e;
+            }
+            return new CountedPage<>(content, pageable, join(total), CountStrategy.PARALLEL);
+        }
+
+        List<T> content = findContent(specification, pageable);
+        OptionalLong deducedTotal = deduceTotal(content, pageable);
+        if (deducedTotal.isPresent()) {
+            return new CountedPage<>(content, pageable, deducedTotal.getAsLong(), CountStrategy.EXACT);
+        }
+        TotalCount total = count(key, specification, countStrategy);
+        return new CountedPage<>(content, pageable, total.getTotal(), total.getStrategy());
+    }
+
+    /**
+     * Return the number of entities matching the specification.
+     *
+     * @param key the criteria the specification was built from, which identifies its cached count.
+     * @param specification the filters the entities should match.
+     * @param strategy the strategy used to count the entities, or {@code null} for the default one; a parallel count is
+     * exact, as there is nothing to run it in parallel with.
+     * @return the number of entities, and the strategy actually used.
+     */
+    public TotalCount count(Object key, Specification<T> specification, CountStrategy strategy) {
+        CountStrategy countStrategy = strategy == null ? defaultStrategy : strategy;
+        if (countStrategy == CountStrategy.CACHED) {
+            Long total = countCache.get(key, Long.class);
+            if (total == null) {
+                total = repository.count(specification);
+                countCache.put(key, total);
+            }
+            return new TotalCount(total, CountStrategy.CACHED);
+        }
+        if (countStrategy == CountStrategy.ESTIMATED && estimateQuery != null && isUnfiltered(specification)) {
+            long estimate = ((Number) entityManager.createNativeQuery(estimateQuery).setParameter("tableName", tableName).getSingleResult())
+                .longValue();
+            // The estimate is negative when the table has never been analyzed
+            if (estimate >= estimateThreshold) {
+                return new TotalCount(estimate, CountStrategy.ESTIMATED);
+            }
+            log.trace("Estimated {} rows in {}, counting them", estimate, tableName);
+        }
+        return new TotalCount(repository.count(specification), CountStrategy.EXACT);
+    }
+
+    /**
+     * Evict all the cached counts, once the current transaction, if any, is committed.
+     */
+    public void clearCache() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Until then, the count would be cached again from the data before the write
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        countCache.clear();
+                    }
+                }
+            );
+        } else {
+            countCache.clear();
+        }
+    }
+
+    private List<T> findContent(Specification<T> specification, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(domainClass);
+        Root<T> root = query.from(domainClass);
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root);
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<T> typedQuery = entityManager
+            .createQuery(query)
+            .setHint(GraphSemantic.LOAD.getJpaHintName(), entityManager.getEntityGraph(fetchGraph));
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        return typedQuery.getResultList();
+    }
+
+    /**
+     * Deduce the total from the content of the page, as Spring Data does, when the page is the last one.
+     */
+    private static OptionalLong deduceTotal(List<?> content, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return OptionalLong.of(content.size());
+        }
+        if (content.size() < pageable.getPageSize() && (pageable.getOffset() == 0 || !content.isEmpty())) {
+            return OptionalLong.of(pageable.getOffset() + content.size());
+        }
+        return OptionalLong.empty();
+    }
+
+    private boolean isUnfiltered(Specification<T> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        return specification.toPredicate(query.from(domainClass), query, cb) == null;
+    }
+
+    private static long join(CompletableFuture<Long> total) {
+        try {
+            return total.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.moxe.health.service;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+import tech.jhipster.service.filter.Filter;
+
+/**
+ * The shape of a criteria: the operators of its filters set, without their values, such as
+ * {@code Patient(name.contains,providerId.equals)}.
+ * <p>
+ * The criteria filtering the same fields the same way share their shape, whatever they look for, so that the queries
+ * can be measured per shape without the values of the patients ever reaching the metrics.
+ */
+public final class CriteriaShape {
+
+    private CriteriaShape() {}
+
+    /**
+     * @param entityClass the class of the entities filtered.
+     * @param criteria the criteria, holding {@link Filter} properties.
+     * @return the shape of the criteria.
+     */
+    public static String of(Class<?> entityClass, Object criteria) {
+        List<String> operators = new ArrayList<>();
+        if (criteria != null) {
+            for (PropertyDescriptor property : BeanUtils.getPropertyDescriptors(criteria.getClass())) {
+                Object value = read(property, criteria);
+                if (value instanceof Filter) {
+                    for (PropertyDescriptor operator : BeanUtils.getPropertyDescriptors(value.getClass())) {
+                        if (!"class".equals(operator.getName()) && read(operator, value) != null) {
+                            operators.add(property.getName() + '.' + operator.getName());
+                        }
+                    }
+                } else if (Boolean.TRUE.equals(value) && "distinct".equals(property.getName())) {
+                    operators.add(property.getName());
+                }
+            }
+        }
+        return entityClass.getSimpleName() + '(' + String.join(",", operators) + ')';
+    }
+
+    private static Object read(PropertyDescriptor property, Object bean) {
+        return property.getReadMethod() == null ? null : ReflectionUtils.invokeMethod(property.getReadMethod(), bean);
+    }
+}
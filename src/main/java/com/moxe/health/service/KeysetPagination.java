@@ -0,0 +1,229 @@
+package com.moxe.health.service;
+
+import com.moxe.health.service.dto.KeysetSlice;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import org.hibernate.graph.GraphSemantic;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+/**
+ * Keyset (a.k.a. "seek") pagination over a {@link Specification}.
+ * <p>
+ * Instead of skipping {@code OFFSET} rows, each page starts strictly after the last row of the previous page, which is
+ * identified by an opaque cursor built from the sort key values and the id. No count query is issued: one extra row is
+ * fetched to know whether there is a next page.
+ *
+ * @param <T> the type of the entity.
+ */
+public class KeysetPagination<T> {
+
+    private static final String SEPARATOR = ".";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final EntityManager entityManager;
+
+    private final Class<T> domainClass;
+
+    private final String idProperty;
+
+    private final Set<String> sortableProperties;
+
+    private final String fetchGraph;
+
+    /**
+     * @param entityManager the entity manager used to run the queries.
+     * @param domainClass the entity class.
+     * @param idAttribute the id attribute, always appended to the sort as a tie-breaker.
+     * @param sortableProperties the non-null attributes which can be used as sort keys.
+     * @param fetchGraph the name of the entity graph loaded with the entities.
+     */
+    public KeysetPagination(
+        EntityManager entityManager,
+        Class<T> domainClass,
+        SingularAttribute<? super T, ?> idAttribute,
+        Set<String> sortableProperties,
+        String fetchGraph
+    ) {
+        this.entityManager = entityManager;
+        this.domainClass = domainClass;
+        this.idProperty = idAttribute.getName();
+        this.sortableProperties = sortableProperties;
+        this.fetchGraph = fetchGraph;
+    }
+
+    /**
+     * Return the {@link KeysetSlice} of entities matching the specification which follows the given cursor.
+     *
+     * @param specification the filters the entities should match.
+     * @param cursor the cursor returned with the previous slice, or an empty value for the first slice.
+     * @param pageable the size and sort of the slice; the page number is ignored.
+     * @return the matching entities, with the cursor of the next slice if there is one.
+     * @throws InvalidCursorException if the cursor is malformed, or does not match the requested sort.
+     */
+    public KeysetSlice<T> findSlice(Specification<T> specification, String cursor, Pageable pageable) {
+        Sort sort = keysetSort(pageable.getSort());
+        List<Sort.Order> orders = sort.toList();
+        Specification<T> seekSpecification = specification;
+        if (cursor != null && !cursor.isEmpty()) {
+            seekSpecification = specification.and(seek(orders, decode(cursor, orders)));
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(domainClass);
+        Root<T> root = query.from(domainClass);
+        Predicate predicate = seekSpecification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        int size = pageable.getPageSize();
+        List<T> content = entityManager
+            .createQuery(query)
+            .setHint(GraphSemantic.LOAD.getJpaHintName(), entityManager.getEntityGraph(fetchGraph))
+            .setMaxResults(size + 1)
+            .getResultList();
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = new ArrayList<>(content.subList(0, size));
+        }
+        String nextCursor = hasNext ? encode(orders, content.get(content.size() - 1)) : null;
+        return new KeysetSlice<>(content, PageRequest.of(0, size, sort), hasNext, nextCursor);
+    }
+
+    private Sort keysetSort(Sort sort) {
+        for (Sort.Order order : sort) {
+            if (!sortableProperties.contains(order.getProperty()) && !idProperty.equals(order.getProperty())) {
+                throw new InvalidCursorException("Sorting by '" + order.getProperty() + "' is not supported with a cursor");
+            }
+            if (order.isIgnoreCase()) {
+                throw new InvalidCursorException("Case insensitive sorting is not supported with a cursor");
+            }
+        }
+        if (sort.getOrderFor(idProperty) != null) {
+            return sort;
+        }
+        return sort.and(Sort.by(idProperty));
+    }
+
+    /**
+     * Build the "row comes after the cursor" predicate: {@code (a > ?) or (a = ? and b > ?) or ...}.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Specification<T> seek(List<Sort.Order> orders, List<Comparable> values) {
+        return (root, query, cb) -> {
+            Predicate[] alternatives = new Predicate[orders.size()];
+            for (int i = 0; i < orders.size(); i++) {
+                Predicate[] conjunction = new Predicate[i + 1];
+                for (int j = 0; j < i; j++) {
+                    conjunction[j] = cb.equal(root.get(orders.get(j).getProperty()), values.get(j));
+                }
+                Path<Comparable> path = root.get(orders.get(i).getProperty());
+                conjunction[i] = orders.get(i).isAscending() ? cb.greaterThan(path, values.get(i)) : cb.lessThan(path, values.get(i));
+                alternatives[i] = cb.and(conjunction);
+            }
+            return cb.or(alternatives);
+        };
+    }
+
+    private String encode(List<Sort.Order> orders, T last) {
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(last);
+        StringBuilder cursor = new StringBuilder(encodePart(signature(orders)));
+        for (Sort.Order order : orders) {
+            Object value = wrapper.getPropertyValue(order.getProperty());
+            if (value == null) {
+                throw new IllegalStateException("Keyset sort property '" + order.getProperty() + "' must not be null");
+            }
+            cursor.append(SEPARATOR).append(encodePart(value instanceof Enum ? ((Enum<?>) value).name() : value.toString()));
+        }
+        return cursor.toString();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private List<Comparable> decode(String cursor, List<Sort.Order> orders) {
+        String[] parts = cursor.split("\\" + SEPARATOR, -1);
+        if (parts.length != orders.size() + 1 || !signature(orders).equals(decodePart(parts[0]))) {
+            throw new InvalidCursorException("The cursor does not match the requested sort");
+        }
+        EntityType<T> entityType = entityManager.getMetamodel().entity(domainClass);
+        List<Comparable> values = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            Class<?> type = entityType.getSingularAttribute(orders.get(i).getProperty()).getJavaType();
+            values.add(parse(decodePart(parts[i + 1]), type));
+        }
+        return values;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Comparable parse(String value, Class<?> type) {
+        try {
+            if (String.class.equals(type)) {
+                return value;
+            } else if (Long.class.equals(type)) {
+                return Long.valueOf(value);
+            } else if (Integer.class.equals(type)) {
+                return Integer.valueOf(value);
+            } else if (Instant.class.equals(type)) {
+                return Instant.parse(value);
+            } else if (LocalDate.class.equals(type)) {
+                return LocalDate.parse(value);
+            } else if (type.isEnum()) {
+                return Enum.valueOf((Class<Enum>) type, value);
+            }
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("The cursor is malformed");
+        }
+        throw new IllegalStateException("Unsupported keyset sort type: " + type.getName());
+    }
+
+    private static String signature(List<Sort.Order> orders) {
+        return orders.stream().map(order -> order.getProperty() + "," + order.getDirection()).collect(Collectors.joining(";"));
+    }
+
+    private static String encodePart(String part) {
+        return ENCODER.encodeToString(part.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodePart(String part) {
+        try {
+            return new String(DECODER.decode(part), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("The cursor is malformed");
+        }
+    }
+
+    /**
+     * Thrown when a cursor cannot be used to seek into the requested result set.
+     */
+    public static class InvalidCursorException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        public InvalidCursorException(String message) {
+            super(message);
+        }
+    }
+}
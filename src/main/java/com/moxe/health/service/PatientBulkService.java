@@ -0,0 +1,117 @@
+package com.moxe.health.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.moxe.health.config.ApplicationProperties;
+import com.moxe.health.domain.Patient;
+import com.moxe.health.service.dto.BulkResultDTO;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+/**
+ * Service for creating or updating {@link Patient} entities in bulk.
+ * <p>
+ * Rows are read one at a time, validated, and saved in chunks. Each chunk is saved in its own transaction, so that its
+ * statements are sent in JDBC batches and its ids are taken from the pooled sequence. An invalid row is reported
+ * without failing the others, and a chunk which cannot be saved is reported as failed as a whole.
+ */
+@Service
+public class PatientBulkService {
+
+    private final Logger log = LoggerFactory.getLogger(PatientBulkService.class);
+
+    private final PatientService patientService;
+
+    private final Validator validator;
+
+    private final int chunkSize;
+
+    public PatientBulkService(PatientService patientService, Validator validator, ApplicationProperties applicationProperties) {
+        this.patientService = patientService;
+        this.validator = validator;
+        this.chunkSize = applicationProperties.getBulk().getChunkSize();
+    }
+
+    /**
+     * Create or update the patients read from the given rows.
+     *
+     * @param rows the patients to save, in order.
+     * @return the outcome of each row, in order.
+     * @throws IOException if the rows cannot be read.
+     */
+    public List<BulkResultDTO> saveAll(MappingIterator<Patient> rows) throws IOException {
+        log.debug("Request to save Patients in bulk");
+        List<BulkResultDTO> results = new ArrayList<>();
+        List<Patient> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+        for (int index = 0;; index++) {
+            Patient patient;
+            try {
+                if (!rows.hasNextValue()) {
+                    break;
+                }
+                patient = rows.nextValue();
+            } catch (JsonParseException e) {
+                // The end of the malformed row cannot be found, so neither can the following rows
+                results.add(new BulkResultDTO(index, null, BulkResultDTO.Status.INVALID, List.of("Malformed JSON, stopped reading")));
+                break;
+            } catch (JsonMappingException e) {
+                results.add(new BulkResultDTO(index, null, BulkResultDTO.Status.INVALID, List.of("Not a valid patient")));
+                continue;
+            }
+
+            Set<ConstraintViolation<Patient>> violations = validator.validate(patient);
+            if (!violations.isEmpty()) {
+                List<String> errors = violations
+                    .stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.toList());
+                results.add(new BulkResultDTO(index, patient.getId(), BulkResultDTO.Status.INVALID, errors));
+                continue;
+            }
+
+            chunk.add(patient);
+            chunkIndexes.add(index);
+            if (chunk.size() == chunkSize) {
+                results.addAll(saveChunk(chunk, chunkIndexes));
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(saveChunk(chunk, chunkIndexes));
+        }
+        results.sort(Comparator.comparingInt(BulkResultDTO::getIndex));
+        return results;
+    }
+
+    private List<BulkResultDTO> saveChunk(List<Patient> chunk, List<Integer> indexes) {
+        List<BulkResultDTO> results = new ArrayList<>(chunk.size());
+        try {
+            List<BulkResultDTO.Status> statuses = patientService.saveAll(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(new BulkResultDTO(indexes.get(i), chunk.get(i).getId(), statuses.get(i), null));
+            }
+        } catch (DataAccessException | TransactionException e) {
+            // Don't log the exception message, which may contain patient data
+            log.warn("Could not save a chunk of {} Patients: {}", chunk.size(), e.getClass().getName());
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(new BulkResultDTO(indexes.get(i), null, BulkResultDTO.Status.FAILED, List.of("Could not be saved")));
+            }
+        }
+        return results;
+    }
+}
@@ -1,36 +1,113 @@
 package com.moxe.health.service;
 
+import com.moxe.health.config.ApplicationProperties;
 import com.moxe.health.domain.*; // for static metamodels
 import com.moxe.health.domain.Patient;
 import com.moxe.health.repository.PatientRepository;
+import com.moxe.health.repository.jdbc.StatementScope;
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
 import com.moxe.health.service.criteria.PatientCriteria;
+import com.moxe.health.service.dto.CountedPage;
+import com.moxe.health.service.dto.KeysetSlice;
+import com.moxe.health.service.dto.QueryPlan;
+import com.moxe.health.service.dto.TotalCount;
 import java.util.List;
-import javax.persistence.criteria.JoinType;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import tech.jhipster.service.QueryService;
 
 /**
  * Service for executing complex queries for {@link Patient} entities in the database.
  * The main input is a {@link PatientCriteria} which gets converted to {@link Specification},
  * in a way that all the filters must apply.
- * It returns a {@link List} of {@link Patient} or a {@link Page} of {@link Patient} which fulfills the criteria.
+ * It returns a {@link List} of {@link Patient}, a {@link Page} of {@link Patient} or a {@link KeysetSlice} of {@link Patient}
+ * which fulfills the criteria.
  */
 @Service
 @Transactional(readOnly = true)
 public class PatientQueryService extends QueryService<Patient> {
 
+    public static final String COUNT_CACHE = "patientCounts";
+
     private final Logger log = LoggerFactory.getLogger(PatientQueryService.class);
 
     private final PatientRepository patientRepository;
 
-    public PatientQueryService(PatientRepository patientRepository) {
+    private final KeysetPagination<Patient> keysetPagination;
+
+    private final StreamingQuery<Patient> streamingQuery;
+
+    private final CountingQuery<Patient> countingQuery;
+
+    private final QueryPlanInspector<Patient> queryPlanInspector;
+
+    private final SearchIndex<Patient> searchIndex;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public PatientQueryService(
+        PatientRepository patientRepository,
+        EntityManager entityManager,
+        ApplicationProperties applicationProperties,
+        CacheManager cacheManager,
+        @Qualifier("taskExecutor") Executor executor,
+        CacheInvalidationBus cacheInvalidationBus,
+        PlatformTransactionManager transactionManager
+    ) {
         this.patientRepository = patientRepository;
+        this.keysetPagination =
+            new KeysetPagination<>(
+                entityManager,
+                Patient.class,
+                Patient_.id,
+                Set.of(Patient_.name.getName(), Patient_.dateOfBirth.getName(), Patient_.sex.getName()),
+                Patient.PROVIDER_GRAPH
+            );
+        ApplicationProperties.Export export = applicationProperties.getExport();
+        this.streamingQuery =
+            new StreamingQuery<>(entityManager, Patient.class, Patient.PROVIDER_GRAPH, export.getFetchSize(), export.getClearInterval());
+        ApplicationProperties.Count count = applicationProperties.getCount();
+        this.countingQuery =
+            new CountingQuery<>(
+                entityManager,
+                Patient.class,
+                patientRepository,
+                Patient.PROVIDER_GRAPH,
+                Objects.requireNonNull(cacheManager.getCache(COUNT_CACHE)),
+                executor,
+                count.getDefaultStrategy(),
+                count.getEstimateThreshold()
+            );
+        this.searchIndex = new SearchIndex<>(Patient::getId, List.of(Patient::getName));
+        this.queryPlanInspector = new QueryPlanInspector<>(entityManager, Patient.class, Patient.PROVIDER_GRAPH);
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        cacheInvalidationBus.addReceivedListener(this::refreshSearchIndex);
     }
 
     /**
@@ -58,6 +135,48 @@ public class PatientQueryService extends QueryService<Patient> {
         return patientRepository.findAll(specification, page);
     }
 
+    /**
+     * Return a {@link CountedPage} of {@link Patient} which matches the criteria from the database.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @param countStrategy The strategy used to count the matching entities, or {@code null} for the default one.
+     * @return the matching entities, with the strategy actually used to count them.
+     */
+    @Transactional(readOnly = true)
+    public CountedPage<Patient> findByCriteria(PatientCriteria criteria, Pageable page, CountStrategy countStrategy) {
+        log.debug("find by criteria : {}, page: {}, count: {}", criteria.toString().replaceAll("[\n\r\t]", "_"), page, countStrategy);
+        final Specification<Patient> specification = createSpecification(criteria);
+        return countingQuery.findPage(criteria.copy(), specification, page, countStrategy);
+    }
+
+    /**
+     * Return a {@link KeysetSlice} of {@link Patient} which matches the criteria from the database, starting after the cursor.
+     * Unlike the {@link Page} variant, no count query is issued and the cost does not grow with the depth of the slice.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param cursor The cursor of the previous slice, or an empty value for the first slice.
+     * @param page The size and sort of the slice, the page number is ignored.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public KeysetSlice<Patient> findByCriteria(PatientCriteria criteria, String cursor, Pageable page) {
+        log.debug("find by criteria : {}, cursor: {}, page: {}", criteria.toString().replaceAll("[\n\r\t]", "_"), cursor, page);
+        final Specification<Patient> specification = createSpecification(criteria);
+        return keysetPagination.findSlice(specification, cursor, page);
+    }
+
+    /**
+     * Pass each {@link Patient} which matches the criteria to the action, ordered by id, without holding them all in memory.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param action The action to perform on each entity, which is detached soon after.
+     * @return the number of matching entities.
+     */
+    @Transactional(readOnly = true)
+    public long streamByCriteria(PatientCriteria criteria, Consumer<? super Patient> action) {
+        log.debug("stream by criteria : {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
+        final Specification<Patient> specification = createSpecification(criteria);
+        return streamingQuery.forEach(specification, Sort.by(Patient_.id.getName()), action);
+    }
+
     /**
      * Return the number of matching entities in the database.
      * @param criteria The object which holds all the filters, which the entities should match.
@@ -70,12 +189,124 @@ public class PatientQueryService extends QueryService<Patient> {
         return patientRepository.count(specification);
     }
 
+    /**
+     * Return the number of matching entities in the database, counted with the given strategy.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param countStrategy The strategy used to count the matching entities, or {@code null} for the default one.
+     * @return the number of matching entities, with the strategy actually used to count them.
+     */
+    @Transactional(readOnly = true)
+    public TotalCount countByCriteria(PatientCriteria criteria, CountStrategy countStrategy) {
+        log.debug("count by criteria : {}, count: {}", criteria.toString().replaceAll("[\n\r\t]", "_"), countStrategy);
+        final Specification<Patient> specification = createSpecification(criteria);
+        return countingQuery.count(criteria.copy(), specification, countStrategy);
+    }
+
+    /**
+     * Evict the cached counts of {@link Patient}, once the current transaction, if any, is committed.
+     */
+    public void clearCountCache() {
+        countingQuery.clearCache();
+    }
+
+    /**
+     * Return a {@link Page} of {@link Patient} which matches the full-text query, best match first.
+     * @param query The words to search for, which may be incomplete or misspelled.
+     * @param page The page, which should be returned; its sort is ignored.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Page<Patient> search(String query, Pageable page) {
+        log.debug("search : {}, page: {}", query.replaceAll("[\n\r\t]", "_"), page);
+        List<Long> ids = searchIndex.search(query);
+        List<Long> pageIds = page.isPaged()
+            ? ids.subList((int) Math.min(page.getOffset(), ids.size()), (int) Math.min(page.getOffset() + page.getPageSize(), ids.size()))
+            : ids;
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(List.of(), page, ids.size());
+        }
+        Map<Long, Patient> patients = patientRepository
+            .findAll((root, criteriaQuery, cb) -> root.get(Patient_.id).in(pageIds))
+            .stream()
+            .collect(Collectors.toMap(Patient::getId, Function.identity()));
+        List<Patient> content = pageIds.stream().map(patients::get).filter(Objects::nonNull).collect(Collectors.toList());
+        return new PageImpl<>(content, page, ids.size());
+    }
+
+    /**
+     * Add or replace the {@link Patient} in the search index, once the current transaction, if any, is committed, and in
+     * the search index of the other nodes.
+     * @param patient The saved entity.
+     */
+    public void updateSearchIndex(Patient patient) {
+        searchIndex.put(patient);
+        cacheInvalidationBus.publish(CacheInvalidation.entity(Patient.class.getName(), patient.getId()));
+    }
+
+    /**
+     * Remove the {@link Patient} from the search index, once the current transaction, if any, is committed, and from the
+     * search index of the other nodes.
+     * @param id The id of the deleted entity.
+     */
+    public void removeFromSearchIndex(Long id) {
+        searchIndex.remove(id);
+        cacheInvalidationBus.publish(CacheInvalidation.entity(Patient.class.getName(), id));
+    }
+
+    /**
+     * Rebuild the search index from the database, once the application is started and before it is ready to serve
+     * requests, without holding all the entities in memory.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildSearchIndex() {
+        log.debug("Rebuilding the search index of Patient");
+        searchIndex.rebuild(action -> streamingQuery.forEach(Specification.where(null), Sort.by(Patient_.id.getName()), action));
+    }
+
+    /**
+     * Apply a {@link Patient} written by another node to the search index: reload it, or rebuild the whole index if the
+     * invalidation is not for a single entity.
+     */
+    private void refreshSearchIndex(CacheInvalidation invalidation) {
+        if (invalidation.getKind() != CacheInvalidation.Kind.ENTITY || !Patient.class.getName().equals(invalidation.getRegion())) {
+            return;
+        }
+        if (invalidation.getKey() instanceof Long) {
+            Long id = (Long) invalidation.getKey();
+            // Bypassing the second-level cache, which the other nodes only fill on demand
+            transactionTemplate.executeWithoutResult(status -> {
+                Specification<Patient> byId = (root, query, cb) -> cb.equal(root.get(Patient_.id), id);
+                if (streamingQuery.forEach(byId, Sort.unsorted(), searchIndex::put) == 0) {
+                    searchIndex.remove(id);
+                }
+            });
+        } else {
+            transactionTemplate.executeWithoutResult(status -> rebuildSearchIndex());
+        }
+    }
+
+    /**
+     * Return the plan of the query returning a {@link CountedPage} of {@link Patient} which matches the criteria.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, and its sort, the query should return.
+     * @param analyze Whether the query should be run, to report its actual costs rather than only its planned ones.
+     * @return the plan, with the sequential scans and the sorts it contains.
+     */
+    @Transactional(readOnly = true)
+    public QueryPlan explainByCriteria(PatientCriteria criteria, Pageable page, boolean analyze) {
+        log.debug("explain by criteria : {}, page: {}, analyze: {}", criteria.toString().replaceAll("[\n\r\t]", "_"), page, analyze);
+        final Specification<Patient> specification = createSpecification(criteria);
+        return queryPlanInspector.explain(specification, page, analyze);
+    }
+
     /**
      * Function to convert {@link PatientCriteria} to a {@link Specification}
      * @param criteria The object which holds all the filters, which the entities should match.
      * @return the matching {@link Specification} of the entity.
      */
     protected Specification<Patient> createSpecification(PatientCriteria criteria) {
+        StatementScope.tagShape(() -> CriteriaShape.of(Patient.class, criteria));
         Specification<Patient> specification = Specification.where(null);
         if (criteria != null) {
             // This has to be called first, because the distinct method returns null
@@ -95,9 +326,10 @@ public class PatientQueryService extends QueryService<Patient> {
                 specification = specification.and(buildSpecification(criteria.getSex(), Patient_.sex));
             }
             if (criteria.getProviderId() != null) {
+                // Compares the foreign key column, without joining the provider table
                 specification =
                     specification.and(
-                        buildSpecification(criteria.getProviderId(), root -> root.join(Patient_.provider, JoinType.LEFT).get(Provider_.id))
+                        buildSpecification(criteria.getProviderId(), root -> root.get(Patient_.provider).get(Provider_.id))
                     );
             }
         }
@@ -1,12 +1,25 @@
 package com.moxe.health.service;
 
 import com.moxe.health.domain.Patient;
+import com.moxe.health.domain.Provider;
 import com.moxe.health.repository.PatientRepository;
+import com.moxe.health.repository.ProviderRepository;
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
+import com.moxe.health.service.dto.BulkResultDTO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,8 +34,26 @@ public class PatientService {
 
     private final PatientRepository patientRepository;
 
-    public PatientService(PatientRepository patientRepository) {
+    private final PatientQueryService patientQueryService;
+
+    private final ProviderQueryService providerQueryService;
+
+    private final ProviderRepository providerRepository;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public PatientService(
+        PatientRepository patientRepository,
+        PatientQueryService patientQueryService,
+        ProviderQueryService providerQueryService,
+        ProviderRepository providerRepository,
+        CacheInvalidationBus cacheInvalidationBus
+    ) {
         this.patientRepository = patientRepository;
+        this.patientQueryService = patientQueryService;
+        this.providerQueryService = providerQueryService;
+        this.providerRepository = providerRepository;
+        this.cacheInvalidationBus = cacheInvalidationBus;
     }
 
     /**
@@ -33,45 +64,80 @@ public class PatientService {
      */
     public Patient save(Patient patient) {
         log.debug("Request to save Patient : {}", patient);
-        return patientRepository.save(patient);
+        clearCountCaches();
+        Patient result = patientRepository.save(withManagedProvider(patient, true));
+        patientQueryService.updateSearchIndex(result);
+        return result;
     }
 
     /**
-     * Update a patient.
+     * Update a patient with a single statement, if the patient and its provider have the given versions.
      *
      * @param patient the entity to save.
-     * @return the persisted entity.
+     * @param version the version the patient must have, or {@code null} to replace any version.
+     * @param providerVersion the version its current provider must have, or {@code null} not to check it.
+     * @return the persisted entity, or empty if there is no patient with this id.
+     * @throws ObjectOptimisticLockingFailureException if the patient or its provider does not have the given version.
      */
-    public Patient update(Patient patient) {
+    public Optional<Patient> update(Patient patient, Long version, Long providerVersion) {
         log.debug("Request to save Patient : {}", patient);
-        return patientRepository.save(patient);
+        int updatedRows = patientRepository.updateIfVersionMatches(withManagedProvider(patient, false), version, providerVersion);
+        return updated(patient.getId(), updatedRows);
+    }
+
+    /**
+     * Create or update a batch of patients in a single transaction, so that their statements are sent in JDBC batches.
+     * Patients without an id are created; patients with an id replace the existing patient, unless they have a version
+     * which is no longer that of the existing patient.
+     *
+     * @param patients the valid entities to save; the ids of the created ones are set.
+     * @return the status of each patient, in the same order.
+     */
+    public List<BulkResultDTO.Status> saveAll(List<Patient> patients) {
+        log.debug("Request to save {} Patients", patients.size());
+        clearCountCaches();
+        Set<Long> ids = patients.stream().map(Patient::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, Patient> existingPatients = patientRepository
+            .findAllById(ids)
+            .stream()
+            .collect(Collectors.toMap(Patient::getId, Function.identity()));
+
+        List<BulkResultDTO.Status> statuses = new ArrayList<>(patients.size());
+        for (Patient patient : patients) {
+            Patient existingPatient = patient.getId() == null ? null : existingPatients.get(patient.getId());
+            if (patient.getId() == null) {
+                patientQueryService.updateSearchIndex(patientRepository.save(withManagedProvider(patient, false)));
+                statuses.add(BulkResultDTO.Status.CREATED);
+            } else if (existingPatient == null) {
+                statuses.add(BulkResultDTO.Status.NOT_FOUND);
+            } else if (patient.getVersion() != null && !patient.getVersion().equals(existingPatient.getVersion())) {
+                // Rather than overwriting the changes made since the row was read, as a PUT would be rejected
+                statuses.add(BulkResultDTO.Status.CONFLICT);
+            } else {
+                existingPatient
+                    .name(patient.getName())
+                    .dateOfBirth(patient.getDateOfBirth())
+                    .sex(patient.getSex())
+                    .provider(withManagedProvider(patient, false).getProvider());
+                patientQueryService.updateSearchIndex(existingPatient);
+                statuses.add(BulkResultDTO.Status.UPDATED);
+            }
+        }
+        return statuses;
     }
 
     /**
-     * Partially update a patient.
+     * Partially update a patient with a single statement, if the patient and its provider have the given versions.
      *
      * @param patient the entity to update partially.
-     * @return the persisted entity.
+     * @param version the version the patient must have, or {@code null} to update any version.
+     * @param providerVersion the version its current provider must have, or {@code null} not to check it.
+     * @return the persisted entity, or empty if there is no patient with this id.
+     * @throws ObjectOptimisticLockingFailureException if the patient or its provider does not have the given version.
      */
-    public Optional<Patient> partialUpdate(Patient patient) {
+    public Optional<Patient> partialUpdate(Patient patient, Long version, Long providerVersion) {
         log.debug("Request to partially update Patient : {}", patient);
-
-        return patientRepository
-            .findById(patient.getId())
-            .map(existingPatient -> {
-                if (patient.getName() != null) {
-                    existingPatient.setName(patient.getName());
-                }
-                if (patient.getDateOfBirth() != null) {
-                    existingPatient.setDateOfBirth(patient.getDateOfBirth());
-                }
-                if (patient.getSex() != null) {
-                    existingPatient.setSex(patient.getSex());
-                }
-
-                return existingPatient;
-            })
-            .map(patientRepository::save);
+        return updated(patient.getId(), patientRepository.partialUpdateIfVersionMatches(patient, version, providerVersion));
     }
 
     /**
@@ -105,6 +171,54 @@ public class PatientService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Patient : {}", id);
+        clearCountCaches();
         patientRepository.deleteById(id);
+        patientQueryService.removeFromSearchIndex(id);
+    }
+
+    /**
+     * Replace the provider the request references by its id alone with the one of the persistence context, as Hibernate
+     * would take a provider with an id but no version for a new one.
+     *
+     * @param patient the patient referencing its provider.
+     * @param loaded whether the provider is loaded, to be returned with the patient, or only referenced by its id.
+     * @return the patient.
+     */
+    private Patient withManagedProvider(Patient patient, boolean loaded) {
+        Provider provider = patient.getProvider();
+        if (provider != null && provider.getId() != null) {
+            Long id = provider.getId();
+            // A provider which does not exist is still rejected by the foreign key
+            patient.setProvider(
+                loaded
+                    ? providerRepository.findById(id).orElseGet(() -> providerRepository.getReferenceById(id))
+                    : providerRepository.getReferenceById(id)
+            );
+        }
+        return patient;
+    }
+
+    /**
+     * Evict the cached counts of the patients, and those of the providers, which are filtered by their patients.
+     */
+    private void clearCountCaches() {
+        patientQueryService.clearCountCache();
+        providerQueryService.clearCountCache();
+    }
+
+    private Optional<Patient> updated(Long id, int updatedRows) {
+        if (updatedRows == 0) {
+            // Only a failed update needs another statement, to tell a missing patient from a modified one
+            if (!patientRepository.existsById(id)) {
+                return Optional.empty();
+            }
+            throw new ObjectOptimisticLockingFailureException(Patient.class, id);
+        }
+        // The bulk statement fires no Hibernate event, and only evicts the patients cached by this node
+        cacheInvalidationBus.publish(CacheInvalidation.entity(Patient.class.getName(), id));
+        clearCountCaches();
+        Optional<Patient> result = patientRepository.findById(id);
+        result.ifPresent(patientQueryService::updateSearchIndex);
+        return result;
     }
 }
@@ -1,36 +1,111 @@
 package com.moxe.health.service;
 
+import com.moxe.health.config.ApplicationProperties;
 import com.moxe.health.domain.*; // for static metamodels
 import com.moxe.health.domain.Provider;
 import com.moxe.health.repository.ProviderRepository;
+import com.moxe.health.repository.jdbc.StatementScope;
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
 import com.moxe.health.service.criteria.ProviderCriteria;
+import com.moxe.health.service.dto.CountedPage;
+import com.moxe.health.service.dto.KeysetSlice;
+import com.moxe.health.service.dto.QueryPlan;
+import com.moxe.health.service.dto.TotalCount;
 import java.util.List;
-import javax.persistence.criteria.JoinType;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import tech.jhipster.service.QueryService;
+import tech.jhipster.service.filter.LongFilter;
 
 /**
  * Service for executing complex queries for {@link Provider} entities in the database.
  * The main input is a {@link ProviderCriteria} which gets converted to {@link Specification},
  * in a way that all the filters must apply.
- * It returns a {@link List} of {@link Provider} or a {@link Page} of {@link Provider} which fulfills the criteria.
+ * It returns a {@link List} of {@link Provider}, a {@link Page} of {@link Provider} or a {@link KeysetSlice} of {@link Provider}
+ * which fulfills the criteria.
  */
 @Service
 @Transactional(readOnly = true)
 public class ProviderQueryService extends QueryService<Provider> {
 
+    public static final String COUNT_CACHE = "providerCounts";
+
     private final Logger log = LoggerFactory.getLogger(ProviderQueryService.class);
 
     private final ProviderRepository providerRepository;
 
-    public ProviderQueryService(ProviderRepository providerRepository) {
+    private final KeysetPagination<Provider> keysetPagination;
+
+    private final StreamingQuery<Provider> streamingQuery;
+
+    private final CountingQuery<Provider> countingQuery;
+
+    private final QueryPlanInspector<Provider> queryPlanInspector;
+
+    private final SearchIndex<Provider> searchIndex;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public ProviderQueryService(
+        ProviderRepository providerRepository,
+        EntityManager entityManager,
+        ApplicationProperties applicationProperties,
+        CacheManager cacheManager,
+        @Qualifier("taskExecutor") Executor executor,
+        CacheInvalidationBus cacheInvalidationBus,
+        PlatformTransactionManager transactionManager
+    ) {
         this.providerRepository = providerRepository;
+        this.keysetPagination =
+            new KeysetPagination<>(entityManager, Provider.class, Provider_.id, Set.of(Provider_.name.getName()), Provider.HOSPITAL_GRAPH);
+        ApplicationProperties.Export export = applicationProperties.getExport();
+        this.streamingQuery =
+            new StreamingQuery<>(entityManager, Provider.class, Provider.HOSPITAL_GRAPH, export.getFetchSize(), export.getClearInterval());
+        ApplicationProperties.Count count = applicationProperties.getCount();
+        this.countingQuery =
+            new CountingQuery<>(
+                entityManager,
+                Provider.class,
+                providerRepository,
+                Provider.HOSPITAL_GRAPH,
+                Objects.requireNonNull(cacheManager.getCache(COUNT_CACHE)),
+                executor,
+                count.getDefaultStrategy(),
+                count.getEstimateThreshold()
+            );
+        this.searchIndex = new SearchIndex<>(Provider::getId, List.of(Provider::getName, Provider::getSpecialty));
+        this.queryPlanInspector = new QueryPlanInspector<>(entityManager, Provider.class, Provider.HOSPITAL_GRAPH);
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        cacheInvalidationBus.addReceivedListener(this::refreshSearchIndex);
     }
 
     /**
@@ -58,6 +133,48 @@ public class ProviderQueryService extends QueryService<Provider> {
         return providerRepository.findAll(specification, page);
     }
 
+    /**
+     * Return a {@link CountedPage} of {@link Provider} which matches the criteria from the database.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @param countStrategy The strategy used to count the matching entities, or {@code null} for the default one.
+     * @return the matching entities, with the strategy actually used to count them.
+     */
+    @Transactional(readOnly = true)
+    public CountedPage<Provider> findByCriteria(ProviderCriteria criteria, Pageable page, CountStrategy countStrategy) {
+        log.debug("find by criteria : {}, page: {}, count: {}", criteria.toString().replaceAll("[\n\r\t]", "_"), page, countStrategy);
+        final Specification<Provider> specification = createSpecification(criteria);
+        return countingQuery.findPage(criteria.copy(), specification, page, countStrategy);
+    }
+
+    /**
+     * Return a {@link KeysetSlice} of {@link Provider} which matches the criteria from the database, starting after the cursor.
+     * Unlike the {@link Page} variant, no count query is issued and the cost does not grow with the depth of the slice.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param cursor The cursor of the previous slice, or an empty value for the first slice.
+     * @param page The size and sort of the slice, the page number is ignored.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public KeysetSlice<Provider> findByCriteria(ProviderCriteria criteria, String cursor, Pageable page) {
+        log.debug("find by criteria : {}, cursor: {}, page: {}", criteria.toString().replaceAll("[\n\r\t]", "_"), cursor, page);
+        final Specification<Provider> specification = createSpecification(criteria);
+        return keysetPagination.findSlice(specification, cursor, page);
+    }
+
+    /**
+     * Pass each {@link Provider} which matches the criteria to the action, ordered by id, without holding them all in memory.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param action The action to perform on each entity, which is detached soon after.
+     * @return the number of matching entities.
+     */
+    @Transactional(readOnly = true)
+    public long streamByCriteria(ProviderCriteria criteria, Consumer<? super Provider> action) {
+        log.debug("stream by criteria : {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
+        final Specification<Provider> specification = createSpecification(criteria);
+        return streamingQuery.forEach(specification, Sort.by(Provider_.id.getName()), action);
+    }
+
     /**
      * Return the number of matching entities in the database.
      * @param criteria The object which holds all the filters, which the entities should match.
@@ -70,12 +187,124 @@ public class ProviderQueryService extends QueryService<Provider> {
         return providerRepository.count(specification);
     }
 
+    /**
+     * Return the number of matching entities in the database, counted with the given strategy.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param countStrategy The strategy used to count the matching entities, or {@code null} for the default one.
+     * @return the number of matching entities, with the strategy actually used to count them.
+     */
+    @Transactional(readOnly = true)
+    public TotalCount countByCriteria(ProviderCriteria criteria, CountStrategy countStrategy) {
+        log.debug("count by criteria : {}, count: {}", criteria.toString().replaceAll("[\n\r\t]", "_"), countStrategy);
+        final Specification<Provider> specification = createSpecification(criteria);
+        return countingQuery.count(criteria.copy(), specification, countStrategy);
+    }
+
+    /**
+     * Evict the cached counts of {@link Provider}, once the current transaction, if any, is committed.
+     */
+    public void clearCountCache() {
+        countingQuery.clearCache();
+    }
+
+    /**
+     * Return a {@link Page} of {@link Provider} which matches the full-text query, best match first.
+     * @param query The words to search for, which may be incomplete or misspelled.
+     * @param page The page, which should be returned; its sort is ignored.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Page<Provider> search(String query, Pageable page) {
+        log.debug("search : {}, page: {}", query.replaceAll("[\n\r\t]", "_"), page);
+        List<Long> ids = searchIndex.search(query);
+        List<Long> pageIds = page.isPaged()
+            ? ids.subList((int) Math.min(page.getOffset(), ids.size()), (int) Math.min(page.getOffset() + page.getPageSize(), ids.size()))
+            : ids;
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(List.of(), page, ids.size());
+        }
+        Map<Long, Provider> providers = providerRepository
+            .findAll((root, criteriaQuery, cb) -> root.get(Provider_.id).in(pageIds))
+            .stream()
+            .collect(Collectors.toMap(Provider::getId, Function.identity()));
+        List<Provider> content = pageIds.stream().map(providers::get).filter(Objects::nonNull).collect(Collectors.toList());
+        return new PageImpl<>(content, page, ids.size());
+    }
+
+    /**
+     * Add or replace the {@link Provider} in the search index, once the current transaction, if any, is committed, and in
+     * the search index of the other nodes.
+     * @param provider The saved entity.
+     */
+    public void updateSearchIndex(Provider provider) {
+        searchIndex.put(provider);
+        cacheInvalidationBus.publish(CacheInvalidation.entity(Provider.class.getName(), provider.getId()));
+    }
+
+    /**
+     * Remove the {@link Provider} from the search index, once the current transaction, if any, is committed, and from the
+     * search index of the other nodes.
+     * @param id The id of the deleted entity.
+     */
+    public void removeFromSearchIndex(Long id) {
+        searchIndex.remove(id);
+        cacheInvalidationBus.publish(CacheInvalidation.entity(Provider.class.getName(), id));
+    }
+
+    /**
+     * Rebuild the search index from the database, once the application is started and before it is ready to serve
+     * requests, without holding all the entities in memory.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildSearchIndex() {
+        log.debug("Rebuilding the search index of Provider");
+        searchIndex.rebuild(action -> streamingQuery.forEach(Specification.where(null), Sort.by(Provider_.id.getName()), action));
+    }
+
+    /**
+     * Apply a {@link Provider} written by another node to the search index: reload it, or rebuild the whole index if the
+     * invalidation is not for a single entity.
+     */
+    private void refreshSearchIndex(CacheInvalidation invalidation) {
+        if (invalidation.getKind() != CacheInvalidation.Kind.ENTITY || !Provider.class.getName().equals(invalidation.getRegion())) {
+            return;
+        }
+        if (invalidation.getKey() instanceof Long) {
+            Long id = (Long) invalidation.getKey();
+            // Bypassing the second-level cache, which the other nodes only fill on demand
+            transactionTemplate.executeWithoutResult(status -> {
+                Specification<Provider> byId = (root, query, cb) -> cb.equal(root.get(Provider_.id), id);
+                if (streamingQuery.forEach(byId, Sort.unsorted(), searchIndex::put) == 0) {
+                    searchIndex.remove(id);
+                }
+            });
+        } else {
+            transactionTemplate.executeWithoutResult(status -> rebuildSearchIndex());
+        }
+    }
+
+    /**
+     * Return the plan of the query returning a {@link CountedPage} of {@link Provider} which matches the criteria.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, and its sort, the query should return.
+     * @param analyze Whether the query should be run, to report its actual costs rather than only its planned ones.
+     * @return the plan, with the sequential scans and the sorts it contains.
+     */
+    @Transactional(readOnly = true)
+    public QueryPlan explainByCriteria(ProviderCriteria criteria, Pageable page, boolean analyze) {
+        log.debug("explain by criteria : {}, page: {}, analyze: {}", criteria.toString().replaceAll("[\n\r\t]", "_"), page, analyze);
+        final Specification<Provider> specification = createSpecification(criteria);
+        return queryPlanInspector.explain(specification, page, analyze);
+    }
+
     /**
      * Function to convert {@link ProviderCriteria} to a {@link Specification}
      * @param criteria The object which holds all the filters, which the entities should match.
      * @return the matching {@link Specification} of the entity.
      */
     protected Specification<Provider> createSpecification(ProviderCriteria criteria) {
+        StatementScope.tagShape(() -> CriteriaShape.of(Provider.class, criteria));
         Specification<Provider> specification = Specification.where(null);
         if (criteria != null) {
             // This has to be called first, because the distinct method returns null
@@ -92,18 +321,40 @@ public class ProviderQueryService extends QueryService<Provider> {
                 specification = specification.and(buildStringSpecification(criteria.getSpecialty(), Provider_.specialty));
             }
             if (criteria.getPatientId() != null) {
-                specification =
-                    specification.and(
-                        buildSpecification(criteria.getPatientId(), root -> root.join(Provider_.patients, JoinType.LEFT).get(Patient_.id))
-                    );
+                specification = specification.and(buildPatientSpecification(criteria.getPatientId()));
             }
             if (criteria.getHospitalId() != null) {
+                // Compares the foreign key column, without joining the hospital table
                 specification =
                     specification.and(
-                        buildSpecification(criteria.getHospitalId(), root -> root.join(Provider_.hospital, JoinType.LEFT).get(Hospital_.id))
+                        buildSpecification(criteria.getHospitalId(), root -> root.get(Provider_.hospital).get(Hospital_.id))
                     );
             }
         }
         return specification;
     }
+
+    /**
+     * Function to convert a filter on the patients of a provider to a {@link Specification}, using an {@code EXISTS}
+     * subquery rather than a join, so that each provider is returned once whatever the number of its patients, and
+     * without {@code distinct}.
+     * @param filter The filter the id of at least one patient of the provider should match.
+     * @return the matching {@link Specification} of the entity.
+     */
+    protected Specification<Provider> buildPatientSpecification(LongFilter filter) {
+        return (root, query, cb) -> {
+            Subquery<Long> patients = query.subquery(Long.class);
+            Root<Patient> patient = patients.from(Patient.class);
+            patients.select(patient.get(Patient_.id));
+            if (Boolean.FALSE.equals(filter.getSpecified())) {
+                // The providers without patients
+                return cb.not(cb.exists(patients.where(cb.equal(patient.get(Patient_.provider), root))));
+            }
+            Predicate patientMatches = buildSpecification(filter, ignored -> patient.get(Patient_.id)).toPredicate(root, query, cb);
+            if (patientMatches == null) {
+                return cb.exists(patients.where(cb.equal(patient.get(Patient_.provider), root)));
+            }
+            return cb.exists(patients.where(cb.equal(patient.get(Patient_.provider), root), patientMatches));
+        };
+    }
 }
@@ -1,12 +1,17 @@
 package com.moxe.health.service;
 
+import com.moxe.health.domain.Hospital;
 import com.moxe.health.domain.Provider;
+import com.moxe.health.repository.HospitalRepository;
 import com.moxe.health.repository.ProviderRepository;
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,8 +26,22 @@ public class ProviderService {
 
     private final ProviderRepository providerRepository;
 
-    public ProviderService(ProviderRepository providerRepository) {
+    private final ProviderQueryService providerQueryService;
+
+    private final HospitalRepository hospitalRepository;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public ProviderService(
+        ProviderRepository providerRepository,
+        ProviderQueryService providerQueryService,
+        HospitalRepository hospitalRepository,
+        CacheInvalidationBus cacheInvalidationBus
+    ) {
         this.providerRepository = providerRepository;
+        this.providerQueryService = providerQueryService;
+        this.hospitalRepository = hospitalRepository;
+        this.cacheInvalidationBus = cacheInvalidationBus;
     }
 
     /**
@@ -33,42 +52,39 @@ public class ProviderService {
      */
     public Provider save(Provider provider) {
         log.debug("Request to save Provider : {}", provider);
-        return providerRepository.save(provider);
+        providerQueryService.clearCountCache();
+        Provider result = providerRepository.save(withManagedHospital(provider, true));
+        providerQueryService.updateSearchIndex(result);
+        return result;
     }
 
     /**
-     * Update a provider.
+     * Update a provider with a single statement, if the provider and its hospital have the given versions.
      *
      * @param provider the entity to save.
-     * @return the persisted entity.
+     * @param version the version the provider must have, or {@code null} to replace any version.
+     * @param hospitalVersion the version its current hospital must have, or {@code null} not to check it.
+     * @return the persisted entity, or empty if there is no provider with this id.
+     * @throws ObjectOptimisticLockingFailureException if the provider or its hospital does not have the given version.
      */
-    public Provider update(Provider provider) {
+    public Optional<Provider> update(Provider provider, Long version, Long hospitalVersion) {
         log.debug("Request to save Provider : {}", provider);
-        return providerRepository.save(provider);
+        int updatedRows = providerRepository.updateIfVersionMatches(withManagedHospital(provider, false), version, hospitalVersion);
+        return updated(provider.getId(), updatedRows);
     }
 
     /**
-     * Partially update a provider.
+     * Partially update a provider with a single statement, if the provider and its hospital have the given versions.
      *
      * @param provider the entity to update partially.
-     * @return the persisted entity.
+     * @param version the version the provider must have, or {@code null} to update any version.
+     * @param hospitalVersion the version its current hospital must have, or {@code null} not to check it.
+     * @return the persisted entity, or empty if there is no provider with this id.
+     * @throws ObjectOptimisticLockingFailureException if the provider or its hospital does not have the given version.
      */
-    public Optional<Provider> partialUpdate(Provider provider) {
+    public Optional<Provider> partialUpdate(Provider provider, Long version, Long hospitalVersion) {
         log.debug("Request to partially update Provider : {}", provider);
-
-        return providerRepository
-            .findById(provider.getId())
-            .map(existingProvider -> {
-                if (provider.getName() != null) {
-                    existingProvider.setName(provider.getName());
-                }
-                if (provider.getSpecialty() != null) {
-                    existingProvider.setSpecialty(provider.getSpecialty());
-                }
-
-                return existingProvider;
-            })
-            .map(providerRepository::save);
+        return updated(provider.getId(), providerRepository.partialUpdateIfVersionMatches(provider, version, hospitalVersion));
     }
 
     /**
@@ -102,6 +118,46 @@ public class ProviderService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Provider : {}", id);
+        providerQueryService.clearCountCache();
         providerRepository.deleteById(id);
+        providerQueryService.removeFromSearchIndex(id);
+    }
+
+    /**
+     * Replace the hospital the request references by its id alone with the one of the persistence context, as Hibernate
+     * would take a hospital with an id but no version for a new one.
+     *
+     * @param provider the provider referencing its hospital.
+     * @param loaded whether the hospital is loaded, to be returned with the provider, or only referenced by its id.
+     * @return the provider.
+     */
+    private Provider withManagedHospital(Provider provider, boolean loaded) {
+        Hospital hospital = provider.getHospital();
+        if (hospital != null && hospital.getId() != null) {
+            Long id = hospital.getId();
+            // A hospital which does not exist is still rejected by the foreign key
+            provider.setHospital(
+                loaded
+                    ? hospitalRepository.findById(id).orElseGet(() -> hospitalRepository.getReferenceById(id))
+                    : hospitalRepository.getReferenceById(id)
+            );
+        }
+        return provider;
+    }
+
+    private Optional<Provider> updated(Long id, int updatedRows) {
+        if (updatedRows == 0) {
+            // Only a failed update needs another statement, to tell a missing provider from a modified one
+            if (!providerRepository.existsById(id)) {
+                return Optional.empty();
+            }
+            throw new ObjectOptimisticLockingFailureException(Provider.class, id);
+        }
+        // The bulk statement fires no Hibernate event, and only evicts the providers cached by this node
+        cacheInvalidationBus.publish(CacheInvalidation.entity(Provider.class.getName(), id));
+        providerQueryService.clearCountCache();
+        Optional<Provider> result = providerRepository.findById(id);
+        result.ifPresent(providerQueryService::updateSearchIndex);
+        return result;
     }
 }
@@ -0,0 +1,250 @@
+package com.moxe.health.service;
+
+import com.moxe.health.service.dto.QueryPlan;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.graph.GraphSemantic;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+/**
+ * Reports how the database runs the page query of the entities matching a {@link Specification}, as
+ * {@link CountingQuery} issues it, with the entity graph {@code fetchGraph}.
+ * <p>
+ * The query is run once through a session whose connection records the SQL statement and its parameters, which are then
+ * passed to {@code EXPLAIN}. Only PostgreSQL and H2 are supported. It must be used inside a transaction, so that the
+ * recording session shares its connection.
+ *
+ * @param <T> the type of the entity.
+ */
+public class QueryPlanInspector<T> {
+
+    private static final Pattern POSTGRESQL_SEQUENTIAL_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    private static final Pattern POSTGRESQL_SORT = Pattern.compile("^\\s*Sort Key: .*");
+
+    private static final Pattern H2_SEQUENTIAL_SCAN = Pattern.compile("/\\* (?:\\w+\\.)?(\\w+)\\.tableScan");
+
+    private static final Pattern H2_SORT = Pattern.compile("ORDER BY .*?(?=\\s+(?:OFFSET|FETCH)\\b|$)", Pattern.DOTALL);
+
+    private enum Database {
+        POSTGRESQL,
+        H2,
+    }
+
+    private final EntityManager entityManager;
+
+    private final Class<T> domainClass;
+
+    private final String fetchGraph;
+
+    private final Dialect dialect;
+
+    private final Database database;
+
+    public QueryPlanInspector(EntityManager entityManager, Class<T> domainClass, String fetchGraph) {
+        this.entityManager = entityManager;
+        this.domainClass = domainClass;
+        this.fetchGraph = fetchGraph;
+
+        this.dialect = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        if (dialect instanceof PostgreSQL81Dialect) {
+            this.database = Database.POSTGRESQL;
+        } else if (dialect instanceof H2Dialect) {
+            this.database = Database.H2;
+        } else {
+            this.database = null;
+        }
+    }
+
+    /**
+     * Return the plan of the page query of the entities matching the specification.
+     *
+     * @param specification the filters the entities should match.
+     * @param pageable the page, and its sort, the query would return.
+     * @param analyze whether the query should be run to report its actual costs, rather than only planned.
+     * @return the plan, with the sequential scans and the sorts it contains.
+     * @throws UnsupportedOperationException if the database is neither PostgreSQL nor H2.
+     */
+    public QueryPlan explain(Specification<T> specification, Pageable pageable, boolean analyze) {
+        if (database == null) {
+            throw new UnsupportedOperationException("Query plans are not supported with " + dialect);
+        }
+        Session session = entityManager.unwrap(Session.class);
+        return session.doReturningWork(
+            connection -> {
+                RecordedStatement statement = new RecordedStatement();
+                try (Session recordingSession = session.sessionWithOptions().connection(statement.record(connection)).openSession()) {
+                    findContent(recordingSession, specification, pageable);
+                }
+                if (statement.sql == null) {
+                    throw new IllegalStateException("No query was run for " + domainClass.getSimpleName());
+                }
+                return explain(connection, statement, analyze);
+            }
+        );
+    }
+
+    private void findContent(Session session, Specification<T> specification, Pageable pageable) {
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(domainClass);
+        Root<T> root = query.from(domainClass);
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root);
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<T> typedQuery = session.createQuery(query).setHint(GraphSemantic.LOAD.getJpaHintName(), session.getEntityGraph(fetchGraph));
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        typedQuery.getResultList();
+    }
+
+    private QueryPlan explain(Connection connection, RecordedStatement statement, boolean analyze) throws SQLException {
+        String explain;
+        if (database == Database.POSTGRESQL) {
+            explain = analyze ? "explain (analyze, buffers) " : "explain ";
+        } else {
+            explain = analyze ? "explain analyze " : "explain ";
+        }
+
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement explainStatement = connection.prepareStatement(explain + statement.sql)) {
+            statement.bind(explainStatement);
+            try (ResultSet rows = explainStatement.executeQuery()) {
+                while (rows.next()) {
+                    // PostgreSQL returns a row per line, H2 a single row
+                    plan.addAll(List.of(rows.getString(1).split("\\R")));
+                }
+            }
+        }
+
+        Set<String> sequentialScans = new LinkedHashSet<>();
+        List<String> sorts = new ArrayList<>();
+        if (database == Database.POSTGRESQL) {
+            for (String line : plan) {
+                Matcher scan = POSTGRESQL_SEQUENTIAL_SCAN.matcher(line);
+                if (scan.find()) {
+                    sequentialScans.add(scan.group(1).toLowerCase(Locale.ROOT));
+                }
+                if (POSTGRESQL_SORT.matcher(line).matches()) {
+                    sorts.add(line.trim());
+                }
+            }
+        } else {
+            String text = String.join("\n", plan);
+            Matcher scan = H2_SEQUENTIAL_SCAN.matcher(text);
+            while (scan.find()) {
+                sequentialScans.add(scan.group(1).toLowerCase(Locale.ROOT));
+            }
+            // H2 reads the rows in order from an index when it can, and says so
+            Matcher sort = H2_SORT.matcher(text);
+            if (!text.contains("/* index sorted */") && sort.find()) {
+                sorts.add(sort.group().trim());
+            }
+        }
+        return new QueryPlan(statement.sql, analyze, plan, new ArrayList<>(sequentialScans), sorts);
+    }
+
+    /**
+     * The first query run through a connection, and the parameters it was run with.
+     */
+    private static class RecordedStatement {
+
+        private String sql;
+
+        private final List<Method> setters = new ArrayList<>();
+
+        private final List<Object[]> arguments = new ArrayList<>();
+
+        Connection record(Connection connection) {
+            return proxy(
+                Connection.class,
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (method.getName().equals("prepareStatement")) {
+                        return recordStatement((PreparedStatement) result, (String) args[0]);
+                    }
+                    return result;
+                }
+            );
+        }
+
+        private PreparedStatement recordStatement(PreparedStatement statement, String statementSql) {
+            List<Method> statementSetters = new ArrayList<>();
+            List<Object[]> statementArguments = new ArrayList<>();
+            return proxy(
+                PreparedStatement.class,
+                (proxy, method, args) -> {
+                    // The parameter setters, such as setLong(int, long) or setNull(int, int)
+                    if (method.getName().startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer) {
+                        statementSetters.add(method);
+                        statementArguments.add(args);
+                    } else if (method.getName().equals("executeQuery") && sql == null) {
+                        sql = statementSql;
+                        setters.addAll(statementSetters);
+                        arguments.addAll(statementArguments);
+                    }
+                    return invoke(statement, method, args);
+                }
+            );
+        }
+
+        void bind(PreparedStatement statement) throws SQLException {
+            for (int i = 0; i < setters.size(); i++) {
+                invoke(statement, setters.get(i), arguments.get(i));
+            }
+        }
+
+        private static <P> P proxy(Class<P> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(QueryPlanInspector.class.getClassLoader(), new Class<?>[] { type }, handler));
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws SQLException {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.moxe.health.service;
+
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * An in-memory inverted index of the text fields of entities, ranking the entities matching a full-text query.
+ * <p>
+ * The text is split on anything but letters and digits, and folded to lower case without accents. Each word of the
+ * query matches the words of the entities which are equal to it, start with it, or are within one or two edits of it,
+ * so that the query can be typed progressively and tolerates typos; the entities must match every word of the query,
+ * and are ranked with BM25, exact matches weighing more than prefix matches, which weigh more than fuzzy ones.
+ * <p>
+ * The index is not persisted: it is rebuilt from the database at startup, and kept up to date by the services writing
+ * the entities, once their transaction is committed, and by the invalidations of the entities written on the other
+ * nodes.
+ *
+ * @param <T> the type of the entity.
+ */
+public class SearchIndex<T> {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private static final double EXACT_WEIGHT = 1.0;
+
+    private static final double PREFIX_WEIGHT = 0.7;
+
+    private static final double FUZZY_WEIGHT = 0.4;
+
+    private final Function<T, Long> id;
+
+    private final List<Function<T, String>> fields;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Postings postings = new Postings();
+
+    private Postings rebuiltPostings;
+
+    private Set<Long> writtenDuringRebuild;
+
+    public SearchIndex(Function<T, Long> id, List<Function<T, String>> fields) {
+        this.id = id;
+        this.fields = fields;
+    }
+
+    /**
+     * Return the ids of the entities matching the query, best match first.
+     *
+     * @param query the words to search for.
+     * @return the matching ids, which may include entities deleted in a transaction not committed yet.
+     */
+    public List<Long> search(String query) {
+        List<String> words = analyze(query);
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String word : words) {
+                Map<Long, Double> wordScores = postings.score(word);
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    scores.keySet().retainAll(wordScores.keySet());
+                    scores.replaceAll((documentId, score) -> score + wordScores.get(documentId));
+                }
+            }
+            return scores
+                .entrySet()
+                .stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add or replace the entity in the index, once the current transaction, if any, is committed.
+     *
+     * @param entity the saved entity.
+     */
+    public void put(T entity) {
+        Long documentId = Objects.requireNonNull(id.apply(entity));
+        // The text is read now, as the entity may be modified before the transaction is committed
+        List<String> words = words(entity);
+        afterCommit(() -> write(documentId, words));
+    }
+
+    /**
+     * Remove the entity from the index, once the current transaction, if any, is committed.
+     *
+     * @param documentId the id of the deleted entity.
+     */
+    public void remove(Long documentId) {
+        afterCommit(() -> write(documentId, null));
+    }
+
+    /**
+     * Replace the content of the index with the entities of the source, and keep serving the previous content until then.
+     * The entities written while the index is rebuilt are not replaced by the possibly older version of the source.
+     *
+     * @param source passes each entity to index to its argument.
+     */
+    public void rebuild(Consumer<Consumer<T>> source) {
+        lock.writeLock().lock();
+        try {
+            rebuiltPostings = new Postings();
+            writtenDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            source.accept(entity -> {
+                Long documentId = id.apply(entity);
+                List<String> words = words(entity);
+                lock.writeLock().lock();
+                try {
+                    if (!writtenDuringRebuild.contains(documentId)) {
+                        rebuiltPostings.put(documentId, words);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+            lock.writeLock().lock();
+            try {
+                postings = rebuiltPostings;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                rebuiltPostings = null;
+                writtenDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Split the text into words folded to lower case without accents.
+     */
+    static List<String> analyze(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        return SEPARATORS.splitAsStream(folded).filter(word -> !word.isEmpty()).collect(Collectors.toList());
+    }
+
+    private List<String> words(T entity) {
+        return fields.stream().map(field -> field.apply(entity)).flatMap(text -> analyze(text).stream()).collect(Collectors.toList());
+    }
+
+    private void write(Long documentId, List<String> words) {
+        lock.writeLock().lock();
+        try {
+            apply(postings, documentId, words);
+            if (rebuiltPostings != null) {
+                apply(rebuiltPostings, documentId, words);
+                writtenDuringRebuild.add(documentId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void apply(Postings postings, Long documentId, List<String> words) {
+        if (words == null) {
+            postings.remove(documentId);
+        } else {
+            postings.put(documentId, words);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                }
+            );
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * The number of occurrences of each word in each document, and the number of words of each document.
+     */
+    private static class Postings {
+
+        private final NavigableMap<String, Map<Long, Integer>> frequencies = new TreeMap<>();
+
+        private final Map<Long, List<String>> documents = new HashMap<>();
+
+        private long totalLength;
+
+        void put(Long documentId, List<String> words) {
+            remove(documentId);
+            documents.put(documentId, words);
+            totalLength += words.size();
+            for (String word : words) {
+                frequencies.computeIfAbsent(word, ignored -> new HashMap<>()).merge(documentId, 1, Integer::sum);
+            }
+        }
+
+        void remove(Long documentId) {
+            List<String> words = documents.remove(documentId);
+            if (words == null) {
+                return;
+            }
+            totalLength -= words.size();
+            for (String word : words) {
+                Map<Long, Integer> documentFrequencies = frequencies.get(word);
+                if (documentFrequencies != null && documentFrequencies.remove(documentId) != null && documentFrequencies.isEmpty()) {
+                    frequencies.remove(word);
+                }
+            }
+        }
+
+        /**
+         * Score the documents containing the word, or a word starting with it or close to it, keeping the best score of
+         * each document.
+         */
+        Map<Long, Double> score(String word) {
+            Map<Long, Double> scores = new HashMap<>();
+            for (Map.Entry<String, Map<Long, Integer>> term : startingWith(word).entrySet()) {
+                score(term.getValue(), term.getKey().equals(word) ? EXACT_WEIGHT : PREFIX_WEIGHT, scores);
+            }
+            int maxEdits = word.length() < 3 ? 0 : word.length() < 6 ? 1 : 2;
+            if (maxEdits > 0) {
+                // As usual, the first letter is assumed to be right, which saves comparing most of the words
+                for (Map.Entry<String, Map<Long, Integer>> term : startingWith(word.substring(0, 1)).entrySet()) {
+                    if (!term.getKey().startsWith(word) && isWithinEdits(word, term.getKey(), maxEdits)) {
+                        score(term.getValue(), FUZZY_WEIGHT, scores);
+                    }
+                }
+            }
+            return scores;
+        }
+
+        private NavigableMap<String, Map<Long, Integer>> startingWith(String prefix) {
+            return frequencies.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        }
+
+        private void score(Map<Long, Integer> documentFrequencies, double weight, Map<Long, Double> scores) {
+            double averageLength = (double) totalLength / documents.size();
+            double idf = Math.log(1 + (documents.size() - documentFrequencies.size() + 0.5) / (documentFrequencies.size() + 0.5));
+            documentFrequencies.forEach((documentId, frequency) -> {
+                double length = documents.get(documentId).size();
+                double score = weight * idf * (frequency * (K1 + 1)) / (frequency + K1 * (1 - B + B * length / averageLength));
+                scores.merge(documentId, score, Math::max);
+            });
+        }
+
+        /**
+         * Whether the Levenshtein distance between the words is at most {@code maxEdits}, stopping as soon as it exceeds it.
+         */
+        private static boolean isWithinEdits(String a, String b, int maxEdits) {
+            if (Math.abs(a.length() - b.length()) > maxEdits) {
+                return false;
+            }
+            int[] previous = new int[b.length() + 1];
+            int[] current = new int[b.length() + 1];
+            for (int j = 0; j <= b.length(); j++) {
+                previous[j] = j;
+            }
+            for (int i = 1; i <= a.length(); i++) {
+                current[0] = i;
+                int rowMinimum = i;
+                for (int j = 1; j <= b.length(); j++) {
+                    int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                    current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                    rowMinimum = Math.min(rowMinimum, current[j]);
+                }
+                if (rowMinimum > maxEdits) {
+                    return false;
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous[b.length()] <= maxEdits;
+        }
+    }
+}
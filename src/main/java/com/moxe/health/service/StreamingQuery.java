@@ -0,0 +1,96 @@
+package com.moxe.health.service;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.graph.GraphSemantic;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+/**
+ * Streams the entities matching a {@link Specification} through a forward-only cursor, so that the memory used does not
+ * depend on the size of the result set.
+ * <p>
+ * Rows are fetched {@code fetchSize} at a time, with the associations of the entity graph {@code fetchGraph}, and bypass
+ * the second-level cache, and the persistence context is cleared every {@code clearInterval} rows so that the entities
+ * already processed can be garbage collected. It must be used inside a transaction, which stays open while the rows
+ * are consumed. The clear interval must be positive, a persistence context never cleared holding every streamed row.
+ *
+ * @param <T> the type of the entity.
+ */
+public class StreamingQuery<T> {
+
+    private final EntityManager entityManager;
+
+    private final Class<T> domainClass;
+
+    private final String fetchGraph;
+
+    private final int fetchSize;
+
+    private final int clearInterval;
+
+    public StreamingQuery(EntityManager entityManager, Class<T> domainClass, String fetchGraph, int fetchSize, int clearInterval) {
+        if (clearInterval <= 0) {
+            throw new IllegalArgumentException("The clear interval must be positive: " + clearInterval);
+        }
+        this.entityManager = entityManager;
+        this.domainClass = domainClass;
+        this.fetchGraph = fetchGraph;
+        this.fetchSize = fetchSize;
+        this.clearInterval = clearInterval;
+    }
+
+    /**
+     * Pass each entity matching the specification to the action, in the given order.
+     *
+     * @param specification the filters the entities should match.
+     * @param sort the order in which the entities are streamed.
+     * @param action the action to perform on each entity; it must not keep references to the entities.
+     * @return the number of streamed entities.
+     */
+    public long forEach(Specification<T> specification, Sort sort, Consumer<? super T> action) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(domainClass);
+        Root<T> root = query.from(domainClass);
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        TypedQuery<T> typedQuery = entityManager
+            .createQuery(query)
+            .setHint(GraphSemantic.LOAD.getJpaHintName(), entityManager.getEntityGraph(fetchGraph))
+            .setHint(QueryHints.FETCH_SIZE, fetchSize)
+            .setHint(QueryHints.READ_ONLY, true)
+            .setHint(QueryHints.CACHE_MODE, CacheMode.IGNORE);
+        // The hint only holds while the query is executed, and the rows are read after it
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        long count = 0;
+        try (Stream<T> rows = typedQuery.getResultStream()) {
+            Iterator<T> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+                if (++count % clearInterval == 0) {
+                    entityManager.clear();
+                }
+            }
+        } finally {
+            session.setCacheMode(cacheMode);
+        }
+        return count;
+    }
+}
@@ -8,11 +8,19 @@ import com.moxe.health.repository.UserRepository;
 import com.moxe.health.security.SecurityUtils;
 import com.moxe.health.service.dto.AdminUserDTO;
 import com.moxe.health.service.dto.UserDTO;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -21,7 +29,12 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service class for managing users.
@@ -30,6 +43,13 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class UserService {
 
+    /**
+     * Cache of the fingerprints of the identities last synchronized with the IdP, keyed by login.
+     */
+    public static final String SYNCED_USERS_CACHE = "syncedUsers";
+
+    private static final int SYNC_LOCK_STRIPES = 64;
+
     private final Logger log = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
@@ -38,10 +58,31 @@ public class UserService {
 
     private final CacheManager cacheManager;
 
-    public UserService(UserRepository userRepository, AuthorityRepository authorityRepository, CacheManager cacheManager) {
+    private final TransactionTemplate transactionTemplate;
+
+    private final Cache syncedUsers;
+
+    /**
+     * Names of the authorities known to be in the local database, which are never deleted.
+     */
+    private final Set<String> knownAuthorities = ConcurrentHashMap.newKeySet();
+
+    private final Lock[] syncLocks = new Lock[SYNC_LOCK_STRIPES];
+
+    public UserService(
+        UserRepository userRepository,
+        AuthorityRepository authorityRepository,
+        CacheManager cacheManager,
+        PlatformTransactionManager transactionManager
+    ) {
         this.userRepository = userRepository;
         this.authorityRepository = authorityRepository;
         this.cacheManager = cacheManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.syncedUsers = Objects.requireNonNull(cacheManager.getCache(SYNCED_USERS_CACHE));
+        for (int i = 0; i < syncLocks.length; i++) {
+            syncLocks[i] = new ReentrantLock();
+        }
     }
 
     /**
@@ -96,15 +137,19 @@ public class UserService {
 
     private User syncUserWithIdP(Map<String, Object> details, User user) {
         // save authorities in to sync user roles/groups between IdP and JHipster's local database
-        Collection<String> dbAuthorities = getAuthorities();
-        Collection<String> userAuthorities = user.getAuthorities().stream().map(Authority::getName).collect(Collectors.toList());
-        for (String authority : userAuthorities) {
-            if (!dbAuthorities.contains(authority)) {
+        if (knownAuthorities.isEmpty()) {
+            knownAuthorities.addAll(getAuthorities());
+        }
+        for (Authority userAuthority : user.getAuthorities()) {
+            String authority = userAuthority.getName();
+            // saved by another node, or by a transaction not committed yet
+            if (!knownAuthorities.contains(authority) && !authorityRepository.existsById(authority)) {
                 log.debug("Saving authority '{}' in local database", authority);
                 Authority authorityToSave = new Authority();
                 authorityToSave.setName(authority);
                 authorityRepository.save(authorityToSave);
             }
+            afterCommit(() -> knownAuthorities.add(authority));
         }
         // save account in to sync users between IdP and JHipster's local database
         Optional<User> existingUser = userRepository.findOneByLogin(user.getLogin());
@@ -137,12 +182,15 @@ public class UserService {
 
     /**
      * Returns the user from an OAuth 2.0 login or resource server with JWT.
-     * Synchronizes the user in the local repository.
+     * Synchronizes the user in the local repository, unless it was already synchronized with the same claims and
+     * authorities, or the claims lack the user info, in which case the user is returned as last synchronized. The
+     * synchronizations of a login are serialized until they are committed, so that concurrent first logins do not
+     * insert the user twice.
      *
      * @param authToken the authentication token.
      * @return the user from the authentication.
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public AdminUserDTO getUserFromAuthentication(AbstractAuthenticationToken authToken) {
         Map<String, Object> attributes;
         if (authToken instanceof OAuth2AuthenticationToken) {
@@ -165,8 +213,93 @@ public class UserService {
                 })
                 .collect(Collectors.toSet())
         );
+        if (Boolean.TRUE.equals(attributes.get(SecurityUtils.USER_INFO_UNAVAILABLE_CLAIM))) {
+            // Without the user info, the login and names would be taken from the sub: the user is left as last synchronized
+            userRepository.findById(user.getId()).ifPresent(synced -> copySynchronizedFields(synced, user));
+            return new AdminUserDTO(user);
+        }
+
+        String fingerprint = fingerprint(user);
+        if (fingerprint.equals(syncedUsers.get(user.getLogin(), String.class))) {
+            return new AdminUserDTO(user);
+        }
+        // Only synchronizing users opens a transaction, joining the one of the caller if any
+        transactionTemplate.executeWithoutResult(status -> {
+            lockUntilCompletion(syncLocks[Math.floorMod(user.getLogin().hashCode(), syncLocks.length)]);
+            // Unless synchronized by a concurrent request while waiting for the lock
+            if (!fingerprint.equals(syncedUsers.get(user.getLogin(), String.class))) {
+                syncUserWithIdP(attributes, user);
+                afterCommit(() -> syncedUsers.put(user.getLogin(), fingerprint));
+            }
+        });
+        return new AdminUserDTO(user);
+    }
+
+    private static void copySynchronizedFields(User from, User to) {
+        to.setLogin(from.getLogin());
+        to.setFirstName(from.getFirstName());
+        to.setLastName(from.getLastName());
+        to.setEmail(from.getEmail());
+        to.setLangKey(from.getLangKey());
+        to.setImageUrl(from.getImageUrl());
+        to.setActivated(from.isActivated());
+    }
+
+    /**
+     * Hash the fields of a user which are synchronized with the IdP.
+     */
+    private static String fingerprint(User user) {
+        String fields = Stream
+            .of(
+                user.getId(),
+                user.getLogin(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.getEmail(),
+                user.getLangKey(),
+                user.getImageUrl(),
+                user.isActivated(),
+                user.getAuthorities().stream().map(Authority::getName).sorted().collect(Collectors.toList())
+            )
+            .map(String::valueOf)
+            .collect(Collectors.joining("\0"));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fields.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void lockUntilCompletion(Lock lock) {
+        lock.lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.unlock();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            }
+        );
+    }
 
-        return new AdminUserDTO(syncUserWithIdP(attributes, user));
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            }
+        );
     }
 
     private static User getUser(Map<String, Object> details) {
@@ -232,6 +365,7 @@ public class UserService {
 
     private void clearUserCaches(User user) {
         Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE)).evict(user.getLogin());
+        syncedUsers.evict(user.getLogin());
         if (user.getEmail() != null) {
             Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE)).evict(user.getEmail());
         }
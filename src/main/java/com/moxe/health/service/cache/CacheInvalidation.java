@@ -0,0 +1,107 @@
+package com.moxe.health.service.cache;
+
+import java.util.Objects;
+
+/**
+ * The eviction of an entry, or of all the entries, of a cache: an entity or collection region of the Hibernate
+ * second-level cache, or a Spring cache.
+ * <p>
+ * Only {@link String} and {@link Long} keys are sent to the other nodes; the eviction of any other key is widened to
+ * the whole cache.
+ */
+public final class CacheInvalidation {
+
+    public enum Kind {
+        /** An entity region, keyed by entity id. */
+        ENTITY,
+        /** A collection region, keyed by owner id. */
+        COLLECTION,
+        /** A Spring cache. */
+        CACHE,
+    }
+
+    private final Kind kind;
+
+    private final String region;
+
+    private final Object key;
+
+    private CacheInvalidation(Kind kind, String region, Object key) {
+        this.kind = Objects.requireNonNull(kind);
+        this.region = Objects.requireNonNull(region);
+        this.key = isSupportedKey(key) ? key : null;
+    }
+
+    /**
+     * @param kind the kind of cache.
+     * @param region the entity name, collection role or cache name.
+     * @param key the key of the entry, or {@code null} to evict all the entries.
+     */
+    public static CacheInvalidation of(Kind kind, String region, Object key) {
+        return new CacheInvalidation(kind, region, key);
+    }
+
+    public static CacheInvalidation entity(String entityName, Object id) {
+        return new CacheInvalidation(Kind.ENTITY, entityName, id);
+    }
+
+    public static CacheInvalidation collection(String role, Object ownerId) {
+        return new CacheInvalidation(Kind.COLLECTION, role, ownerId);
+    }
+
+    public static CacheInvalidation cacheEntry(String cacheName, Object key) {
+        return new CacheInvalidation(Kind.CACHE, cacheName, key);
+    }
+
+    public static CacheInvalidation cache(String cacheName) {
+        return new CacheInvalidation(Kind.CACHE, cacheName, null);
+    }
+
+    private static boolean isSupportedKey(Object key) {
+        return key instanceof Long || (key instanceof String && ((String) key).length() <= 255);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * @return the key of the entry, or {@code null} if all the entries are evicted.
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * @return the same invalidation, for all the entries of the cache.
+     */
+    public CacheInvalidation wholeCache() {
+        return key == null ? this : new CacheInvalidation(kind, region, null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheInvalidation)) {
+            return false;
+        }
+        CacheInvalidation other = (CacheInvalidation) o;
+        return kind == other.kind && region.equals(other.region) && Objects.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, region, key);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidation{kind=" + kind + ", region='" + region + "', key=" + key + "}";
+    }
+}
@@ -0,0 +1,234 @@
+package com.moxe.health.service.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Broadcasts the evictions of the local caches to the other nodes of the cluster, and applies theirs, so that an entity
+ * written on one node is not served stale by the caches of the others until it expires.
+ * <p>
+ * The invalidations published during a transaction are queued once it is committed, as the other nodes would otherwise
+ * reload the previous state from the database. The queue is coalesced, dropping the duplicate evictions and those
+ * covered by the eviction of their whole cache, and sent by a background thread in batches, which also polls the
+ * {@link CacheInvalidationTransport} for the invalidations of the other nodes. These are applied through the handler,
+ * which must evict from the local caches directly, rather than publish again.
+ * <p>
+ * Caches which are not known to the handler can register a listener, notified of the invalidations once committed,
+ * whether published by this node or received from another one, or only of those received, if the cache is kept up to
+ * date by the writes of this node already.
+ */
+public class CacheInvalidationBus {
+
+    /**
+     * Number of queued invalidations above which they are widened to their whole cache, so that an unavailable
+     * transport does not fill the heap.
+     */
+    static final int MAX_PENDING = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    private final CacheInvalidationTransport transport;
+
+    private final Consumer<CacheInvalidation> handler;
+
+    private final Duration publishInterval;
+
+    private final Duration pollInterval;
+
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    private final List<Consumer<CacheInvalidation>> receivedListeners = new CopyOnWriteArrayList<>();
+
+    private Set<CacheInvalidation> pending = new LinkedHashSet<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param transport the transport to the other nodes, or {@code null} to publish nothing.
+     * @param handler applies an invalidation received from another node to the local caches.
+     * @param publishInterval the delay between two batches sent.
+     * @param pollInterval the delay between two polls of the transport.
+     */
+    public CacheInvalidationBus(
+        CacheInvalidationTransport transport,
+        Consumer<CacheInvalidation> handler,
+        Duration publishInterval,
+        Duration pollInterval
+    ) {
+        this.transport = transport;
+        this.handler = handler;
+        this.publishInterval = publishInterval;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Send the invalidation to the other nodes, once the current transaction, if any, is committed.
+     *
+     * @param invalidation the eviction done, or to be done, on this node.
+     */
+    public void publish(CacheInvalidation invalidation) {
+        if (transport == null && listeners.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        committed(invalidation);
+                    }
+                }
+            );
+        } else {
+            committed(invalidation);
+        }
+    }
+
+    /**
+     * Notify the listener of the invalidations committed from now on, on this node or on the other ones.
+     *
+     * @param listener applies an invalidation to a local cache, without publishing it again.
+     */
+    public void addListener(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Notify the listener of the invalidations received from the other nodes from now on.
+     *
+     * @param listener applies an invalidation to a local cache, without publishing it again.
+     */
+    public void addReceivedListener(Consumer<CacheInvalidation> listener) {
+        receivedListeners.add(listener);
+    }
+
+    /**
+     * Send the queued invalidations to the other nodes now; they are queued again if the transport fails.
+     */
+    public void flush() {
+        List<CacheInvalidation> batch;
+        synchronized (this) {
+            if (transport == null || pending.isEmpty()) {
+                return;
+            }
+            batch = coalesce(pending);
+            pending = new LinkedHashSet<>();
+        }
+        try {
+            transport.send(batch);
+        } catch (RuntimeException e) {
+            log.warn("Could not send {} cache invalidations, they will be retried: {}", batch.size(), e.toString());
+            enqueue(batch);
+        }
+    }
+
+    /**
+     * Apply the invalidations received from the other nodes now.
+     */
+    public void poll() {
+        if (transport == null) {
+            return;
+        }
+        List<CacheInvalidation> received;
+        try {
+            received = transport.receive();
+        } catch (RuntimeException e) {
+            log.warn("Could not receive the cache invalidations: {}", e.toString());
+            return;
+        }
+        for (CacheInvalidation invalidation : coalesce(received)) {
+            try {
+                handler.accept(invalidation);
+            } catch (RuntimeException e) {
+                log.warn("Could not apply {}: {}", invalidation, e.toString());
+            }
+            notifyListeners(listeners, invalidation);
+            notifyListeners(receivedListeners, invalidation);
+        }
+    }
+
+    /**
+     * Start sending and receiving the invalidations in the background.
+     */
+    public void start() {
+        if (transport == null) {
+            log.info("Cache invalidations are not sent to the other nodes");
+            return;
+        }
+        scheduler =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cache-invalidation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        scheduler.scheduleWithFixedDelay(this::flush, publishInterval.toMillis(), publishInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background thread, and send the last invalidations.
+     */
+    public void stop() throws InterruptedException {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        scheduler.awaitTermination(pollInterval.toMillis() + publishInterval.toMillis(), TimeUnit.MILLISECONDS);
+        flush();
+    }
+
+    private void committed(CacheInvalidation invalidation) {
+        notifyListeners(listeners, invalidation);
+        if (transport != null) {
+            enqueue(List.of(invalidation));
+        }
+    }
+
+    private void notifyListeners(List<Consumer<CacheInvalidation>> listeners, CacheInvalidation invalidation) {
+        for (Consumer<CacheInvalidation> listener : listeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (RuntimeException e) {
+                log.warn("Could not apply {}: {}", invalidation, e.toString());
+            }
+        }
+    }
+
+    private synchronized void enqueue(Collection<CacheInvalidation> invalidations) {
+        pending.addAll(invalidations);
+        if (pending.size() > MAX_PENDING) {
+            pending = pending.stream().map(CacheInvalidation::wholeCache).collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+    }
+
+    /**
+     * Drop the duplicate invalidations, and those of an entry of a cache which is wholly invalidated.
+     */
+    static List<CacheInvalidation> coalesce(Collection<CacheInvalidation> invalidations) {
+        Set<CacheInvalidation> wholeCaches = invalidations
+            .stream()
+            .filter(invalidation -> invalidation.getKey() == null)
+            .collect(Collectors.toSet());
+        Set<CacheInvalidation> coalesced = new LinkedHashSet<>();
+        for (CacheInvalidation invalidation : invalidations) {
+            if (invalidation.getKey() == null || !wholeCaches.contains(invalidation.wholeCache())) {
+                coalesced.add(invalidation);
+            }
+        }
+        return new ArrayList<>(coalesced);
+    }
+}
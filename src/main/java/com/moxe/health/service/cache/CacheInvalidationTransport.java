@@ -0,0 +1,26 @@
+package com.moxe.health.service.cache;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Carries the cache invalidations of a node to the other nodes of the cluster, for the {@link CacheInvalidationBus}.
+ * <p>
+ * The bus calls both methods from a single thread, and retries a failed batch with the next one.
+ */
+public interface CacheInvalidationTransport {
+    /**
+     * Send a batch of invalidations, already coalesced, to the other nodes.
+     *
+     * @param invalidations the invalidations to send.
+     */
+    void send(Collection<CacheInvalidation> invalidations);
+
+    /**
+     * Return the invalidations sent by the other nodes since the previous call, and never those sent by this node.
+     * Transports pushing the invalidations buffer them until then.
+     *
+     * @return the received invalidations, in the order they were sent.
+     */
+    List<CacheInvalidation> receive();
+}
@@ -0,0 +1,275 @@
+package com.moxe.health.service.cache;
+
+import com.moxe.health.service.dto.CacheRegionStatistics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.ehcache.Cache;
+import org.ehcache.core.InternalCache;
+import org.ehcache.core.internal.statistics.DefaultCacheStatistics;
+import org.ehcache.core.statistics.CacheStatistics;
+import org.ehcache.core.statistics.TierStatistics;
+import org.ehcache.event.CacheEvent;
+import org.ehcache.event.CacheEventListener;
+import org.ehcache.event.EventFiring;
+import org.ehcache.event.EventOrdering;
+import org.ehcache.event.EventType;
+import org.ehcache.sizeof.SizeOf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Collects the statistics of the Ehcache caches, the regions of the second-level cache and the Spring caches alike, and
+ * publishes them to Micrometer, with the standard {@code cache.*} meters tagged with the cache name.
+ * <p>
+ * The statistics are read from Ehcache itself, which keeps them whether or not the JCache statistics and Hibernate
+ * statistics are enabled. The heap taken by a cache sized in entries is not tracked by Ehcache: it is estimated from the
+ * average size of the entries written, a few of which are measured as they are written, since reading them would count
+ * as a hit and extend their time to idle.
+ */
+@Service
+public class CacheStatisticsService implements MeterBinder {
+
+    /**
+     * How the regions are ranked, the costliest first.
+     */
+    public enum Ranking {
+        /** Lowest hit ratio first. */
+        HIT_RATIO,
+        /** Most heap for each hit first. */
+        BYTES_PER_HIT,
+    }
+
+    /**
+     * Number of entries over which the size of the entries is averaged.
+     */
+    private static final int SAMPLE_SIZE = 20;
+
+    /**
+     * Minimum delay between two entries measured, so that measuring takes a negligible share of the writes.
+     */
+    private static final Duration SAMPLE_INTERVAL = Duration.ofMillis(100);
+
+    /**
+     * Number of objects above which the size of an entry is not measured, in case it references a large graph.
+     */
+    private static final int MAX_OBJECTS_PER_ENTRY = 10_000;
+
+    private static final String ON_HEAP_TIER = "OnHeap";
+
+    private static final String OFF_HEAP_TIER = "OffHeap";
+
+    private final Logger log = LoggerFactory.getLogger(CacheStatisticsService.class);
+
+    private final Map<String, Region> regions = new TreeMap<>();
+
+    private final SizeOf sizeOf = SizeOf.newInstance();
+
+    public CacheStatisticsService(javax.cache.CacheManager cacheManager) {
+        // The statistics count from their creation: the caches are all created with the cache manager
+        for (String name : cacheManager.getCacheNames()) {
+            Cache<?, ?> cache = cacheManager.getCache(name).unwrap(Cache.class);
+            regions.put(name, new Region(name, cache, new DefaultCacheStatistics((InternalCache<?, ?>) cache)));
+        }
+    }
+
+    /**
+     * Return the statistics of the caches, the costliest first.
+     *
+     * @param ranking how the costs of the caches are compared.
+     * @return the statistics of each cache.
+     */
+    public List<CacheRegionStatistics> findAll(Ranking ranking) {
+        List<CacheRegionStatistics> statistics = regions.values().stream().map(Region::snapshot).collect(Collectors.toList());
+        if (ranking == Ranking.HIT_RATIO) {
+            // The caches never read cost nothing but their heap, which the other ranking reports
+            statistics.sort(
+                Comparator.comparing(CacheRegionStatistics::getHitRatio, Comparator.nullsLast(Comparator.naturalOrder()))
+            );
+        } else {
+            statistics.sort(Comparator.comparingDouble(CacheStatisticsService::bytesPerHit).reversed());
+        }
+        return statistics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        regions.values().forEach(region -> region.bindTo(registry));
+    }
+
+    /**
+     * The heap for each hit, which is infinite for a cache holding entries which were never hit.
+     */
+    private static double bytesPerHit(CacheRegionStatistics statistics) {
+        if (statistics.getBytesPerHit() != null) {
+            return statistics.getBytesPerHit();
+        }
+        return statistics.getHeapBytes() > 0 ? Double.POSITIVE_INFINITY : 0;
+    }
+
+    private class Region extends CacheMeterBinder<Cache<?, ?>> implements CacheEventListener<Object, Object> {
+
+        private final String name;
+
+        private final CacheStatistics statistics;
+
+        private double averageEntryBytes;
+
+        private int sampled;
+
+        private long sampledAt;
+
+        @SuppressWarnings("unchecked")
+        Region(String name, Cache<?, ?> cache, CacheStatistics statistics) {
+            super(cache, name, Tags.empty());
+            this.name = name;
+            this.statistics = statistics;
+            ((Cache<Object, Object>) cache).getRuntimeConfiguration()
+                .registerCacheEventListener(this, EventOrdering.UNORDERED, EventFiring.SYNCHRONOUS, EventType.CREATED, EventType.UPDATED);
+        }
+
+        CacheRegionStatistics snapshot() {
+            return new CacheRegionStatistics(
+                name,
+                statistics.getCacheHits(),
+                statistics.getCacheMisses(),
+                statistics.getCachePuts(),
+                statistics.getCacheEvictions(),
+                statistics.getCacheExpirations(),
+                statistics.getCacheRemovals(),
+                entries(),
+                heapEntries(),
+                heapBytes(),
+                offHeapBytes()
+            );
+        }
+
+        @Override
+        protected Long size() {
+            return entries();
+        }
+
+        @Override
+        protected long hitCount() {
+            return statistics.getCacheHits();
+        }
+
+        @Override
+        protected Long missCount() {
+            return statistics.getCacheMisses();
+        }
+
+        @Override
+        protected Long evictionCount() {
+            return statistics.getCacheEvictions();
+        }
+
+        @Override
+        protected long putCount() {
+            return statistics.getCachePuts();
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+            FunctionCounter
+                .builder("cache.removals", statistics, CacheStatistics::getCacheRemovals)
+                .tags(getTagsWithCacheName())
+                .description("Entries removed from the cache, such as evictions of written entities")
+                .register(registry);
+            FunctionCounter
+                .builder("cache.expirations", statistics, CacheStatistics::getCacheExpirations)
+                .tags(getTagsWithCacheName())
+                .description("Entries which expired")
+                .register(registry);
+            Gauge
+                .builder("cache.heap.size", this, Region::heapBytes)
+                .tags(getTagsWithCacheName())
+                .description("Heap taken by the entries, estimated from a sample if the heap is sized in entries")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+            Gauge
+                .builder("cache.offheap.size", this, Region::offHeapBytes)
+                .tags(getTagsWithCacheName())
+                .description("Off-heap memory taken by the entries")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        }
+
+        /**
+         * The entries of all the tiers, which are all held by the lowest one.
+         */
+        private long entries() {
+            return statistics.getTierStatistics().values().stream().mapToLong(TierStatistics::getMappings).max().orElse(0);
+        }
+
+        private long heapEntries() {
+            TierStatistics heap = statistics.getTierStatistics().get(ON_HEAP_TIER);
+            return heap == null ? 0 : heap.getMappings();
+        }
+
+        private long offHeapBytes() {
+            TierStatistics offHeap = statistics.getTierStatistics().get(OFF_HEAP_TIER);
+            return offHeap == null ? 0 : Math.max(offHeap.getOccupiedByteSize(), 0);
+        }
+
+        private long heapBytes() {
+            TierStatistics heap = statistics.getTierStatistics().get(ON_HEAP_TIER);
+            if (heap == null) {
+                return 0;
+            }
+            if (heap.getOccupiedByteSize() >= 0) {
+                return heap.getOccupiedByteSize();
+            }
+            synchronized (this) {
+                return (long) (heap.getMappings() * averageEntryBytes);
+            }
+        }
+
+        /**
+         * Measure an entry written to the cache, unless one was measured recently, on the writing thread.
+         */
+        @Override
+        public void onEvent(CacheEvent<?, ?> event) {
+            long now = System.nanoTime();
+            synchronized (this) {
+                if (sampled > 0 && now - sampledAt < SAMPLE_INTERVAL.toNanos()) {
+                    return;
+                }
+                sampledAt = now;
+            }
+            long bytes;
+            try {
+                int[] objects = new int[1];
+                bytes =
+                    sizeOf.deepSizeOf(
+                        (object, size) -> {
+                            if (++objects[0] > MAX_OBJECTS_PER_ENTRY) {
+                                throw new IllegalStateException("More than " + MAX_OBJECTS_PER_ENTRY + " objects");
+                            }
+                        },
+                        event.getKey(),
+                        event.getNewValue()
+                    );
+            } catch (RuntimeException e) {
+                log.debug("Could not measure an entry of the cache {}: {}", name, e.toString());
+                return;
+            }
+            synchronized (this) {
+                // The mean of the first samples, then a moving average following the entries written lately
+                sampled = Math.min(sampled + 1, SAMPLE_SIZE);
+                averageEntryBytes += (bytes - averageEntryBytes) / sampled;
+            }
+        }
+    }
+}
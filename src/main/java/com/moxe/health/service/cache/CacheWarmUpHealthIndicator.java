@@ -0,0 +1,32 @@
+package com.moxe.health.service.cache;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link HealthIndicator} out of service until the {@link CacheWarmUpService} has loaded the second-level cache, to keep
+ * the traffic away from the node in the meantime. A warm-up which failed does not: the requests then load the cache.
+ */
+@Component
+public class CacheWarmUpHealthIndicator implements HealthIndicator {
+
+    private final CacheWarmUpService cacheWarmUpService;
+
+    public CacheWarmUpHealthIndicator(CacheWarmUpService cacheWarmUpService) {
+        this.cacheWarmUpService = cacheWarmUpService;
+    }
+
+    @Override
+    public Health health() {
+        CacheWarmUpService.State state = cacheWarmUpService.getState();
+        Health.Builder builder = state == CacheWarmUpService.State.PENDING || state == CacheWarmUpService.State.RUNNING
+            ? Health.outOfService()
+            : Health.up();
+        return builder
+            .withDetail("state", state)
+            .withDetail("progress", cacheWarmUpService.getProgress())
+            .withDetail("entities", cacheWarmUpService.getLoadedEntities())
+            .build();
+    }
+}
@@ -0,0 +1,241 @@
+package com.moxe.health.service.cache;
+
+import com.moxe.health.config.ApplicationProperties;
+import com.moxe.health.domain.Hospital;
+import com.moxe.health.domain.Patient;
+import com.moxe.health.domain.Provider;
+import com.moxe.health.repository.HospitalRepository;
+import com.moxe.health.repository.PatientRepository;
+import com.moxe.health.repository.ProviderPatientCount;
+import com.moxe.health.repository.ProviderRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service loading the second-level cache once the application is started, so that the first requests after a deploy
+ * do not all miss it: the {@link Hospital} entities with their providers, then the {@link Provider} entities with their
+ * patients, then the latest {@link Patient} entities.
+ * <p>
+ * The patients loaded with the providers are bounded: the providers with the fewest patients are loaded with them first,
+ * and those whose patients would exceed the configured number are loaded without them.
+ * <p>
+ * The entities are loaded in batches, each in its own read-only transaction, run in parallel on the task executor. The
+ * readiness group includes the {@link CacheWarmUpHealthIndicator}, which is out of service until they are all loaded.
+ */
+@Service
+public class CacheWarmUpService {
+
+    /**
+     * The progress of the warm-up.
+     */
+    public enum State {
+        /** Not started yet: the application is not ready. */
+        PENDING,
+        RUNNING,
+        DONE,
+        /** Stopped by an error, the cache then being loaded by the requests. */
+        FAILED,
+        /** Disabled, or the second-level cache is. */
+        SKIPPED,
+    }
+
+    private final Logger log = LoggerFactory.getLogger(CacheWarmUpService.class);
+
+    private final HospitalRepository hospitalRepository;
+
+    private final ProviderRepository providerRepository;
+
+    private final PatientRepository patientRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Executor taskExecutor;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int batchSize;
+
+    private final int patients;
+
+    private final int providerPatients;
+
+    private volatile State state;
+
+    private volatile int batches;
+
+    private final AtomicInteger loadedBatches = new AtomicInteger();
+
+    private final AtomicLong loadedEntities = new AtomicLong();
+
+    public CacheWarmUpService(
+        HospitalRepository hospitalRepository,
+        ProviderRepository providerRepository,
+        PatientRepository patientRepository,
+        PlatformTransactionManager transactionManager,
+        @Qualifier("taskExecutor") Executor taskExecutor,
+        EntityManagerFactory entityManagerFactory,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.hospitalRepository = hospitalRepository;
+        this.providerRepository = providerRepository;
+        this.patientRepository = patientRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.taskExecutor = taskExecutor;
+        this.meterRegistry = meterRegistry;
+        ApplicationProperties.Cache.WarmUp warmUp = applicationProperties.getCache().getWarmUp();
+        if (warmUp.getBatchSize() <= 0) {
+            throw new IllegalArgumentException("The warm-up batch size must be positive: " + warmUp.getBatchSize());
+        }
+        this.batchSize = warmUp.getBatchSize();
+        this.patients = warmUp.getPatients();
+        this.providerPatients = warmUp.getProviderPatients();
+        boolean secondLevelCacheEnabled = entityManagerFactory
+            .unwrap(SessionFactoryImplementor.class)
+            .getSessionFactoryOptions()
+            .isSecondLevelCacheEnabled();
+        this.state = warmUp.isEnabled() && secondLevelCacheEnabled ? State.PENDING : State.SKIPPED;
+
+        Gauge
+            .builder("cache.warmup.progress", this, CacheWarmUpService::getProgress)
+            .description("Share of the batches of the cache warm-up loaded, from 0 to 1")
+            .register(meterRegistry);
+        FunctionCounter
+            .builder("cache.warmup.entities", loadedEntities, AtomicLong::get)
+            .description("Entities loaded by the cache warm-up, not counting their associations")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Load the second-level cache in the background, once the application is started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        synchronized (this) {
+            if (state == State.SKIPPED || state == State.RUNNING) {
+                return;
+            }
+            state = State.RUNNING;
+        }
+        log.info("Warming up the second-level cache");
+        loadedBatches.set(0);
+        long start = System.nanoTime();
+        // The ids first, to know the number of batches, then each stage once the previous one is loaded, as the
+        // providers reference the hospitals and the patients the providers
+        CompletableFuture
+            .supplyAsync(
+                () ->
+                    transactionTemplate.execute(status -> {
+                        List<Long> providersWithPatients = new ArrayList<>();
+                        List<Long> providersWithoutPatients = new ArrayList<>();
+                        long remainingPatients = providerPatients;
+                        for (ProviderPatientCount provider : providerRepository.findAllIdsWithPatientCount()) {
+                            if (provider.getPatientCount() <= remainingPatients) {
+                                providersWithPatients.add(provider.getId());
+                                remainingPatients -= provider.getPatientCount();
+                            } else {
+                                providersWithoutPatients.add(provider.getId());
+                            }
+                        }
+                        return List.of(
+                            hospitalRepository.findAllIds(),
+                            providersWithPatients,
+                            providersWithoutPatients,
+                            patients > 0 ? patientRepository.findLatestIds(PageRequest.ofSize(patients)) : List.<Long>of()
+                        );
+                    }),
+                taskExecutor
+            )
+            .thenCompose(ids -> {
+                batches = ids.stream().mapToInt(this::batchCount).sum();
+                return load(ids.get(0), hospitalRepository::findAllWithProvidersByIdIn)
+                    .thenCompose(loaded ->
+                        CompletableFuture.allOf(
+                            load(ids.get(1), providerRepository::findAllWithPatientsByIdIn),
+                            load(ids.get(2), providerRepository::findAllById)
+                        )
+                    )
+                    .thenCompose(loaded -> load(ids.get(3), patientRepository::findAllById));
+            })
+            .whenComplete((loaded, e) -> {
+                Duration duration = Duration.ofNanos(System.nanoTime() - start);
+                if (e == null) {
+                    state = State.DONE;
+                    log.info("Warmed up the second-level cache with {} entities in {} ms", loadedEntities.get(), duration.toMillis());
+                } else {
+                    state = State.FAILED;
+                    log.warn("Could not warm up the second-level cache: {}", e.toString());
+                }
+                Timer
+                    .builder("cache.warmup.duration")
+                    .description("Duration of the cache warm-up")
+                    .tag("outcome", e == null ? "success" : "failure")
+                    .register(meterRegistry)
+                    .record(duration);
+            });
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the share of the batches loaded, from 0 to 1.
+     */
+    public double getProgress() {
+        if (state == State.DONE) {
+            return 1;
+        }
+        int total = batches;
+        return total == 0 ? 0 : (double) loadedBatches.get() / total;
+    }
+
+    public long getLoadedEntities() {
+        return loadedEntities.get();
+    }
+
+    private CompletableFuture<Void> load(List<Long> ids, Function<Collection<Long>, List<?>> finder) {
+        List<CompletableFuture<Void>> loading = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Long> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            loading.add(
+                CompletableFuture.runAsync(
+                    () -> {
+                        Integer loaded = transactionTemplate.execute(status -> finder.apply(batch).size());
+                        loadedEntities.addAndGet(loaded);
+                        loadedBatches.incrementAndGet();
+                    },
+                    taskExecutor
+                )
+            );
+        }
+        return CompletableFuture.allOf(loading.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private int batchCount(List<Long> ids) {
+        return (ids.size() + batchSize - 1) / batchSize;
+    }
+}
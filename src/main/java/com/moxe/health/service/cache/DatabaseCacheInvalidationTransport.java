@@ -0,0 +1,185 @@
+package com.moxe.health.service.cache;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Sends the cache invalidations through the {@code cache_invalidation} table of the database, which every node appends
+ * to and polls, so that no other infrastructure is needed.
+ * <p>
+ * Each node reads the rows of the other nodes above the highest id it has read. As the ids are allocated before the
+ * rows are committed, a row may be committed after a row with a higher id was read: the rows created during the
+ * lookback period are read again, and skipped if they were already. The rows older than the retention period are
+ * deleted by any node.
+ */
+public class DatabaseCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    private static final String INSERT =
+        "insert into cache_invalidation (node_id, kind, region, cache_key, key_type, created_date) values (?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT =
+        "select id, kind, region, cache_key, key_type, created_date from cache_invalidation" +
+        " where (id > ? or created_date > ?) and node_id <> ? order by id";
+
+    private static final String DELETE = "delete from cache_invalidation where created_date < ?";
+
+    private static final String KEY_TYPE_LONG = "LONG";
+
+    private static final String KEY_TYPE_STRING = "STRING";
+
+    private final Logger log = LoggerFactory.getLogger(DatabaseCacheInvalidationTransport.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration lookback;
+
+    private final Duration retention;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Instant startedAt = Instant.now();
+
+    private Long highWaterMark;
+
+    /**
+     * The ids of the rows read during the lookback period, with their creation date.
+     */
+    private final Map<Long, LocalDateTime> recentIds = new LinkedHashMap<>();
+
+    private Instant nextPruning = Instant.MIN;
+
+    /**
+     * @param lookback the period during which the rows are read again, longer than the transactions writing them.
+     * @param retention the period after which the rows are deleted, longer than the polling interval of any node.
+     */
+    public DatabaseCacheInvalidationTransport(
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        Duration lookback,
+        Duration retention
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.lookback = lookback;
+        this.retention = retention;
+    }
+
+    @Override
+    public void send(Collection<CacheInvalidation> invalidations) {
+        LocalDateTime now = utc(Instant.now());
+        List<Object[]> rows = invalidations
+            .stream()
+            .map(invalidation ->
+                new Object[] {
+                    nodeId,
+                    invalidation.getKind().name(),
+                    invalidation.getRegion(),
+                    invalidation.getKey() == null ? null : invalidation.getKey().toString(),
+                    keyType(invalidation.getKey()),
+                    now,
+                }
+            )
+            .collect(Collectors.toList());
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT, rows));
+    }
+
+    @Override
+    public List<CacheInvalidation> receive() {
+        if (highWaterMark == null) {
+            // The invalidations sent before this node started concern caches it did not have yet
+            highWaterMark =
+                Objects.requireNonNullElse(
+                    transactionTemplate.execute(status -> jdbcTemplate.queryForObject("select max(id) from cache_invalidation", Long.class)),
+                    0L
+                );
+        }
+        Instant now = Instant.now();
+        LocalDateTime lookbackStart = utc(startedAt.isAfter(now.minus(lookback)) ? startedAt : now.minus(lookback));
+        List<CacheInvalidation> invalidations = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status ->
+            jdbcTemplate.query(
+                SELECT,
+                row -> {
+                    long id = row.getLong("id");
+                    LocalDateTime createdDate = row.getObject("created_date", LocalDateTime.class);
+                    if (recentIds.putIfAbsent(id, createdDate) != null) {
+                        return;
+                    }
+                    highWaterMark = Math.max(highWaterMark, id);
+                    CacheInvalidation invalidation = decode(row);
+                    if (invalidation != null) {
+                        invalidations.add(invalidation);
+                    }
+                },
+                highWaterMark,
+                lookbackStart,
+                nodeId
+            )
+        );
+        for (Iterator<LocalDateTime> createdDates = recentIds.values().iterator(); createdDates.hasNext();) {
+            if (createdDates.next().isBefore(lookbackStart)) {
+                createdDates.remove();
+            }
+        }
+
+        if (!now.isBefore(nextPruning)) {
+            nextPruning = now.plus(lookback);
+            Integer deleted = transactionTemplate.execute(status -> jdbcTemplate.update(DELETE, utc(now.minus(retention))));
+            log.debug("Deleted {} cache invalidations older than {}", deleted, retention);
+        }
+        return invalidations;
+    }
+
+    private CacheInvalidation decode(ResultSet row) throws SQLException {
+        String kind = row.getString("kind");
+        String region = row.getString("region");
+        String key = row.getString("cache_key");
+        String keyType = row.getString("key_type");
+        try {
+            return CacheInvalidation.of(
+                CacheInvalidation.Kind.valueOf(kind),
+                region,
+                key == null ? null : KEY_TYPE_LONG.equals(keyType) ? (Object) Long.valueOf(key) : key
+            );
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping the unknown cache invalidation {} of {}", kind, region);
+            return null;
+        }
+    }
+
+    private static String keyType(Object key) {
+        if (key == null) {
+            return null;
+        }
+        return key instanceof Long ? KEY_TYPE_LONG : KEY_TYPE_STRING;
+    }
+
+    /**
+     * The dates are stored in UTC, whatever the time zone of the nodes.
+     */
+    private static LocalDateTime utc(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+}
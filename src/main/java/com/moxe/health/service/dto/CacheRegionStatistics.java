@@ -0,0 +1,139 @@
+package com.moxe.health.service.dto;
+
+/**
+ * The statistics of a cache, a region of the second-level cache or a Spring cache, since the application started, and
+ * what its entries cost: the hits it saves, for the heap it takes.
+ */
+public class CacheRegionStatistics {
+
+    private final String name;
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long puts;
+
+    private final long evictions;
+
+    private final long expirations;
+
+    private final long removals;
+
+    private final long entries;
+
+    private final long heapEntries;
+
+    private final long heapBytes;
+
+    private final long offHeapBytes;
+
+    public CacheRegionStatistics(
+        String name,
+        long hits,
+        long misses,
+        long puts,
+        long evictions,
+        long expirations,
+        long removals,
+        long entries,
+        long heapEntries,
+        long heapBytes,
+        long offHeapBytes
+    ) {
+        this.name = name;
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.removals = removals;
+        this.entries = entries;
+        this.heapEntries = heapEntries;
+        this.heapBytes = heapBytes;
+        this.offHeapBytes = offHeapBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the share of the reads which hit, or {@code null} if the cache was never read.
+     */
+    public Double getHitRatio() {
+        return hits + misses == 0 ? null : (double) hits / (hits + misses);
+    }
+
+    public long getPuts() {
+        return puts;
+    }
+
+    /**
+     * @return the number of entries evicted to make room for others, which a larger cache would have kept.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public long getRemovals() {
+        return removals;
+    }
+
+    /**
+     * @return the number of entries, in all the tiers.
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getHeapEntries() {
+        return heapEntries;
+    }
+
+    /**
+     * @return the size of the entries on the heap, measured if the heap tier is sized in bytes, and estimated from a
+     * sample of them otherwise.
+     */
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    public long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    /**
+     * @return the heap size for each hit, or {@code null} if the cache was never hit.
+     */
+    public Double getBytesPerHit() {
+        return hits == 0 ? null : (double) heapBytes / hits;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CacheRegionStatistics{" +
+            "name='" + name + "'" +
+            ", hits=" + hits +
+            ", misses=" + misses +
+            ", puts=" + puts +
+            ", evictions=" + evictions +
+            ", entries=" + entries +
+            ", heapBytes=" + heapBytes +
+            ", offHeapBytes=" + offHeapBytes +
+            "}";
+    }
+}
@@ -0,0 +1,30 @@
+package com.moxe.health.service.dto;
+
+import com.moxe.health.service.CountStrategy;
+import java.util.List;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * A {@link org.springframework.data.domain.Page} which carries the {@link CountStrategy} used to obtain its total.
+ *
+ * @param <T> the type of the content.
+ */
+public class CountedPage<T> extends PageImpl<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CountStrategy countStrategy;
+
+    public CountedPage(List<T> content, Pageable pageable, long total, CountStrategy countStrategy) {
+        super(content, pageable, total);
+        this.countStrategy = countStrategy;
+    }
+
+    /**
+     * @return the strategy used to obtain the total, which is {@link CountStrategy#EXACT} when the requested one could not be applied.
+     */
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+}
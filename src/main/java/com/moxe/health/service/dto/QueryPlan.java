@@ -0,0 +1,59 @@
+package com.moxe.health.service.dto;
+
+import java.util.List;
+
+/**
+ * The plan of the SQL query a criteria produces, as reported by the database, and the parts of it which usually call
+ * for an index: the tables scanned sequentially, and the sorts.
+ */
+public class QueryPlan {
+
+    private final String sql;
+
+    private final boolean analyzed;
+
+    private final List<String> plan;
+
+    private final List<String> sequentialScans;
+
+    private final List<String> sorts;
+
+    public QueryPlan(String sql, boolean analyzed, List<String> plan, List<String> sequentialScans, List<String> sorts) {
+        this.sql = sql;
+        this.analyzed = analyzed;
+        this.plan = plan;
+        this.sequentialScans = sequentialScans;
+        this.sorts = sorts;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public boolean isAnalyzed() {
+        return analyzed;
+    }
+
+    public List<String> getPlan() {
+        return plan;
+    }
+
+    public List<String> getSequentialScans() {
+        return sequentialScans;
+    }
+
+    public List<String> getSorts() {
+        return sorts;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "QueryPlan{" +
+            "sql='" + sql + "'" +
+            ", analyzed=" + analyzed +
+            ", sequentialScans=" + sequentialScans +
+            ", sorts=" + sorts +
+            "}";
+    }
+}
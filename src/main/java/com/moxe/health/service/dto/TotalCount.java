@@ -0,0 +1,35 @@
+package com.moxe.health.service.dto;
+
+import com.moxe.health.service.CountStrategy;
+
+/**
+ * The total number of entities matching a query, and the {@link CountStrategy} used to obtain it.
+ */
+public class TotalCount {
+
+    private final long total;
+
+    private final CountStrategy strategy;
+
+    public TotalCount(long total, CountStrategy strategy) {
+        this.total = total;
+        this.strategy = strategy;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public CountStrategy getStrategy() {
+        return strategy;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "TotalCount{" +
+            "total=" + total +
+            ", strategy=" + strategy +
+            "}";
+    }
+}
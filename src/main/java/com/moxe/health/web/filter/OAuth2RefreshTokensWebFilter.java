@@ -1,10 +1,25 @@
 package com.moxe.health.web.filter;
 
+import com.moxe.health.security.PublicPaths;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
@@ -16,27 +31,62 @@ import org.springframework.security.oauth2.client.web.DefaultOAuth2Authorization
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizationRequestRedirectFilter;
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizationRequestResolver;
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
 import org.springframework.security.web.DefaultRedirectStrategy;
 import org.springframework.security.web.RedirectStrategy;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 /**
  * Refresh oauth2 tokens.
+ * <p>
+ * The authorized client is only authorized again, and saved, when its access token expires within the clock skew of the
+ * refresh, as it would not be refreshed otherwise. The concurrent requests of a client wait for the refresh of the
+ * first one rather than sending their own refresh token to the IdP. The public paths are not filtered.
  */
 @Component
 public class OAuth2RefreshTokensWebFilter extends OncePerRequestFilter {
 
+    /**
+     * Time before the expiry of an access token from which it is refreshed.
+     */
+    public static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+
+    private static final RequestMatcher PUBLIC_PATHS = new OrRequestMatcher(
+        Arrays.stream(PublicPaths.PATTERNS).map(AntPathRequestMatcher::new).collect(Collectors.toList())
+    );
+
     private final OAuth2AuthorizedClientManager clientManager;
     private final OAuth2AuthorizedClientRepository authorizedClientRepository;
     private final OAuth2AuthorizationRequestResolver authorizationRequestResolver;
     private final RedirectStrategy authorizationRedirectStrategy = new DefaultRedirectStrategy();
+    private final Clock clock;
+    private final ConcurrentMap<String, CompletableFuture<OAuth2AuthorizedClient>> refreshing = new ConcurrentHashMap<>();
+    private final Counter skipped;
+    private final Counter joined;
+    private final Timer refreshed;
+    private final Timer failed;
 
+    @Autowired
     public OAuth2RefreshTokensWebFilter(
         OAuth2AuthorizedClientManager clientManager,
         OAuth2AuthorizedClientRepository authorizedClientRepository,
-        ClientRegistrationRepository clientRegistrationRepository
+        ClientRegistrationRepository clientRegistrationRepository,
+        MeterRegistry meterRegistry
+    ) {
+        this(clientManager, authorizedClientRepository, clientRegistrationRepository, meterRegistry, Clock.systemUTC());
+    }
+
+    OAuth2RefreshTokensWebFilter(
+        OAuth2AuthorizedClientManager clientManager,
+        OAuth2AuthorizedClientRepository authorizedClientRepository,
+        ClientRegistrationRepository clientRegistrationRepository,
+        MeterRegistry meterRegistry,
+        Clock clock
     ) {
         this.clientManager = clientManager;
         this.authorizedClientRepository = authorizedClientRepository;
@@ -45,6 +95,24 @@ public class OAuth2RefreshTokensWebFilter extends OncePerRequestFilter {
                 clientRegistrationRepository,
                 OAuth2AuthorizationRequestRedirectFilter.DEFAULT_AUTHORIZATION_REQUEST_BASE_URI
             );
+        this.clock = clock;
+        this.skipped =
+            Counter
+                .builder("oauth2.token.refresh.skipped")
+                .description("Requests whose access token was not about to expire")
+                .register(meterRegistry);
+        this.joined =
+            Counter
+                .builder("oauth2.token.refresh.joined")
+                .description("Requests which waited for the refresh of the same client by another request")
+                .register(meterRegistry);
+        this.refreshed = refreshTimer(meterRegistry, "success");
+        this.failed = refreshTimer(meterRegistry, "failure");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return HttpMethod.OPTIONS.matches(request.getMethod()) || PUBLIC_PATHS.matches(request);
     }
 
     @Override
@@ -52,19 +120,90 @@ public class OAuth2RefreshTokensWebFilter extends OncePerRequestFilter {
         throws IOException, ServletException {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if ((authentication instanceof OAuth2AuthenticationToken)) {
+            OAuth2AuthenticationToken oauth2Authentication = (OAuth2AuthenticationToken) authentication;
+            if (!expiresSoon(oauth2Authentication, request)) {
+                skipped.increment();
+            } else if (!refreshOrRedirect(oauth2Authentication, request, response)) {
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Refresh the authorized client, or redirect to the authorization endpoint if it cannot be.
+     *
+     * @return whether the request may proceed.
+     */
+    private boolean refreshOrRedirect(
+        OAuth2AuthenticationToken oauth2Authentication,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
+        try {
+            refresh(oauth2Authentication, request, response);
+        } catch (Exception e) {
+            OAuth2AuthorizationRequest authorizationRequest = this.authorizationRequestResolver.resolve(request);
+            if (authorizationRequest != null) {
+                this.authorizationRedirectStrategy.sendRedirect(request, response, authorizationRequest.getAuthorizationRequestUri());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the access token of the client is missing, or expires within the clock skew.
+     */
+    private boolean expiresSoon(OAuth2AuthenticationToken oauth2Authentication, HttpServletRequest request) {
+        OAuth2AuthorizedClient authorizedClient = authorizedClientRepository.loadAuthorizedClient(
+            oauth2Authentication.getAuthorizedClientRegistrationId(),
+            oauth2Authentication,
+            request
+        );
+        if (authorizedClient == null) {
+            return true;
+        }
+        OAuth2AccessToken accessToken = authorizedClient.getAccessToken();
+        return accessToken.getExpiresAt() != null && !clock.instant().plus(CLOCK_SKEW).isBefore(accessToken.getExpiresAt());
+    }
+
+    private void refresh(OAuth2AuthenticationToken oauth2Authentication, HttpServletRequest request, HttpServletResponse response) {
+        // The authorized clients are saved per session when the sessions hold them, per principal otherwise
+        HttpSession session = request.getSession(false);
+        String key =
+            oauth2Authentication.getAuthorizedClientRegistrationId() +
+            ':' +
+            (session != null ? session.getId() : oauth2Authentication.getName());
+        CompletableFuture<OAuth2AuthorizedClient> refresh = new CompletableFuture<>();
+        CompletableFuture<OAuth2AuthorizedClient> pending = refreshing.putIfAbsent(key, refresh);
+        if (pending != null) {
+            joined.increment();
             try {
-                OAuth2AuthorizedClient authorizedClient = authorizedClient((OAuth2AuthenticationToken) authentication);
-                this.authorizedClientRepository.saveAuthorizedClient(authorizedClient, authentication, request, response);
-            } catch (Exception e) {
-                OAuth2AuthorizationRequest authorizationRequest = this.authorizationRequestResolver.resolve(request);
-                if (authorizationRequest != null) {
-                    this.authorizationRedirectStrategy.sendRedirect(request, response, authorizationRequest.getAuthorizationRequestUri());
-                    return;
+                pending.join();
+                return;
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
                 }
+                throw e;
             }
         }
 
-        filterChain.doFilter(request, response);
+        long start = System.nanoTime();
+        try {
+            OAuth2AuthorizedClient authorizedClient = authorizedClient(oauth2Authentication);
+            this.authorizedClientRepository.saveAuthorizedClient(authorizedClient, oauth2Authentication, request, response);
+            refreshed.record(Duration.ofNanos(System.nanoTime() - start));
+            refresh.complete(authorizedClient);
+        } catch (RuntimeException e) {
+            failed.record(Duration.ofNanos(System.nanoTime() - start));
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally {
+            refreshing.remove(key, refresh);
+        }
     }
 
     private OAuth2AuthorizedClient authorizedClient(OAuth2AuthenticationToken oauth2Authentication) {
@@ -81,4 +220,12 @@ public class OAuth2RefreshTokensWebFilter extends OncePerRequestFilter {
         }
         return clientManager.authorize(request);
     }
+
+    private static Timer refreshTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer
+            .builder("oauth2.token.refresh")
+            .description("Authorizations of the clients whose access token was about to expire")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
 }
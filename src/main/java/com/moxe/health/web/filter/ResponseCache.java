@@ -0,0 +1,290 @@
+package com.moxe.health.web.filter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of the serialized responses of list endpoints, bounded by their size in bytes, the least recently used being
+ * evicted.
+ * <p>
+ * Each response is tagged with the entities it is made of, and evicted when one of them is invalidated. So that a
+ * response computed from the data read before a write is not cached after the write is invalidated, a response is only
+ * stored if none of its tags was invalidated since the {@link #sequence()} taken before computing it.
+ */
+public class ResponseCache implements MeterBinder {
+
+    /**
+     * Name of the cache, in the {@code cache} tag of its meters and of its invalidations.
+     */
+    public static final String NAME = "responses";
+
+    private final long maxBytes;
+
+    private final long timeToLiveNanos;
+
+    private final LongSupplier ticker;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, Set<String>> keysByTag = new HashMap<>();
+
+    private final Map<String, Long> invalidatedAt = new HashMap<>();
+
+    private long sequence;
+
+    private long clearedAt;
+
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes the maximum size of the responses held.
+     * @param timeToLive the time after which a response is computed again, in case an invalidation was lost.
+     */
+    public ResponseCache(long maxBytes, Duration timeToLive) {
+        this(maxBytes, timeToLive, System::nanoTime);
+    }
+
+    ResponseCache(long maxBytes, Duration timeToLive, LongSupplier ticker) {
+        this.maxBytes = maxBytes;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.ticker = ticker;
+    }
+
+    /**
+     * @return the position of the next invalidation, to be taken before computing a response to {@link #put}.
+     */
+    public synchronized long sequence() {
+        return sequence;
+    }
+
+    /**
+     * @param key the key of the request.
+     * @return the cached response, or {@code null} if there is none or it expired.
+     */
+    public CachedResponse get(String key) {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && ticker.getAsLong() - entry.storedAt < timeToLiveNanos) {
+                hits.increment();
+                return entry.response;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache the response, unless one of its tags was invalidated since it was computed, or it is too large.
+     *
+     * @param key the key of the request.
+     * @param tags the entities the response is made of.
+     * @param sequence the {@link #sequence()} taken before computing the response.
+     * @param response the response.
+     */
+    public synchronized void put(String key, Set<String> tags, long sequence, CachedResponse response) {
+        if (clearedAt > sequence || tags.stream().anyMatch(tag -> invalidatedAt.getOrDefault(tag, 0L) > sequence)) {
+            return;
+        }
+        long weight = weight(key, response);
+        if (weight > maxBytes) {
+            return;
+        }
+        remove(key);
+        entries.put(key, new Entry(response, Set.copyOf(tags), weight, ticker.getAsLong()));
+        tags.forEach(tag -> keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key));
+        bytes += weight;
+        puts.increment();
+
+        while (bytes > maxBytes) {
+            remove(entries.keySet().iterator().next());
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Evict the responses tagged with the given entity, and prevent those being computed from being cached.
+     *
+     * @param tag the entity written.
+     */
+    public synchronized void invalidate(String tag) {
+        invalidatedAt.put(tag, ++sequence);
+        Set<String> keys = keysByTag.remove(tag);
+        if (keys != null) {
+            for (String key : keys) {
+                remove(key);
+            }
+        }
+    }
+
+    /**
+     * Evict all the responses, and prevent those being computed from being cached.
+     */
+    public synchronized void invalidateAll() {
+        clearedAt = ++sequence;
+        entries.clear();
+        keysByTag.clear();
+        bytes = 0;
+    }
+
+    public synchronized long size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new Metrics(this).bindTo(registry);
+    }
+
+    private void remove(String key) {
+        unlink(key, entries.remove(key));
+    }
+
+    private void unlink(String key, Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        bytes -= entry.weight;
+        for (String tag : entry.tags) {
+            Set<String> keys = keysByTag.get(tag);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByTag.remove(tag);
+            }
+        }
+    }
+
+    /**
+     * Estimate the heap taken by a response: its body, and its key and headers as strings of 2 bytes per character.
+     */
+    private static long weight(String key, CachedResponse response) {
+        long weight = response.getBody().length + 2L * key.length();
+        for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+            weight += 2L * header.getKey().length();
+            for (String value : header.getValue()) {
+                weight += 2L * value.length();
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * A response with its status 200, as written by the endpoint.
+     */
+    public static final class CachedResponse {
+
+        private final String contentType;
+
+        private final Map<String, List<String>> headers;
+
+        private final byte[] body;
+
+        /**
+         * @param contentType the content type, with its character encoding.
+         * @param headers the headers set by the endpoint.
+         * @param body the serialized body.
+         */
+        public CachedResponse(String contentType, Map<String, List<String>> headers, byte[] body) {
+            this.contentType = contentType;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    private static final class Entry {
+
+        private final CachedResponse response;
+
+        private final Set<String> tags;
+
+        private final long weight;
+
+        private final long storedAt;
+
+        private Entry(CachedResponse response, Set<String> tags, long weight, long storedAt) {
+            this.response = response;
+            this.tags = tags;
+            this.weight = weight;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private static final class Metrics extends CacheMeterBinder<ResponseCache> {
+
+        private final ResponseCache cache;
+
+        private Metrics(ResponseCache cache) {
+            super(cache, NAME, Tags.empty());
+            this.cache = cache;
+        }
+
+        @Override
+        protected Long size() {
+            return cache.size();
+        }
+
+        @Override
+        protected long hitCount() {
+            return cache.hits.sum();
+        }
+
+        @Override
+        protected Long missCount() {
+            return cache.misses.sum();
+        }
+
+        @Override
+        protected Long evictionCount() {
+            return cache.evictions.sum();
+        }
+
+        @Override
+        protected long putCount() {
+            return cache.puts.sum();
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+            Gauge
+                .builder("cache.heap.size", cache, ResponseCache::bytes)
+                .tags(getTagsWithCacheName())
+                .description("Estimated size of the cached responses")
+                .baseUnit("bytes")
+                .register(registry);
+        }
+    }
+}
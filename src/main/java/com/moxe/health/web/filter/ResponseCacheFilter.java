@@ -0,0 +1,140 @@
+package com.moxe.health.web.filter;
+
+import com.moxe.health.web.filter.ResponseCache.CachedResponse;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+/**
+ * Serves the {@code GET} requests of the given endpoints from the {@link ResponseCache}, without running the queries nor
+ * serializing the entities again.
+ * <p>
+ * The responses are keyed by path, query parameters sorted by name, and authorities of the caller, so that the same
+ * page of the same criteria requested differently is cached once, and a caller is never served a response computed
+ * for other authorities. Only the successful responses are cached, with the headers set by the endpoint, such as the
+ * pagination ones and the entity tag. This filter must run after the authentication.
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private final ResponseCache responseCache;
+
+    private final Map<String, Set<String>> tagsByPath;
+
+    /**
+     * @param responseCache the cache of the responses.
+     * @param tagsByPath the paths of the cached endpoints, with the entities their responses are made of.
+     */
+    public ResponseCacheFilter(ResponseCache responseCache, Map<String, Set<String>> tagsByPath) {
+        this.responseCache = responseCache;
+        this.tagsByPath = tagsByPath;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod()) || !tagsByPath.containsKey(path(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        String key = key(request);
+        CachedResponse cached = responseCache.get(key);
+        if (cached != null) {
+            // As the endpoint would, answer with 304 (Not Modified) if the client holds the response
+            List<String> eTag = cached.getHeaders().get(HttpHeaders.ETAG);
+            if (eTag == null || !new ServletWebRequest(request, response).checkNotModified(eTag.get(0))) {
+                write(cached, response);
+            }
+            return;
+        }
+
+        long sequence = responseCache.sequence();
+        Set<String> headersBefore = new HashSet<>(response.getHeaderNames());
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (String name : response.getHeaderNames()) {
+                if (
+                    !headersBefore.contains(name) &&
+                    !HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name) &&
+                    !HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)
+                ) {
+                    headers.put(name, new ArrayList<>(response.getHeaders(name)));
+                }
+            }
+            // A cookie set by the endpoint would be given to the other callers
+            if (wrapper.getStatus() == HttpServletResponse.SC_OK && !headers.containsKey(HttpHeaders.SET_COOKIE)) {
+                responseCache.put(
+                    key,
+                    tagsByPath.get(path(request)),
+                    sequence,
+                    new CachedResponse(wrapper.getContentType(), headers, wrapper.getContentAsByteArray())
+                );
+            }
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static void write(CachedResponse cached, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(cached.getContentType());
+        cached
+            .getHeaders()
+            .forEach((name, values) -> {
+                // Replacing the ETag already set by the check of the If-None-Match header
+                response.setHeader(name, values.get(0));
+                values.stream().skip(1).forEach(value -> response.addHeader(name, value));
+            });
+        response.setContentLength(cached.getBody().length);
+        response.getOutputStream().write(cached.getBody());
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String encode(String parameter) {
+        return URLEncoder.encode(parameter, StandardCharsets.UTF_8);
+    }
+
+    private static String key(HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(path(request)).append('?');
+        // The order of the values is kept, as it matters for the sort parameters
+        new TreeMap<>(request.getParameterMap()).forEach((name, values) -> {
+                for (String value : values) {
+                    key.append(encode(name)).append('=').append(encode(value)).append('&');
+                }
+            });
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null) {
+            key
+                .append('#')
+                .append(
+                    authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).sorted().collect(Collectors.joining(","))
+                );
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.moxe.health.web.filter;
+
+import com.moxe.health.repository.jdbc.StatementScope;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Counts the statements each request runs, the rows they fetch and the time spent in the database, in histograms tagged
+ * like the {@code http.server.requests} timer, so that the endpoints running too many queries stand out.
+ * <p>
+ * The requests not mapped to any endpoint are only measured if they ran a statement.
+ */
+public class StatementTelemetryFilter extends OncePerRequestFilter {
+
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final MeterRegistry meterRegistry;
+
+    public StatementTelemetryFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        try (StatementScope scope = StatementScope.open()) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                record(request, scope);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, StatementScope scope) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null && scope.getStatements() == 0) {
+            return;
+        }
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern == null ? UNKNOWN_URI : pattern.toString());
+        DistributionSummary
+            .builder("http.server.requests.statements")
+            .description("Statements run per request")
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(scope.getStatements());
+        DistributionSummary
+            .builder("http.server.requests.rows")
+            .description("Rows fetched per request")
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(scope.getRows());
+        Timer
+            .builder("http.server.requests.db")
+            .description("Time spent running statements per request")
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(scope.getNanos(), TimeUnit.NANOSECONDS);
+    }
+}
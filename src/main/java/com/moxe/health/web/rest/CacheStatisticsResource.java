@@ -0,0 +1,43 @@
+package com.moxe.health.web.rest;
+
+import com.moxe.health.service.cache.CacheStatisticsService;
+import com.moxe.health.service.dto.CacheRegionStatistics;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller ranking the caches by what they cost for what they save, to size them from their actual use.
+ */
+@RestController
+@RequestMapping("/api/admin/cache-statistics")
+public class CacheStatisticsResource {
+
+    private final Logger log = LoggerFactory.getLogger(CacheStatisticsResource.class);
+
+    private final CacheStatisticsService cacheStatisticsService;
+
+    public CacheStatisticsResource(CacheStatisticsService cacheStatisticsService) {
+        this.cacheStatisticsService = cacheStatisticsService;
+    }
+
+    /**
+     * {@code GET  /admin/cache-statistics} : get the statistics of the caches, the costliest first.
+     *
+     * @param ranking {@code HIT_RATIO} to rank the caches by increasing hit ratio, or {@code BYTES_PER_HIT} by
+     * decreasing heap for each hit.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the statistics of each cache in body.
+     */
+    @GetMapping("")
+    public ResponseEntity<List<CacheRegionStatistics>> getCacheStatistics(
+        @RequestParam(required = false, defaultValue = "HIT_RATIO") CacheStatisticsService.Ranking ranking
+    ) {
+        log.debug("REST request to get the cache statistics by {}", ranking);
+        return ResponseEntity.ok().body(cacheStatisticsService.findAll(ranking));
+    }
+}
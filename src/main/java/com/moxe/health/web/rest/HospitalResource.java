@@ -2,12 +2,18 @@ package com.moxe.health.web.rest;
 
 import com.moxe.health.domain.Hospital;
 import com.moxe.health.repository.HospitalRepository;
+import com.moxe.health.service.cache.CacheInvalidation;
+import com.moxe.health.service.cache.CacheInvalidationBus;
 import com.moxe.health.web.rest.errors.BadRequestAlertException;
+import com.moxe.health.web.rest.errors.PreconditionFailedAlertException;
+import com.moxe.health.web.rest.util.EntityTagUtil;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
@@ -18,8 +24,10 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
@@ -42,8 +50,11 @@ public class HospitalResource {
 
     private final HospitalRepository hospitalRepository;
 
-    public HospitalResource(HospitalRepository hospitalRepository) {
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public HospitalResource(HospitalRepository hospitalRepository, CacheInvalidationBus cacheInvalidationBus) {
         this.hospitalRepository = hospitalRepository;
+        this.cacheInvalidationBus = cacheInvalidationBus;
     }
 
     /**
@@ -71,15 +82,19 @@ public class HospitalResource {
      *
      * @param id the id of the hospital to save.
      * @param hospital the hospital to update.
+     * @param ifMatch the entity tags the current hospital should match, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated hospital,
      * or with status {@code 400 (Bad Request)} if the hospital is not valid,
+     * or with status {@code 409 (Conflict)} if the version of the hospital is not the current one,
+     * or with status {@code 412 (Precondition Failed)} if the hospital does not match {@code If-Match},
      * or with status {@code 500 (Internal Server Error)} if the hospital couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/hospitals/{id}")
     public ResponseEntity<Hospital> updateHospital(
         @PathVariable(value = "id", required = false) final Long id,
-        @Valid @RequestBody Hospital hospital
+        @Valid @RequestBody Hospital hospital,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to update Hospital : {}, {}", id, hospital);
         if (hospital.getId() == null) {
@@ -89,13 +104,15 @@ public class HospitalResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!hospitalRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        Hospital result = hospitalRepository.save(hospital);
+        Hospital result = updateIfVersionMatches(
+            id,
+            ifMatch,
+            hospital.getVersion(),
+            version -> hospitalRepository.updateIfVersionMatches(hospital, version)
+        );
         return ResponseEntity
             .ok()
+            .eTag(eTag(result))
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, hospital.getId().toString()))
             .body(result);
     }
@@ -105,8 +122,11 @@ public class HospitalResource {
      *
      * @param id the id of the hospital to save.
      * @param hospital the hospital to update.
+     * @param ifMatch the entity tags the current hospital should match, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated hospital,
      * or with status {@code 400 (Bad Request)} if the hospital is not valid,
+     * or with status {@code 409 (Conflict)} if the version of the hospital is not the current one,
+     * or with status {@code 412 (Precondition Failed)} if the hospital does not match {@code If-Match},
      * or with status {@code 404 (Not Found)} if the hospital is not found,
      * or with status {@code 500 (Internal Server Error)} if the hospital couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
@@ -114,7 +134,8 @@ public class HospitalResource {
     @PatchMapping(value = "/hospitals/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public ResponseEntity<Hospital> partialUpdateHospital(
         @PathVariable(value = "id", required = false) final Long id,
-        @NotNull @RequestBody Hospital hospital
+        @NotNull @RequestBody Hospital hospital,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to partial update Hospital partially : {}, {}", id, hospital);
         if (hospital.getId() == null) {
@@ -124,41 +145,40 @@ public class HospitalResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!hospitalRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        Optional<Hospital> result = hospitalRepository
-            .findById(hospital.getId())
-            .map(existingHospital -> {
-                if (hospital.getName() != null) {
-                    existingHospital.setName(hospital.getName());
-                }
-                if (hospital.getDescription() != null) {
-                    existingHospital.setDescription(hospital.getDescription());
-                }
-
-                return existingHospital;
-            })
-            .map(hospitalRepository::save);
-
-        return ResponseUtil.wrapOrNotFound(
-            result,
-            HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, hospital.getId().toString())
+        Hospital result = updateIfVersionMatches(
+            id,
+            ifMatch,
+            hospital.getVersion(),
+            version -> hospitalRepository.partialUpdateIfVersionMatches(hospital, version)
         );
+        return ResponseEntity
+            .ok()
+            .eTag(eTag(result))
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, hospital.getId().toString()))
+            .body(result);
     }
 
     /**
      * {@code GET  /hospitals} : get all the hospitals.
      *
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of hospitals in body.
+     * @param request the request, whose {@code If-None-Match} header is checked.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of hospitals in body,
+     * or with status {@code 304 (Not Modified)} if the client holds the current page.
      */
     @GetMapping("/hospitals")
-    public ResponseEntity<List<Hospital>> getAllHospitals(@org.springdoc.api.annotations.ParameterObject Pageable pageable) {
+    public ResponseEntity<List<Hospital>> getAllHospitals(
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        WebRequest request
+    ) {
         log.debug("REST request to get a page of Hospitals");
         Page<Hospital> page = hospitalRepository.findAll(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        String eTag = EntityTagUtil.weakTag(page, Hospital::getId, HospitalResource::eTag);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        headers.setETag(eTag);
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
@@ -166,13 +186,22 @@ public class HospitalResource {
      * {@code GET  /hospitals/:id} : get the "id" hospital.
      *
      * @param id the id of the hospital to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the hospital, or with status {@code 404 (Not Found)}.
+     * @param request the request, whose {@code If-None-Match} header is checked.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the hospital, or with status {@code 404 (Not Found)},
+     * or with status {@code 304 (Not Modified)} if the client holds the current hospital.
      */
     @GetMapping("/hospitals/{id}")
-    public ResponseEntity<Hospital> getHospital(@PathVariable Long id) {
+    public ResponseEntity<Hospital> getHospital(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get Hospital : {}", id);
+        // Loaded as for any other request, from the second-level cache when it holds the hospital
         Optional<Hospital> hospital = hospitalRepository.findById(id);
-        return ResponseUtil.wrapOrNotFound(hospital);
+        Optional<String> eTag = hospital.map(HospitalResource::eTag);
+        if (eTag.isPresent() && request.checkNotModified(eTag.get())) {
+            return null;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        eTag.ifPresent(headers::setETag);
+        return ResponseUtil.wrapOrNotFound(hospital, headers);
     }
 
     /**
@@ -190,4 +219,57 @@ public class HospitalResource {
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString()))
             .build();
     }
+
+    /**
+     * Run an update with the version the hospital must have: the one of the {@code If-Match} tag, whose mismatch is a
+     * failed precondition, else the version of the body, whose mismatch is a conflict.
+     */
+    private Hospital updateIfVersionMatches(Long id, String ifMatch, Long bodyVersion, Function<Long, Integer> update) {
+        List<Long> tagVersions = ifMatch == null ? Collections.emptyList() : EntityTagUtil.versions(ifMatch);
+        if (tagVersions == null) {
+            // A list of tags is compared with the current version, which the update then expects
+            Long current = hospitalRepository
+                .findVersionById(id)
+                .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+            checkIfMatch(ifMatch, current);
+            tagVersions = Collections.singletonList(current);
+        }
+        Long version = bodyVersion;
+        if (!tagVersions.isEmpty()) {
+            if (bodyVersion != null && !bodyVersion.equals(tagVersions.get(0))) {
+                // At most one of them is current: the precondition is checked first
+                checkIfMatch(
+                    ifMatch,
+                    hospitalRepository
+                        .findVersionById(id)
+                        .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"))
+                );
+                throw new ObjectOptimisticLockingFailureException(Hospital.class, id);
+            }
+            version = tagVersions.get(0);
+        }
+
+        if (update.apply(version) == 0) {
+            // Only a failed update needs another statement, to tell a missing hospital from a modified one
+            if (!hospitalRepository.existsById(id)) {
+                throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+            }
+            if (!tagVersions.isEmpty()) {
+                throw new PreconditionFailedAlertException("The hospital was modified", ENTITY_NAME, "preconditionfailed");
+            }
+            throw new ObjectOptimisticLockingFailureException(Hospital.class, id);
+        }
+        cacheInvalidationBus.publish(CacheInvalidation.entity(Hospital.class.getName(), id));
+        return hospitalRepository.findById(id).orElseThrow();
+    }
+
+    private void checkIfMatch(String ifMatch, Long version) {
+        if (ifMatch != null && !EntityTagUtil.matches(ifMatch, EntityTagUtil.strongTag(version))) {
+            throw new PreconditionFailedAlertException("The hospital was modified", ENTITY_NAME, "preconditionfailed");
+        }
+    }
+
+    private static String eTag(Hospital hospital) {
+        return EntityTagUtil.strongTag(hospital.getVersion());
+    }
 }
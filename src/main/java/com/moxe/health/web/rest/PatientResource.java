@@ -1,16 +1,40 @@
 package com.moxe.health.web.rest;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.moxe.health.domain.Patient;
+import com.moxe.health.repository.EntityVersion;
 import com.moxe.health.repository.PatientRepository;
+import com.moxe.health.service.CountStrategy;
+import com.moxe.health.service.KeysetPagination;
+import com.moxe.health.service.PatientBulkService;
 import com.moxe.health.service.PatientQueryService;
 import com.moxe.health.service.PatientService;
 import com.moxe.health.service.criteria.PatientCriteria;
+import com.moxe.health.service.dto.BulkResultDTO;
+import com.moxe.health.service.dto.CountedPage;
+import com.moxe.health.service.dto.KeysetSlice;
+import com.moxe.health.service.dto.TotalCount;
 import com.moxe.health.web.rest.errors.BadRequestAlertException;
+import com.moxe.health.web.rest.errors.PreconditionFailedAlertException;
+import com.moxe.health.web.rest.util.CountPaginationUtil;
+import com.moxe.health.web.rest.util.EntityTagUtil;
+import com.moxe.health.web.rest.util.ExportWriter;
+import com.moxe.health.web.rest.util.KeysetPaginationUtil;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
@@ -19,8 +43,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
@@ -37,6 +64,16 @@ public class PatientResource {
 
     private static final String ENTITY_NAME = "patient";
 
+    private static final Map<String, Function<Patient, ?>> CSV_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        CSV_COLUMNS.put("id", Patient::getId);
+        CSV_COLUMNS.put("name", Patient::getName);
+        CSV_COLUMNS.put("dateOfBirth", Patient::getDateOfBirth);
+        CSV_COLUMNS.put("sex", Patient::getSex);
+        CSV_COLUMNS.put("providerId", patient -> patient.getProvider() == null ? null : patient.getProvider().getId());
+    }
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -46,10 +83,22 @@ public class PatientResource {
 
     private final PatientQueryService patientQueryService;
 
-    public PatientResource(PatientService patientService, PatientRepository patientRepository, PatientQueryService patientQueryService) {
+    private final PatientBulkService patientBulkService;
+
+    private final ObjectMapper objectMapper;
+
+    public PatientResource(
+        PatientService patientService,
+        PatientRepository patientRepository,
+        PatientQueryService patientQueryService,
+        PatientBulkService patientBulkService,
+        ObjectMapper objectMapper
+    ) {
         this.patientService = patientService;
         this.patientRepository = patientRepository;
         this.patientQueryService = patientQueryService;
+        this.patientBulkService = patientBulkService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -72,20 +121,43 @@ public class PatientResource {
             .body(result);
     }
 
+    /**
+     * {@code POST  /patients/_bulk} : Create or update patients in bulk.
+     * <p>
+     * The body is either a JSON array or newline delimited JSON. Patients without an ID are created, the others are updated,
+     * unless they have a version which is no longer that of the patient. Each row is reported separately, so that invalid
+     * or conflicting rows don't prevent the others from being saved.
+     *
+     * @param body the patients to create or update.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the outcome of each row, in order.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/patients/_bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson" })
+    public ResponseEntity<List<BulkResultDTO>> bulkSavePatients(InputStream body) throws IOException {
+        log.debug("REST request to save Patients in bulk");
+        try (MappingIterator<Patient> rows = objectMapper.readerFor(Patient.class).readValues(body)) {
+            return ResponseEntity.ok().body(patientBulkService.saveAll(rows));
+        }
+    }
+
     /**
      * {@code PUT  /patients/:id} : Updates an existing patient.
      *
      * @param id the id of the patient to save.
      * @param patient the patient to update.
+     * @param ifMatch the entity tags the current patient should match, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated patient,
      * or with status {@code 400 (Bad Request)} if the patient is not valid,
+     * or with status {@code 409 (Conflict)} if the version of the patient is not the current one,
+     * or with status {@code 412 (Precondition Failed)} if the patient does not match {@code If-Match},
      * or with status {@code 500 (Internal Server Error)} if the patient couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/patients/{id}")
     public ResponseEntity<Patient> updatePatient(
         @PathVariable(value = "id", required = false) final Long id,
-        @Valid @RequestBody Patient patient
+        @Valid @RequestBody Patient patient,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to update Patient : {}, {}", id, patient);
         if (patient.getId() == null) {
@@ -95,13 +167,15 @@ public class PatientResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!patientRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        Patient result = patientService.update(patient);
+        Patient result = updateIfVersionsMatch(
+            id,
+            ifMatch,
+            patient.getVersion(),
+            (version, providerVersion) -> patientService.update(patient, version, providerVersion)
+        );
         return ResponseEntity
             .ok()
+            .eTag(eTag(result))
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, patient.getId().toString()))
             .body(result);
     }
@@ -111,8 +185,11 @@ public class PatientResource {
      *
      * @param id the id of the patient to save.
      * @param patient the patient to update.
+     * @param ifMatch the entity tags the current patient should match, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated patient,
      * or with status {@code 400 (Bad Request)} if the patient is not valid,
+     * or with status {@code 409 (Conflict)} if the version of the patient is not the current one,
+     * or with status {@code 412 (Precondition Failed)} if the patient does not match {@code If-Match},
      * or with status {@code 404 (Not Found)} if the patient is not found,
      * or with status {@code 500 (Internal Server Error)} if the patient couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
@@ -120,7 +197,8 @@ public class PatientResource {
     @PatchMapping(value = "/patients/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public ResponseEntity<Patient> partialUpdatePatient(
         @PathVariable(value = "id", required = false) final Long id,
-        @NotNull @RequestBody Patient patient
+        @NotNull @RequestBody Patient patient,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to partial update Patient partially : {}, {}", id, patient);
         if (patient.getId() == null) {
@@ -130,16 +208,17 @@ public class PatientResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!patientRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        Optional<Patient> result = patientService.partialUpdate(patient);
-
-        return ResponseUtil.wrapOrNotFound(
-            result,
-            HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, patient.getId().toString())
+        Patient result = updateIfVersionsMatch(
+            id,
+            ifMatch,
+            patient.getVersion(),
+            (version, providerVersion) -> patientService.partialUpdate(patient, version, providerVersion)
         );
+        return ResponseEntity
+            .ok()
+            .eTag(eTag(result))
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, patient.getId().toString()))
+            .body(result);
     }
 
     /**
@@ -147,42 +226,129 @@ public class PatientResource {
      *
      * @param pageable the pagination information.
      * @param criteria the criteria which the requested entities should match.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of patients in body.
+     * @param count the strategy used to count the patients: {@code exact}, {@code cached}, {@code estimated} or {@code parallel};
+     * the configured default when absent.
+     * @param request the request, whose {@code If-None-Match} header is checked.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of patients in body,
+     * or with status {@code 400 (Bad Request)} if the count strategy is not valid,
+     * or with status {@code 304 (Not Modified)} if the client holds the current page.
      */
     @GetMapping("/patients")
     public ResponseEntity<List<Patient>> getAllPatients(
         PatientCriteria criteria,
-        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+        @RequestParam(value = CountPaginationUtil.COUNT_PARAMETER, required = false) String count,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        WebRequest request
     ) {
         log.debug("REST request to get Patients by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
-        Page<Patient> page = patientQueryService.findByCriteria(criteria, pageable);
-        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        CountedPage<Patient> page = patientQueryService.findByCriteria(criteria, pageable, toCountStrategy(count));
+        HttpHeaders headers = CountPaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        String eTag = EntityTagUtil.weakTag(page, Patient::getId, PatientResource::eTag);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        headers.setETag(eTag);
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    /**
+     * {@code GET  /patients?cursor=} : get the patients following a cursor, without counting them.
+     * <p>
+     * The first slice is requested with an empty cursor; the {@code next} link of the response holds the cursor of the
+     * following slice, and is absent on the last one.
+     *
+     * @param cursor the cursor returned with the previous slice, or an empty value for the first slice.
+     * @param pageable the size and sort of the slice; the page number is ignored.
+     * @param criteria the criteria which the requested entities should match.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of patients in body,
+     * or with status {@code 400 (Bad Request)} if the cursor or the sort is not valid.
+     */
+    @GetMapping(value = "/patients", params = KeysetPaginationUtil.CURSOR_PARAMETER)
+    public ResponseEntity<List<Patient>> getAllPatientsByCursor(
+        PatientCriteria criteria,
+        @RequestParam(KeysetPaginationUtil.CURSOR_PARAMETER) String cursor,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+    ) {
+        log.debug("REST request to get a slice of Patients by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
+        KeysetSlice<Patient> slice;
+        try {
+            slice = patientQueryService.findByCriteria(criteria, cursor, pageable);
+        } catch (KeysetPagination.InvalidCursorException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid");
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetPaginationHttpHeaders(
+            ServletUriComponentsBuilder.fromCurrentRequest(),
+            slice
+        );
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /patients/export} : export all the patients matching the criteria, ordered by id.
+     * <p>
+     * The patients are streamed from the database to the response, so that the memory used does not depend on their number.
+     *
+     * @param criteria the criteria which the exported entities should match.
+     * @param format the export format, {@code ndjson} (the default) or {@code csv}.
+     * @param gzip whether the exported file should be gzipped.
+     * @param response the response the patients are written to.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping("/patients/export")
+    public void exportPatients(
+        PatientCriteria criteria,
+        @RequestParam(defaultValue = "ndjson") String format,
+        @RequestParam(defaultValue = "false") boolean gzip,
+        HttpServletResponse response
+    ) throws IOException {
+        log.debug("REST request to export Patients by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
+        ExportWriter.Format exportFormat = ExportWriter.Format
+            .of(format)
+            .orElseThrow(() -> new BadRequestAlertException("Invalid export format", ENTITY_NAME, "formatinvalid"));
+        try (ExportWriter<Patient> writer = ExportWriter.open(response, "patients", exportFormat, gzip, objectMapper, CSV_COLUMNS)) {
+            long count = patientQueryService.streamByCriteria(criteria, writer);
+            log.debug("Exported {} Patients", count);
+        }
+    }
+
     /**
      * {@code GET  /patients/count} : count all the patients.
      *
      * @param criteria the criteria which the requested entities should match.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the count in body.
+     * @param count the strategy used to count the patients, the configured default when absent.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the count in body,
+     * or with status {@code 400 (Bad Request)} if the count strategy is not valid.
      */
     @GetMapping("/patients/count")
-    public ResponseEntity<Long> countPatients(PatientCriteria criteria) {
+    public ResponseEntity<Long> countPatients(
+        PatientCriteria criteria,
+        @RequestParam(value = CountPaginationUtil.COUNT_PARAMETER, required = false) String count
+    ) {
         log.debug("REST request to count Patients by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
-        return ResponseEntity.ok().body(patientQueryService.countByCriteria(criteria));
+        TotalCount total = patientQueryService.countByCriteria(criteria, toCountStrategy(count));
+        return ResponseEntity.ok().headers(CountPaginationUtil.generateCountHttpHeaders(total)).body(total.getTotal());
     }
 
     /**
      * {@code GET  /patients/:id} : get the "id" patient.
      *
      * @param id the id of the patient to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the patient, or with status {@code 404 (Not Found)}.
+     * @param request the request, whose {@code If-None-Match} header is checked.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the patient, or with status {@code 404 (Not Found)},
+     * or with status {@code 304 (Not Modified)} if the client holds the current patient.
      */
     @GetMapping("/patients/{id}")
-    public ResponseEntity<Patient> getPatient(@PathVariable Long id) {
+    public ResponseEntity<Patient> getPatient(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get Patient : {}", id);
+        // Loaded as for any other request, from the second-level cache when it holds the patient
         Optional<Patient> patient = patientService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(patient);
+        Optional<String> eTag = patient.map(PatientResource::eTag);
+        if (eTag.isPresent() && request.checkNotModified(eTag.get())) {
+            return null;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        eTag.ifPresent(headers::setETag);
+        return ResponseUtil.wrapOrNotFound(patient, headers);
     }
 
     /**
@@ -200,4 +366,79 @@ public class PatientResource {
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString()))
             .build();
     }
+
+    /**
+     * {@code GET  /_search/patients?q=:query} : search for the patients matching the query.
+     *
+     * @param query the words to search for, which may be incomplete or misspelled.
+     * @param pageable the pagination information; the patients are sorted by relevance.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of patients in body.
+     */
+    @GetMapping("/_search/patients")
+    public ResponseEntity<List<Patient>> searchPatients(@RequestParam("q") String query, Pageable pageable) {
+        log.debug("REST request to search for a page of Patients for query {}", query.replaceAll("[\n\r\t]", "_"));
+        Page<Patient> page = patientQueryService.search(query, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * Run an update with the versions the patient and its provider must have: those of the {@code If-Match} tag, whose mismatch
+     * is a failed precondition, else the version of the body, whose mismatch is a conflict.
+     */
+    private Patient updateIfVersionsMatch(Long id, String ifMatch, Long bodyVersion, BiFunction<Long, Long, Optional<Patient>> update) {
+        List<Long> tagVersions = ifMatch == null ? Collections.emptyList() : EntityTagUtil.versions(ifMatch);
+        if (tagVersions == null) {
+            // A list of tags is compared with the current versions, which the update then expects
+            EntityVersion current = patientRepository
+                .findVersionById(id)
+                .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+            checkIfMatch(ifMatch, current);
+            tagVersions = Arrays.asList(current.getVersion(), current.getAssociationVersion());
+        }
+        Long version = bodyVersion;
+        Long providerVersion = null;
+        if (!tagVersions.isEmpty()) {
+            if (bodyVersion != null && !bodyVersion.equals(tagVersions.get(0))) {
+                // At most one of them is current: the precondition is checked first
+                EntityVersion current = patientRepository
+                    .findVersionById(id)
+                    .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+                checkIfMatch(ifMatch, current);
+                throw new ObjectOptimisticLockingFailureException(Patient.class, id);
+            }
+            version = tagVersions.get(0);
+            providerVersion = tagVersions.size() > 1 ? tagVersions.get(1) : null;
+        }
+
+        try {
+            return update
+                .apply(version, providerVersion)
+                .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            if (tagVersions.isEmpty()) {
+                throw e;
+            }
+            throw new PreconditionFailedAlertException("The patient was modified", ENTITY_NAME, "preconditionfailed");
+        }
+    }
+
+    private void checkIfMatch(String ifMatch, EntityVersion version) {
+        if (ifMatch != null && !EntityTagUtil.matches(ifMatch, EntityTagUtil.strongTag(version))) {
+            throw new PreconditionFailedAlertException("The patient was modified", ENTITY_NAME, "preconditionfailed");
+        }
+    }
+
+    private static String eTag(Patient patient) {
+        return EntityTagUtil.strongTag(patient.getVersion(), patient.getProvider() == null ? null : patient.getProvider().getVersion());
+    }
+
+    private CountStrategy toCountStrategy(String count) {
+        if (count == null) {
+            return null;
+        }
+        return CountStrategy
+            .of(count)
+            .orElseThrow(() -> new BadRequestAlertException("Invalid count strategy", ENTITY_NAME, "countinvalid"));
+    }
 }
@@ -1,16 +1,36 @@
 package com.moxe.health.web.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.moxe.health.domain.Provider;
+import com.moxe.health.repository.EntityVersion;
 import com.moxe.health.repository.ProviderRepository;
+import com.moxe.health.service.CountStrategy;
+import com.moxe.health.service.KeysetPagination;
 import com.moxe.health.service.ProviderQueryService;
 import com.moxe.health.service.ProviderService;
 import com.moxe.health.service.criteria.ProviderCriteria;
+import com.moxe.health.service.dto.CountedPage;
+import com.moxe.health.service.dto.KeysetSlice;
+import com.moxe.health.service.dto.TotalCount;
 import com.moxe.health.web.rest.errors.BadRequestAlertException;
+import com.moxe.health.web.rest.errors.PreconditionFailedAlertException;
+import com.moxe.health.web.rest.util.CountPaginationUtil;
+import com.moxe.health.web.rest.util.EntityTagUtil;
+import com.moxe.health.web.rest.util.ExportWriter;
+import com.moxe.health.web.rest.util.KeysetPaginationUtil;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
@@ -20,7 +40,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
@@ -37,6 +59,15 @@ public class ProviderResource {
 
     private static final String ENTITY_NAME = "provider";
 
+    private static final Map<String, Function<Provider, ?>> CSV_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        CSV_COLUMNS.put("id", Provider::getId);
+        CSV_COLUMNS.put("name", Provider::getName);
+        CSV_COLUMNS.put("specialty", Provider::getSpecialty);
+        CSV_COLUMNS.put("hospitalId", provider -> provider.getHospital() == null ? null : provider.getHospital().getId());
+    }
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -46,14 +77,18 @@ public class ProviderResource {
 
     private final ProviderQueryService providerQueryService;
 
+    private final ObjectMapper objectMapper;
+
     public ProviderResource(
         ProviderService providerService,
         ProviderRepository providerRepository,
-        ProviderQueryService providerQueryService
+        ProviderQueryService providerQueryService,
+        ObjectMapper objectMapper
     ) {
         this.providerService = providerService;
         this.providerRepository = providerRepository;
         this.providerQueryService = providerQueryService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -81,15 +116,19 @@ public class ProviderResource {
      *
      * @param id the id of the provider to save.
      * @param provider the provider to update.
+     * @param ifMatch the entity tags the current provider should match, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated provider,
      * or with status {@code 400 (Bad Request)} if the provider is not valid,
+     * or with status {@code 409 (Conflict)} if the version of the provider is not the current one,
+     * or with status {@code 412 (Precondition Failed)} if the provider does not match {@code If-Match},
      * or with status {@code 500 (Internal Server Error)} if the provider couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/providers/{id}")
     public ResponseEntity<Provider> updateProvider(
         @PathVariable(value = "id", required = false) final Long id,
-        @Valid @RequestBody Provider provider
+        @Valid @RequestBody Provider provider,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to update Provider : {}, {}", id, provider);
         if (provider.getId() == null) {
@@ -99,13 +138,15 @@ public class ProviderResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!providerRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        Provider result = providerService.update(provider);
+        Provider result = updateIfVersionsMatch(
+            id,
+            ifMatch,
+            provider.getVersion(),
+            (version, hospitalVersion) -> providerService.update(provider, version, hospitalVersion)
+        );
         return ResponseEntity
             .ok()
+            .eTag(eTag(result))
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, provider.getId().toString()))
             .body(result);
     }
@@ -115,8 +156,11 @@ public class ProviderResource {
      *
      * @param id the id of the provider to save.
      * @param provider the provider to update.
+     * @param ifMatch the entity tags the current provider should match, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated provider,
      * or with status {@code 400 (Bad Request)} if the provider is not valid,
+     * or with status {@code 409 (Conflict)} if the version of the provider is not the current one,
+     * or with status {@code 412 (Precondition Failed)} if the provider does not match {@code If-Match},
      * or with status {@code 404 (Not Found)} if the provider is not found,
      * or with status {@code 500 (Internal Server Error)} if the provider couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
@@ -124,7 +168,8 @@ public class ProviderResource {
     @PatchMapping(value = "/providers/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public ResponseEntity<Provider> partialUpdateProvider(
         @PathVariable(value = "id", required = false) final Long id,
-        @NotNull @RequestBody Provider provider
+        @NotNull @RequestBody Provider provider,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to partial update Provider partially : {}, {}", id, provider);
         if (provider.getId() == null) {
@@ -134,16 +179,17 @@ public class ProviderResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!providerRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        Optional<Provider> result = providerService.partialUpdate(provider);
-
-        return ResponseUtil.wrapOrNotFound(
-            result,
-            HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, provider.getId().toString())
+        Provider result = updateIfVersionsMatch(
+            id,
+            ifMatch,
+            provider.getVersion(),
+            (version, hospitalVersion) -> providerService.partialUpdate(provider, version, hospitalVersion)
         );
+        return ResponseEntity
+            .ok()
+            .eTag(eTag(result))
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, provider.getId().toString()))
+            .body(result);
     }
 
     /**
@@ -151,42 +197,129 @@ public class ProviderResource {
      *
      * @param pageable the pagination information.
      * @param criteria the criteria which the requested entities should match.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of providers in body.
+     * @param count the strategy used to count the providers: {@code exact}, {@code cached}, {@code estimated} or {@code parallel};
+     * the configured default when absent.
+     * @param request the request, whose {@code If-None-Match} header is checked.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of providers in body,
+     * or with status {@code 400 (Bad Request)} if the count strategy is not valid,
+     * or with status {@code 304 (Not Modified)} if the client holds the current page.
      */
     @GetMapping("/providers")
     public ResponseEntity<List<Provider>> getAllProviders(
         ProviderCriteria criteria,
-        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+        @RequestParam(value = CountPaginationUtil.COUNT_PARAMETER, required = false) String count,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        WebRequest request
     ) {
         log.debug("REST request to get Providers by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
-        Page<Provider> page = providerQueryService.findByCriteria(criteria, pageable);
-        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        CountedPage<Provider> page = providerQueryService.findByCriteria(criteria, pageable, toCountStrategy(count));
+        HttpHeaders headers = CountPaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        String eTag = EntityTagUtil.weakTag(page, Provider::getId, ProviderResource::eTag);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        headers.setETag(eTag);
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    /**
+     * {@code GET  /providers?cursor=} : get the providers following a cursor, without counting them.
+     * <p>
+     * The first slice is requested with an empty cursor; the {@code next} link of the response holds the cursor of the
+     * following slice, and is absent on the last one.
+     *
+     * @param cursor the cursor returned with the previous slice, or an empty value for the first slice.
+     * @param pageable the size and sort of the slice; the page number is ignored.
+     * @param criteria the criteria which the requested entities should match.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of providers in body,
+     * or with status {@code 400 (Bad Request)} if the cursor or the sort is not valid.
+     */
+    @GetMapping(value = "/providers", params = KeysetPaginationUtil.CURSOR_PARAMETER)
+    public ResponseEntity<List<Provider>> getAllProvidersByCursor(
+        ProviderCriteria criteria,
+        @RequestParam(KeysetPaginationUtil.CURSOR_PARAMETER) String cursor,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+    ) {
+        log.debug("REST request to get a slice of Providers by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
+        KeysetSlice<Provider> slice;
+        try {
+            slice = providerQueryService.findByCriteria(criteria, cursor, pageable);
+        } catch (KeysetPagination.InvalidCursorException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid");
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetPaginationHttpHeaders(
+            ServletUriComponentsBuilder.fromCurrentRequest(),
+            slice
+        );
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /providers/export} : export all the providers matching the criteria, ordered by id.
+     * <p>
+     * The providers are streamed from the database to the response, so that the memory used does not depend on their number.
+     *
+     * @param criteria the criteria which the exported entities should match.
+     * @param format the export format, {@code ndjson} (the default) or {@code csv}.
+     * @param gzip whether the exported file should be gzipped.
+     * @param response the response the providers are written to.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping("/providers/export")
+    public void exportProviders(
+        ProviderCriteria criteria,
+        @RequestParam(defaultValue = "ndjson") String format,
+        @RequestParam(defaultValue = "false") boolean gzip,
+        HttpServletResponse response
+    ) throws IOException {
+        log.debug("REST request to export Providers by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
+        ExportWriter.Format exportFormat = ExportWriter.Format
+            .of(format)
+            .orElseThrow(() -> new BadRequestAlertException("Invalid export format", ENTITY_NAME, "formatinvalid"));
+        try (ExportWriter<Provider> writer = ExportWriter.open(response, "providers", exportFormat, gzip, objectMapper, CSV_COLUMNS)) {
+            long count = providerQueryService.streamByCriteria(criteria, writer);
+            log.debug("Exported {} Providers", count);
+        }
+    }
+
     /**
      * {@code GET  /providers/count} : count all the providers.
      *
      * @param criteria the criteria which the requested entities should match.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the count in body.
+     * @param count the strategy used to count the providers, the configured default when absent.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the count in body,
+     * or with status {@code 400 (Bad Request)} if the count strategy is not valid.
      */
     @GetMapping("/providers/count")
-    public ResponseEntity<Long> countProviders(ProviderCriteria criteria) {
+    public ResponseEntity<Long> countProviders(
+        ProviderCriteria criteria,
+        @RequestParam(value = CountPaginationUtil.COUNT_PARAMETER, required = false) String count
+    ) {
         log.debug("REST request to count Providers by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
-        return ResponseEntity.ok().body(providerQueryService.countByCriteria(criteria));
+        TotalCount total = providerQueryService.countByCriteria(criteria, toCountStrategy(count));
+        return ResponseEntity.ok().headers(CountPaginationUtil.generateCountHttpHeaders(total)).body(total.getTotal());
     }
 
     /**
      * {@code GET  /providers/:id} : get the "id" provider.
      *
      * @param id the id of the provider to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the provider, or with status {@code 404 (Not Found)}.
+     * @param request the request, whose {@code If-None-Match} header is checked.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the provider, or with status {@code 404 (Not Found)},
+     * or with status {@code 304 (Not Modified)} if the client holds the current provider.
      */
     @GetMapping("/providers/{id}")
-    public ResponseEntity<Provider> getProvider(@PathVariable Long id) {
+    public ResponseEntity<Provider> getProvider(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get Provider : {}", id);
+        // Loaded as for any other request, from the second-level cache when it holds the provider
         Optional<Provider> provider = providerService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(provider);
+        Optional<String> eTag = provider.map(ProviderResource::eTag);
+        if (eTag.isPresent() && request.checkNotModified(eTag.get())) {
+            return null;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        eTag.ifPresent(headers::setETag);
+        return ResponseUtil.wrapOrNotFound(provider, headers);
     }
 
     /**
@@ -204,4 +337,79 @@ public class ProviderResource {
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString()))
             .build();
     }
+
+    /**
+     * {@code GET  /_search/providers?q=:query} : search for the providers matching the query.
+     *
+     * @param query the words to search for, which may be incomplete or misspelled.
+     * @param pageable the pagination information; the providers are sorted by relevance.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of providers in body.
+     */
+    @GetMapping("/_search/providers")
+    public ResponseEntity<List<Provider>> searchProviders(@RequestParam("q") String query, Pageable pageable) {
+        log.debug("REST request to search for a page of Providers for query {}", query.replaceAll("[\n\r\t]", "_"));
+        Page<Provider> page = providerQueryService.search(query, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * Run an update with the versions the provider and its hospital must have: those of the {@code If-Match} tag, whose mismatch
+     * is a failed precondition, else the version of the body, whose mismatch is a conflict.
+     */
+    private Provider updateIfVersionsMatch(Long id, String ifMatch, Long bodyVersion, BiFunction<Long, Long, Optional<Provider>> update) {
+        List<Long> tagVersions = ifMatch == null ? Collections.emptyList() : EntityTagUtil.versions(ifMatch);
+        if (tagVersions == null) {
+            // A list of tags is compared with the current versions, which the update then expects
+            EntityVersion current = providerRepository
+                .findVersionById(id)
+                .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+            checkIfMatch(ifMatch, current);
+            tagVersions = Arrays.asList(current.getVersion(), current.getAssociationVersion());
+        }
+        Long version = bodyVersion;
+        Long hospitalVersion = null;
+        if (!tagVersions.isEmpty()) {
+            if (bodyVersion != null && !bodyVersion.equals(tagVersions.get(0))) {
+                // At most one of them is current: the precondition is checked first
+                EntityVersion current = providerRepository
+                    .findVersionById(id)
+                    .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+                checkIfMatch(ifMatch, current);
+                throw new ObjectOptimisticLockingFailureException(Provider.class, id);
+            }
+            version = tagVersions.get(0);
+            hospitalVersion = tagVersions.size() > 1 ? tagVersions.get(1) : null;
+        }
+
+        try {
+            return update
+                .apply(version, hospitalVersion)
+                .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            if (tagVersions.isEmpty()) {
+                throw e;
+            }
+            throw new PreconditionFailedAlertException("The provider was modified", ENTITY_NAME, "preconditionfailed");
+        }
+    }
+
+    private void checkIfMatch(String ifMatch, EntityVersion version) {
+        if (ifMatch != null && !EntityTagUtil.matches(ifMatch, EntityTagUtil.strongTag(version))) {
+            throw new PreconditionFailedAlertException("The provider was modified", ENTITY_NAME, "preconditionfailed");
+        }
+    }
+
+    private static String eTag(Provider provider) {
+        return EntityTagUtil.strongTag(provider.getVersion(), provider.getHospital() == null ? null : provider.getHospital().getVersion());
+    }
+
+    private CountStrategy toCountStrategy(String count) {
+        if (count == null) {
+            return null;
+        }
+        return CountStrategy
+            .of(count)
+            .orElseThrow(() -> new BadRequestAlertException("Invalid count strategy", ENTITY_NAME, "countinvalid"));
+    }
 }
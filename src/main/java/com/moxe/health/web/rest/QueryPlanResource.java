@@ -0,0 +1,74 @@
+package com.moxe.health.web.rest;
+
+import com.moxe.health.service.PatientQueryService;
+import com.moxe.health.service.ProviderQueryService;
+import com.moxe.health.service.criteria.PatientCriteria;
+import com.moxe.health.service.criteria.ProviderCriteria;
+import com.moxe.health.service.dto.QueryPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller reporting how the database runs the criteria queries of the list endpoints, to find the filters and
+ * sorts which need an index.
+ * <p>
+ * Each endpoint takes the same query string as the matching list endpoint, and the {@code analyze} parameter to run the
+ * query and report its actual costs.
+ */
+@RestController
+@RequestMapping("/api/admin/query-plans")
+public class QueryPlanResource {
+
+    private final Logger log = LoggerFactory.getLogger(QueryPlanResource.class);
+
+    private final PatientQueryService patientQueryService;
+
+    private final ProviderQueryService providerQueryService;
+
+    public QueryPlanResource(PatientQueryService patientQueryService, ProviderQueryService providerQueryService) {
+        this.patientQueryService = patientQueryService;
+        this.providerQueryService = providerQueryService;
+    }
+
+    /**
+     * {@code GET  /admin/query-plans/patients} : get the plan of the query of {@code GET /api/patients}.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @param pageable the pagination information.
+     * @param analyze whether the query should be run, to report its actual costs.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the plan in body.
+     */
+    @GetMapping("/patients")
+    public ResponseEntity<QueryPlan> explainPatients(
+        PatientCriteria criteria,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(required = false, defaultValue = "false") boolean analyze
+    ) {
+        log.debug("REST request to explain Patients by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
+        return ResponseEntity.ok().body(patientQueryService.explainByCriteria(criteria, pageable, analyze));
+    }
+
+    /**
+     * {@code GET  /admin/query-plans/providers} : get the plan of the query of {@code GET /api/providers}.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @param pageable the pagination information.
+     * @param analyze whether the query should be run, to report its actual costs.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the plan in body.
+     */
+    @GetMapping("/providers")
+    public ResponseEntity<QueryPlan> explainProviders(
+        ProviderCriteria criteria,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(required = false, defaultValue = "false") boolean analyze
+    ) {
+        log.debug("REST request to explain Providers by criteria: {}", criteria.toString().replaceAll("[\n\r\t]", "_"));
+        return ResponseEntity.ok().body(providerQueryService.explainByCriteria(criteria, pageable, analyze));
+    }
+}
@@ -0,0 +1,49 @@
+package com.moxe.health.web.rest.util;
+
+import com.moxe.health.service.CountStrategy;
+import com.moxe.health.service.dto.CountedPage;
+import com.moxe.health.service.dto.TotalCount;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+import tech.jhipster.web.util.PaginationUtil;
+
+/**
+ * Utility class for handling pagination with a selectable {@link CountStrategy}.
+ * <p>
+ * The headers are those of {@link PaginationUtil}, plus a header naming the strategy used to obtain {@code X-Total-Count},
+ * which may differ from the requested one.
+ */
+public final class CountPaginationUtil {
+
+    public static final String COUNT_PARAMETER = "count";
+
+    public static final String COUNT_STRATEGY_HEADER = "X-Total-Count-Strategy";
+
+    private CountPaginationUtil() {}
+
+    /**
+     * Generate pagination headers for a {@link CountedPage} object.
+     *
+     * @param uriBuilder The URI builder.
+     * @param page The page.
+     * @param <T> The type of object.
+     * @return http header.
+     */
+    public static <T> HttpHeaders generatePaginationHttpHeaders(UriComponentsBuilder uriBuilder, CountedPage<T> page) {
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(uriBuilder, page);
+        headers.add(COUNT_STRATEGY_HEADER, page.getCountStrategy().value());
+        return headers;
+    }
+
+    /**
+     * Generate the headers of a response holding a {@link TotalCount}.
+     *
+     * @param count The count.
+     * @return http header.
+     */
+    public static HttpHeaders generateCountHttpHeaders(TotalCount count) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(COUNT_STRATEGY_HEADER, count.getStrategy().value());
+        return headers;
+    }
+}
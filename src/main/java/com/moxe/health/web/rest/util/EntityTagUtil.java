@@ -0,0 +1,97 @@
+package com.moxe.health.web.rest.util;
+
+import com.moxe.health.repository.EntityVersion;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.springframework.data.domain.Page;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Utility class for generating and comparing the entity tags ({@code ETag}) of the representations of entities.
+ * <p>
+ * The representation of a single entity has a strong tag made of its version and the versions of the entities it embeds,
+ * so that it can be obtained without loading the entity. A page has a weak tag hashed from the tags of its elements and
+ * its total, as its representation also depends on the serialization of the elements.
+ */
+public final class EntityTagUtil {
+
+    private static final Pattern STRONG_TAG = Pattern.compile("\"\\d{1,18}(\\.\\d{1,18})*\"");
+
+    private EntityTagUtil() {}
+
+    /**
+     * Generate the strong entity tag of the representation of an entity.
+     *
+     * @param versions The version of the entity, then the versions of the entities its representation embeds; {@code null}
+     * versions, of absent entities, are skipped.
+     * @return the entity tag, quoted.
+     */
+    public static String strongTag(Long... versions) {
+        return Arrays.stream(versions).filter(Objects::nonNull).map(String::valueOf).collect(Collectors.joining(".", "\"", "\""));
+    }
+
+    /**
+     * Generate the strong entity tag of the representation of an entity from its {@link EntityVersion}.
+     *
+     * @param version The versions the representation depends on.
+     * @return the entity tag, quoted.
+     */
+    public static String strongTag(EntityVersion version) {
+        return strongTag(version.getVersion(), version.getAssociationVersion());
+    }
+
+    /**
+     * Generate the weak entity tag of the representation of a page.
+     *
+     * @param page The page.
+     * @param id The function returning the id of an element.
+     * @param tag The function returning the strong tag of an element.
+     * @param <T> The type of the elements.
+     * @return the entity tag, quoted and prefixed with {@code W/}.
+     */
+    public static <T> String weakTag(Page<T> page, Function<T, Object> id, Function<T, String> tag) {
+        StringBuilder content = new StringBuilder().append(page.getTotalElements());
+        page.forEach(element -> content.append(',').append(id.apply(element)).append('=').append(tag.apply(element)));
+        return "W/\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Whether an {@code If-Match} header matches the current tag of an entity, with the strong comparison: weak tags
+     * never match.
+     *
+     * @param ifMatch The value of the header, {@code *} or a list of entity tags.
+     * @param currentTag The current strong tag of the entity.
+     * @return whether the entity matches.
+     */
+    public static boolean matches(String ifMatch, String currentTag) {
+        if (ifMatch.trim().equals("*")) {
+            return true;
+        }
+        return Arrays.stream(ifMatch.split(",")).map(String::trim).anyMatch(currentTag::equals);
+    }
+
+    /**
+     * Parse the versions out of an {@code If-Match} header holding a single tag generated by {@link #strongTag(Long...)},
+     * so that the database can compare them while updating the entity.
+     *
+     * @param ifMatch The value of the header.
+     * @return the versions, in the order given to {@link #strongTag(Long...)}, an empty list for {@code *}, or {@code null}
+     * if the header holds a list of tags or a tag of another form.
+     */
+    public static List<Long> versions(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.equals("*")) {
+            return Collections.emptyList();
+        }
+        if (!STRONG_TAG.matcher(tag).matches()) {
+            return null;
+        }
+        return Arrays.stream(tag.substring(1, tag.length() - 1).split("\\.")).map(Long::valueOf).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,171 @@
+package com.moxe.health.web.rest.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Writes entities one at a time to the response, as newline delimited JSON or as CSV, optionally gzipped.
+ * <p>
+ * Nothing is buffered beyond the output buffers, so that it can be fed by a streaming query. The CSV cells of text
+ * starting like a formula are prefixed with a quote, so that a spreadsheet opening the export shows them as text.
+ *
+ * @param <T> the type of the exported entities.
+ */
+public abstract class ExportWriter<T> implements Consumer<T>, Closeable {
+
+    /**
+     * Supported export formats.
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public static Optional<Format> of(String format) {
+            return Arrays.stream(values()).filter(value -> value.extension.equalsIgnoreCase(format)).findFirst();
+        }
+    }
+
+    /**
+     * Prepare the response as a file download, and open a writer to it.
+     *
+     * @param response the response to write to.
+     * @param baseName the name of the downloaded file, without extension.
+     * @param format the export format.
+     * @param gzip whether the file should be gzipped.
+     * @param objectMapper the mapper used to serialize the entities as JSON.
+     * @param columns the CSV columns, mapped to their value in an entity.
+     * @param <T> the type of the exported entities.
+     * @return the writer, to be closed once all the entities are written.
+     * @throws IOException if the response cannot be written.
+     */
+    public static <T> ExportWriter<T> open(
+        HttpServletResponse response,
+        String baseName,
+        Format format,
+        boolean gzip,
+        ObjectMapper objectMapper,
+        Map<String, Function<T, ?>> columns
+    ) throws IOException {
+        String fileName = baseName + "." + format.extension + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : format.contentType);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString());
+        OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), 8192) : response.getOutputStream();
+        return format == Format.NDJSON ? new NdjsonWriter<>(out, objectMapper) : new CsvWriter<>(out, columns);
+    }
+
+    private static class NdjsonWriter<T> extends ExportWriter<T> {
+
+        private final ObjectWriter objectWriter;
+
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out, ObjectMapper objectMapper) throws IOException {
+            this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void accept(T entity) {
+            try {
+                objectWriter.writeValue(generator, entity);
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static class CsvWriter<T> extends ExportWriter<T> {
+
+        private static final String LINE_SEPARATOR = "\r\n";
+
+        private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+        private final Writer writer;
+
+        private final Map<String, Function<T, ?>> columns;
+
+        CsvWriter(OutputStream out, Map<String, Function<T, ?>> columns) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.columns = columns;
+            int index = 0;
+            for (String header : columns.keySet()) {
+                writeValue(index++, header);
+            }
+            writer.write(LINE_SEPARATOR);
+        }
+
+        @Override
+        public void accept(T entity) {
+            try {
+                int index = 0;
+                for (Function<T, ?> column : columns.values()) {
+                    writeValue(index++, column.apply(entity));
+                }
+                writer.write(LINE_SEPARATOR);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeValue(int index, Object value) throws IOException {
+            if (index > 0) {
+                writer.write(',');
+            }
+            if (value == null) {
+                return;
+            }
+            String text = value.toString();
+            if (value instanceof CharSequence && !text.isEmpty() && FORMULA_PREFIXES.indexOf(text.charAt(0)) >= 0) {
+                text = "'" + text;
+            }
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+            } else {
+                writer.write('"');
+                writer.write(text.replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.moxe.health.web.session;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+
+/**
+ * A session read from the database for the duration of a request.
+ * <p>
+ * The attributes are kept as the bytes they were read as, and only decoded when they are first got. The attributes set
+ * or removed are dirty, and the only ones the {@link DatabaseSessionRepository} writes, so that the requests of the same
+ * session served at the same time by different nodes do not overwrite each other's attributes. An attribute whose value
+ * is changed in place must therefore be set again, as Spring Security does.
+ */
+public class DatabaseSession implements HttpSession {
+
+    private final String primaryId;
+
+    private final ServletContext servletContext;
+
+    private final SessionAttributeCodec codec;
+
+    private final Runnable onInvalidate;
+
+    private final long creationTime;
+
+    private final boolean isNew;
+
+    private boolean persisted;
+
+    private String id;
+
+    private boolean idChanged;
+
+    private long lastAccessedTime;
+
+    /**
+     * The last access time written to the database.
+     */
+    private long savedLastAccessedTime;
+
+    private int maxInactiveInterval;
+
+    private boolean maxInactiveIntervalChanged;
+
+    private boolean invalid;
+
+    /**
+     * The bytes of the attributes, as read from or written to the database.
+     */
+    private final Map<String, byte[]> savedAttributes;
+
+    /**
+     * The attributes got or set during the request, {@code null} for those removed.
+     */
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    private final Set<String> dirtyAttributes = new HashSet<>();
+
+    DatabaseSession(
+        String primaryId,
+        String id,
+        long creationTime,
+        long lastAccessedTime,
+        int maxInactiveInterval,
+        Map<String, byte[]> savedAttributes,
+        boolean isNew,
+        ServletContext servletContext,
+        SessionAttributeCodec codec,
+        Runnable onInvalidate
+    ) {
+        this.primaryId = primaryId;
+        this.id = id;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.savedLastAccessedTime = lastAccessedTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.savedAttributes = savedAttributes;
+        this.isNew = isNew;
+        this.persisted = !isNew;
+        this.servletContext = servletContext;
+        this.codec = codec;
+        this.onInvalidate = onInvalidate;
+    }
+
+    /**
+     * Create a session, which is not in the database until it is saved.
+     */
+    static DatabaseSession create(
+        long now,
+        int maxInactiveInterval,
+        ServletContext servletContext,
+        SessionAttributeCodec codec,
+        Runnable onInvalidate
+    ) {
+        return new DatabaseSession(
+            UUID.randomUUID().toString(),
+            UUID.randomUUID().toString(),
+            now,
+            now,
+            maxInactiveInterval,
+            new HashMap<>(),
+            true,
+            servletContext,
+            codec,
+            onInvalidate
+        );
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        if (interval != maxInactiveInterval) {
+            maxInactiveInterval = interval;
+            maxInactiveIntervalChanged = true;
+        }
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    @Deprecated
+    public javax.servlet.http.HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        if (attributes.containsKey(name)) {
+            return attributes.get(name);
+        }
+        byte[] bytes = savedAttributes.get(name);
+        Object value = bytes == null ? null : codec.decode(bytes);
+        attributes.put(name, value);
+        return value;
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        Set<String> names = new LinkedHashSet<>(savedAttributes.keySet());
+        attributes.forEach((name, value) -> {
+            if (value == null) {
+                names.remove(name);
+            } else {
+                names.add(name);
+            }
+        });
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        return Collections.list(getAttributeNames()).toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        attributes.put(name, value);
+        dirtyAttributes.add(name);
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        setAttribute(name, null);
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalid = true;
+        onInvalidate.run();
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+
+    private void checkValid() {
+        if (invalid) {
+            throw new IllegalStateException("The session " + id + " was invalidated");
+        }
+    }
+
+    boolean isInvalid() {
+        return invalid;
+    }
+
+    String getPrimaryId() {
+        return primaryId;
+    }
+
+    /**
+     * Give the session a new id, against session fixation, keeping its attributes.
+     */
+    void changeId() {
+        id = UUID.randomUUID().toString();
+        idChanged = true;
+    }
+
+    void access(long now) {
+        lastAccessedTime = now;
+    }
+
+    /**
+     * Whether the session itself, rather than its attributes, must be written.
+     *
+     * @param touchInterval the time after which the last access is written, in milliseconds.
+     */
+    boolean needsSaving(long touchInterval) {
+        return !persisted || idChanged || maxInactiveIntervalChanged || lastAccessedTime - savedLastAccessedTime >= touchInterval;
+    }
+
+    boolean isPersisted() {
+        return persisted;
+    }
+
+    Map<String, byte[]> getSavedAttributes() {
+        return savedAttributes;
+    }
+
+    Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    Set<String> getDirtyAttributes() {
+        return dirtyAttributes;
+    }
+
+    SessionAttributeCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Mark the session as written, its saved attributes being up to date.
+     */
+    void saved() {
+        persisted = true;
+        idChanged = false;
+        maxInactiveIntervalChanged = false;
+        savedLastAccessedTime = lastAccessedTime;
+        dirtyAttributes.clear();
+    }
+
+    /**
+     * The time after which the session expires, in milliseconds since the epoch.
+     */
+    long expiryTime() {
+        return maxInactiveInterval <= 0 ? Long.MAX_VALUE : lastAccessedTime + maxInactiveInterval * 1000L;
+    }
+}
@@ -0,0 +1,229 @@
+package com.moxe.health.web.session;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.servlet.http.HttpSession;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Replaces the HTTP sessions of the servlet container by those of the {@link DatabaseSessionRepository}, identified by a
+ * cookie.
+ * <p>
+ * The session is only read when the request first asks for it, and only if the client sent its cookie, so that the
+ * requests without a session do not reach the database. Its changes are written at the end of the request, or before
+ * the response is committed by a redirect, an error or a flush, so that the next request of the client finds them on
+ * any node. A response whose body exceeds the buffer of the container is committed before the session is written.
+ */
+public class DatabaseSessionFilter extends OncePerRequestFilter {
+
+    /**
+     * The name of the cookie, unless {@code server.servlet.session.cookie.name} is set.
+     */
+    public static final String DEFAULT_COOKIE_NAME = "SESSION";
+
+    private final DatabaseSessionRepository repository;
+
+    private final String cookieName;
+
+    private final boolean cookieHttpOnly;
+
+    private final Boolean cookieSecure;
+
+    private final Timer readTimer;
+
+    private final Timer writeTimer;
+
+    /**
+     * @param cookieName the name of the session cookie, {@link #DEFAULT_COOKIE_NAME} if {@code null}.
+     * @param cookieHttpOnly whether the session cookie is hidden from the scripts.
+     * @param cookieSecure whether the session cookie is only sent over HTTPS, as the request if {@code null}.
+     */
+    public DatabaseSessionFilter(
+        DatabaseSessionRepository repository,
+        String cookieName,
+        boolean cookieHttpOnly,
+        Boolean cookieSecure,
+        MeterRegistry meterRegistry
+    ) {
+        this.repository = repository;
+        this.cookieName = StringUtils.hasText(cookieName) ? cookieName : DEFAULT_COOKIE_NAME;
+        this.cookieHttpOnly = cookieHttpOnly;
+        this.cookieSecure = cookieSecure;
+        this.readTimer = Timer.builder("http.session.read").description("Reads of the session of a request").register(meterRegistry);
+        this.writeTimer =
+            Timer.builder("http.session.write").description("Writes of the changes of the session of a request").register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        SessionRequest sessionRequest = new SessionRequest(request, response);
+        try {
+            filterChain.doFilter(sessionRequest, new SessionResponse(response, sessionRequest));
+        } finally {
+            sessionRequest.save();
+        }
+    }
+
+    private String requestedSessionId(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (cookieName.equals(cookie.getName()) && StringUtils.hasText(cookie.getValue())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeCookie(HttpServletRequest request, HttpServletResponse response, String value, int maxAge) {
+        Cookie cookie = new Cookie(cookieName, value);
+        cookie.setPath(StringUtils.hasLength(request.getContextPath()) ? request.getContextPath() : "/");
+        cookie.setHttpOnly(cookieHttpOnly);
+        cookie.setSecure(cookieSecure != null ? cookieSecure : request.isSecure());
+        cookie.setMaxAge(maxAge);
+        response.addCookie(cookie);
+    }
+
+    private final class SessionRequest extends HttpServletRequestWrapper {
+
+        private final HttpServletResponse response;
+
+        private final String requestedSessionId;
+
+        private boolean requestedSessionRead;
+
+        private boolean requestedSessionFound;
+
+        private DatabaseSession session;
+
+        private SessionRequest(HttpServletRequest request, HttpServletResponse response) {
+            super(request);
+            this.response = response;
+            this.requestedSessionId = requestedSessionId(request);
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if (!requestedSessionRead) {
+                requestedSessionRead = true;
+                if (requestedSessionId != null) {
+                    session = readTimer.record(() -> repository.findById(requestedSessionId, getServletContext(), this::invalidated));
+                    requestedSessionFound = session != null;
+                }
+            }
+            if (session != null && !session.isInvalid()) {
+                return session;
+            }
+            if (!create) {
+                return null;
+            }
+            session = repository.create(getServletContext(), this::invalidated);
+            writeCookie(this, response, session.getId(), -1);
+            return session;
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public String changeSessionId() {
+            if (getSession(false) == null) {
+                throw new IllegalStateException("There is no session to change the id of");
+            }
+            session.changeId();
+            writeCookie(this, response, session.getId(), -1);
+            return session.getId();
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            return requestedSessionId;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            getSession(false);
+            return requestedSessionFound && !session.isInvalid();
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromCookie() {
+            return requestedSessionId != null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromURL() {
+            return false;
+        }
+
+        @Override
+        @Deprecated
+        public boolean isRequestedSessionIdFromUrl() {
+            return false;
+        }
+
+        private void invalidated() {
+            repository.delete(session);
+            writeCookie(this, response, "", 0);
+        }
+
+        /**
+         * Write the changes of the session, which may happen more than once per request.
+         */
+        private void save() {
+            if (session != null && !session.isInvalid()) {
+                writeTimer.record(() -> repository.save(session));
+            }
+        }
+    }
+
+    /**
+     * Writes the session before the response is committed, as the client may send its next request as soon as it is.
+     */
+    private static final class SessionResponse extends HttpServletResponseWrapper {
+
+        private final SessionRequest request;
+
+        private SessionResponse(HttpServletResponse response, SessionRequest request) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            request.save();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            request.save();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            request.save();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            request.save();
+            super.flushBuffer();
+        }
+    }
+}
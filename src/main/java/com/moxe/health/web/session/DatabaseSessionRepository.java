@@ -0,0 +1,334 @@
+package com.moxe.health.web.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.servlet.ServletContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Stores the HTTP sessions in the {@code http_session} and {@code http_session_attribute} tables, so that any node can
+ * serve the requests of any session.
+ * <p>
+ * A session and its attributes are read with a single statement. A session is written when it is created, when its id
+ * or timeout changes, and when its last access is older than the touch interval, rather than on every request: it may
+ * therefore expire up to that interval before its timeout. Only its dirty attributes are written, and only if their
+ * bytes changed. The expired sessions are deleted in batches, by any node.
+ */
+public class DatabaseSessionRepository {
+
+    private static final String SELECT =
+        "select s.primary_id, s.session_id, s.creation_time, s.last_access_time, s.max_inactive_interval, s.expiry_time," +
+        " a.attribute_name, a.attribute_bytes" +
+        " from http_session s left join http_session_attribute a on a.session_primary_id = s.primary_id" +
+        " where s.session_id = ?";
+
+    private static final String INSERT_SESSION =
+        "insert into http_session (primary_id, session_id, creation_time, last_access_time, max_inactive_interval, expiry_time)" +
+        " values (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SESSION =
+        "update http_session set session_id = ?, last_access_time = ?, max_inactive_interval = ?, expiry_time = ? where primary_id = ?";
+
+    private static final String DELETE_SESSION = "delete from http_session where primary_id = ?";
+
+    private static final String SELECT_EXPIRED = "select primary_id from http_session where expiry_time < ?";
+
+    private static final String INSERT_ATTRIBUTE =
+        "insert into http_session_attribute (session_primary_id, attribute_name, attribute_bytes) values (?, ?, ?)";
+
+    private static final String UPDATE_ATTRIBUTE =
+        "update http_session_attribute set attribute_bytes = ? where session_primary_id = ? and attribute_name = ?";
+
+    private static final String DELETE_ATTRIBUTE = "delete from http_session_attribute where session_primary_id = ? and attribute_name = ?";
+
+    private final Logger log = LoggerFactory.getLogger(DatabaseSessionRepository.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Reading at most a batch of expired sessions.
+     */
+    private final JdbcTemplate cleanupJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final SessionAttributeCodec codec;
+
+    private final Duration timeout;
+
+    private final long touchInterval;
+
+    private final int cleanupBatchSize;
+
+    private final Clock clock;
+
+    private final DistributionSummary writtenBytes;
+
+    private final Counter expired;
+
+    /**
+     * @param timeout the time after which the sessions expire when they are not accessed.
+     * @param touchInterval the time after which the last access of a session is written.
+     * @param cleanupBatchSize the number of expired sessions deleted by each statement.
+     */
+    public DatabaseSessionRepository(
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        SessionAttributeCodec codec,
+        Duration timeout,
+        Duration touchInterval,
+        int cleanupBatchSize,
+        MeterRegistry meterRegistry,
+        Clock clock
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cleanupJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cleanupJdbcTemplate.setMaxRows(cleanupBatchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.codec = codec;
+        this.timeout = timeout;
+        this.touchInterval = touchInterval.toMillis();
+        this.cleanupBatchSize = cleanupBatchSize;
+        this.clock = clock;
+        this.writtenBytes =
+            DistributionSummary
+                .builder("http.session.attributes.written")
+                .description("Bytes of the session attributes written by a request")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.expired = Counter.builder("http.session.expired").description("Expired sessions deleted").register(meterRegistry);
+    }
+
+    /**
+     * Create a session, written when it is saved.
+     *
+     * @param servletContext the context of the application.
+     * @param onInvalidate called when the session is invalidated.
+     * @return the session.
+     */
+    public DatabaseSession create(ServletContext servletContext, Runnable onInvalidate) {
+        return DatabaseSession.create(clock.millis(), (int) timeout.getSeconds(), servletContext, codec, onInvalidate);
+    }
+
+    /**
+     * Read a session, and record its access.
+     *
+     * @param id the id of the session, as sent by the client.
+     * @param servletContext the context of the application.
+     * @param onInvalidate called when the session is invalidated.
+     * @return the session, or {@code null} if it does not exist or expired.
+     */
+    public DatabaseSession findById(String id, ServletContext servletContext, Runnable onInvalidate) {
+        long now = clock.millis();
+        List<DatabaseSession> sessions = new ArrayList<>(1);
+        Map<String, byte[]> attributes = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status ->
+            jdbcTemplate.query(
+                SELECT,
+                row -> {
+                    if (sessions.isEmpty()) {
+                        if (row.getLong("expiry_time") <= now) {
+                            return;
+                        }
+                        sessions.add(
+                            new DatabaseSession(
+                                row.getString("primary_id"),
+                                row.getString("session_id"),
+                                row.getLong("creation_time"),
+                                row.getLong("last_access_time"),
+                                row.getInt("max_inactive_interval"),
+                                attributes,
+                                false,
+                                servletContext,
+                                codec,
+                                onInvalidate
+                            )
+                        );
+                    }
+                    String name = row.getString("attribute_name");
+                    if (name != null) {
+                        attributes.put(name, row.getBytes("attribute_bytes"));
+                    }
+                },
+                id
+            )
+        );
+        if (sessions.isEmpty()) {
+            return null;
+        }
+        DatabaseSession session = sessions.get(0);
+        session.access(now);
+        return session;
+    }
+
+    /**
+     * Write the changes of a session: the session itself if needed, and its dirty attributes.
+     *
+     * @param session the session.
+     */
+    public void save(DatabaseSession session) {
+        if (session.isInvalid()) {
+            return;
+        }
+        Map<String, byte[]> changed = new HashMap<>();
+        List<String> removed = new ArrayList<>();
+        for (String name : session.getDirtyAttributes()) {
+            Object value = session.getAttributes().get(name);
+            byte[] saved = session.getSavedAttributes().get(name);
+            if (value == null) {
+                if (saved != null) {
+                    removed.add(name);
+                }
+            } else {
+                byte[] bytes = session.getCodec().encode(value);
+                if (!Arrays.equals(bytes, saved)) {
+                    changed.put(name, bytes);
+                }
+            }
+        }
+        boolean sessionChanged = session.needsSaving(touchInterval);
+        if (!sessionChanged && changed.isEmpty() && removed.isEmpty()) {
+            session.saved();
+            return;
+        }
+
+        Boolean written;
+        try {
+            written = transactionTemplate.execute(status -> write(session, sessionChanged, changed, removed));
+        } catch (DataIntegrityViolationException e) {
+            written = false;
+        }
+        if (!Boolean.TRUE.equals(written)) {
+            // Invalidated or expired on another node since it was read, in which case it stays deleted
+            log.debug("The session {} was deleted before it was saved", session.getId());
+            return;
+        }
+        changed.forEach(session.getSavedAttributes()::put);
+        removed.forEach(session.getSavedAttributes()::remove);
+        writtenBytes.record(changed.values().stream().mapToInt(bytes -> bytes.length).sum());
+        session.saved();
+    }
+
+    /**
+     * @return whether the session was written, rather than deleted since it was read.
+     */
+    private boolean write(DatabaseSession session, boolean sessionChanged, Map<String, byte[]> changed, List<String> removed) {
+        String primaryId = session.getPrimaryId();
+        if (!session.isPersisted()) {
+            jdbcTemplate.update(
+                INSERT_SESSION,
+                primaryId,
+                session.getId(),
+                session.getCreationTime(),
+                session.getLastAccessedTime(),
+                session.getMaxInactiveInterval(),
+                session.expiryTime()
+            );
+            if (!changed.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_ATTRIBUTE, attributeRows(primaryId, changed, true));
+            }
+            return true;
+        }
+
+        if (sessionChanged) {
+            int updated = jdbcTemplate.update(
+                UPDATE_SESSION,
+                session.getId(),
+                session.getLastAccessedTime(),
+                session.getMaxInactiveInterval(),
+                session.expiryTime(),
+                primaryId
+            );
+            if (updated == 0) {
+                return false;
+            }
+        }
+        if (!removed.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                DELETE_ATTRIBUTE,
+                removed.stream().map(name -> new Object[] { primaryId, name }).collect(Collectors.toList())
+            );
+        }
+        if (!changed.isEmpty()) {
+            // Inserted when not updated, as another node may have removed or added them since they were read
+            List<Object[]> rows = attributeRows(primaryId, changed, false);
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_ATTRIBUTE, rows);
+            Map<String, byte[]> inserted = new HashMap<>();
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    String name = (String) rows.get(i)[2];
+                    inserted.put(name, changed.get(name));
+                }
+            }
+            if (!inserted.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_ATTRIBUTE, attributeRows(primaryId, inserted, true));
+            }
+        }
+        return true;
+    }
+
+    private static List<Object[]> attributeRows(String primaryId, Map<String, byte[]> attributes, boolean insert) {
+        List<Object[]> rows = new ArrayList<>(attributes.size());
+        attributes.forEach((name, bytes) ->
+            rows.add(insert ? new Object[] { primaryId, name, bytes } : new Object[] { bytes, primaryId, name })
+        );
+        return rows;
+    }
+
+    /**
+     * Delete a session and its attributes.
+     *
+     * @param session the session.
+     */
+    public void delete(DatabaseSession session) {
+        if (session.isPersisted()) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(DELETE_SESSION, session.getPrimaryId()));
+        }
+    }
+
+    /**
+     * Delete the expired sessions, by batches of the cleanup batch size, each in its own transaction to hold its locks
+     * briefly.
+     *
+     * @return the number of sessions deleted.
+     */
+    public int deleteExpired() {
+        long now = clock.millis();
+        int deleted = 0;
+        while (true) {
+            List<String> primaryIds = transactionTemplate.execute(status -> {
+                List<String> expiredIds = cleanupJdbcTemplate.queryForList(SELECT_EXPIRED, String.class, now);
+                if (!expiredIds.isEmpty()) {
+                    jdbcTemplate.batchUpdate(
+                        DELETE_SESSION,
+                        expiredIds.stream().map(primaryId -> new Object[] { primaryId }).collect(Collectors.toList())
+                    );
+                }
+                return expiredIds;
+            });
+            deleted += primaryIds.size();
+            if (primaryIds.size() < cleanupBatchSize) {
+                break;
+            }
+        }
+        expired.increment(deleted);
+        log.debug("Deleted {} expired sessions", deleted);
+        return deleted;
+    }
+}
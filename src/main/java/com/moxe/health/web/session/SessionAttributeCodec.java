@@ -0,0 +1,486 @@
+package com.moxe.health.web.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.oidc.IdTokenClaimNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.OidcUserInfo;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Encodes the attributes of the sessions stored in the database.
+ * <p>
+ * The two attributes of the OAuth2 login, the security context holding the {@link DefaultOidcUser} and the
+ * {@link OAuth2AuthorizedClient}s, are written field by field: the Java serialization of their object graphs is several
+ * times larger, and breaks when a new version of Spring Security changes their classes, logging every user out on
+ * deploy. The client registration is written as its id and looked up when read, so that neither its secret nor its
+ * endpoints are stored. The other attributes, and the login ones holding types the compact encoding does not know,
+ * are serialized.
+ */
+public class SessionAttributeCodec {
+
+    private static final byte JAVA_SERIALIZATION = 0;
+
+    private static final byte OIDC_SECURITY_CONTEXT = 1;
+
+    private static final byte AUTHORIZED_CLIENTS = 2;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte INSTANT = 6;
+    private static final byte URL = 7;
+    private static final byte LIST = 8;
+    private static final byte MAP = 9;
+
+    private static final byte SIMPLE_AUTHORITY = 0;
+    private static final byte OIDC_USER_AUTHORITY = 1;
+
+    private final Logger log = LoggerFactory.getLogger(SessionAttributeCodec.class);
+
+    private final ClientRegistrationRepository clientRegistrationRepository;
+
+    /**
+     * @param clientRegistrationRepository the registrations of the authorized clients, looked up by id when read.
+     */
+    public SessionAttributeCodec(ClientRegistrationRepository clientRegistrationRepository) {
+        this.clientRegistrationRepository = clientRegistrationRepository;
+    }
+
+    /**
+     * Encode an attribute.
+     *
+     * @param value the value of the attribute.
+     * @return its bytes.
+     * @throws IllegalArgumentException if the value is neither known to the compact encoding nor serializable.
+     */
+    public byte[] encode(Object value) {
+        try {
+            if (isOidcSecurityContext(value)) {
+                return write(OIDC_SECURITY_CONTEXT, out -> writeSecurityContext(out, (SecurityContextImpl) value));
+            }
+            if (isAuthorizedClients(value)) {
+                return write(AUTHORIZED_CLIENTS, out -> writeAuthorizedClients(out, (Map<?, ?>) value));
+            }
+        } catch (UnsupportedValueException e) {
+            log.debug("Serializing the session attribute {}: {}", value.getClass().getName(), e.getMessage());
+        }
+        if (!(value instanceof Serializable)) {
+            throw new IllegalArgumentException("The session attribute " + value.getClass().getName() + " is not serializable");
+        }
+        return write(
+            JAVA_SERIALIZATION,
+            out -> {
+                ObjectOutputStream objectOut = new ObjectOutputStream(out);
+                objectOut.writeObject(value);
+                objectOut.flush();
+            }
+        );
+    }
+
+    /**
+     * Decode an attribute.
+     *
+     * @param bytes the bytes of the attribute.
+     * @return its value, or {@code null} if it cannot be read by this version of the application.
+     */
+    public Object decode(byte[] bytes) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+        try {
+            switch (bytes[0]) {
+                case OIDC_SECURITY_CONTEXT:
+                    return readSecurityContext(in);
+                case AUTHORIZED_CLIENTS:
+                    return readAuthorizedClients(in);
+                case JAVA_SERIALIZATION:
+                    try (ObjectInputStream objectIn = new ConfigurableObjectInputStream(in, ClassUtils.getDefaultClassLoader())) {
+                        return objectIn.readObject();
+                    }
+                default:
+                    log.warn("Skipping a session attribute of unknown format {}", bytes[0]);
+                    return null;
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            // Written by another version of the application, as if the attribute had not been set
+            log.warn("Skipping a session attribute which cannot be read: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static boolean isOidcSecurityContext(Object value) {
+        return (
+            value != null &&
+            value.getClass() == SecurityContextImpl.class &&
+            ((SecurityContextImpl) value).getAuthentication() != null &&
+            ((SecurityContextImpl) value).getAuthentication().getClass() == OAuth2AuthenticationToken.class &&
+            ((SecurityContextImpl) value).getAuthentication().getPrincipal().getClass() == DefaultOidcUser.class
+        );
+    }
+
+    private static boolean isAuthorizedClients(Object value) {
+        return (
+            value instanceof Map &&
+            !((Map<?, ?>) value).isEmpty() &&
+            ((Map<?, ?>) value).values().stream().allMatch(client -> client != null && client.getClass() == OAuth2AuthorizedClient.class)
+        );
+    }
+
+    private static byte[] write(byte format, Encoder encoder) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        bytes.write(format);
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            encoder.encode(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeSecurityContext(DataOutputStream out, SecurityContextImpl context) throws IOException {
+        OAuth2AuthenticationToken authentication = (OAuth2AuthenticationToken) context.getAuthentication();
+        DefaultOidcUser user = (DefaultOidcUser) authentication.getPrincipal();
+        writeString(out, authentication.getAuthorizedClientRegistrationId());
+        writeAuthorities(out, authentication.getAuthorities(), user);
+        Object details = authentication.getDetails();
+        if (details == null) {
+            out.writeBoolean(false);
+        } else if (details.getClass() == WebAuthenticationDetails.class) {
+            out.writeBoolean(true);
+            writeString(out, ((WebAuthenticationDetails) details).getRemoteAddress());
+            writeString(out, ((WebAuthenticationDetails) details).getSessionId());
+        } else {
+            throw new UnsupportedValueException("details " + details.getClass().getName());
+        }
+
+        writeString(out, nameAttributeKey(user));
+        OidcIdToken idToken = user.getIdToken();
+        writeString(out, idToken.getTokenValue());
+        writeInstant(out, idToken.getIssuedAt());
+        writeInstant(out, idToken.getExpiresAt());
+        writeValue(out, idToken.getClaims());
+        writeValue(out, user.getUserInfo() == null ? null : user.getUserInfo().getClaims());
+        writeAuthorities(out, user.getAuthorities(), user);
+    }
+
+    private static SecurityContextImpl readSecurityContext(DataInputStream in) throws IOException {
+        String registrationId = readString(in);
+        List<GrantedAuthority> authorities = readAuthorities(in, null, null);
+        WebAuthenticationDetails details = in.readBoolean() ? new WebAuthenticationDetails(readString(in), readString(in)) : null;
+
+        String nameAttributeKey = readString(in);
+        OidcIdToken idToken = new OidcIdToken(readString(in), readInstant(in), readInstant(in), readClaims(in));
+        Map<String, Object> userInfoClaims = readClaims(in);
+        OidcUserInfo userInfo = userInfoClaims == null ? null : new OidcUserInfo(userInfoClaims);
+        DefaultOidcUser user = new DefaultOidcUser(readAuthorities(in, idToken, userInfo), idToken, userInfo, nameAttributeKey);
+
+        OAuth2AuthenticationToken authentication = new OAuth2AuthenticationToken(user, authorities, registrationId);
+        authentication.setDetails(details);
+        return new SecurityContextImpl(authentication);
+    }
+
+    /**
+     * A key of the attributes of the user holding its name, which is all the key is used for.
+     */
+    private static String nameAttributeKey(DefaultOidcUser user) {
+        Map<String, Object> attributes = user.getAttributes();
+        if (attributes.get(IdTokenClaimNames.SUB) != null && user.getName().equals(attributes.get(IdTokenClaimNames.SUB).toString())) {
+            return IdTokenClaimNames.SUB;
+        }
+        return attributes
+            .entrySet()
+            .stream()
+            .filter(attribute -> attribute.getValue() != null && user.getName().equals(attribute.getValue().toString()))
+            .map(Map.Entry::getKey)
+            .findFirst()
+            .orElseThrow(() -> new UnsupportedValueException("no attribute holds the name of the user"));
+    }
+
+    /**
+     * Write the authorities, those of the OIDC user holding the tokens of the user itself.
+     */
+    private static void writeAuthorities(DataOutputStream out, Collection<? extends GrantedAuthority> authorities, DefaultOidcUser user)
+        throws IOException {
+        out.writeInt(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            if (authority.getClass() == SimpleGrantedAuthority.class) {
+                out.writeByte(SIMPLE_AUTHORITY);
+            } else if (
+                authority.getClass() == OidcUserAuthority.class &&
+                ((OidcUserAuthority) authority).getIdToken().equals(user.getIdToken()) &&
+                Objects.equals(((OidcUserAuthority) authority).getUserInfo(), user.getUserInfo())
+            ) {
+                out.writeByte(OIDC_USER_AUTHORITY);
+            } else {
+                throw new UnsupportedValueException("authority " + authority.getClass().getName());
+            }
+            writeString(out, authority.getAuthority());
+        }
+    }
+
+    private static List<GrantedAuthority> readAuthorities(DataInputStream in, OidcIdToken idToken, OidcUserInfo userInfo)
+        throws IOException {
+        int size = in.readInt();
+        List<GrantedAuthority> authorities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            byte kind = in.readByte();
+            String authority = readString(in);
+            authorities.add(
+                kind == OIDC_USER_AUTHORITY ? new OidcUserAuthority(authority, idToken, userInfo) : new SimpleGrantedAuthority(authority)
+            );
+        }
+        return authorities;
+    }
+
+    private static void writeAuthorizedClients(DataOutputStream out, Map<?, ?> authorizedClients) throws IOException {
+        out.writeInt(authorizedClients.size());
+        for (Map.Entry<?, ?> entry : authorizedClients.entrySet()) {
+            OAuth2AuthorizedClient authorizedClient = (OAuth2AuthorizedClient) entry.getValue();
+            String registrationId = authorizedClient.getClientRegistration().getRegistrationId();
+            if (!registrationId.equals(entry.getKey())) {
+                throw new UnsupportedValueException("authorized client not keyed by its registration");
+            }
+            writeString(out, registrationId);
+            writeString(out, authorizedClient.getPrincipalName());
+
+            OAuth2AccessToken accessToken = authorizedClient.getAccessToken();
+            if (!OAuth2AccessToken.TokenType.BEARER.equals(accessToken.getTokenType())) {
+                throw new UnsupportedValueException("token type " + accessToken.getTokenType().getValue());
+            }
+            writeString(out, accessToken.getTokenValue());
+            writeInstant(out, accessToken.getIssuedAt());
+            writeInstant(out, accessToken.getExpiresAt());
+            out.writeInt(accessToken.getScopes().size());
+            for (String scope : accessToken.getScopes()) {
+                writeString(out, scope);
+            }
+
+            OAuth2RefreshToken refreshToken = authorizedClient.getRefreshToken();
+            out.writeBoolean(refreshToken != null);
+            if (refreshToken != null) {
+                writeString(out, refreshToken.getTokenValue());
+                writeInstant(out, refreshToken.getIssuedAt());
+                writeInstant(out, refreshToken.getExpiresAt());
+            }
+        }
+    }
+
+    private Map<String, OAuth2AuthorizedClient> readAuthorizedClients(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        // Mutable, as the repository of the authorized clients adds to the map it reads
+        Map<String, OAuth2AuthorizedClient> authorizedClients = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String registrationId = readString(in);
+            String principalName = readString(in);
+            String tokenValue = readString(in);
+            Instant issuedAt = readInstant(in);
+            Instant expiresAt = readInstant(in);
+            int scopeCount = in.readInt();
+            Set<String> scopes = new LinkedHashSet<>(scopeCount);
+            for (int j = 0; j < scopeCount; j++) {
+                scopes.add(readString(in));
+            }
+            OAuth2AccessToken accessToken = new OAuth2AccessToken(
+                OAuth2AccessToken.TokenType.BEARER,
+                tokenValue,
+                issuedAt,
+                expiresAt,
+                scopes
+            );
+            OAuth2RefreshToken refreshToken = null;
+            if (in.readBoolean()) {
+                refreshToken = new OAuth2RefreshToken(readString(in), readInstant(in), readInstant(in));
+            }
+
+            ClientRegistration clientRegistration = clientRegistrationRepository.findByRegistrationId(registrationId);
+            if (clientRegistration == null) {
+                log.debug("Skipping the authorized client of the removed registration {}", registrationId);
+                continue;
+            }
+            authorizedClients.put(registrationId, new OAuth2AuthorizedClient(clientRegistration, principalName, accessToken, refreshToken));
+        }
+        return authorizedClients;
+    }
+
+    /**
+     * Write a value of the claims, which are parsed from JSON then converted to a few other types.
+     */
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Instant) {
+            out.writeByte(INSTANT);
+            writeInstant(out, (Instant) value);
+        } else if (value instanceof URL) {
+            out.writeByte(URL);
+            writeString(out, value.toString());
+        } else if (value instanceof List) {
+            out.writeByte(LIST);
+            out.writeInt(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            out.writeByte(MAP);
+            out.writeInt(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!(entry.getKey() instanceof String)) {
+                    throw new UnsupportedValueException("claim key " + entry.getKey());
+                }
+                writeString(out, (String) entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            throw new UnsupportedValueException("claim " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case BOOLEAN:
+                return in.readBoolean();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case INSTANT:
+                return readInstant(in);
+            case URL:
+                return new URL(readString(in));
+            case LIST:
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case MAP:
+                int entries = in.readInt();
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < entries; i++) {
+                    map.put(readString(in), readValue(in));
+                }
+                return map;
+            default:
+                throw new IOException("Unknown claim type " + type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readClaims(DataInputStream in) throws IOException {
+        return (Map<String, Object>) readValue(in);
+    }
+
+    /**
+     * Write a string as its length, -1 if it is null, and UTF-8 bytes, as tokens may exceed the 64 KB of the modified
+     * UTF-8 of {@link DataOutputStream#writeUTF(String)}.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant instant) throws IOException {
+        out.writeBoolean(instant != null);
+        if (instant != null) {
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+        void encode(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Thrown when a login attribute holds a type the compact encoding does not know, to serialize it instead.
+     */
+    private static class UnsupportedValueException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedValueException(String message) {
+            super(message);
+        }
+    }
+}
@@ -16,7 +16,11 @@ import org.springframework.test.annotation.DirtiesContext;
  */
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
-@SpringBootTest(classes = { MoxeApp.class, AsyncSyncConfiguration.class, TestSecurityConfiguration.class })
+@SpringBootTest(
+    classes = { MoxeApp.class, AsyncSyncConfiguration.class, TestSecurityConfiguration.class },
+    // Counts the statements, which the resource tests hold to their baselines
+    properties = "application.statement-telemetry.enabled=true"
+)
 @EmbeddedSQL
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
 public @interface IntegrationTest {
@@ -0,0 +1,92 @@
+package com.moxe.health.aop.timing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.data.repository.Repository;
+
+/**
+ * Measures the time the {@link MethodTimingAspect} adds to each call of a repository method, against the same proxy with
+ * timing turned off, and checks it stays within {@value #BUDGET_NANOS} ns.
+ * <p>
+ * Run with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MethodTimingAspectBenchmarkTest {
+
+    private static final int CALLS = 2_000_000;
+
+    private static final long BUDGET_NANOS = 250;
+
+    private final Logger log = LoggerFactory.getLogger(MethodTimingAspectBenchmarkTest.class);
+
+    private final MethodTimingAspect methodTimingAspect = new MethodTimingAspect(true, 1);
+
+    private BenchmarkRepository repository;
+
+    @BeforeEach
+    void init() {
+        methodTimingAspect.bindTo(new SimpleMeterRegistry());
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new BenchmarkRepositoryImpl());
+        proxyFactory.addInterface(BenchmarkRepository.class);
+        proxyFactory.addAspect(methodTimingAspect);
+        repository = proxyFactory.getProxy();
+    }
+
+    @Test
+    void timingOverheadIsWithinBudget() {
+        // Warm up both paths
+        for (int i = 0; i < 5; i++) {
+            call(false, CALLS / 10);
+            call(true, CALLS / 10);
+        }
+
+        long untimed = call(false, CALLS);
+        long timed = call(true, CALLS);
+        long sampled = callSampled(0.1, CALLS);
+        log.info("Per call: untimed {} ns, timed {} ns, sampled at 10% {} ns", untimed / CALLS, timed / CALLS, sampled / CALLS);
+
+        assertThat((timed - untimed) / CALLS).isLessThan(BUDGET_NANOS);
+    }
+
+    private long call(boolean enabled, int calls) {
+        methodTimingAspect.setEnabled(enabled);
+        methodTimingAspect.setSampleRate(1);
+        return measure(calls);
+    }
+
+    private long callSampled(double sampleRate, int calls) {
+        methodTimingAspect.setEnabled(true);
+        methodTimingAspect.setSampleRate(sampleRate);
+        return measure(calls);
+    }
+
+    private long measure(int calls) {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sum += repository.next(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(sum).isNotZero();
+        return elapsed;
+    }
+
+    interface BenchmarkRepository extends Repository<Object, Long> {
+        long next(long value);
+    }
+
+    static class BenchmarkRepositoryImpl implements BenchmarkRepository {
+
+        @Override
+        public long next(long value) {
+            return value + 1;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.moxe.health.aop.timing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.repository.HospitalRepository;
+import com.moxe.health.security.AuthoritiesConstants;
+import com.moxe.health.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration tests for the {@link MethodTimingAspect} and its {@link MethodTimingEndpoint}.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+@TestPropertySource(
+    properties = {
+        "management.endpoints.web.base-path=/management",
+        "management.endpoints.web.exposure.include=" + MethodTimingEndpoint.ID,
+    }
+)
+class MethodTimingIT {
+
+    @Autowired
+    private HospitalRepository hospitalRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MethodTimingAspect methodTimingAspect;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc restMockMvc;
+
+    @AfterEach
+    public void reset() {
+        methodTimingAspect.setEnabled(true);
+        methodTimingAspect.setSampleRate(1);
+    }
+
+    @Test
+    void repositoryAndServiceMethodsAreTimed() {
+        long repositoryCalls = count("HospitalRepository", "count");
+        long serviceCalls = count("UserService", "getAuthorities");
+
+        hospitalRepository.count();
+        userService.getAuthorities();
+
+        assertThat(count("HospitalRepository", "count")).isEqualTo(repositoryCalls + 1);
+        assertThat(count("UserService", "getAuthorities")).isEqualTo(serviceCalls + 1);
+    }
+
+    @Test
+    void timingIsSwitchedOffThroughTheEndpoint() throws Exception {
+        restMockMvc
+            .perform(get("/management/methodtiming"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.enabled").value(true))
+            .andExpect(jsonPath("$.sampleRate").value(1.0));
+
+        restMockMvc
+            .perform(post("/management/methodtiming").with(csrf()).contentType(MediaType.APPLICATION_JSON).content("{\"enabled\":false}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.enabled").value(false));
+        long repositoryCalls = count("HospitalRepository", "count");
+        hospitalRepository.count();
+
+        assertThat(methodTimingAspect.isEnabled()).isFalse();
+        assertThat(count("HospitalRepository", "count")).isEqualTo(repositoryCalls);
+    }
+
+    private long count(String className, String method) {
+        Timer timer = meterRegistry.find(MethodTimingAspect.METRIC_NAME).tag("class", className).tag("method", method).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
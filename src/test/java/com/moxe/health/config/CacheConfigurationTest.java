@@ -0,0 +1,124 @@
+package com.moxe.health.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.moxe.health.domain.Patient;
+import com.moxe.health.domain.Provider;
+import java.time.Duration;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Unit tests for the per-region settings of the {@link CacheConfiguration}.
+ */
+class CacheConfigurationTest {
+
+    private static final String PATIENT_CACHE = Patient.class.getName();
+
+    private static final String PROVIDER_PATIENTS_CACHE = Provider.class.getName() + ".patients";
+
+    private JHipsterProperties jHipsterProperties;
+
+    private ApplicationProperties applicationProperties;
+
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    public void setup() {
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getCache().getEhcache().setMaxEntries(100);
+        jHipsterProperties.getCache().getEhcache().setTimeToLiveSeconds(3600);
+        applicationProperties = new ApplicationProperties();
+        // Closed after each test, so that each test gets a new one
+        cacheManager = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider").getCacheManager();
+    }
+
+    @AfterEach
+    public void teardown() {
+        cacheManager.close();
+    }
+
+    @Test
+    void regionsWithoutSettingsKeepTheDefaults() {
+        customize();
+
+        ResourcePools resourcePools = runtimeConfiguration(PATIENT_CACHE).getResourcePools();
+        assertThat(resourcePools.getPoolForResource(ResourceType.Core.HEAP).getSize()).isEqualTo(100);
+        assertThat(resourcePools.getPoolForResource(ResourceType.Core.HEAP).getUnit()).isEqualTo(EntryUnit.ENTRIES);
+        assertThat(resourcePools.getPoolForResource(ResourceType.Core.OFFHEAP)).isNull();
+        assertThat(runtimeConfiguration(PATIENT_CACHE).getExpiryPolicy().getExpiryForCreation(1L, "value"))
+            .isEqualTo(Duration.ofSeconds(3600));
+    }
+
+    @Test
+    void regionsHaveTheirOwnTiersAndExpiry() {
+        ApplicationProperties.Cache.Region patients = region(PATIENT_CACHE);
+        patients.setMaxEntries(2L);
+        patients.setOffHeapSize(DataSize.ofMegabytes(2));
+        patients.setTimeToLiveSeconds(600);
+        patients.setTimeToIdleSeconds(60);
+        ApplicationProperties.Cache.Region providerPatients = region(PROVIDER_PATIENTS_CACHE);
+        providerPatients.setMaxHeapSize(DataSize.ofKilobytes(512));
+        customize();
+
+        CacheRuntimeConfiguration<Object, Object> patientConfiguration = runtimeConfiguration(PATIENT_CACHE);
+        assertThat(patientConfiguration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize()).isEqualTo(2);
+        assertThat(patientConfiguration.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP).getSize())
+            .isEqualTo(2L * 1024 * 1024);
+        assertThat(patientConfiguration.getExpiryPolicy().getExpiryForCreation(1L, "value")).isEqualTo(Duration.ofSeconds(600));
+        assertThat(patientConfiguration.getExpiryPolicy().getExpiryForAccess(1L, () -> "value")).isEqualTo(Duration.ofSeconds(60));
+
+        CacheRuntimeConfiguration<Object, Object> providerPatientsConfiguration = runtimeConfiguration(PROVIDER_PATIENTS_CACHE);
+        assertThat(providerPatientsConfiguration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getUnit())
+            .isEqualTo(MemoryUnit.B);
+
+        // The entries evicted from the heap are kept off-heap
+        Cache<Object, Object> cache = cacheManager.getCache(PATIENT_CACHE);
+        for (long id = 0; id < 10; id++) {
+            cache.put(id, "patient-" + id);
+        }
+        for (long id = 0; id < 10; id++) {
+            assertThat(cache.get(id)).isEqualTo("patient-" + id);
+        }
+    }
+
+    @Test
+    void regionsMustBeCaches() {
+        region("com.moxe.health.domain.Unknown");
+        assertThatThrownBy(this::customize).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unknown");
+    }
+
+    @Test
+    void regionsHaveASingleHeapLimit() {
+        region(PATIENT_CACHE).setMaxEntries(10L);
+        region(PATIENT_CACHE).setMaxHeapSize(DataSize.ofMegabytes(1));
+        assertThatThrownBy(this::customize).isInstanceOf(IllegalArgumentException.class).hasMessageContaining(PATIENT_CACHE);
+    }
+
+    private ApplicationProperties.Cache.Region region(String cacheName) {
+        return applicationProperties.getCache().getRegions().computeIfAbsent(cacheName, name -> new ApplicationProperties.Cache.Region());
+    }
+
+    private void customize() {
+        new CacheConfiguration(jHipsterProperties, applicationProperties).cacheManagerCustomizer().customize(cacheManager);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheRuntimeConfiguration<Object, Object> runtimeConfiguration(String cacheName) {
+        Eh107Configuration<Object, Object> configuration = cacheManager.getCache(cacheName).getConfiguration(Eh107Configuration.class);
+        return configuration.unwrap(CacheRuntimeConfiguration.class);
+    }
+}
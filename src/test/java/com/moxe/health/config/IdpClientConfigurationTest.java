@@ -0,0 +1,164 @@
+package com.moxe.health.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.security.SecurityUtils;
+import com.moxe.health.security.oauth2.CircuitBreaker;
+import com.moxe.health.security.oauth2.CustomClaimConverter;
+import com.moxe.health.security.oauth2.UserInfoCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Tests for the userinfo calls through the {@link IdpClientConfiguration} client, against a stub provider.
+ */
+class IdpClientConfigurationTest {
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private volatile int status = 200;
+
+    private volatile long delayMillis;
+
+    private HttpServer server;
+
+    private CloseableHttpClient httpClient;
+
+    private CircuitBreaker circuitBreaker;
+
+    private CustomClaimConverter customClaimConverter;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/userinfo", this::userInfo);
+        server.start();
+
+        ApplicationProperties.IdpClient idpClient = applicationProperties.getIdpClient();
+        idpClient.setReadTimeoutMillis(200);
+        idpClient.setCircuitBreakerFailureThreshold(2);
+        httpClient = IdpClientConfiguration.createHttpClient(idpClient, meterRegistry);
+        circuitBreaker = IdpClientConfiguration.userInfoCircuitBreaker(applicationProperties);
+        customClaimConverter =
+            new CustomClaimConverter(
+                ClientRegistration
+                    .withRegistrationId("oidc")
+                    .clientId("web_app")
+                    .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                    .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+                    .authorizationUri("http://localhost/auth")
+                    .tokenUri("http://localhost/token")
+                    .userInfoUri("http://localhost:" + server.getAddress().getPort() + "/userinfo")
+                    .build(),
+                new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient)),
+                new UserInfoCache(100, Duration.ofMinutes(15), Duration.ofMinutes(5), Runnable::run),
+                circuitBreaker
+            );
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer token");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        RequestContextHolder.resetRequestAttributes();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void connectionsArePooledAndMeasured() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(customClaimConverter.convert(Map.of("sub", "user-" + i))).containsEntry("given_name", "John");
+        }
+
+        assertThat(requests).hasValue(3);
+        assertThat(meterRegistry.get("httpcomponents.httpclient.request").tag("client", "idp").tag("uri", "/userinfo").timer().count())
+            .isEqualTo(3);
+        // Kept alive between the calls
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.connections").tag("state", "available").gauge().value())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void slowUserInfoFallsBackToTheTokenClaims() {
+        delayMillis = 1000;
+
+        long start = System.nanoTime();
+        Map<String, Object> claims = customClaimConverter.convert(Map.of("sub", "user", "preferred_username", "token-user"));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(900));
+        assertThat(claims)
+            .containsEntry("preferred_username", "token-user")
+            .containsEntry(SecurityUtils.USER_INFO_UNAVAILABLE_CLAIM, true)
+            .doesNotContainKey("given_name");
+    }
+
+    @Test
+    void failingUserInfoOpensTheCircuit() {
+        status = 503;
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(customClaimConverter.convert(Map.of("sub", "user-" + i)))
+                .containsOnlyKeys("sub", SecurityUtils.USER_INFO_UNAVAILABLE_CLAIM);
+        }
+
+        assertThat(requests).hasValue(2);
+        assertThat(circuitBreaker.isOpen()).isTrue();
+    }
+
+    @Test
+    void rejectedTokensDoNotOpenTheCircuit() {
+        status = 401;
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(customClaimConverter.convert(Map.of("sub", "user-" + i)))
+                .containsOnlyKeys("sub", SecurityUtils.USER_INFO_UNAVAILABLE_CLAIM);
+        }
+
+        assertThat(requests).hasValue(4);
+        assertThat(circuitBreaker.isOpen()).isFalse();
+    }
+
+    private void userInfo(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = "{\"preferred_username\":\"user\",\"given_name\":\"John\",\"family_name\":\"Doe\"}".getBytes(
+                StandardCharsets.UTF_8
+            );
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.moxe.health.repository.jdbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link StatementTelemetry}, through an {@link InstrumentedDataSource} over an in-memory database.
+ */
+class StatementTelemetryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final StatementTelemetry telemetry = new StatementTelemetry(Duration.ofSeconds(1), 2);
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        JdbcDataSource target = new JdbcDataSource();
+        target.setURL("jdbc:h2:mem:statement-telemetry;DB_CLOSE_DELAY=-1");
+        telemetry.bindTo(meterRegistry);
+        connection = new InstrumentedDataSource(target, telemetry).getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table patient (id bigint primary key, name varchar(50))");
+            statement.executeUpdate("insert into patient values (1, 'Jane'), (2, 'John'), (3, 'Joan')");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table patient");
+        }
+        connection.close();
+    }
+
+    @Test
+    void statementsAndRowsAreCountedInTheScope() throws SQLException {
+        try (StatementScope scope = StatementScope.open()) {
+            StatementScope.tagShape(() -> "Patient(name.contains)");
+            try (PreparedStatement statement = connection.prepareStatement("select id from patient where name like ?")) {
+                statement.setString(1, "J%");
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        assertThat(resultSet.getLong(1)).isPositive();
+                    }
+                }
+            }
+
+            assertThat(scope.getStatements()).isEqualTo(1);
+            assertThat(scope.getRows()).isEqualTo(3);
+            assertThat(scope.getNanos()).isPositive();
+        }
+
+        assertThat(StatementScope.current()).isNull();
+        assertThat(count("select", "Patient(name.contains)")).isEqualTo(1);
+        assertThat(count("insert", "none")).isEqualTo(1);
+    }
+
+    @Test
+    void nestedScopesAddToTheEnclosingOne() throws SQLException {
+        try (StatementScope outer = StatementScope.open()) {
+            try (StatementScope inner = StatementScope.open(); Statement statement = connection.createStatement()) {
+                statement.executeUpdate("update patient set name = 'Jim' where id = 1");
+                assertThat(inner.getStatements("update")).isEqualTo(1);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.executeQuery("select name from patient").close();
+            }
+
+            assertThat(StatementScope.current()).isSameAs(outer);
+            assertThat(outer.getStatements()).isEqualTo(2);
+            assertThat(outer.getStatements("update")).isEqualTo(1);
+            assertThat(outer.getStatements("select")).isEqualTo(1);
+            assertThat(outer.getStatements("delete")).isZero();
+        }
+    }
+
+    @Test
+    void shapesBeyondTheMaximumShareATag() throws SQLException {
+        for (String shape : new String[] { "Patient(id.equals)", "Patient(name.equals)", "Patient(sex.equals)" }) {
+            try (StatementScope scope = StatementScope.open(); Statement statement = connection.createStatement()) {
+                StatementScope.tagShape(() -> shape);
+                statement.executeQuery("select count(*) from patient").close();
+            }
+        }
+
+        assertThat(meterRegistry.find(StatementTelemetry.METRIC_NAME).tag("shape", "Patient(sex.equals)").timer()).isNull();
+        assertThat(count("select", "other")).isEqualTo(1);
+    }
+
+    @Test
+    void literalsAreMasked() {
+        assertThat(StatementTelemetry.mask("select * from patient p1 where p1.name = 'O''Brien' and p1.provider_id = 42 limit 20"))
+            .isEqualTo("select * from patient p1 where p1.name = ? and p1.provider_id = ? limit ?");
+    }
+
+    private long count(String statement, String shape) {
+        return meterRegistry.get(StatementTelemetry.METRIC_NAME).tag("statement", statement).tag("shape", shape).timer().count();
+    }
+}
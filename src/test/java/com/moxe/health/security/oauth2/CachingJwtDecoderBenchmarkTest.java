@@ -0,0 +1,105 @@
+package com.moxe.health.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+/**
+ * Compares the latency of decoding an access token sent again, with and without the {@link CachingJwtDecoder}, in front of
+ * a decoder verifying an RS256 signature, the issuer and the audience, as the one of {@code SecurityConfiguration}.
+ * <p>
+ * Run with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CachingJwtDecoderBenchmarkTest {
+
+    private static final int DECODES = 20_000;
+
+    private static final String ISSUER = "http://localhost:9080/realms/jhipster";
+
+    private static final String AUDIENCE = "account";
+
+    private final Logger log = LoggerFactory.getLogger(CachingJwtDecoderBenchmarkTest.class);
+
+    private NimbusJwtDecoder jwtDecoder;
+
+    private String token;
+
+    @BeforeEach
+    void init() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("benchmark").generate();
+        jwtDecoder = NimbusJwtDecoder.withPublicKey(key.toRSAPublicKey()).build();
+        jwtDecoder.setJwtValidator(
+            new DelegatingOAuth2TokenValidator<>(JwtValidators.createDefaultWithIssuer(ISSUER), new AudienceValidator(List.of(AUDIENCE)))
+        );
+
+        SignedJWT jwt = new SignedJWT(
+            new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+            new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .audience(AUDIENCE)
+                .subject("benchmark")
+                .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(1))))
+                .build()
+        );
+        jwt.sign(new RSASSASigner(key));
+        token = jwt.serialize();
+    }
+
+    @Test
+    void cachedDecodeIsFaster() {
+        CachingJwtDecoder cachingJwtDecoder = new CachingJwtDecoder(jwtDecoder, 10_000, Duration.ofSeconds(30), Duration.ofMinutes(5));
+
+        // Warm up both paths
+        decode(jwtDecoder, 2000);
+        decode(cachingJwtDecoder, 2000);
+
+        long[] uncached = decode(jwtDecoder, DECODES);
+        long[] cached = decode(cachingJwtDecoder, DECODES);
+        log.info(
+            "Uncached: p50 {} ns, p99 {} ns; cached: p50 {} ns, p99 {} ns",
+            percentile(uncached, 50),
+            percentile(uncached, 99),
+            percentile(cached, 50),
+            percentile(cached, 99)
+        );
+
+        assertThat(percentile(cached, 50)).isLessThan(percentile(uncached, 50));
+    }
+
+    private long[] decode(JwtDecoder decoder, int decodes) {
+        long[] latencies = new long[decodes];
+        for (int i = 0; i < decodes; i++) {
+            long start = System.nanoTime();
+            decoder.decode(token);
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] latencies, int percentile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+}
@@ -0,0 +1,157 @@
+package com.moxe.health.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Unit tests for {@link CachingJwtDecoder}.
+ */
+class CachingJwtDecoderTest {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final TestClock clock = new TestClock();
+
+    private final Map<String, Instant> expiries = new HashMap<>();
+
+    private final AtomicInteger decodes = new AtomicInteger();
+
+    private CachingJwtDecoder cachingJwtDecoder;
+
+    @BeforeEach
+    public void setup() {
+        cachingJwtDecoder =
+            new CachingJwtDecoder(
+                token -> {
+                    decodes.incrementAndGet();
+                    if (!expiries.containsKey(token)) {
+                        throw new BadJwtException("Invalid token");
+                    }
+                    Jwt.Builder jwt = Jwt.withTokenValue(token).header("alg", "RS256").subject("user");
+                    if (expiries.get(token) != null) {
+                        jwt.expiresAt(expiries.get(token));
+                    }
+                    return jwt.build();
+                },
+                2,
+                Duration.ofSeconds(30),
+                Duration.ofMinutes(5),
+                clock
+            );
+    }
+
+    @Test
+    void tokenIsDecodedOnceUntilMaxTimeToLive() {
+        expiries.put("a", START.plus(Duration.ofHours(1)));
+
+        Jwt jwt = cachingJwtDecoder.decode("a");
+        assertThat(cachingJwtDecoder.decode("a")).isSameAs(jwt);
+        assertThat(decodes).hasValue(1);
+
+        clock.advance(Duration.ofMinutes(5));
+        assertThat(cachingJwtDecoder.decode("a")).isNotSameAs(jwt);
+        assertThat(decodes).hasValue(2);
+    }
+
+    @Test
+    void tokenIsDecodedAgainOnceExpired() {
+        expiries.put("a", START.plus(Duration.ofMinutes(1)));
+        cachingJwtDecoder.decode("a");
+        cachingJwtDecoder.decode("a");
+        assertThat(decodes).hasValue(1);
+
+        clock.advance(Duration.ofMinutes(1));
+        cachingJwtDecoder.decode("a");
+        assertThat(decodes).hasValue(2);
+    }
+
+    @Test
+    void tokensNearExpiryOrWithoutExpiryAreNotCached() {
+        expiries.put("a", START.plus(Duration.ofSeconds(20)));
+        expiries.put("b", null);
+
+        cachingJwtDecoder.decode("a");
+        cachingJwtDecoder.decode("a");
+        cachingJwtDecoder.decode("b");
+        cachingJwtDecoder.decode("b");
+        assertThat(decodes).hasValue(4);
+        assertThat(cachingJwtDecoder.size()).isZero();
+    }
+
+    @Test
+    void rejectedTokensAreNotCached() {
+        assertThatThrownBy(() -> cachingJwtDecoder.decode("forged")).isInstanceOf(BadJwtException.class);
+        assertThatThrownBy(() -> cachingJwtDecoder.decode("forged")).isInstanceOf(BadJwtException.class);
+        assertThat(decodes).hasValue(2);
+    }
+
+    @Test
+    void leastRecentlyUsedTokenIsEvicted() {
+        for (String token : new String[] { "a", "b", "c" }) {
+            expiries.put(token, START.plus(Duration.ofHours(1)));
+        }
+        cachingJwtDecoder.decode("a");
+        cachingJwtDecoder.decode("b");
+        cachingJwtDecoder.decode("a");
+        cachingJwtDecoder.decode("c");
+        assertThat(cachingJwtDecoder.size()).isEqualTo(2);
+
+        cachingJwtDecoder.decode("a");
+        assertThat(decodes).hasValue(3);
+        cachingJwtDecoder.decode("b");
+        assertThat(decodes).hasValue(4);
+    }
+
+    @Test
+    void statisticsArePublishedAsMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cachingJwtDecoder.bindTo(registry);
+        expiries.put("a", START.plus(Duration.ofHours(1)));
+        cachingJwtDecoder.decode("a");
+        cachingJwtDecoder.decode("a");
+
+        assertThat(registry.get("cache.gets").tag("cache", CachingJwtDecoder.NAME).tag("result", "hit").functionCounter().count())
+            .isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", CachingJwtDecoder.NAME).tag("result", "miss").functionCounter().count())
+            .isEqualTo(1);
+        assertThat(registry.get("cache.size").tag("cache", CachingJwtDecoder.NAME).gauge().value()).isEqualTo(1);
+    }
+
+    private static class TestClock extends Clock {
+
+        private Instant now = START;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.moxe.health.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link CircuitBreaker}.
+ */
+class CircuitBreakerTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    public void setup() {
+        circuitBreaker =
+            new CircuitBreaker("test", 3, Duration.ofSeconds(30), e -> !(e instanceof IllegalArgumentException), ticker::get);
+        circuitBreaker.bindTo(meterRegistry);
+    }
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail();
+        fail();
+        assertThat(succeed()).isEqualTo(3);
+        fail();
+        fail();
+        assertThat(circuitBreaker.isOpen()).isFalse();
+        fail();
+
+        assertThat(circuitBreaker.isOpen()).isTrue();
+        assertThatThrownBy(this::succeed).isInstanceOf(CircuitBreaker.OpenException.class);
+        assertThat(calls).hasValue(6);
+        assertThat(meterRegistry.get("circuit.breaker.calls").tag("result", "rejected").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("circuit.breaker.open").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void triesASingleCallOnceTheOpenDurationElapsed() {
+        fail();
+        fail();
+        fail();
+        ticker.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        fail();
+        assertThat(circuitBreaker.isOpen()).isTrue();
+        assertThatThrownBy(this::succeed).isInstanceOf(CircuitBreaker.OpenException.class);
+
+        ticker.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertThat(succeed()).isEqualTo(5);
+        assertThat(circuitBreaker.isOpen()).isFalse();
+        assertThat(meterRegistry.get("circuit.breaker.open").gauge().value()).isZero();
+    }
+
+    @Test
+    void rejectedCallsAreNoFailures() {
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() ->
+                    circuitBreaker.call(() -> {
+                        throw new IllegalArgumentException("Invalid token");
+                    })
+                )
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        assertThat(circuitBreaker.isOpen()).isFalse();
+    }
+
+    private int succeed() {
+        return circuitBreaker.call(calls::incrementAndGet);
+    }
+
+    private void fail() {
+        assertThatThrownBy(() ->
+                circuitBreaker.call(() -> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException("Unavailable");
+                })
+            )
+            .isInstanceOf(IllegalStateException.class);
+    }
+}
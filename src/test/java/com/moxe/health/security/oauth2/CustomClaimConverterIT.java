@@ -11,6 +11,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.moxe.health.IntegrationTest;
 import com.moxe.health.security.AuthoritiesConstants;
 import com.moxe.health.security.SecurityUtils;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -47,7 +48,13 @@ class CustomClaimConverterIT {
 
     @BeforeEach
     public void initTest() {
-        customClaimConverter = new CustomClaimConverter(clientRegistrationRepository.findByRegistrationId("oidc"), restTemplate);
+        customClaimConverter =
+            new CustomClaimConverter(
+                clientRegistrationRepository.findByRegistrationId("oidc"),
+                restTemplate,
+                new UserInfoCache(100, Duration.ofMinutes(15), Duration.ofMinutes(5), Runnable::run),
+                new CircuitBreaker("userinfo", 5, Duration.ofSeconds(30), e -> true)
+            );
     }
 
     private void mockHttpGetUserInfo(ObjectNode userInfo) {
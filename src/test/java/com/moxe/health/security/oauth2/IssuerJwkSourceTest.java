@@ -0,0 +1,213 @@
+package com.moxe.health.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Unit tests for {@link IssuerJwkSource}, against a stub issuer.
+ */
+class IssuerJwkSourceTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer server;
+
+    private String issuer;
+
+    private volatile RSAKey key;
+
+    private volatile boolean down;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        key = newKey("key-1");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        issuer = "http://localhost:" + server.getAddress().getPort() + "/realms/test";
+        server.createContext(
+            "/realms/test/.well-known/openid-configuration",
+            exchange -> respond(exchange, "{\"issuer\":\"" + issuer + "\",\"jwks_uri\":\"" + issuer + "/certs\"}")
+        );
+        server.createContext("/realms/test/certs", exchange -> respond(exchange, new JWKSet(key).toString()));
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void startsFromTheSavedMetadataWithoutCallingTheIssuer() throws Exception {
+        source().refresh();
+        int fetches = requests.get();
+        down = true;
+
+        IssuerJwkSource restarted = source();
+
+        assertThat(restarted.jwtDecoder().decode(token(key)).getSubject()).isEqualTo("user");
+        assertThat(requests).hasValue(fetches);
+        assertThat(restarted.staleness()).isLessThan(Duration.ofMinutes(1));
+    }
+
+    @Test
+    void unknownKeyRefreshesTheJwkSetOnce() throws Exception {
+        IssuerJwkSource source = source();
+        source.refresh();
+        RSAKey previousKey = key;
+        key = newKey("key-2");
+        int fetches = requests.get();
+
+        assertThat(source.jwtDecoder().decode(token(key)).getSubject()).isEqualTo("user");
+        assertThat(requests).hasValue(fetches + 2);
+        assertThat(Files.readString(directory.resolve("oidc-metadata.json"))).contains("key-2");
+
+        // Rotated away by the issuer, and refreshed too recently to be looked for again
+        assertThatThrownBy(() -> source.jwtDecoder().decode(token(previousKey))).isInstanceOf(JwtException.class);
+        assertThat(requests).hasValue(fetches + 2);
+        assertThat(meterRegistry.get("oidc.metadata.unknown.keys").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void failedRefreshKeepsTheKeys() throws Exception {
+        IssuerJwkSource source = source();
+        source.refresh();
+        down = true;
+
+        assertThatThrownBy(source::refresh).isInstanceOf(RuntimeException.class);
+
+        assertThat(source.jwtDecoder().decode(token(key)).getSubject()).isEqualTo("user");
+        assertThat(meterRegistry.get("oidc.metadata.refresh").tag("outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("oidc.metadata.refresh").tag("outcome", "failure").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("oidc.metadata.staleness").gauge().value()).isLessThan(60);
+    }
+
+    @Test
+    void unreachableIssuerDoesNotFailTheStartup() throws Exception {
+        down = true;
+
+        IssuerJwkSource source = source();
+        source.start();
+        try {
+            assertThatThrownBy(() -> source.jwtDecoder().decode(token(key))).isInstanceOf(JwtException.class);
+        } finally {
+            source.stop();
+        }
+        assertThat(Files.exists(directory.resolve("oidc-metadata.json"))).isFalse();
+    }
+
+    @Test
+    void savesTheMetadataAccessibleByTheOwnerOnly() throws Exception {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path metadataFile = directory.resolve("moxe").resolve("oidc-metadata.json");
+
+        source(metadataFile).refresh();
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(metadataFile.getParent()))).isEqualTo("rwx------");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(metadataFile))).isEqualTo("rw-------");
+    }
+
+    @Test
+    void ignoresTheMetadataAccessibleByOthers() throws Exception {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        source().refresh();
+        Files.setPosixFilePermissions(directory.resolve("oidc-metadata.json"), PosixFilePermissions.fromString("rw-rw-rw-"));
+        down = true;
+
+        IssuerJwkSource restarted = source();
+
+        assertThatThrownBy(() -> restarted.jwtDecoder().decode(token(key))).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void withoutMetadataFileKeepsTheMetadataInMemory() throws Exception {
+        IssuerJwkSource source = source(null);
+        source.refresh();
+
+        assertThat(source.jwtDecoder().decode(token(key)).getSubject()).isEqualTo("user");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private IssuerJwkSource source() {
+        return source(directory.resolve("oidc-metadata.json"));
+    }
+
+    private IssuerJwkSource source(Path metadataFile) {
+        return new IssuerJwkSource(
+            issuer,
+            metadataFile,
+            new RestTemplate(),
+            Duration.ofMinutes(5),
+            Duration.ofSeconds(30),
+            meterRegistry
+        );
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        requests.incrementAndGet();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(down ? 500 : 200, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+    private String token(RSAKey signingKey) throws JOSEException {
+        Instant now = Instant.now();
+        SignedJWT jwt = new SignedJWT(
+            new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(),
+            new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .subject("user")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(300)))
+                .build()
+        );
+        jwt.sign(new RSASSASigner(signingKey));
+        return jwt.serialize();
+    }
+
+    private static RSAKey newKey(String keyId) throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID(keyId).generate();
+    }
+}
@@ -0,0 +1,159 @@
+package com.moxe.health.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link UserInfoCache}.
+ */
+class UserInfoCacheTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final List<Runnable> refreshes = new ArrayList<>();
+
+    private UserInfoCache userInfoCache;
+
+    @BeforeEach
+    public void setup() {
+        userInfoCache = new UserInfoCache(2, Duration.ofMinutes(15), Duration.ofMinutes(5), refreshes::add, now::get);
+    }
+
+    @Test
+    void userIsLoadedOnce() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThat(userInfoCache.get("1", counting(calls, "alice")).get("name").asText()).isEqualTo("alice");
+        assertThat(userInfoCache.get("1", counting(calls, "alice")).get("name").asText()).isEqualTo("alice");
+        assertThat(calls).hasValue(1);
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    void staleUserIsReturnedWhileRefreshedOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        userInfoCache.get("1", counting(calls, "alice"));
+        now.addAndGet(Duration.ofMinutes(6).toNanos());
+
+        assertThat(userInfoCache.get("1", counting(calls, "alicia")).get("name").asText()).isEqualTo("alice");
+        assertThat(userInfoCache.get("1", counting(calls, "alicia")).get("name").asText()).isEqualTo("alice");
+        assertThat(refreshes).hasSize(1);
+        assertThat(calls).hasValue(1);
+
+        refreshes.get(0).run();
+        assertThat(userInfoCache.get("1", counting(calls, "alicia")).get("name").asText()).isEqualTo("alicia");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void failedRefreshKeepsUserUntilExpired() {
+        userInfoCache.get("1", () -> user("alice"));
+        now.addAndGet(Duration.ofMinutes(6).toNanos());
+        userInfoCache.get("1", failing());
+        refreshes.get(0).run();
+
+        assertThat(userInfoCache.get("1", () -> user("alicia")).get("name").asText()).isEqualTo("alice");
+
+        now.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertThatThrownBy(() -> userInfoCache.get("1", failing())).isInstanceOf(IllegalStateException.class);
+        assertThat(userInfoCache.get("1", () -> user("alicia")).get("name").asText()).isEqualTo("alicia");
+    }
+
+    @Test
+    void leastRecentlyUsedUserIsEvicted() {
+        AtomicInteger calls = new AtomicInteger();
+        userInfoCache.get("1", counting(calls, "alice"));
+        userInfoCache.get("2", counting(calls, "bob"));
+        userInfoCache.get("1", counting(calls, "alice"));
+        userInfoCache.get("3", counting(calls, "carol"));
+
+        assertThat(userInfoCache.size()).isEqualTo(2);
+        userInfoCache.get("1", counting(calls, "alice"));
+        assertThat(calls).hasValue(3);
+        userInfoCache.get("2", counting(calls, "bob"));
+        assertThat(calls).hasValue(4);
+    }
+
+    @Test
+    void concurrentLoadsOfUserAreCoalescedWithoutBlockingOthers() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<ObjectNode> slowLoader = () -> {
+            calls.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return user("alice");
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ObjectNode> first = executor.submit(() -> userInfoCache.get("1", slowLoader));
+            assertThat(loading.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<ObjectNode> second = executor.submit(() -> userInfoCache.get("1", slowLoader));
+
+            assertThat(userInfoCache.get("2", () -> user("bob")).get("name").asText()).isEqualTo("bob");
+            release.countDown();
+            assertThat(first.get(10, TimeUnit.SECONDS).get("name").asText()).isEqualTo("alice");
+            assertThat(second.get(10, TimeUnit.SECONDS).get("name").asText()).isEqualTo("alice");
+            assertThat(calls).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void statisticsArePublishedAsMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        userInfoCache.bindTo(registry);
+        userInfoCache.get("1", () -> user("alice"));
+        userInfoCache.get("1", () -> user("alice"));
+        assertThatThrownBy(() -> userInfoCache.get("2", failing())).isInstanceOf(IllegalStateException.class);
+
+        assertThat(registry.get("cache.gets").tag("cache", UserInfoCache.NAME).tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", UserInfoCache.NAME).tag("result", "miss").functionCounter().count())
+            .isEqualTo(2);
+        assertThat(registry.get("cache.size").tag("cache", UserInfoCache.NAME).gauge().value()).isEqualTo(1);
+        assertThat(registry.get("cache.load").tag("result", "failure").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.load.duration").tag("cache", UserInfoCache.NAME).functionTimer().count()).isEqualTo(2);
+    }
+
+    private Supplier<ObjectNode> counting(AtomicInteger calls, String name) {
+        return () -> {
+            calls.incrementAndGet();
+            return user(name);
+        };
+    }
+
+    private Supplier<ObjectNode> failing() {
+        return () -> {
+            throw new IllegalStateException("Userinfo endpoint unavailable");
+        };
+    }
+
+    private ObjectNode user(String name) {
+        return mapper.createObjectNode().put("name", name);
+    }
+}
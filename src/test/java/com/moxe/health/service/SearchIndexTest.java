@@ -0,0 +1,71 @@
+package com.moxe.health.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.domain.Provider;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link SearchIndex}.
+ */
+class SearchIndexTest {
+
+    private SearchIndex<Provider> searchIndex;
+
+    @BeforeEach
+    public void init() {
+        searchIndex = new SearchIndex<>(Provider::getId, List.of(Provider::getName, Provider::getSpecialty));
+        searchIndex.put(provider(1L, "Hélène Dupont", "Cardiology"));
+        searchIndex.put(provider(2L, "Helen Duponte", "Pediatric cardiology"));
+        searchIndex.put(provider(3L, "Marc Durand", "Dermatology"));
+    }
+
+    @Test
+    void analyzeFoldsCaseAndAccents() {
+        assertThat(SearchIndex.analyze("  Hélène O'Brien-Çelik ")).containsExactly("helene", "o", "brien", "celik");
+        assertThat(SearchIndex.analyze(null)).isEmpty();
+    }
+
+    @Test
+    void searchRanksExactMatchesFirst() {
+        assertThat(searchIndex.search("HELENE")).containsExactly(1L, 2L);
+        assertThat(searchIndex.search("cardiology")).containsExactly(1L, 2L);
+        assertThat(searchIndex.search("pediatric cardiology")).containsExactly(2L);
+    }
+
+    @Test
+    void searchMatchesPrefixes() {
+        assertThat(searchIndex.search("du")).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(searchIndex.search("derm")).containsExactly(3L);
+    }
+
+    @Test
+    void searchMatchesTypos() {
+        assertThat(searchIndex.search("durnad")).containsExactly(3L);
+        assertThat(searchIndex.search("dermatolgy")).containsExactly(3L);
+        // The first letter must be right, and short words must be exact
+        assertThat(searchIndex.search("lurand")).isEmpty();
+        assertThat(searchIndex.search("xo")).isEmpty();
+    }
+
+    @Test
+    void searchFollowsWritesAndRebuilds() {
+        searchIndex.put(provider(3L, "Marc Durand", "Neurology"));
+        searchIndex.remove(1L);
+        assertThat(searchIndex.search("dermatology")).isEmpty();
+        assertThat(searchIndex.search("neurology")).containsExactly(3L);
+        assertThat(searchIndex.search("helene")).containsExactly(2L);
+
+        searchIndex.rebuild(action -> action.accept(provider(4L, "Anna Weber", "Oncology")));
+        assertThat(searchIndex.search("helene")).isEmpty();
+        assertThat(searchIndex.search("oncology")).containsExactly(4L);
+    }
+
+    private static Provider provider(Long id, String name, String specialty) {
+        Provider provider = new Provider().name(name).specialty(specialty);
+        provider.setId(id);
+        return provider;
+    }
+}
@@ -0,0 +1,107 @@
+package com.moxe.health.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.moxe.health.domain.Authority;
+import com.moxe.health.domain.User;
+import com.moxe.health.repository.AuthorityRepository;
+import com.moxe.health.repository.UserRepository;
+import com.moxe.health.security.AuthoritiesConstants;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Unit tests for the synchronization of the users with the IdP by {@link UserService}.
+ */
+class UserServiceTest {
+
+    private UserRepository userRepository;
+
+    private AuthorityRepository authorityRepository;
+
+    private UserService userService;
+
+    private Map<String, Object> userDetails;
+
+    @BeforeEach
+    public void setup() {
+        userRepository = mock(UserRepository.class);
+        authorityRepository = mock(AuthorityRepository.class);
+        when(userRepository.findOneByLogin(any())).thenReturn(Optional.empty());
+        when(authorityRepository.findAll()).thenReturn(List.of(authority(AuthoritiesConstants.USER)));
+        userService =
+            new UserService(userRepository, authorityRepository, new ConcurrentMapCacheManager(), mock(PlatformTransactionManager.class));
+
+        userDetails = new HashMap<>();
+        userDetails.put("sub", "johndoe");
+        userDetails.put("email", "johndoe@localhost");
+        userDetails.put("given_name", "john");
+        userDetails.put("family_name", "doe");
+    }
+
+    @Test
+    void unchangedUserIsSynchronizedOnce() {
+        userService.getUserFromAuthentication(authentication(userDetails, AuthoritiesConstants.USER));
+        userService.getUserFromAuthentication(authentication(userDetails, AuthoritiesConstants.USER));
+
+        verify(userRepository).findOneByLogin("johndoe");
+        verify(userRepository).save(any(User.class));
+        verify(authorityRepository).findAll();
+    }
+
+    @Test
+    void changedClaimsOrAuthoritiesAreSynchronizedAgain() {
+        userService.getUserFromAuthentication(authentication(userDetails, AuthoritiesConstants.USER));
+        userDetails.put("given_name", "johnny");
+        userService.getUserFromAuthentication(authentication(userDetails, AuthoritiesConstants.USER));
+        userService.getUserFromAuthentication(authentication(userDetails, AuthoritiesConstants.USER, AuthoritiesConstants.ADMIN));
+
+        verify(userRepository, times(3)).findOneByLogin("johndoe");
+    }
+
+    @Test
+    void authoritiesAreLoadedOnceAndMissingOnesSaved() {
+        userService.getUserFromAuthentication(authentication(userDetails, AuthoritiesConstants.USER));
+        userDetails.put("sub", "janedoe");
+        userService.getUserFromAuthentication(authentication(userDetails, AuthoritiesConstants.USER, AuthoritiesConstants.ADMIN));
+        userDetails.put("sub", "jimdoe");
+        userService.getUserFromAuthentication(authentication(userDetails, AuthoritiesConstants.ADMIN));
+
+        verify(authorityRepository).findAll();
+        verify(authorityRepository).existsById(AuthoritiesConstants.ADMIN);
+        verify(authorityRepository, never()).existsById(AuthoritiesConstants.USER);
+        verify(authorityRepository).save(any(Authority.class));
+    }
+
+    private static OAuth2AuthenticationToken authentication(Map<String, Object> userDetails, String... authorityNames) {
+        Collection<GrantedAuthority> authorities = Arrays
+            .stream(authorityNames)
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList());
+        return new OAuth2AuthenticationToken(new DefaultOAuth2User(authorities, Map.copyOf(userDetails), "sub"), authorities, "oidc");
+    }
+
+    private static Authority authority(String name) {
+        Authority authority = new Authority();
+        authority.setName(name);
+        return authority;
+    }
+}
@@ -0,0 +1,145 @@
+package com.moxe.health.service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link CacheInvalidationBus}.
+ */
+class CacheInvalidationBusTest {
+
+    private final List<List<CacheInvalidation>> sent = new ArrayList<>();
+
+    private final List<CacheInvalidation> toReceive = new ArrayList<>();
+
+    private final List<CacheInvalidation> applied = new ArrayList<>();
+
+    private boolean transportFails;
+
+    private CacheInvalidationBus bus;
+
+    @BeforeEach
+    public void init() {
+        CacheInvalidationTransport transport = new CacheInvalidationTransport() {
+            @Override
+            public void send(Collection<CacheInvalidation> invalidations) {
+                if (transportFails) {
+                    throw new IllegalStateException("Unavailable");
+                }
+                sent.add(new ArrayList<>(invalidations));
+            }
+
+            @Override
+            public List<CacheInvalidation> receive() {
+                List<CacheInvalidation> received = new ArrayList<>(toReceive);
+                toReceive.clear();
+                return received;
+            }
+        };
+        bus = new CacheInvalidationBus(transport, applied::add, Duration.ofSeconds(1), Duration.ofSeconds(1));
+    }
+
+    @Test
+    void flushSendsCoalescedBatch() {
+        bus.publish(CacheInvalidation.entity("Patient", 1L));
+        bus.publish(CacheInvalidation.entity("Patient", 1L));
+        bus.publish(CacheInvalidation.cacheEntry("patientCounts", "criteria"));
+        bus.publish(CacheInvalidation.entity("Patient", 2L));
+        bus.publish(CacheInvalidation.cache("patientCounts"));
+        bus.flush();
+        bus.flush();
+
+        assertThat(sent)
+            .containsExactly(
+                List.of(
+                    CacheInvalidation.entity("Patient", 1L),
+                    CacheInvalidation.entity("Patient", 2L),
+                    CacheInvalidation.cache("patientCounts")
+                )
+            );
+    }
+
+    @Test
+    void unsupportedKeysInvalidateWholeCache() {
+        assertThat(CacheInvalidation.cacheEntry("usersByLogin", List.of("alice")).getKey()).isNull();
+        assertThat(CacheInvalidation.cacheEntry("usersByLogin", "a".repeat(256)).getKey()).isNull();
+        assertThat(CacheInvalidation.collection("Provider.patients", 3L).getKey()).isEqualTo(3L);
+    }
+
+    @Test
+    void failedBatchIsSentAgain() {
+        bus.publish(CacheInvalidation.entity("Patient", 1L));
+        transportFails = true;
+        bus.flush();
+        transportFails = false;
+        bus.publish(CacheInvalidation.entity("Patient", 2L));
+        bus.flush();
+
+        assertThat(sent).containsExactly(List.of(CacheInvalidation.entity("Patient", 1L), CacheInvalidation.entity("Patient", 2L)));
+    }
+
+    @Test
+    void pendingInvalidationsAreWidenedWhenTooMany() {
+        for (long id = 0; id <= CacheInvalidationBus.MAX_PENDING; id++) {
+            bus.publish(CacheInvalidation.entity("Patient", id));
+        }
+        bus.publish(CacheInvalidation.cacheEntry("usersByLogin", "alice"));
+        bus.flush();
+
+        assertThat(sent)
+            .containsExactly(List.of(CacheInvalidation.entity("Patient", null), CacheInvalidation.cacheEntry("usersByLogin", "alice")));
+    }
+
+    @Test
+    void pollAppliesReceivedInvalidations() {
+        toReceive.add(CacheInvalidation.cacheEntry("usersByLogin", "alice"));
+        toReceive.add(CacheInvalidation.cache("usersByLogin"));
+        toReceive.add(CacheInvalidation.entity("Patient", 1L));
+        bus.poll();
+
+        assertThat(applied).containsExactly(CacheInvalidation.cache("usersByLogin"), CacheInvalidation.entity("Patient", 1L));
+        assertThat(sent).isEmpty();
+    }
+
+    @Test
+    void listenersAreNotifiedOfPublishedAndReceivedInvalidations() {
+        List<CacheInvalidation> notified = new ArrayList<>();
+        CacheInvalidationBus local = new CacheInvalidationBus(null, applied::add, Duration.ofSeconds(1), Duration.ofSeconds(1));
+        local.addListener(notified::add);
+        local.publish(CacheInvalidation.entity("Patient", 1L));
+        bus.addListener(notified::add);
+        toReceive.add(CacheInvalidation.entity("Patient", 2L));
+        bus.poll();
+
+        assertThat(notified).containsExactly(CacheInvalidation.entity("Patient", 1L), CacheInvalidation.entity("Patient", 2L));
+        assertThat(applied).containsExactly(CacheInvalidation.entity("Patient", 2L));
+    }
+
+    @Test
+    void receivedListenersAreNotifiedOfReceivedInvalidationsOnly() {
+        List<CacheInvalidation> notified = new ArrayList<>();
+        bus.addReceivedListener(notified::add);
+        bus.publish(CacheInvalidation.entity("Patient", 1L));
+        toReceive.add(CacheInvalidation.entity("Patient", 2L));
+        bus.poll();
+
+        assertThat(notified).containsExactly(CacheInvalidation.entity("Patient", 2L));
+    }
+
+    @Test
+    void disabledBusPublishesNothing() {
+        CacheInvalidationBus disabled = new CacheInvalidationBus(null, applied::add, Duration.ofSeconds(1), Duration.ofSeconds(1));
+        disabled.publish(CacheInvalidation.entity("Patient", 1L));
+        disabled.flush();
+        disabled.poll();
+        disabled.start();
+
+        assertThat(applied).isEmpty();
+    }
+}
@@ -0,0 +1,244 @@
+package com.moxe.health.service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.MoxeApp;
+import com.moxe.health.config.AsyncSyncConfiguration;
+import com.moxe.health.config.TestSecurityConfiguration;
+import com.moxe.health.domain.Patient;
+import com.moxe.health.domain.enumeration.Sex;
+import com.moxe.health.repository.PatientRepository;
+import com.moxe.health.repository.UserRepository;
+import com.moxe.health.service.PatientQueryService;
+import com.moxe.health.service.PatientService;
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link CacheInvalidationBus}, between the node of the test and another node started in the
+ * same JVM, which share the database but have their own caches.
+ * <p>
+ * The buses are flushed and polled by the tests rather than in the background.
+ */
+@IntegrationTest
+@TestPropertySource(
+    properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "application.cache.invalidation.publish-interval-millis=3600000",
+        "application.cache.invalidation.poll-interval-millis=3600000",
+    }
+)
+class CacheInvalidationIT {
+
+    private static ConfigurableApplicationContext otherNode;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long patientId;
+
+    @BeforeEach
+    public void startOtherNode() throws SQLException {
+        if (otherNode == null) {
+            HikariDataSource hikariDataSource = dataSource.unwrap(HikariDataSource.class);
+            // As arguments, which override the properties of the test profiles
+            otherNode =
+                new SpringApplicationBuilder(MoxeApp.class, AsyncSyncConfiguration.class, TestSecurityConfiguration.class)
+                    .run(
+                        "--spring.datasource.url=" + hikariDataSource.getJdbcUrl(),
+                        "--spring.datasource.username=" + hikariDataSource.getUsername(),
+                        "--spring.datasource.password=" + hikariDataSource.getPassword(),
+                        "--spring.liquibase.enabled=false",
+                        "--spring.cache.jcache.config=classpath:config/ehcache-other-node.xml",
+                        "--spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+                        "--application.cache.invalidation.publish-interval-millis=3600000",
+                        "--application.cache.invalidation.poll-interval-millis=3600000",
+                        "--server.port=0"
+                    );
+        }
+        // Read the invalidations sent by the previous tests
+        otherNode.getBean(CacheInvalidationBus.class).poll();
+    }
+
+    @AfterEach
+    public void deletePatientAndFlush() {
+        if (patientId != null) {
+            patientRepository.deleteById(patientId);
+        }
+        cacheInvalidationBus.flush();
+    }
+
+    @AfterAll
+    public static void stopOtherNode() {
+        if (otherNode != null) {
+            otherNode.close();
+            otherNode = null;
+        }
+    }
+
+    @Test
+    void updatedEntityIsEvictedFromOtherNode() {
+        Patient patient = patientRepository.saveAndFlush(new Patient().name("AAAAAAAAAA").dateOfBirth(Instant.EPOCH).sex(Sex.MALE));
+        patientId = patient.getId();
+        assertThat(findOnOtherNode(patientId).getName()).isEqualTo("AAAAAAAAAA");
+        assertThat(isCachedOnOtherNode(patientId)).isTrue();
+
+        patient.setName("BBBBBBBBBB");
+        patientService.save(patient);
+        cacheInvalidationBus.flush();
+        assertThat(isCachedOnOtherNode(patientId)).isTrue();
+
+        otherNode.getBean(CacheInvalidationBus.class).poll();
+        assertThat(isCachedOnOtherNode(patientId)).isFalse();
+        assertThat(findOnOtherNode(patientId).getName()).isEqualTo("BBBBBBBBBB");
+    }
+
+    @Test
+    void entityUpdatedWithSingleStatementIsEvictedFromOtherNode() {
+        Patient patient = patientRepository.saveAndFlush(new Patient().name("AAAAAAAAAA").dateOfBirth(Instant.EPOCH).sex(Sex.MALE));
+        patientId = patient.getId();
+        assertThat(findOnOtherNode(patientId).getName()).isEqualTo("AAAAAAAAAA");
+
+        Patient partialUpdatedPatient = new Patient().name("CCCCCCCCCC");
+        partialUpdatedPatient.setId(patientId);
+        patientService.partialUpdate(partialUpdatedPatient, patient.getVersion(), null);
+        cacheInvalidationBus.flush();
+        otherNode.getBean(CacheInvalidationBus.class).poll();
+
+        assertThat(isCachedOnOtherNode(patientId)).isFalse();
+        assertThat(findOnOtherNode(patientId).getName()).isEqualTo("CCCCCCCCCC");
+    }
+
+    @Test
+    void entityUpdatedWithSingleStatementIsTheOnlyOneEvicted() {
+        Patient patient = patientRepository.saveAndFlush(new Patient().name("AAAAAAAAAA").dateOfBirth(Instant.EPOCH).sex(Sex.MALE));
+        patientId = patient.getId();
+        Long otherId = patientRepository
+            .saveAndFlush(new Patient().name("DDDDDDDDDD").dateOfBirth(Instant.EPOCH).sex(Sex.FEMALE))
+            .getId();
+        try {
+            patientService.findOne(patientId);
+            patientService.findOne(otherId);
+            assertThat(entityManagerFactory.getCache().contains(Patient.class, otherId)).isTrue();
+
+            transactionTemplate.executeWithoutResult(status -> {
+                Patient other = patientRepository.findById(otherId).orElseThrow();
+                Patient partialUpdatedPatient = new Patient().name("CCCCCCCCCC");
+                partialUpdatedPatient.setId(patientId);
+                patientService.partialUpdate(partialUpdatedPatient, patient.getVersion(), null);
+                // The persistence context of the caller is kept
+                assertThat(entityManager.contains(other)).isTrue();
+            });
+
+            assertThat(entityManagerFactory.getCache().contains(Patient.class, patientId)).isFalse();
+            assertThat(entityManagerFactory.getCache().contains(Patient.class, otherId)).isTrue();
+            assertThat(patientService.findOne(patientId).orElseThrow().getName()).isEqualTo("CCCCCCCCCC");
+        } finally {
+            patientRepository.deleteById(otherId);
+        }
+    }
+
+    @Test
+    void writtenEntityIsReindexedOnOtherNode() {
+        Patient patient = patientService.save(new Patient().name("Quintessa").dateOfBirth(Instant.EPOCH).sex(Sex.FEMALE));
+        patientId = patient.getId();
+        cacheInvalidationBus.flush();
+        otherNode.getBean(CacheInvalidationBus.class).poll();
+        assertThat(searchOnOtherNode("Quintessa")).contains(patientId);
+
+        patient.setName("Ottoline");
+        patientService.save(patient);
+        cacheInvalidationBus.flush();
+        otherNode.getBean(CacheInvalidationBus.class).poll();
+        assertThat(searchOnOtherNode("Ottoline")).contains(patientId);
+        assertThat(searchOnOtherNode("Quintessa")).doesNotContain(patientId);
+
+        patientService.delete(patientId);
+        cacheInvalidationBus.flush();
+        otherNode.getBean(CacheInvalidationBus.class).poll();
+        assertThat(searchOnOtherNode("Ottoline")).doesNotContain(patientId);
+        patientId = null;
+    }
+
+    @Test
+    void springCacheEvictionsAreCoalescedAndNotSentBack() {
+        org.springframework.cache.Cache otherUsersByLogin = otherNode
+            .getBean(CacheManager.class)
+            .getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        otherUsersByLogin.put("alice", "Alice");
+        otherUsersByLogin.put("bob", "Bob");
+        otherNode.getBean(CacheManager.class).getCache(PatientQueryService.COUNT_CACHE).put("any", 1L);
+        Integer rowsBefore = jdbcTemplate.queryForObject("select count(*) from cache_invalidation", Integer.class);
+
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict("alice");
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict("alice");
+        cacheManager.getCache(PatientQueryService.COUNT_CACHE).evict("any");
+        cacheManager.getCache(PatientQueryService.COUNT_CACHE).clear();
+        cacheInvalidationBus.flush();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from cache_invalidation", Integer.class)).isEqualTo(rowsBefore + 2);
+
+        CacheInvalidationBus otherBus = otherNode.getBean(CacheInvalidationBus.class);
+        otherBus.poll();
+        otherBus.flush();
+        assertThat(otherUsersByLogin.get("alice")).isNull();
+        assertThat(otherUsersByLogin.get("bob")).isNotNull();
+        assertThat(otherNode.getBean(CacheManager.class).getCache(PatientQueryService.COUNT_CACHE).get("any")).isNull();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from cache_invalidation", Integer.class)).isEqualTo(rowsBefore + 2);
+    }
+
+    private Patient findOnOtherNode(Long id) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(otherNode.getBean(PlatformTransactionManager.class));
+        return transactionTemplate.execute(status -> otherNode.getBean(PatientRepository.class).findById(id).orElseThrow());
+    }
+
+    private List<Long> searchOnOtherNode(String query) {
+        return otherNode.getBean(PatientQueryService.class).search(query, Pageable.unpaged()).map(Patient::getId).getContent();
+    }
+
+    private boolean isCachedOnOtherNode(Long id) {
+        return otherNode.getBean(EntityManagerFactory.class).getCache().contains(Patient.class, id);
+    }
+}
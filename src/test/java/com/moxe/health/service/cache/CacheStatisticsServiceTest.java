@@ -0,0 +1,144 @@
+package com.moxe.health.service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.service.dto.CacheRegionStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link CacheStatisticsService}.
+ */
+class CacheStatisticsServiceTest {
+
+    private CacheManager cacheManager;
+
+    private Cache<Object, Object> counted;
+
+    private Cache<Object, Object> sized;
+
+    private CacheStatisticsService cacheStatisticsService;
+
+    @BeforeEach
+    public void setup() {
+        cacheManager = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider").getCacheManager();
+        // The entries expire as soon as they are read, which measuring them must not do
+        counted =
+            cacheManager.createCache(
+                "counted",
+                Eh107Configuration.fromEhcacheCacheConfiguration(
+                    CacheConfigurationBuilder
+                        .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(100))
+                        .withExpiry(ExpiryPolicyBuilder.expiry().access(Duration.ZERO).build())
+                )
+            );
+        sized =
+            cacheManager.createCache(
+                "sized",
+                Eh107Configuration.fromEhcacheCacheConfiguration(
+                    CacheConfigurationBuilder.newCacheConfigurationBuilder(
+                        Object.class,
+                        Object.class,
+                        ResourcePoolsBuilder.newResourcePoolsBuilder().heap(1, MemoryUnit.MB)
+                    )
+                )
+            );
+        cacheStatisticsService = new CacheStatisticsService(cacheManager);
+    }
+
+    @AfterEach
+    public void teardown() {
+        cacheManager.close();
+    }
+
+    @Test
+    void statisticsCountOperationsAndHeap() {
+        counted.put(1L, new long[100]);
+        counted.put(2L, new long[100]);
+        counted.get(3L);
+        sized.put(1L, new long[1000]);
+        sized.get(1L);
+        sized.get(1L);
+
+        CacheRegionStatistics countedStatistics = statistics(CacheStatisticsService.Ranking.HIT_RATIO, "counted");
+        assertThat(countedStatistics.getPuts()).isEqualTo(2);
+        assertThat(countedStatistics.getHits()).isZero();
+        assertThat(countedStatistics.getMisses()).isEqualTo(1);
+        assertThat(countedStatistics.getEntries()).isEqualTo(2);
+        assertThat(countedStatistics.getHeapBytes()).isGreaterThan(2 * 100 * Long.BYTES);
+        assertThat(countedStatistics.getHitRatio()).isZero();
+
+        CacheRegionStatistics sizedStatistics = statistics(CacheStatisticsService.Ranking.HIT_RATIO, "sized");
+        assertThat(sizedStatistics.getHits()).isEqualTo(2);
+        assertThat(sizedStatistics.getHitRatio()).isEqualTo(1.0);
+        assertThat(sizedStatistics.getHeapBytes()).isGreaterThan(1000 * Long.BYTES);
+        assertThat(sizedStatistics.getBytesPerHit()).isEqualTo(sizedStatistics.getHeapBytes() / 2.0);
+    }
+
+    @Test
+    void measuringEntriesDoesNotReadThem() {
+        counted.put(1L, "a");
+        statistics(CacheStatisticsService.Ranking.HIT_RATIO, "counted");
+
+        CacheRegionStatistics statistics = statistics(CacheStatisticsService.Ranking.HIT_RATIO, "counted");
+        assertThat(statistics.getHits()).isZero();
+        assertThat(statistics.getExpirations()).isZero();
+        assertThat(counted.get(1L)).isEqualTo("a");
+    }
+
+    @Test
+    void regionsAreRankedCostliestFirst() {
+        counted.put(1L, "a");
+        counted.get(1L);
+        counted.get(2L);
+        counted.get(3L);
+        sized.put(1L, "b");
+        sized.get(1L);
+
+        assertThat(names(CacheStatisticsService.Ranking.HIT_RATIO)).containsExactly("counted", "sized");
+
+        sized.put(2L, new long[10_000]);
+        assertThat(names(CacheStatisticsService.Ranking.BYTES_PER_HIT)).containsExactly("sized", "counted");
+    }
+
+    @Test
+    void statisticsArePublishedAsMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cacheStatisticsService.bindTo(registry);
+        sized.put(1L, "a");
+        sized.get(1L);
+        sized.get(2L);
+
+        assertThat(registry.get("cache.gets").tag("cache", "sized").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "sized").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.puts").tag("cache", "sized").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.size").tag("cache", "sized").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("cache.heap.size").tag("cache", "sized").gauge().value()).isPositive();
+    }
+
+    private CacheRegionStatistics statistics(CacheStatisticsService.Ranking ranking, String name) {
+        return cacheStatisticsService
+            .findAll(ranking)
+            .stream()
+            .filter(statistics -> statistics.getName().equals(name))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private List<String> names(CacheStatisticsService.Ranking ranking) {
+        return cacheStatisticsService.findAll(ranking).stream().map(CacheRegionStatistics::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,48 @@
+package com.moxe.health.service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+/**
+ * Unit tests for {@link CacheWarmUpHealthIndicator}.
+ */
+class CacheWarmUpHealthIndicatorTest {
+
+    private CacheWarmUpService cacheWarmUpService;
+
+    private CacheWarmUpHealthIndicator cacheWarmUpHealthIndicator;
+
+    @BeforeEach
+    public void setup() {
+        cacheWarmUpService = mock(CacheWarmUpService.class);
+        cacheWarmUpHealthIndicator = new CacheWarmUpHealthIndicator(cacheWarmUpService);
+    }
+
+    @Test
+    void outOfServiceUntilWarmedUp() {
+        when(cacheWarmUpService.getState()).thenReturn(CacheWarmUpService.State.PENDING);
+        assertThat(cacheWarmUpHealthIndicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        when(cacheWarmUpService.getState()).thenReturn(CacheWarmUpService.State.RUNNING);
+        when(cacheWarmUpService.getProgress()).thenReturn(0.5);
+        assertThat(cacheWarmUpHealthIndicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(cacheWarmUpHealthIndicator.health().getDetails()).containsEntry("progress", 0.5);
+    }
+
+    @Test
+    void upOnceWarmedUpOrNot() {
+        when(cacheWarmUpService.getState()).thenReturn(CacheWarmUpService.State.DONE);
+        assertThat(cacheWarmUpHealthIndicator.health().getStatus()).isEqualTo(Status.UP);
+
+        when(cacheWarmUpService.getState()).thenReturn(CacheWarmUpService.State.FAILED);
+        assertThat(cacheWarmUpHealthIndicator.health().getStatus()).isEqualTo(Status.UP);
+
+        when(cacheWarmUpService.getState()).thenReturn(CacheWarmUpService.State.SKIPPED);
+        assertThat(cacheWarmUpHealthIndicator.health().getStatus()).isEqualTo(Status.UP);
+    }
+}
@@ -0,0 +1,136 @@
+package com.moxe.health.service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.domain.Hospital;
+import com.moxe.health.domain.Patient;
+import com.moxe.health.domain.Provider;
+import com.moxe.health.domain.enumeration.Sex;
+import com.moxe.health.repository.HospitalRepository;
+import com.moxe.health.repository.PatientRepository;
+import com.moxe.health.repository.ProviderRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Integration tests for the {@link CacheWarmUpService}, with the second-level cache enabled and room for the patients
+ * of a single provider with one of them.
+ */
+@IntegrationTest
+@TestPropertySource(
+    properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "application.cache.warm-up.provider-patients=1",
+    }
+)
+class CacheWarmUpServiceIT {
+
+    @Autowired
+    private CacheWarmUpService cacheWarmUpService;
+
+    @Autowired
+    private CacheWarmUpHealthIndicator cacheWarmUpHealthIndicator;
+
+    @Autowired
+    private HospitalRepository hospitalRepository;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Hospital hospital;
+
+    private Provider provider;
+
+    private Patient patient;
+
+    private Provider largerProvider;
+
+    private List<Patient> largerProviderPatients;
+
+    @BeforeEach
+    public void createEntities() {
+        hospital = hospitalRepository.saveAndFlush(new Hospital().name("AAAAAAAAAA"));
+        provider = providerRepository.saveAndFlush(new Provider().name("AAAAAAAAAA").hospital(hospital));
+        patient =
+            patientRepository.saveAndFlush(
+                new Patient().name("AAAAAAAAAA").dateOfBirth(Instant.EPOCH).sex(Sex.MALE).provider(provider)
+            );
+        largerProvider = providerRepository.saveAndFlush(new Provider().name("BBBBBBBBBB").hospital(hospital));
+        largerProviderPatients =
+            patientRepository.saveAllAndFlush(
+                List.of(
+                    new Patient().name("BBBBBBBBBB").dateOfBirth(Instant.EPOCH).sex(Sex.FEMALE).provider(largerProvider),
+                    new Patient().name("CCCCCCCCCC").dateOfBirth(Instant.EPOCH).sex(Sex.FEMALE).provider(largerProvider)
+                )
+            );
+        secondLevelCache().evictAllRegions();
+    }
+
+    @AfterEach
+    public void deleteEntities() {
+        patientRepository.deleteAll(largerProviderPatients);
+        patientRepository.deleteById(patient.getId());
+        providerRepository.deleteById(largerProvider.getId());
+        providerRepository.deleteById(provider.getId());
+        hospitalRepository.deleteById(hospital.getId());
+    }
+
+    @Test
+    void warmUpLoadsTheSecondLevelCache() {
+        long warmUps = meterRegistry.get("cache.warmup.duration").tag("outcome", "success").timer().count();
+
+        cacheWarmUpService.warmUp();
+
+        Cache secondLevelCache = secondLevelCache();
+        assertThat(secondLevelCache.containsEntity(Hospital.class, hospital.getId())).isTrue();
+        assertThat(secondLevelCache.containsEntity(Provider.class, provider.getId())).isTrue();
+        assertThat(secondLevelCache.containsCollection(Provider.class.getName() + ".patients", provider.getId())).isTrue();
+        assertThat(secondLevelCache.containsEntity(Patient.class, patient.getId())).isTrue();
+        assertThat(cacheWarmUpService.getState()).isEqualTo(CacheWarmUpService.State.DONE);
+        assertThat(meterRegistry.get("cache.warmup.duration").tag("outcome", "success").timer().count()).isEqualTo(warmUps + 1);
+        assertThat(meterRegistry.get("cache.warmup.progress").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.warmup.entities").functionCounter().count()).isPositive();
+    }
+
+    @Test
+    void warmUpLoadsTheProvidersWhosePatientsDoNotFitWithoutThem() {
+        cacheWarmUpService.warmUp();
+
+        Cache secondLevelCache = secondLevelCache();
+        assertThat(secondLevelCache.containsEntity(Provider.class, largerProvider.getId())).isTrue();
+        assertThat(secondLevelCache.containsCollection(Provider.class.getName() + ".patients", largerProvider.getId())).isFalse();
+        assertThat(cacheWarmUpService.getState()).isEqualTo(CacheWarmUpService.State.DONE);
+    }
+
+    @Test
+    void readinessIsUpOnceWarmedUp() {
+        cacheWarmUpService.warmUp();
+
+        assertThat(cacheWarmUpHealthIndicator.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(cacheWarmUpHealthIndicator.health().getDetails()).containsEntry("state", CacheWarmUpService.State.DONE);
+    }
+
+    private Cache secondLevelCache() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+}
@@ -0,0 +1,204 @@
+package com.moxe.health.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.ClientAuthorizationRequiredException;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+
+/**
+ * Unit tests for {@link OAuth2RefreshTokensWebFilter}.
+ */
+class OAuth2RefreshTokensWebFilterTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static final ClientRegistration CLIENT_REGISTRATION = ClientRegistration
+        .withRegistrationId("oidc")
+        .clientId("web_app")
+        .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+        .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+        .authorizationUri("http://localhost:9080/auth")
+        .tokenUri("http://localhost:9080/token")
+        .build();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OAuth2AuthorizedClientManager clientManager;
+
+    private OAuth2AuthorizedClientRepository authorizedClientRepository;
+
+    private OAuth2AuthenticationToken authentication;
+
+    private OAuth2RefreshTokensWebFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        clientManager = mock(OAuth2AuthorizedClientManager.class);
+        authorizedClientRepository = mock(OAuth2AuthorizedClientRepository.class);
+        filter =
+            new OAuth2RefreshTokensWebFilter(
+                clientManager,
+                authorizedClientRepository,
+                mock(ClientRegistrationRepository.class),
+                meterRegistry,
+                Clock.fixed(NOW, ZoneOffset.UTC)
+            );
+        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        authentication =
+            new OAuth2AuthenticationToken(new DefaultOAuth2User(authorities, Map.of("sub", "user"), "sub"), authorities, "oidc");
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void validTokenIsNeitherRefreshedNorSaved() throws Exception {
+        loadAuthorizedClient(authorizedClient(Duration.ofMinutes(10)));
+
+        MockFilterChain chain = filter(apiRequest());
+
+        assertThat(chain.getRequest()).isNotNull();
+        verify(clientManager, never()).authorize(any());
+        verify(authorizedClientRepository, never()).saveAuthorizedClient(any(), any(), any(), any());
+        assertThat(meterRegistry.get("oauth2.token.refresh.skipped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void tokenExpiringWithinClockSkewIsRefreshedAndSaved() throws Exception {
+        loadAuthorizedClient(authorizedClient(Duration.ofSeconds(30)));
+        OAuth2AuthorizedClient refreshed = authorizedClient(Duration.ofMinutes(5));
+        when(clientManager.authorize(any())).thenReturn(refreshed);
+
+        MockFilterChain chain = filter(apiRequest());
+
+        assertThat(chain.getRequest()).isNotNull();
+        verify(authorizedClientRepository).saveAuthorizedClient(eq(refreshed), eq(authentication), any(), any());
+        assertThat(meterRegistry.get("oauth2.token.refresh").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedRefreshIsMeasured() throws Exception {
+        loadAuthorizedClient(null);
+        when(clientManager.authorize(any())).thenThrow(new ClientAuthorizationRequiredException("oidc"));
+
+        MockFilterChain chain = filter(apiRequest());
+
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(meterRegistry.get("oauth2.token.refresh").tag("outcome", "failure").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void publicPathsAreNotFiltered() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/i18n/en.json");
+        request.setServletPath("/i18n/en.json");
+
+        MockFilterChain chain = filter(request);
+
+        assertThat(chain.getRequest()).isNotNull();
+        verify(authorizedClientRepository, never()).loadAuthorizedClient(any(), any(), any());
+    }
+
+    @Test
+    void concurrentRefreshesOfAClientAreCollapsed() throws Exception {
+        loadAuthorizedClient(authorizedClient(Duration.ofSeconds(30)));
+        CountDownLatch authorizing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(clientManager.authorize(any()))
+            .thenAnswer(invocation -> {
+                authorizing.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return authorizedClient(Duration.ofMinutes(5));
+            });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockFilterChain> first = executor.submit(() -> filterAs(authentication));
+            assertThat(authorizing.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<MockFilterChain> second = executor.submit(() -> filterAs(authentication));
+            // Wait for the second request to join the refresh of the first one
+            while (meterRegistry.get("oauth2.token.refresh.joined").counter().count() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertThat(first.get(10, TimeUnit.SECONDS).getRequest()).isNotNull();
+            assertThat(second.get(10, TimeUnit.SECONDS).getRequest()).isNotNull();
+            verify(clientManager, times(1)).authorize(any());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private MockFilterChain filterAs(OAuth2AuthenticationToken authentication) throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        try {
+            return filter(apiRequest());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private MockFilterChain filter(MockHttpServletRequest request) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return chain;
+    }
+
+    private void loadAuthorizedClient(OAuth2AuthorizedClient authorizedClient) {
+        when(authorizedClientRepository.loadAuthorizedClient(eq("oidc"), eq(authentication), any())).thenReturn(authorizedClient);
+    }
+
+    private static MockHttpServletRequest apiRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/hospitals");
+        request.setServletPath("/api/hospitals");
+        return request;
+    }
+
+    private static OAuth2AuthorizedClient authorizedClient(Duration expiresIn) {
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(
+            OAuth2AccessToken.TokenType.BEARER,
+            "token",
+            NOW.minus(Duration.ofMinutes(5)),
+            NOW.plus(expiresIn)
+        );
+        return new OAuth2AuthorizedClient(CLIENT_REGISTRATION, "user", accessToken);
+    }
+}
@@ -0,0 +1,144 @@
+package com.moxe.health.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.domain.Hospital;
+import com.moxe.health.repository.HospitalRepository;
+import com.moxe.health.security.AuthoritiesConstants;
+import com.moxe.health.web.rest.TestUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link ResponseCacheFilter}, with the hospital list endpoint.
+ * <p>
+ * The tests are not transactional, as the responses are only invalidated once the writes are committed. The hospitals
+ * are renamed with statements bypassing Hibernate, to tell the cached responses from the computed ones.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+@TestPropertySource(properties = "application.response-cache.enabled=true")
+class ResponseCacheFilterIT {
+
+    private static final String ENTITY_API_URL = "/api/hospitals";
+
+    @Autowired
+    private HospitalRepository hospitalRepository;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MockMvc restHospitalMockMvc;
+
+    private Hospital hospital;
+
+    @BeforeEach
+    public void initTest() {
+        responseCache.invalidateAll();
+        hospital = hospitalRepository.saveAndFlush(new Hospital().name("AAAAAAAAAA"));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        hospitalRepository.deleteAll();
+    }
+
+    @Test
+    void listIsCachedUntilAHospitalIsInserted() throws Exception {
+        restHospitalMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&size=20"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(jsonPath("$.[*].name").value(hasItem("AAAAAAAAAA")));
+        rename(hospital, "BBBBBBBBBB");
+
+        // The same query, with its parameters in another order
+        String eTag = restHospitalMockMvc
+            .perform(get(ENTITY_API_URL + "?size=20&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(header().exists(HttpHeaders.LINK))
+            .andExpect(jsonPath("$.[*].name").value(hasItem("AAAAAAAAAA")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        restHospitalMockMvc
+            .perform(get(ENTITY_API_URL + "?size=20&sort=id,desc").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag));
+
+        hospitalRepository.saveAndFlush(new Hospital().name("CCCCCCCCCC"));
+        restHospitalMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&size=20"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.[*].name").value(hasItem("BBBBBBBBBB")));
+    }
+
+    @Test
+    void listIsInvalidatedByVersionedUpdate() throws Exception {
+        restHospitalMockMvc.perform(get(ENTITY_API_URL)).andExpect(status().isOk());
+        rename(hospital, "BBBBBBBBBB");
+        restHospitalMockMvc.perform(get(ENTITY_API_URL)).andExpect(jsonPath("$.[*].name").value(hasItem("AAAAAAAAAA")));
+
+        // Updated with a statement, which Hibernate does not publish
+        Hospital updatedHospital = new Hospital().name("CCCCCCCCCC");
+        updatedHospital.setId(hospital.getId());
+        restHospitalMockMvc
+            .perform(
+                put(ENTITY_API_URL + "/{id}", hospital.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "*")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedHospital))
+            )
+            .andExpect(status().isOk());
+
+        restHospitalMockMvc.perform(get(ENTITY_API_URL)).andExpect(jsonPath("$.[*].name").value(hasItem("CCCCCCCCCC")));
+    }
+
+    @Test
+    void responsesAreCachedPerAuthorities() throws Exception {
+        restHospitalMockMvc.perform(get(ENTITY_API_URL)).andExpect(status().isOk());
+        rename(hospital, "BBBBBBBBBB");
+
+        restHospitalMockMvc
+            .perform(get(ENTITY_API_URL).with(user("admin").authorities(() -> AuthoritiesConstants.ADMIN)))
+            .andExpect(jsonPath("$.[*].name").value(hasItem("BBBBBBBBBB")));
+        assertThat(responseCache.size()).isEqualTo(2);
+    }
+
+    private void rename(Hospital hospital, String name) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            jdbcTemplate.update("update hospital set name = ? where id = ?", name, hospital.getId())
+        );
+    }
+}
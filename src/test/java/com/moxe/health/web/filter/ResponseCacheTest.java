@@ -0,0 +1,109 @@
+package com.moxe.health.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.web.filter.ResponseCache.CachedResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link ResponseCache}.
+ */
+class ResponseCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private ResponseCache responseCache;
+
+    @BeforeEach
+    public void setup() {
+        responseCache = new ResponseCache(100, Duration.ofMinutes(5), now::get);
+    }
+
+    @Test
+    void responseIsCachedUntilOneOfItsTagsIsInvalidated() {
+        responseCache.put("a", Set.of("Hospital", "Provider"), responseCache.sequence(), response("[1]"));
+        responseCache.put("b", Set.of("Patient"), responseCache.sequence(), response("[2]"));
+        assertThat(responseCache.get("a").getBody()).isEqualTo(body("[1]"));
+        assertThat(responseCache.get("a").getHeaders()).containsEntry("X-Total-Count", List.of("1"));
+
+        responseCache.invalidate("Provider");
+        assertThat(responseCache.get("a")).isNull();
+        assertThat(responseCache.get("b")).isNotNull();
+
+        responseCache.invalidateAll();
+        assertThat(responseCache.get("b")).isNull();
+        assertThat(responseCache.bytes()).isZero();
+    }
+
+    @Test
+    void responseComputedBeforeAnInvalidationIsNotCached() {
+        long sequence = responseCache.sequence();
+        responseCache.invalidate("Patient");
+        responseCache.put("a", Set.of("Hospital"), sequence, response("[1]"));
+        responseCache.put("b", Set.of("Patient"), sequence, response("[2]"));
+
+        assertThat(responseCache.get("a")).isNotNull();
+        assertThat(responseCache.get("b")).isNull();
+
+        responseCache.invalidateAll();
+        responseCache.put("a", Set.of("Hospital"), sequence, response("[1]"));
+        assertThat(responseCache.get("a")).isNull();
+    }
+
+    @Test
+    void leastRecentlyUsedResponsesAreEvictedBeyondMaxBytes() {
+        String body = "x".repeat(20);
+        responseCache.put("a", Set.of("Hospital"), responseCache.sequence(), response(body));
+        responseCache.put("b", Set.of("Hospital"), responseCache.sequence(), response(body));
+        responseCache.get("a");
+        responseCache.put("c", Set.of("Hospital"), responseCache.sequence(), response(body));
+
+        assertThat(responseCache.size()).isEqualTo(2);
+        assertThat(responseCache.bytes()).isLessThanOrEqualTo(100);
+        assertThat(responseCache.get("b")).isNull();
+        assertThat(responseCache.get("a")).isNotNull();
+
+        responseCache.put("d", Set.of("Hospital"), responseCache.sequence(), response("x".repeat(100)));
+        assertThat(responseCache.get("d")).isNull();
+        assertThat(responseCache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void responseExpires() {
+        responseCache.put("a", Set.of("Hospital"), responseCache.sequence(), response("[1]"));
+        now.addAndGet(Duration.ofMinutes(5).toNanos());
+
+        assertThat(responseCache.get("a")).isNull();
+    }
+
+    @Test
+    void statisticsArePublishedAsMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        responseCache.bindTo(registry);
+        responseCache.put("a", Set.of("Hospital"), responseCache.sequence(), response("[1]"));
+        responseCache.get("a");
+        responseCache.get("b");
+
+        assertThat(registry.get("cache.gets").tag("cache", ResponseCache.NAME).tag("result", "hit").functionCounter().count())
+            .isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", ResponseCache.NAME).tag("result", "miss").functionCounter().count())
+            .isEqualTo(1);
+        assertThat(registry.get("cache.heap.size").tag("cache", ResponseCache.NAME).gauge().value()).isEqualTo(responseCache.bytes());
+    }
+
+    private static CachedResponse response(String body) {
+        return new CachedResponse("application/json", Map.of("X-Total-Count", List.of("1")), body(body));
+    }
+
+    private static byte[] body(String body) {
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+}
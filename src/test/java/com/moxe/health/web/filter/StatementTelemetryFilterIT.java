@@ -0,0 +1,70 @@
+package com.moxe.health.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.repository.jdbc.StatementTelemetry;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration tests for the {@link StatementTelemetryFilter}, with the patient list endpoint.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class StatementTelemetryFilterIT {
+
+    private static final String ENTITY_API_URL = "/api/patients";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc restPatientMockMvc;
+
+    @Test
+    void statementsAreMeasuredPerEndpointAndShape() throws Exception {
+        long requests = requests();
+        double statements = statements();
+        long shapedStatements = shapedStatements();
+
+        restPatientMockMvc.perform(get("/api/patients?name.contains=AAA&sort=id,desc")).andExpect(status().isOk());
+
+        assertThat(requests()).isEqualTo(requests + 1);
+        assertThat(statements()).isGreaterThanOrEqualTo(statements + 1);
+        assertThat(meterRegistry.get("http.server.requests.db").tag("uri", ENTITY_API_URL).timer().count()).isEqualTo(requests + 1);
+        assertThat(shapedStatements()).isGreaterThan(shapedStatements);
+    }
+
+    private long requests() {
+        DistributionSummary summary = statementsSummary();
+        return summary == null ? 0 : summary.count();
+    }
+
+    private double statements() {
+        DistributionSummary summary = statementsSummary();
+        return summary == null ? 0 : summary.totalAmount();
+    }
+
+    private DistributionSummary statementsSummary() {
+        return meterRegistry.find("http.server.requests.statements").tag("method", "GET").tag("uri", ENTITY_API_URL).summary();
+    }
+
+    private long shapedStatements() {
+        Timer timer = meterRegistry
+            .find(StatementTelemetry.METRIC_NAME)
+            .tag("statement", "select")
+            .tag("shape", "Patient(name.contains)")
+            .timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -3,21 +3,38 @@ package com.moxe.health.web.rest;
 import static com.moxe.health.test.util.OAuth2TestUtil.TEST_USER_LOGIN;
 import static com.moxe.health.test.util.OAuth2TestUtil.registerAuthenticationToken;
 import static com.moxe.health.test.util.OAuth2TestUtil.testAuthenticationToken;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.moxe.health.IntegrationTest;
+import com.moxe.health.domain.User;
+import com.moxe.health.repository.UserRepository;
 import com.moxe.health.security.AuthoritiesConstants;
+import com.moxe.health.security.oauth2.CachingJwtDecoder;
+import com.moxe.health.security.oauth2.CircuitBreaker;
+import com.moxe.health.security.oauth2.CustomClaimConverter;
+import com.moxe.health.security.oauth2.UserInfoCache;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.test.context.TestSecurityContextHolder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.RestTemplate;
 
 /**
  * Integration tests for the {@link AccountResource} REST controller.
@@ -36,6 +53,12 @@ class AccountResourceIT {
     @Autowired
     ClientRegistration clientRegistration;
 
+    @Autowired
+    private JwtDecoder jwtDecoder;
+
+    @Autowired
+    private UserRepository userRepository;
+
     @Test
     @Transactional
     void testGetExistingAccount() throws Exception {
@@ -52,6 +75,57 @@ class AccountResourceIT {
             .andExpect(jsonPath("$.authorities").value(AuthoritiesConstants.ADMIN));
     }
 
+    @Test
+    @Transactional
+    void testGetAccountWhileUserInfoCircuitIsOpen() throws Exception {
+        User synced = new User();
+        synced.setId("user-info-unavailable");
+        synced.setLogin("synced-login");
+        synced.setFirstName("John");
+        synced.setEmail("john.doe@jhipster.com");
+        synced.setActivated(true);
+        synced.setLangKey("en");
+        userRepository.saveAndFlush(synced);
+        long users = userRepository.count();
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker("userinfo", 1, Duration.ofMinutes(1), e -> true);
+        assertThatThrownBy(() ->
+                circuitBreaker.call(() -> {
+                    throw new IllegalStateException("userinfo is down");
+                })
+            )
+            .isInstanceOf(IllegalStateException.class);
+        CustomClaimConverter claimConverter = new CustomClaimConverter(
+            clientRegistration,
+            new RestTemplate(),
+            new UserInfoCache(100, Duration.ofMinutes(15), Duration.ofMinutes(5), Runnable::run),
+            circuitBreaker
+        );
+        Map<String, Object> claims = Map.of("sub", "user-info-unavailable", "exp", Instant.now().plus(Duration.ofMinutes(5)));
+        CachingJwtDecoder cachingJwtDecoder = new CachingJwtDecoder(
+            token -> Jwt.withTokenValue(token).header("alg", "RS256").claims(c -> c.putAll(claimConverter.convert(claims))).build(),
+            100,
+            Duration.ZERO,
+            Duration.ofMinutes(5)
+        );
+        when(jwtDecoder.decode("token")).thenAnswer(invocation -> cachingJwtDecoder.decode("token"));
+
+        try {
+            restAccountMockMvc
+                .perform(get("/api/account").header(HttpHeaders.AUTHORIZATION, "Bearer token").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.login").value("synced-login"))
+                .andExpect(jsonPath("$.firstName").value("John"));
+        } finally {
+            reset(jwtDecoder);
+        }
+
+        assertThat(circuitBreaker.isOpen()).isTrue();
+        assertThat(userRepository.count()).isEqualTo(users);
+        assertThat(userRepository.findOneByLogin("user-info-unavailable")).isEmpty();
+        assertThat(cachingJwtDecoder.size()).isZero();
+    }
+
     @Test
     void testGetUnknownAccount() throws Exception {
         restAccountMockMvc.perform(get("/api/account").accept(MediaType.APPLICATION_JSON)).andExpect(status().isInternalServerError());
@@ -0,0 +1,88 @@
+package com.moxe.health.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.domain.Patient;
+import com.moxe.health.repository.UserRepository;
+import com.moxe.health.security.AuthoritiesConstants;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration tests for the {@link CacheStatisticsResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+class CacheStatisticsResourceIT {
+
+    private static final String ENTITY_API_URL = "/api/admin/cache-statistics";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc restCacheStatisticsMockMvc;
+
+    @Test
+    void getCacheStatisticsByHitRatio() throws Exception {
+        Cache usersByLogin = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        usersByLogin.put("cache-statistics", "value");
+        usersByLogin.get("cache-statistics");
+
+        restCacheStatisticsMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].name").value(hasItem(UserRepository.USERS_BY_LOGIN_CACHE)))
+            .andExpect(jsonPath("$.[*].name").value(hasItem(UserRepository.USERS_BY_EMAIL_CACHE)))
+            .andExpect(jsonPath("$.[*].name").value(hasItem(Patient.class.getName())))
+            .andExpect(jsonPath("$.[?(@.name == '" + UserRepository.USERS_BY_LOGIN_CACHE + "')].hitRatio").exists());
+    }
+
+    @Test
+    void getCacheStatisticsByBytesPerHit() throws Exception {
+        restCacheStatisticsMockMvc
+            .perform(get(ENTITY_API_URL + "?ranking=BYTES_PER_HIT"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].name").value(hasItem(UserRepository.USERS_BY_LOGIN_CACHE)));
+    }
+
+    @Test
+    void cacheStatisticsArePublishedAsMeters() {
+        Cache usersByEmail = cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE);
+        double hits = meterRegistry
+            .get("cache.gets")
+            .tag("cache", UserRepository.USERS_BY_EMAIL_CACHE)
+            .tag("result", "hit")
+            .functionCounter()
+            .count();
+        usersByEmail.put("cache-statistics@localhost", "value");
+        usersByEmail.get("cache-statistics@localhost");
+
+        assertThat(
+            meterRegistry.get("cache.gets").tag("cache", UserRepository.USERS_BY_EMAIL_CACHE).tag("result", "hit").functionCounter().count()
+        )
+            .isEqualTo(hits + 1);
+        assertThat(meterRegistry.get("cache.heap.size").tag("cache", Patient.class.getName()).gauge()).isNotNull();
+    }
+
+    @Test
+    @WithMockUser
+    void getCacheStatisticsIsForbiddenToUsers() throws Exception {
+        restCacheStatisticsMockMvc.perform(get(ENTITY_API_URL)).andExpect(status().isForbidden());
+    }
+}
@@ -2,6 +2,7 @@ package com.moxe.health.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -17,6 +18,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -186,6 +188,130 @@ class HospitalResourceIT {
         restHospitalMockMvc.perform(get(ENTITY_API_URL_ID, Long.MAX_VALUE)).andExpect(status().isNotFound());
     }
 
+    @Test
+    @Transactional
+    void getNotModifiedHospital() throws Exception {
+        // Initialize the database
+        hospitalRepository.saveAndFlush(hospital);
+
+        String eTag = restHospitalMockMvc
+            .perform(get(ENTITY_API_URL_ID, hospital.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, startsWith("\"0")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        // The hospital loaded once, as for a request without the header
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restHospitalMockMvc
+                        .perform(get(ENTITY_API_URL_ID, hospital.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                        .andExpect(status().isNotModified())
+                        .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            )
+            .statementsAtMost(1);
+
+        String listETag = restHospitalMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, startsWith("W/")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        restHospitalMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc").header(HttpHeaders.IF_NONE_MATCH, listETag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @Transactional
+    void updateHospitalWithStaleVersion() throws Exception {
+        // Initialize the database
+        hospitalRepository.saveAndFlush(hospital);
+
+        int databaseSizeBeforeUpdate = hospitalRepository.findAll().size();
+
+        Hospital updatedHospital = hospitalRepository.findById(hospital.getId()).get();
+        em.detach(updatedHospital);
+        updatedHospital.name(UPDATED_NAME);
+
+        // The If-Match header does not match the current version
+        restHospitalMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedHospital.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"41\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedHospital))
+            )
+            .andExpect(status().isPreconditionFailed());
+        restHospitalMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, updatedHospital.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"41\"")
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(updatedHospital))
+            )
+            .andExpect(status().isPreconditionFailed());
+
+        // The version of the body is not the current one
+        updatedHospital.setVersion(41L);
+        restHospitalMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, updatedHospital.getId())
+                    .with(csrf())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(updatedHospital))
+            )
+            .andExpect(status().isConflict());
+
+        // Validate the Hospital in the database
+        List<Hospital> hospitalList = hospitalRepository.findAll();
+        assertThat(hospitalList).hasSize(databaseSizeBeforeUpdate);
+        Hospital testHospital = hospitalList.get(hospitalList.size() - 1);
+        assertThat(testHospital.getName()).isEqualTo(DEFAULT_NAME);
+    }
+
+    @Test
+    @Transactional
+    void updateHospitalWithCurrentVersion() throws Exception {
+        // Initialize the database
+        hospitalRepository.saveAndFlush(hospital);
+
+        Hospital updatedHospital = new Hospital().name(UPDATED_NAME).description(UPDATED_DESCRIPTION);
+        updatedHospital.setId(hospital.getId());
+
+        // A list of tags is matched against the current version
+        restHospitalMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, hospital.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"41\", \"0\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedHospital))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+        restHospitalMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, hospital.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "*")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedHospital))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+
+        Hospital testHospital = hospitalRepository.findById(hospital.getId()).get();
+        assertThat(testHospital.getName()).isEqualTo(UPDATED_NAME);
+        assertThat(testHospital.getDescription()).isEqualTo(UPDATED_DESCRIPTION);
+        assertThat(testHospital.getVersion()).isEqualTo(2L);
+    }
+
     @Test
     @Transactional
     void putNewHospital() throws Exception {
@@ -420,4 +546,111 @@ class HospitalResourceIT {
         List<Hospital> hospitalList = hospitalRepository.findAll();
         assertThat(hospitalList).hasSize(databaseSizeBeforeDelete - 1);
     }
+
+    @Test
+    @Transactional
+    void getAllHospitalsWithinStatementBaseline() throws Exception {
+        // Each hospital has a provider, which would cost a select if the collection were serialized
+        for (int i = 0; i < 50; i++) {
+            Hospital other = createEntity(em);
+            em.persist(other);
+            em.persist(ProviderResourceIT.createEntity(em).hospital(other));
+        }
+
+        // The page, and the total
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restHospitalMockMvc
+                        .perform(get(ENTITY_API_URL + "?sort=id,desc&size=50"))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.length()").value(50))
+            )
+            .selectsAtMost(2)
+            .statementsAtMost(2);
+    }
+
+    @Test
+    @Transactional
+    void getHospitalWithinStatementBaseline() throws Exception {
+        hospitalRepository.saveAndFlush(hospital);
+
+        StatementCount
+            .of(em, () -> restHospitalMockMvc.perform(get(ENTITY_API_URL_ID, hospital.getId())).andExpect(status().isOk()))
+            .selectsAtMost(1)
+            .statementsAtMost(1);
+    }
+
+    @Test
+    @Transactional
+    void createHospitalWithinStatementBaseline() throws Exception {
+        // The insert, and at times the next block of ids
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restHospitalMockMvc
+                        .perform(
+                            post(ENTITY_API_URL)
+                                .with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestUtil.convertObjectToJsonBytes(hospital))
+                        )
+                        .andExpect(status().isCreated())
+            )
+            .selectsAtMost(0)
+            .insertsAtMost(1)
+            .statementsAtMost(2);
+    }
+
+    @Test
+    @Transactional
+    void updateHospitalWithinStatementBaseline() throws Exception {
+        hospitalRepository.saveAndFlush(hospital);
+        Hospital updatedHospital = createUpdatedEntity(em);
+        updatedHospital.setId(hospital.getId());
+
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restHospitalMockMvc
+                        .perform(
+                            put(ENTITY_API_URL_ID, hospital.getId())
+                                .with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestUtil.convertObjectToJsonBytes(updatedHospital))
+                        )
+                        .andExpect(status().isOk())
+            )
+            .selectsAtMost(1)
+            .updatesAtMost(1)
+            .statementsAtMost(2);
+    }
+
+    @Test
+    @Transactional
+    void partialUpdateHospitalWithinStatementBaseline() throws Exception {
+        hospitalRepository.saveAndFlush(hospital);
+        Hospital partialUpdatedHospital = new Hospital().name(UPDATED_NAME);
+        partialUpdatedHospital.setId(hospital.getId());
+
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restHospitalMockMvc
+                        .perform(
+                            patch(ENTITY_API_URL_ID, hospital.getId())
+                                .with(csrf())
+                                .contentType("application/merge-patch+json")
+                                .content(TestUtil.convertObjectToJsonBytes(partialUpdatedHospital))
+                        )
+                        .andExpect(status().isOk())
+            )
+            .selectsAtMost(1)
+            .updatesAtMost(1)
+            .statementsAtMost(2);
+    }
 }
@@ -0,0 +1,97 @@
+package com.moxe.health.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.domain.Patient;
+import com.moxe.health.domain.enumeration.Sex;
+import com.moxe.health.repository.PatientRepository;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Compares the throughput of {@link PatientResource#bulkSavePatients} with the single-row {@link PatientResource#createPatient}.
+ * <p>
+ * Run with {@code -Dbenchmark=true}.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PatientBulkBenchmarkIT {
+
+    private static final int ROWS = 2000;
+
+    private final Logger log = LoggerFactory.getLogger(PatientBulkBenchmarkIT.class);
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private MockMvc restPatientMockMvc;
+
+    @AfterEach
+    void cleanup() {
+        List<Patient> patients = patientRepository.findAll((root, query, cb) -> cb.like(root.get("name"), "benchmark-%"));
+        patientRepository.deleteAllByIdInBatch(patients.stream().map(Patient::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void bulkIsTenTimesFasterThanSingleRows() throws Exception {
+        // Warm up both endpoints
+        postOneByOne(100);
+        postBulk(100);
+
+        long singleRowsPerSecond = postOneByOne(ROWS);
+        long bulkRowsPerSecond = postBulk(ROWS);
+        log.info("Single rows: {} rows/s, bulk: {} rows/s", singleRowsPerSecond, bulkRowsPerSecond);
+
+        assertThat(bulkRowsPerSecond).isGreaterThanOrEqualTo(10 * singleRowsPerSecond);
+    }
+
+    private long postOneByOne(int rows) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            restPatientMockMvc
+                .perform(post("/api/patients").with(csrf()).contentType(MediaType.APPLICATION_JSON).content(row(i)))
+                .andExpect(status().isCreated());
+        }
+        return rowsPerSecond(rows, start);
+    }
+
+    private long postBulk(int rows) throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            body.append(row(i)).append('\n');
+        }
+        long start = System.nanoTime();
+        restPatientMockMvc
+            .perform(post("/api/patients/_bulk").with(csrf()).contentType("application/x-ndjson").content(body.toString()))
+            .andExpect(status().isOk());
+        return rowsPerSecond(rows, start);
+    }
+
+    private static String row(int i) throws Exception {
+        Patient patient = new Patient().name("benchmark-" + i).dateOfBirth(Instant.ofEpochSecond(i)).sex(Sex.FEMALE);
+        return new String(TestUtil.convertObjectToJsonBytes(patient), StandardCharsets.UTF_8);
+    }
+
+    private static long rowsPerSecond(int rows, long start) {
+        return rows * 1_000_000_000L / Math.max(1, System.nanoTime() - start);
+    }
+}
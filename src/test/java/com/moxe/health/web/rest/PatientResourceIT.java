@@ -1,27 +1,41 @@
 package com.moxe.health.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.moxe.health.IntegrationTest;
+import com.moxe.health.domain.Hospital;
 import com.moxe.health.domain.Patient;
 import com.moxe.health.domain.Provider;
 import com.moxe.health.domain.enumeration.Sex;
 import com.moxe.health.repository.PatientRepository;
+import com.moxe.health.service.PatientQueryService;
+import com.moxe.health.service.PatientService;
 import com.moxe.health.service.criteria.PatientCriteria;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Locale;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 import javax.persistence.EntityManager;
+import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -53,6 +67,12 @@ class PatientResourceIT {
     @Autowired
     private PatientRepository patientRepository;
 
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientQueryService patientQueryService;
+
     @Autowired
     private EntityManager em;
 
@@ -111,6 +131,29 @@ class PatientResourceIT {
         assertThat(testPatient.getSex()).isEqualTo(DEFAULT_SEX);
     }
 
+    @Test
+    @Transactional
+    void createPatientWithProviderReferencedById() throws Exception {
+        Provider provider = ProviderResourceIT.createEntity(em);
+        em.persist(provider);
+        em.flush();
+
+        // The provider is referenced by its id alone, without its version
+        Provider providerReference = new Provider();
+        providerReference.setId(provider.getId());
+        restPatientMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(patient.provider(providerReference)))
+            )
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.provider.name").value(provider.getName()));
+
+        assertThat(patientRepository.findAll()).anySatisfy(created -> assertThat(created.getProvider()).isEqualTo(provider));
+    }
+
     @Test
     @Transactional
     void createPatientWithExistingId() throws Exception {
@@ -217,6 +260,356 @@ class PatientResourceIT {
             .andExpect(jsonPath("$.[*].sex").value(hasItem(DEFAULT_SEX.toString())));
     }
 
+    @Test
+    @Transactional
+    void getAllPatientsWithFixedStatementCount() throws Exception {
+        String name = "page-" + count.incrementAndGet();
+        persistPatientsWithProviders(name, 100);
+
+        // One select for the page, one for the total
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restPatientMockMvc
+                        .perform(get(ENTITY_API_URL + "?name.equals=" + name + "&size=100"))
+                        .andExpect(status().isOk())
+                        .andExpect(header().string("X-Total-Count", "100"))
+                        .andExpect(jsonPath("$.length()").value(100))
+            )
+            .selectsAtMost(2)
+            .statementsAtMost(2);
+    }
+
+    @Test
+    @Transactional
+    void getAllPatientsWithCountStrategy() throws Exception {
+        // Initialize the database
+        patientRepository.saveAndFlush(patient);
+        Patient second = patientRepository.saveAndFlush(createEntity(em));
+        String filter = "?id.in=" + patient.getId() + "," + second.getId() + "&size=1&sort=id,asc";
+
+        for (String strategy : List.of("exact", "cached")) {
+            restPatientMockMvc
+                .perform(get(ENTITY_API_URL + filter + "&count=" + strategy))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(header().string("X-Total-Count-Strategy", strategy))
+                .andExpect(jsonPath("$.[*].id").value(contains(patient.getId().intValue())));
+        }
+
+        // The database has no planner statistics, so the estimate falls back to an exact count
+        restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "?size=1&count=estimated"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", String.valueOf(patientRepository.count())))
+            .andExpect(header().string("X-Total-Count-Strategy", "exact"));
+
+        // A partial page is not counted
+        restPatientMockMvc
+            .perform(get(ENTITY_API_URL + filter.replace("size=1", "size=5") + "&count=cached"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(header().string("X-Total-Count-Strategy", "exact"));
+
+        restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "/count" + filter + "&count=cached"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count-Strategy", "cached"))
+            .andExpect(content().string("2"));
+
+        restPatientMockMvc.perform(get(ENTITY_API_URL + "?count=unknown")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllPatientsWithCommittedCountStrategies() throws Exception {
+        // Parallel counts run in their own transaction, and cached counts are cleared on commit, so the entities are committed
+        String name = "count-" + count.incrementAndGet();
+        String filter = "?name.equals=" + name + "&size=1&count=";
+        try {
+            patientRepository.save(patient.name(name));
+
+            restPatientMockMvc
+                .perform(get(ENTITY_API_URL + filter + "parallel"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "1"))
+                .andExpect(header().string("X-Total-Count-Strategy", "parallel"));
+
+            restPatientMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + "cached")).andExpect(content().string("1"));
+
+            // Writes which bypass the service are not seen by the cached count
+            patientRepository.save(createEntity(em).name(name));
+            restPatientMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + "cached")).andExpect(content().string("1"));
+
+            // Writes through the service clear it
+            restPatientMockMvc
+                .perform(
+                    post(ENTITY_API_URL)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(createEntity(em).name(name)))
+                )
+                .andExpect(status().isCreated());
+            restPatientMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + "cached")).andExpect(content().string("3"));
+        } finally {
+            patientRepository.deleteAll(patientRepository.findAll((root, query, cb) -> cb.equal(root.get("name"), name)));
+        }
+    }
+
+    @Test
+    void searchPatients() throws Exception {
+        // The search index is updated once the transaction is committed, so the entities are committed
+        String word = RandomStringUtils.randomAlphabetic(10).toLowerCase(Locale.ROOT);
+        String typo = word.substring(0, 5) + (word.charAt(5) == 'a' ? 'b' : 'a') + word.substring(6);
+        Patient first = patientService.save(createEntity(em).name("Élodie " + word));
+        Patient second = patientService.save(createEntity(em).name("Elodie " + word + "son"));
+        Patient unindexed = null;
+        try {
+            restPatientMockMvc
+                .perform(get("/api/_search/patients").param("q", "ELODIE " + word))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(jsonPath("$.[*].id").value(contains(first.getId().intValue(), second.getId().intValue())));
+            restPatientMockMvc
+                .perform(get("/api/_search/patients").param("q", word.substring(0, 6)))
+                .andExpect(jsonPath("$.[*].id").value(contains(first.getId().intValue(), second.getId().intValue())));
+            restPatientMockMvc
+                .perform(get("/api/_search/patients").param("q", typo))
+                .andExpect(jsonPath("$.[*].id").value(contains(first.getId().intValue())));
+            restPatientMockMvc
+                .perform(get("/api/_search/patients").param("q", word.substring(0, 6)).param("size", "1").param("page", "1"))
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(jsonPath("$.[*].id").value(contains(second.getId().intValue())));
+
+            // Writes through the service update the index
+            patientService.update(second.name("Marie Curie"), null, null);
+            patientService.delete(first.getId());
+            restPatientMockMvc
+                .perform(get("/api/_search/patients").param("q", word))
+                .andExpect(header().string("X-Total-Count", "0"))
+                .andExpect(jsonPath("$").isEmpty());
+
+            // Writes which bypass the service are only seen once the index is rebuilt
+            unindexed = patientRepository.save(createEntity(em).name(word));
+            restPatientMockMvc.perform(get("/api/_search/patients").param("q", word)).andExpect(jsonPath("$").isEmpty());
+            patientQueryService.rebuildSearchIndex();
+            restPatientMockMvc
+                .perform(get("/api/_search/patients").param("q", word))
+                .andExpect(jsonPath("$.[*].id").value(contains(unindexed.getId().intValue())));
+        } finally {
+            patientRepository.deleteById(second.getId());
+            if (unindexed != null) {
+                patientRepository.deleteById(unindexed.getId());
+            }
+        }
+    }
+
+    @Test
+    @Transactional
+    void getAllPatientsByCursor() throws Exception {
+        // Initialize the database
+        patientRepository.saveAndFlush(patient);
+        Patient second = patientRepository.saveAndFlush(createEntity(em));
+        Patient third = patientRepository.saveAndFlush(createUpdatedEntity(em));
+        String filter = "&id.greaterThanOrEqual=" + patient.getId() + "&sort=name,desc";
+
+        // Get the first slice, which has no total count but a link to the next one
+        String link = restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "?cursor=&size=2" + filter))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.[*].id").value(contains(third.getId().intValue(), patient.getId().intValue())))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LINK);
+        Matcher cursor = Pattern.compile("cursor=([^&>]+)").matcher(link);
+        assertThat(cursor.find()).isTrue();
+
+        // Get the last slice, which has no next link
+        restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "?cursor=" + cursor.group(1) + "&size=2" + filter))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.LINK))
+            .andExpect(jsonPath("$.[*].id").value(contains(second.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    void getAllPatientsWithInvalidCursor() throws Exception {
+        restPatientMockMvc.perform(get(ENTITY_API_URL + "?cursor=invalid&sort=name,asc")).andExpect(status().isBadRequest());
+        restPatientMockMvc.perform(get(ENTITY_API_URL + "?cursor=&sort=unknown,asc")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void exportPatients() throws Exception {
+        // Initialize the database
+        patientRepository.saveAndFlush(patient);
+        String filter = "?id.equals=" + patient.getId();
+
+        // Export as newline delimited JSON, one patient per line
+        String ndjson = restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "/export" + filter))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("patients.ndjson")))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        assertThat(ndjson).startsWith("{\"id\":" + patient.getId() + ",").endsWith("}\n").containsOnlyOnce("\n");
+
+        // Export as CSV
+        String expectedCsv =
+            "id,name,dateOfBirth,sex,providerId\r\n" +
+            patient.getId() +
+            "," +
+            DEFAULT_NAME +
+            "," +
+            DEFAULT_DATE_OF_BIRTH +
+            "," +
+            DEFAULT_SEX +
+            ",\r\n";
+        restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "/export" + filter + "&format=csv"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("text/csv"))
+            .andExpect(content().string(expectedCsv));
+
+        // Export as gzipped CSV
+        byte[] gzipped = restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "/export" + filter + "&format=csv&gzip=true"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("patients.csv.gz")))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+        try (GZIPInputStream gunzipped = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertThat(new String(gunzipped.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(expectedCsv);
+        }
+    }
+
+    @Test
+    @Transactional
+    void exportPatientsAsCsvWithFormulaNames() throws Exception {
+        // Initialize the database
+        Patient formula = patientRepository.saveAndFlush(createEntity(em).name("=HYPERLINK(\"http://evil\",\"x\")"));
+        Patient dash = patientRepository.saveAndFlush(createEntity(em).name("-2+3"));
+        String filter = "?id.in=" + formula.getId() + "," + dash.getId() + "&format=csv";
+
+        // Prefixed with a quote, so that a spreadsheet shows them as text rather than evaluating them
+        String csv = restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "/export" + filter))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        assertThat(csv)
+            .contains(",\"'=HYPERLINK(\"\"http://evil\"\",\"\"x\"\")\",")
+            .contains(dash.getId() + ",'-2+3,")
+            .doesNotContain(",=")
+            .doesNotContain(",-");
+    }
+
+    @Test
+    @Transactional
+    void exportPatientsWithInvalidFormat() throws Exception {
+        restPatientMockMvc.perform(get(ENTITY_API_URL + "/export?format=xml")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void bulkCreatePatients() throws Exception {
+        int databaseSizeBeforeCreate = patientRepository.findAll().size();
+        String valid = new String(TestUtil.convertObjectToJsonBytes(patient), StandardCharsets.UTF_8);
+
+        // The second row misses its name and date of birth, the third one is not a patient
+        restPatientMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/_bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[" + valid + ",{\"sex\":\"" + DEFAULT_SEX + "\"},{\"sex\":\"UNKNOWN\"}," + valid + "]")
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].index").value(contains(0, 1, 2, 3)))
+            .andExpect(jsonPath("$.[*].status").value(contains("CREATED", "INVALID", "INVALID", "CREATED")))
+            .andExpect(jsonPath("$.[0].id").isNumber())
+            .andExpect(jsonPath("$.[1].errors").value(contains("dateOfBirth: must not be null", "name: must not be null")))
+            .andExpect(jsonPath("$.[2].errors").isNotEmpty());
+
+        assertThat(patientRepository.findAll()).hasSize(databaseSizeBeforeCreate + 2);
+    }
+
+    @Test
+    @Transactional
+    void bulkUpdatePatients() throws Exception {
+        // Initialize the database
+        patientRepository.saveAndFlush(patient);
+        Patient updatedPatient = new Patient().id(patient.getId()).name(UPDATED_NAME).dateOfBirth(UPDATED_DATE_OF_BIRTH).sex(UPDATED_SEX);
+        Patient missingPatient = new Patient().id(Long.MAX_VALUE).name(UPDATED_NAME).dateOfBirth(UPDATED_DATE_OF_BIRTH).sex(UPDATED_SEX);
+
+        // Send the rows as newline delimited JSON
+        restPatientMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/_bulk")
+                    .with(csrf())
+                    .contentType("application/x-ndjson")
+                    .content(
+                        new String(TestUtil.convertObjectToJsonBytes(updatedPatient), StandardCharsets.UTF_8) +
+                        "\n" +
+                        new String(TestUtil.convertObjectToJsonBytes(missingPatient), StandardCharsets.UTF_8) +
+                        "\n"
+                    )
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].status").value(contains("UPDATED", "NOT_FOUND")))
+            .andExpect(jsonPath("$.[0].id").value(patient.getId().intValue()));
+
+        em.flush();
+        em.clear();
+        Patient testPatient = patientRepository.findById(patient.getId()).orElseThrow();
+        assertThat(testPatient.getName()).isEqualTo(UPDATED_NAME);
+        assertThat(testPatient.getDateOfBirth()).isEqualTo(UPDATED_DATE_OF_BIRTH);
+        assertThat(testPatient.getSex()).isEqualTo(UPDATED_SEX);
+    }
+
+    @Test
+    @Transactional
+    void bulkUpdatePatientsWithStaleVersion() throws Exception {
+        // Initialize the database
+        patientRepository.saveAndFlush(patient);
+        Patient second = patientRepository.saveAndFlush(createEntity(em));
+        Patient stalePatient = new Patient()
+            .id(patient.getId())
+            .version(patient.getVersion() - 1)
+            .name(UPDATED_NAME)
+            .dateOfBirth(UPDATED_DATE_OF_BIRTH)
+            .sex(UPDATED_SEX);
+        Patient currentPatient = new Patient()
+            .id(second.getId())
+            .version(second.getVersion())
+            .name(UPDATED_NAME)
+            .dateOfBirth(UPDATED_DATE_OF_BIRTH)
+            .sex(UPDATED_SEX);
+
+        restPatientMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/_bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(List.of(stalePatient, currentPatient)))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].status").value(contains("CONFLICT", "UPDATED")));
+
+        em.flush();
+        em.clear();
+        assertThat(patientRepository.findById(patient.getId()).orElseThrow().getName()).isEqualTo(DEFAULT_NAME);
+        assertThat(patientRepository.findById(second.getId()).orElseThrow().getName()).isEqualTo(UPDATED_NAME);
+    }
+
     @Test
     @Transactional
     void getPatient() throws Exception {
@@ -465,6 +858,140 @@ class PatientResourceIT {
         restPatientMockMvc.perform(get(ENTITY_API_URL_ID, Long.MAX_VALUE)).andExpect(status().isNotFound());
     }
 
+    @Test
+    @Transactional
+    void getNotModifiedPatient() throws Exception {
+        // Initialize the database
+        patientRepository.saveAndFlush(patient);
+
+        String eTag = restPatientMockMvc
+            .perform(get(ENTITY_API_URL_ID, patient.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, startsWith("\"0")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        // The patient loaded once, as for a request without the header
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restPatientMockMvc
+                        .perform(get(ENTITY_API_URL_ID, patient.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                        .andExpect(status().isNotModified())
+                        .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            )
+            .statementsAtMost(1);
+
+        String listETag = restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, startsWith("W/")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        restPatientMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc").header(HttpHeaders.IF_NONE_MATCH, listETag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @Transactional
+    void updatePatientWithStaleVersion() throws Exception {
+        // Initialize the database
+        patientRepository.saveAndFlush(patient);
+
+        int databaseSizeBeforeUpdate = patientRepository.findAll().size();
+
+        Patient updatedPatient = patientRepository.findById(patient.getId()).get();
+        em.detach(updatedPatient);
+        updatedPatient.name(UPDATED_NAME);
+
+        // The If-Match header does not match the current version
+        restPatientMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedPatient.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"41\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedPatient))
+            )
+            .andExpect(status().isPreconditionFailed());
+        restPatientMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, updatedPatient.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"41\"")
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(updatedPatient))
+            )
+            .andExpect(status().isPreconditionFailed());
+
+        // The version of the body is not the current one
+        updatedPatient.setVersion(41L);
+        restPatientMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, updatedPatient.getId())
+                    .with(csrf())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(updatedPatient))
+            )
+            .andExpect(status().isConflict());
+
+        // Validate the Patient in the database
+        List<Patient> patientList = patientRepository.findAll();
+        assertThat(patientList).hasSize(databaseSizeBeforeUpdate);
+        Patient testPatient = patientList.get(patientList.size() - 1);
+        assertThat(testPatient.getName()).isEqualTo(DEFAULT_NAME);
+    }
+
+    @Test
+    @Transactional
+    void updatePatientWithCurrentVersion() throws Exception {
+        // Initialize the database
+        Provider provider = ProviderResourceIT.createEntity(em);
+        em.persist(provider);
+        patient.setProvider(provider);
+        patientRepository.saveAndFlush(patient);
+        em.clear();
+
+        // The provider is referenced by its id alone
+        Provider providerReference = new Provider();
+        providerReference.setId(provider.getId());
+        Patient updatedPatient = new Patient().name(UPDATED_NAME).dateOfBirth(UPDATED_DATE_OF_BIRTH).sex(UPDATED_SEX);
+        updatedPatient.setId(patient.getId());
+        updatedPatient.setProvider(providerReference);
+
+        // The If-Match header has the version of the provider, which does not match
+        restPatientMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, patient.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"0.41\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedPatient))
+            )
+            .andExpect(status().isPreconditionFailed());
+
+        restPatientMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, patient.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"0.0\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedPatient))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1.0\""))
+            .andExpect(jsonPath("$.version").value(1))
+            .andExpect(jsonPath("$.provider.name").value(provider.getName()));
+
+        Patient testPatient = patientRepository.findById(patient.getId()).get();
+        assertThat(testPatient.getName()).isEqualTo(UPDATED_NAME);
+        assertThat(testPatient.getVersion()).isEqualTo(1L);
+        assertThat(testPatient.getProvider().getId()).isEqualTo(provider.getId());
+    }
+
     @Test
     @Transactional
     void putNewPatient() throws Exception {
@@ -497,6 +1024,35 @@ class PatientResourceIT {
         assertThat(testPatient.getSex()).isEqualTo(UPDATED_SEX);
     }
 
+    @Test
+    @Transactional
+    void putPatientWithProviderReferencedById() throws Exception {
+        // Initialize the database
+        patientRepository.saveAndFlush(patient);
+        Provider provider = ProviderResourceIT.createEntity(em);
+        em.persist(provider);
+        em.flush();
+
+        // The provider is referenced by its id alone, without its version
+        Provider providerReference = new Provider();
+        providerReference.setId(provider.getId());
+        Patient updatedPatient = patientRepository.findById(patient.getId()).get();
+        em.detach(updatedPatient);
+        updatedPatient.name(UPDATED_NAME).provider(providerReference);
+
+        restPatientMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedPatient.getId())
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedPatient))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.provider.name").value(provider.getName()));
+
+        assertThat(patientRepository.findById(patient.getId()).get().getProvider()).isEqualTo(provider);
+    }
+
     @Test
     @Transactional
     void putNonExistingPatient() throws Exception {
@@ -701,4 +1257,143 @@ class PatientResourceIT {
         List<Patient> patientList = patientRepository.findAll();
         assertThat(patientList).hasSize(databaseSizeBeforeDelete - 1);
     }
+
+    @Test
+    @Transactional
+    void getAllPatientsByCriteriaWithinStatementBaseline() throws Exception {
+        String name = "criteria-" + count.incrementAndGet();
+        Provider provider = persistPatientsWithProviders(name, 50);
+
+        // The page with the providers, which is not full, so that no total is counted
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restPatientMockMvc
+                        .perform(get(ENTITY_API_URL + "?name.contains=" + name + "&providerId.notEquals=" + provider.getId() + "&size=50"))
+                        .andExpect(status().isOk())
+                        .andExpect(header().string("X-Total-Count", "49"))
+            )
+            .selectsAtMost(1)
+            .statementsAtMost(1);
+    }
+
+    @Test
+    @Transactional
+    void getPatientWithinStatementBaseline() throws Exception {
+        Provider provider = ProviderResourceIT.createEntity(em);
+        em.persist(provider);
+        patientRepository.saveAndFlush(patient.provider(provider));
+
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restPatientMockMvc
+                        .perform(get(ENTITY_API_URL_ID, patient.getId()))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.provider.name").value(provider.getName()))
+            )
+            .selectsAtMost(1)
+            .statementsAtMost(1);
+    }
+
+    @Test
+    @Transactional
+    void createPatientWithinStatementBaseline() throws Exception {
+        Provider provider = ProviderResourceIT.createEntity(em);
+        em.persist(provider);
+        Provider providerReference = new Provider();
+        providerReference.setId(provider.getId());
+
+        // The provider returned with the patient, its insert, and at times the next block of ids
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restPatientMockMvc
+                        .perform(
+                            post(ENTITY_API_URL)
+                                .with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestUtil.convertObjectToJsonBytes(patient.provider(providerReference)))
+                        )
+                        .andExpect(status().isCreated())
+            )
+            .selectsAtMost(1)
+            .insertsAtMost(1)
+            .statementsAtMost(3);
+    }
+
+    @Test
+    @Transactional
+    void updatePatientWithinStatementBaseline() throws Exception {
+        Provider provider = ProviderResourceIT.createEntity(em);
+        em.persist(provider);
+        patientRepository.saveAndFlush(patient.provider(provider));
+        Provider providerReference = new Provider();
+        providerReference.setId(provider.getId());
+        Patient updatedPatient = createUpdatedEntity(em).provider(providerReference);
+        updatedPatient.setId(patient.getId());
+
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restPatientMockMvc
+                        .perform(
+                            put(ENTITY_API_URL_ID, patient.getId())
+                                .with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestUtil.convertObjectToJsonBytes(updatedPatient))
+                        )
+                        .andExpect(status().isOk())
+            )
+            .selectsAtMost(1)
+            .updatesAtMost(1)
+            .statementsAtMost(2);
+    }
+
+    @Test
+    @Transactional
+    void partialUpdatePatientWithinStatementBaseline() throws Exception {
+        patientRepository.saveAndFlush(patient);
+        Patient partialUpdatedPatient = new Patient().name(UPDATED_NAME);
+        partialUpdatedPatient.setId(patient.getId());
+
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restPatientMockMvc
+                        .perform(
+                            patch(ENTITY_API_URL_ID, patient.getId())
+                                .with(csrf())
+                                .contentType("application/merge-patch+json")
+                                .content(TestUtil.convertObjectToJsonBytes(partialUpdatedPatient))
+                        )
+                        .andExpect(status().isOk())
+            )
+            .selectsAtMost(1)
+            .updatesAtMost(1)
+            .statementsAtMost(2);
+    }
+
+    /**
+     * Persist patients with the given name, each with its own provider and hospital, which would each cost a select
+     * without a fetch plan.
+     * @return the provider of the last patient.
+     */
+    private Provider persistPatientsWithProviders(String name, int size) {
+        Provider provider = null;
+        for (int i = 0; i < size; i++) {
+            Hospital hospital = HospitalResourceIT.createEntity(em);
+            em.persist(hospital);
+            provider = ProviderResourceIT.createEntity(em).hospital(hospital);
+            em.persist(provider);
+            em.persist(createEntity(em).name(name).provider(provider));
+        }
+        em.flush();
+        return provider;
+    }
 }
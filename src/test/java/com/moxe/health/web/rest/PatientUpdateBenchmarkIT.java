@@ -0,0 +1,124 @@
+package com.moxe.health.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.domain.Patient;
+import com.moxe.health.domain.enumeration.Sex;
+import com.moxe.health.repository.PatientRepository;
+import com.moxe.health.service.PatientService;
+import java.time.Instant;
+import java.util.Arrays;
+import javax.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares the latency of the single-statement {@link PatientService#update} with the previous update of
+ * {@link PatientResource#updatePatient}, which read the version of the patient in a transaction, then merged the patient,
+ * selecting it again, in another transaction, with the second-level cache enabled as in production. A patient read in
+ * between stays cached, as the single statement only evicts the updated one.
+ * <p>
+ * Run with {@code -Dbenchmark=true}, and {@code -Pprod} to run it against PostgreSQL.
+ */
+@IntegrationTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.cache.use_second_level_cache=true")
+class PatientUpdateBenchmarkIT {
+
+    private static final int UPDATES = 2000;
+
+    private final Logger log = LoggerFactory.getLogger(PatientUpdateBenchmarkIT.class);
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Patient patient;
+
+    private Patient neighbour;
+
+    @BeforeEach
+    void init() {
+        patient = patientRepository.save(new Patient().name("benchmark").dateOfBirth(Instant.EPOCH).sex(Sex.FEMALE));
+        neighbour = patientRepository.save(new Patient().name("neighbour").dateOfBirth(Instant.EPOCH).sex(Sex.MALE));
+    }
+
+    @AfterEach
+    void cleanup() {
+        patientRepository.deleteById(patient.getId());
+        patientRepository.deleteById(neighbour.getId());
+    }
+
+    @Test
+    void singleStatementUpdateIsFaster() {
+        // Warm up both paths
+        updateWithReadAndMerge(200);
+        updateWithSingleStatement(200);
+
+        long[] readAndMerge = updateWithReadAndMerge(UPDATES);
+        long[] singleStatement = updateWithSingleStatement(UPDATES);
+        log.info(
+            "Read and merge: p50 {} us, p99 {} us; single statement: p50 {} us, p99 {} us",
+            percentile(readAndMerge, 50),
+            percentile(readAndMerge, 99),
+            percentile(singleStatement, 50),
+            percentile(singleStatement, 99)
+        );
+
+        assertThat(percentile(singleStatement, 50)).isLessThan(percentile(readAndMerge, 50));
+        assertThat(entityManagerFactory.getCache().contains(Patient.class, neighbour.getId())).isTrue();
+    }
+
+    private long[] updateWithReadAndMerge(int updates) {
+        long[] latencies = new long[updates];
+        for (int i = 0; i < updates; i++) {
+            Patient updatedPatient = updated(i);
+            long start = System.nanoTime();
+            Long version = patientRepository.findVersionById(patient.getId()).orElseThrow().getVersion();
+            updatedPatient.setVersion(version);
+            transactionTemplate.executeWithoutResult(status -> patientRepository.save(updatedPatient));
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private long[] updateWithSingleStatement(int updates) {
+        long[] latencies = new long[updates];
+        for (int i = 0; i < updates; i++) {
+            Patient updatedPatient = updated(i);
+            long start = System.nanoTime();
+            patientService.update(updatedPatient, null, null).orElseThrow();
+            latencies[i] = System.nanoTime() - start;
+            patientService.findOne(neighbour.getId());
+        }
+        return latencies;
+    }
+
+    private Patient updated(int i) {
+        Patient updatedPatient = new Patient().name("benchmark-" + i).dateOfBirth(Instant.ofEpochSecond(i)).sex(Sex.FEMALE);
+        updatedPatient.setId(patient.getId());
+        return updatedPatient;
+    }
+
+    private static long percentile(long[] latencies, int percentile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1000;
+    }
+}
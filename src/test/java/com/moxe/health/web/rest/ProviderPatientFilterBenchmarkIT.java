@@ -0,0 +1,149 @@
+package com.moxe.health.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.domain.Patient_;
+import com.moxe.health.domain.Provider;
+import com.moxe.health.domain.Provider_;
+import com.moxe.health.repository.ProviderRepository;
+import com.moxe.health.service.ProviderQueryService;
+import com.moxe.health.service.criteria.ProviderCriteria;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import javax.persistence.criteria.JoinType;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares filtering the providers on their patients with a join and {@code distinct}, as {@link ProviderQueryService}
+ * used to, and with the {@code EXISTS} subquery it now uses.
+ * <p>
+ * Run with {@code -Dbenchmark=true}, and {@code -Pprod} to run it against PostgreSQL; the number of patients defaults to
+ * one million, and can be set with {@code -Dbenchmark.patients}.
+ */
+@IntegrationTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProviderPatientFilterBenchmarkIT {
+
+    private static final long FIRST_ID = 20_000_001L;
+
+    private static final int PROVIDERS = 1_000;
+
+    private static final int RUNS = 5;
+
+    private final Logger log = LoggerFactory.getLogger(ProviderPatientFilterBenchmarkIT.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @Autowired
+    private ProviderQueryService providerQueryService;
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.MINUTES)
+    void existsIsFasterThanJoinAndDistinct() throws Exception {
+        int patients = Integer.getInteger("benchmark.patients", 1_000_000);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            boolean postgresql = isPostgresql();
+            transactionTemplate.executeWithoutResult(status -> insertDataset(jdbcTemplate, patients, postgresql));
+            if (postgresql) {
+                jdbcTemplate.execute("analyze provider");
+                jdbcTemplate.execute("analyze patient");
+            }
+            Pageable pageable = PageRequest.of(0, 20, Sort.by(Provider_.ID));
+
+            // Every patient matches, so that the join multiplies each provider by its patients
+            long joinMillis = medianMillis(lowestPatientId -> providerRepository.findAll(joinSpecification(lowestPatientId), pageable));
+            long existsMillis = medianMillis(lowestPatientId -> providerQueryService.findByCriteria(criteria(lowestPatientId), pageable));
+            log.info("{} patients of {} providers: join and distinct {} ms, exists {} ms", patients, PROVIDERS, joinMillis, existsMillis);
+
+            Page<Provider> page = providerQueryService.findByCriteria(criteria(FIRST_ID), pageable);
+            assertThat(page.getTotalElements()).isEqualTo(PROVIDERS);
+            assertThat(existsMillis).isLessThan(joinMillis);
+        } finally {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("delete from patient where id >= ?", FIRST_ID);
+                jdbcTemplate.update("delete from provider where id >= ?", FIRST_ID);
+            });
+        }
+    }
+
+    private static Specification<Provider> joinSpecification(long lowestPatientId) {
+        return (root, query, cb) -> {
+            query.distinct(true);
+            return cb.greaterThanOrEqualTo(root.join(Provider_.patients, JoinType.LEFT).get(Patient_.id), lowestPatientId);
+        };
+    }
+
+    private static ProviderCriteria criteria(long lowestPatientId) {
+        ProviderCriteria criteria = new ProviderCriteria();
+        criteria.patientId().setGreaterThanOrEqual(lowestPatientId);
+        return criteria;
+    }
+
+    private boolean isPostgresql() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres");
+        }
+    }
+
+    private void insertDataset(JdbcTemplate jdbcTemplate, int patients, boolean postgresql) {
+        String range = postgresql ? "generate_series(1, ?) as x" : "system_range(1, ?)";
+
+        jdbcTemplate.update(
+            "insert into provider (id, name) select ? + x - 1, 'benchmark-' || x from " + range,
+            FIRST_ID,
+            PROVIDERS
+        );
+        jdbcTemplate.update(
+            "insert into patient (id, name, date_of_birth, sex, provider_id) " +
+            "select ? + x - 1, 'benchmark-' || x, timestamp '2000-01-01 00:00:00', 'FEMALE', ? + mod(x, ?) from " +
+            range,
+            FIRST_ID,
+            FIRST_ID,
+            PROVIDERS,
+            patients
+        );
+    }
+
+    /**
+     * Run the query with a different parameter each time, so that the database cannot reuse a previous result.
+     */
+    private static long medianMillis(LongFunction<?> query) {
+        // Warm up
+        query.apply(FIRST_ID - RUNS);
+        long[] millis = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            query.apply(FIRST_ID - i);
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(millis);
+        return millis[RUNS / 2];
+    }
+}
@@ -1,7 +1,11 @@
 package com.moxe.health.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -11,15 +15,26 @@ import com.moxe.health.domain.Hospital;
 import com.moxe.health.domain.Patient;
 import com.moxe.health.domain.Provider;
 import com.moxe.health.repository.ProviderRepository;
+import com.moxe.health.service.PatientService;
+import com.moxe.health.service.ProviderQueryService;
+import com.moxe.health.service.ProviderService;
 import com.moxe.health.service.criteria.ProviderCriteria;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 import javax.persistence.EntityManager;
+import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -48,6 +63,15 @@ class ProviderResourceIT {
     @Autowired
     private ProviderRepository providerRepository;
 
+    @Autowired
+    private ProviderService providerService;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private ProviderQueryService providerQueryService;
+
     @Autowired
     private EntityManager em;
 
@@ -105,6 +129,29 @@ class ProviderResourceIT {
         assertThat(testProvider.getSpecialty()).isEqualTo(DEFAULT_SPECIALTY);
     }
 
+    @Test
+    @Transactional
+    void createProviderWithHospitalReferencedById() throws Exception {
+        Hospital hospital = HospitalResourceIT.createEntity(em);
+        em.persist(hospital);
+        em.flush();
+
+        // The hospital is referenced by its id alone, without its version
+        Hospital hospitalReference = new Hospital();
+        hospitalReference.setId(hospital.getId());
+        restProviderMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(provider.hospital(hospitalReference)))
+            )
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.hospital.name").value(hospital.getName()));
+
+        assertThat(providerRepository.findAll()).anySatisfy(created -> assertThat(created.getHospital()).isEqualTo(hospital));
+    }
+
     @Test
     @Transactional
     void createProviderWithExistingId() throws Exception {
@@ -166,6 +213,232 @@ class ProviderResourceIT {
             .andExpect(jsonPath("$.[*].specialty").value(hasItem(DEFAULT_SPECIALTY)));
     }
 
+    @Test
+    @Transactional
+    void getAllProvidersWithFixedStatementCount() throws Exception {
+        String name = "page-" + count.incrementAndGet();
+        persistProvidersWithHospitals(name, 100);
+
+        // One select for the page, one for the total
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restProviderMockMvc
+                        .perform(get(ENTITY_API_URL + "?name.equals=" + name + "&size=100"))
+                        .andExpect(status().isOk())
+                        .andExpect(header().string("X-Total-Count", "100"))
+                        .andExpect(jsonPath("$.length()").value(100))
+            )
+            .selectsAtMost(2)
+            .statementsAtMost(2);
+    }
+
+    @Test
+    @Transactional
+    void getAllProvidersWithCountStrategy() throws Exception {
+        // Initialize the database
+        providerRepository.saveAndFlush(provider);
+        Provider second = providerRepository.saveAndFlush(createEntity(em));
+        String filter = "?id.in=" + provider.getId() + "," + second.getId() + "&size=1&sort=id,asc";
+
+        for (String strategy : List.of("exact", "cached")) {
+            restProviderMockMvc
+                .perform(get(ENTITY_API_URL + filter + "&count=" + strategy))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(header().string("X-Total-Count-Strategy", strategy))
+                .andExpect(jsonPath("$.[*].id").value(contains(provider.getId().intValue())));
+        }
+
+        // The database has no planner statistics, so the estimate falls back to an exact count
+        restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "?size=1&count=estimated"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", String.valueOf(providerRepository.count())))
+            .andExpect(header().string("X-Total-Count-Strategy", "exact"));
+
+        // A partial page is not counted
+        restProviderMockMvc
+            .perform(get(ENTITY_API_URL + filter.replace("size=1", "size=5") + "&count=cached"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(header().string("X-Total-Count-Strategy", "exact"));
+
+        restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "/count" + filter + "&count=cached"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count-Strategy", "cached"))
+            .andExpect(content().string("2"));
+
+        restProviderMockMvc.perform(get(ENTITY_API_URL + "?count=unknown")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllProvidersWithCommittedCountStrategies() throws Exception {
+        // Parallel counts run in their own transaction, and cached counts are cleared on commit, so the entities are committed
+        String name = "count-" + count.incrementAndGet();
+        String filter = "?name.equals=" + name + "&size=1&count=";
+        try {
+            providerRepository.save(provider.name(name));
+
+            restProviderMockMvc
+                .perform(get(ENTITY_API_URL + filter + "parallel"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "1"))
+                .andExpect(header().string("X-Total-Count-Strategy", "parallel"));
+
+            restProviderMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + "cached")).andExpect(content().string("1"));
+
+            // Writes which bypass the service are not seen by the cached count
+            providerRepository.save(createEntity(em).name(name));
+            restProviderMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + "cached")).andExpect(content().string("1"));
+
+            // Writes through the service clear it
+            restProviderMockMvc
+                .perform(
+                    post(ENTITY_API_URL)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(createEntity(em).name(name)))
+                )
+                .andExpect(status().isCreated());
+            restProviderMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + "cached")).andExpect(content().string("3"));
+        } finally {
+            providerRepository.deleteAll(providerRepository.findAll((root, query, cb) -> cb.equal(root.get("name"), name)));
+        }
+    }
+
+    @Test
+    void getAllProvidersByPatientWithCachedCountAfterPatientWrites() throws Exception {
+        // Cached counts are cleared on commit, so the entities are committed
+        Provider first = providerRepository.save(createEntity(em));
+        Provider second = providerRepository.save(createEntity(em));
+        try {
+            Patient patient = patientService.save(PatientResourceIT.createEntity(em).provider(first));
+            String filter = "?patientId.equals=" + patient.getId() + "&count=cached&id.equals=";
+            restProviderMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + first.getId())).andExpect(content().string("1"));
+
+            // Moved to another provider
+            patientService.update(patient.provider(second), null, null);
+            restProviderMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + first.getId())).andExpect(content().string("0"));
+            restProviderMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + second.getId())).andExpect(content().string("1"));
+
+            patientService.delete(patient.getId());
+            restProviderMockMvc.perform(get(ENTITY_API_URL + "/count" + filter + second.getId())).andExpect(content().string("0"));
+        } finally {
+            providerRepository.deleteAll(List.of(first, second));
+        }
+    }
+
+    @Test
+    void searchProviders() throws Exception {
+        // The search index is updated once the transaction is committed, so the entities are committed
+        String word = RandomStringUtils.randomAlphabetic(10).toLowerCase(Locale.ROOT);
+        Provider first = providerService.save(createEntity(em).name("Gregory House").specialty("Diagnostic " + word));
+        Provider second = providerService.save(createEntity(em).name("James Wilson " + word).specialty("Oncology"));
+        try {
+            restProviderMockMvc
+                .perform(get("/api/_search/providers").param("q", word.toUpperCase(Locale.ROOT)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(jsonPath("$.[*].id").value(containsInAnyOrder(first.getId().intValue(), second.getId().intValue())));
+            restProviderMockMvc
+                .perform(get("/api/_search/providers").param("q", "diagnostik " + word.substring(0, 4)))
+                .andExpect(jsonPath("$.[*].id").value(contains(first.getId().intValue())));
+
+            providerService.delete(first.getId());
+            restProviderMockMvc
+                .perform(get("/api/_search/providers").param("q", word))
+                .andExpect(jsonPath("$.[*].id").value(contains(second.getId().intValue())));
+        } finally {
+            providerRepository.deleteById(second.getId());
+        }
+    }
+
+    @Test
+    @Transactional
+    void getAllProvidersByCursor() throws Exception {
+        // Initialize the database
+        providerRepository.saveAndFlush(provider);
+        Provider second = providerRepository.saveAndFlush(createEntity(em));
+        Provider third = providerRepository.saveAndFlush(createUpdatedEntity(em));
+        String filter = "&id.greaterThanOrEqual=" + provider.getId() + "&sort=name,desc";
+
+        // Get the first slice, which has no total count but a link to the next one
+        String link = restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "?cursor=&size=2" + filter))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.[*].id").value(contains(third.getId().intValue(), provider.getId().intValue())))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LINK);
+        Matcher cursor = Pattern.compile("cursor=([^&>]+)").matcher(link);
+        assertThat(cursor.find()).isTrue();
+
+        // Get the last slice, which has no next link
+        restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "?cursor=" + cursor.group(1) + "&size=2" + filter))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.LINK))
+            .andExpect(jsonPath("$.[*].id").value(contains(second.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    void getAllProvidersWithInvalidCursor() throws Exception {
+        restProviderMockMvc.perform(get(ENTITY_API_URL + "?cursor=invalid&sort=name,asc")).andExpect(status().isBadRequest());
+        restProviderMockMvc.perform(get(ENTITY_API_URL + "?cursor=&sort=unknown,asc")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void exportProviders() throws Exception {
+        // Initialize the database
+        providerRepository.saveAndFlush(provider);
+        String filter = "?id.equals=" + provider.getId();
+
+        // Export as newline delimited JSON, one provider per line
+        String ndjson = restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "/export" + filter))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("providers.ndjson")))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        assertThat(ndjson).startsWith("{\"id\":" + provider.getId() + ",").endsWith("}\n").containsOnlyOnce("\n");
+
+        // Export as CSV
+        String expectedCsv = "id,name,specialty,hospitalId\r\n" + provider.getId() + "," + DEFAULT_NAME + "," + DEFAULT_SPECIALTY + ",\r\n";
+        restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "/export" + filter + "&format=csv"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("text/csv"))
+            .andExpect(content().string(expectedCsv));
+
+        // Export as gzipped CSV
+        byte[] gzipped = restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "/export" + filter + "&format=csv&gzip=true"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("providers.csv.gz")))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+        try (GZIPInputStream gunzipped = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertThat(new String(gunzipped.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(expectedCsv);
+        }
+    }
+
+    @Test
+    @Transactional
+    void exportProvidersWithInvalidFormat() throws Exception {
+        restProviderMockMvc.perform(get(ENTITY_API_URL + "/export?format=xml")).andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     void getProvider() throws Exception {
@@ -353,6 +626,37 @@ class ProviderResourceIT {
         defaultProviderShouldNotBeFound("patientId.equals=" + (patientId + 1));
     }
 
+    @Test
+    @Transactional
+    void getAllProvidersByPatientIsInShouldNotRepeatProviders() throws Exception {
+        // Initialize the database
+        providerRepository.saveAndFlush(provider);
+        Patient first = PatientResourceIT.createEntity(em).provider(provider);
+        Patient second = PatientResourceIT.createEntity(em).provider(provider);
+        em.persist(first);
+        em.persist(second);
+        Provider withoutPatients = providerRepository.saveAndFlush(createEntity(em));
+        em.flush();
+
+        // Without distinct, the provider is returned once although both its patients match
+        restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "?patientId.in=" + first.getId() + "," + second.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(jsonPath("$.[*].id").value(contains(provider.getId().intValue())));
+
+        // Get the providers without patients
+        restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "?patientId.specified=false&id.in=" + provider.getId() + "," + withoutPatients.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(withoutPatients.getId().intValue())));
+
+        restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "?patientId.specified=true&id.in=" + provider.getId() + "," + withoutPatients.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(provider.getId().intValue())));
+    }
+
     @Test
     @Transactional
     void getAllProvidersByHospitalIsEqualToSomething() throws Exception {
@@ -422,6 +726,132 @@ class ProviderResourceIT {
         restProviderMockMvc.perform(get(ENTITY_API_URL_ID, Long.MAX_VALUE)).andExpect(status().isNotFound());
     }
 
+    @Test
+    @Transactional
+    void getNotModifiedProvider() throws Exception {
+        // Initialize the database
+        providerRepository.saveAndFlush(provider);
+
+        String eTag = restProviderMockMvc
+            .perform(get(ENTITY_API_URL_ID, provider.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, startsWith("\"0")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        // The provider loaded once, as for a request without the header
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restProviderMockMvc
+                        .perform(get(ENTITY_API_URL_ID, provider.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                        .andExpect(status().isNotModified())
+                        .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            )
+            .statementsAtMost(1);
+
+        String listETag = restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, startsWith("W/")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        restProviderMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc").header(HttpHeaders.IF_NONE_MATCH, listETag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @Transactional
+    void updateProviderWithStaleVersion() throws Exception {
+        // Initialize the database
+        providerRepository.saveAndFlush(provider);
+
+        int databaseSizeBeforeUpdate = providerRepository.findAll().size();
+
+        Provider updatedProvider = providerRepository.findById(provider.getId()).get();
+        em.detach(updatedProvider);
+        updatedProvider.name(UPDATED_NAME);
+
+        // The If-Match header does not match the current version
+        restProviderMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedProvider.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"41\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedProvider))
+            )
+            .andExpect(status().isPreconditionFailed());
+        restProviderMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, updatedProvider.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"41\"")
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(updatedProvider))
+            )
+            .andExpect(status().isPreconditionFailed());
+
+        // The version of the body is not the current one
+        updatedProvider.setVersion(41L);
+        restProviderMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, updatedProvider.getId())
+                    .with(csrf())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(updatedProvider))
+            )
+            .andExpect(status().isConflict());
+
+        // Validate the Provider in the database
+        List<Provider> providerList = providerRepository.findAll();
+        assertThat(providerList).hasSize(databaseSizeBeforeUpdate);
+        Provider testProvider = providerList.get(providerList.size() - 1);
+        assertThat(testProvider.getName()).isEqualTo(DEFAULT_NAME);
+    }
+
+    @Test
+    @Transactional
+    void partialUpdateProviderWithCurrentVersion() throws Exception {
+        // Initialize the database
+        providerRepository.saveAndFlush(provider);
+
+        Provider partialUpdatedProvider = new Provider().specialty(UPDATED_SPECIALTY);
+        partialUpdatedProvider.setId(provider.getId());
+
+        restProviderMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, provider.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"0\"")
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(partialUpdatedProvider))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+            .andExpect(jsonPath("$.name").value(DEFAULT_NAME))
+            .andExpect(jsonPath("$.specialty").value(UPDATED_SPECIALTY));
+
+        // The tag is no longer current
+        restProviderMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, provider.getId())
+                    .with(csrf())
+                    .header(HttpHeaders.IF_MATCH, "\"0\"")
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(partialUpdatedProvider))
+            )
+            .andExpect(status().isPreconditionFailed());
+
+        Provider testProvider = providerRepository.findById(provider.getId()).get();
+        assertThat(testProvider.getName()).isEqualTo(DEFAULT_NAME);
+        assertThat(testProvider.getSpecialty()).isEqualTo(UPDATED_SPECIALTY);
+        assertThat(testProvider.getVersion()).isEqualTo(1L);
+    }
+
     @Test
     @Transactional
     void putNewProvider() throws Exception {
@@ -453,6 +883,35 @@ class ProviderResourceIT {
         assertThat(testProvider.getSpecialty()).isEqualTo(UPDATED_SPECIALTY);
     }
 
+    @Test
+    @Transactional
+    void putProviderWithHospitalReferencedById() throws Exception {
+        // Initialize the database
+        providerRepository.saveAndFlush(provider);
+        Hospital hospital = HospitalResourceIT.createEntity(em);
+        em.persist(hospital);
+        em.flush();
+
+        // The hospital is referenced by its id alone, without its version
+        Hospital hospitalReference = new Hospital();
+        hospitalReference.setId(hospital.getId());
+        Provider updatedProvider = providerRepository.findById(provider.getId()).get();
+        em.detach(updatedProvider);
+        updatedProvider.name(UPDATED_NAME).hospital(hospitalReference);
+
+        restProviderMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedProvider.getId())
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedProvider))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.hospital.name").value(hospital.getName()));
+
+        assertThat(providerRepository.findById(provider.getId()).get().getHospital()).isEqualTo(hospital);
+    }
+
     @Test
     @Transactional
     void putNonExistingProvider() throws Exception {
@@ -658,4 +1117,143 @@ class ProviderResourceIT {
         List<Provider> providerList = providerRepository.findAll();
         assertThat(providerList).hasSize(databaseSizeBeforeDelete - 1);
     }
+
+    @Test
+    @Transactional
+    void getAllProvidersByCriteriaWithinStatementBaseline() throws Exception {
+        String name = "criteria-" + count.incrementAndGet();
+        Hospital hospital = persistProvidersWithHospitals(name, 50);
+
+        // The page with the hospitals, which is not full, so that no total is counted
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restProviderMockMvc
+                        .perform(get(ENTITY_API_URL + "?name.contains=" + name + "&hospitalId.notEquals=" + hospital.getId() + "&size=50"))
+                        .andExpect(status().isOk())
+                        .andExpect(header().string("X-Total-Count", "49"))
+            )
+            .selectsAtMost(1)
+            .statementsAtMost(1);
+    }
+
+    @Test
+    @Transactional
+    void getProviderWithinStatementBaseline() throws Exception {
+        Hospital hospital = HospitalResourceIT.createEntity(em);
+        em.persist(hospital);
+        providerRepository.saveAndFlush(provider.hospital(hospital));
+
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restProviderMockMvc
+                        .perform(get(ENTITY_API_URL_ID, provider.getId()))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.hospital.name").value(hospital.getName()))
+            )
+            .selectsAtMost(1)
+            .statementsAtMost(1);
+    }
+
+    @Test
+    @Transactional
+    void createProviderWithinStatementBaseline() throws Exception {
+        Hospital hospital = HospitalResourceIT.createEntity(em);
+        em.persist(hospital);
+        Hospital hospitalReference = new Hospital();
+        hospitalReference.setId(hospital.getId());
+
+        // The hospital returned with the provider, its insert, and at times the next block of ids
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restProviderMockMvc
+                        .perform(
+                            post(ENTITY_API_URL)
+                                .with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestUtil.convertObjectToJsonBytes(provider.hospital(hospitalReference)))
+                        )
+                        .andExpect(status().isCreated())
+            )
+            .selectsAtMost(1)
+            .insertsAtMost(1)
+            .statementsAtMost(3);
+    }
+
+    @Test
+    @Transactional
+    void updateProviderWithinStatementBaseline() throws Exception {
+        Hospital hospital = HospitalResourceIT.createEntity(em);
+        em.persist(hospital);
+        providerRepository.saveAndFlush(provider.hospital(hospital));
+        Hospital hospitalReference = new Hospital();
+        hospitalReference.setId(hospital.getId());
+        Provider updatedProvider = createUpdatedEntity(em).hospital(hospitalReference);
+        updatedProvider.setId(provider.getId());
+
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restProviderMockMvc
+                        .perform(
+                            put(ENTITY_API_URL_ID, provider.getId())
+                                .with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestUtil.convertObjectToJsonBytes(updatedProvider))
+                        )
+                        .andExpect(status().isOk())
+            )
+            .selectsAtMost(1)
+            .updatesAtMost(1)
+            .statementsAtMost(2);
+    }
+
+    @Test
+    @Transactional
+    void partialUpdateProviderWithinStatementBaseline() throws Exception {
+        providerRepository.saveAndFlush(provider);
+        Provider partialUpdatedProvider = new Provider().name(UPDATED_NAME);
+        partialUpdatedProvider.setId(provider.getId());
+
+        StatementCount
+            .of(
+                em,
+                () ->
+                    restProviderMockMvc
+                        .perform(
+                            patch(ENTITY_API_URL_ID, provider.getId())
+                                .with(csrf())
+                                .contentType("application/merge-patch+json")
+                                .content(TestUtil.convertObjectToJsonBytes(partialUpdatedProvider))
+                        )
+                        .andExpect(status().isOk())
+            )
+            .selectsAtMost(1)
+            .updatesAtMost(1)
+            .statementsAtMost(2);
+    }
+
+    /**
+     * Persist providers with the given name, each with its own hospital, which would cost a select without a fetch plan,
+     * and its own patient, which the lists must not load.
+     * @return the hospital of the last provider.
+     */
+    private Hospital persistProvidersWithHospitals(String name, int size) {
+        Hospital hospital = null;
+        for (int i = 0; i < size; i++) {
+            hospital = HospitalResourceIT.createEntity(em);
+            em.persist(hospital);
+            Provider provider = createEntity(em).name(name).hospital(hospital);
+            em.persist(provider);
+            em.persist(PatientResourceIT.createEntity(em).provider(provider));
+        }
+        em.flush();
+        return hospital;
+    }
 }
@@ -0,0 +1,72 @@
+package com.moxe.health.web.rest;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.moxe.health.IntegrationTest;
+import com.moxe.health.security.AuthoritiesConstants;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the {@link QueryPlanResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+class QueryPlanResourceIT {
+
+    private static final String ENTITY_API_URL = "/api/admin/query-plans";
+
+    @Autowired
+    private MockMvc restQueryPlanMockMvc;
+
+    @Test
+    @Transactional
+    void explainPatientsByIndexedFilter() throws Exception {
+        restQueryPlanMockMvc
+            .perform(get(ENTITY_API_URL + "/patients?name.equals=AAAAAAAAAA&dateOfBirth.greaterThan=1970-01-01T00:00:00Z"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.sql").value(containsString("from patient")))
+            .andExpect(jsonPath("$.analyzed").value(false))
+            .andExpect(jsonPath("$.plan").value(not(empty())))
+            .andExpect(jsonPath("$.sequentialScans").value(not(hasItem("patient"))));
+    }
+
+    @Test
+    @Transactional
+    void explainPatientsByUnindexedFilterAndSort() throws Exception {
+        restQueryPlanMockMvc
+            .perform(get(ENTITY_API_URL + "/patients?sex.equals=MALE&sort=sex,asc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.sequentialScans").value(hasItem("patient")))
+            .andExpect(jsonPath("$.sorts").value(not(empty())));
+    }
+
+    @Test
+    @Transactional
+    void explainProvidersWithAnalyze() throws Exception {
+        restQueryPlanMockMvc
+            .perform(get(ENTITY_API_URL + "/providers?name.equals=AAAAAAAAAA&hospitalId.equals=1&analyze=true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.sql").value(containsString("from provider")))
+            .andExpect(jsonPath("$.analyzed").value(true))
+            .andExpect(jsonPath("$.sequentialScans").value(not(hasItem("provider"))));
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser
+    void explainPatientsIsForbiddenToUsers() throws Exception {
+        restQueryPlanMockMvc.perform(get(ENTITY_API_URL + "/patients")).andExpect(status().isForbidden());
+    }
+}
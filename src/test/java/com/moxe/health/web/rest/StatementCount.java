@@ -0,0 +1,89 @@
+package com.moxe.health.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.repository.jdbc.StatementScope;
+import java.util.concurrent.Callable;
+import javax.persistence.EntityManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The statements an action runs against the database, per kind, with the assertions holding the endpoints to their
+ * baselines, so that a fetch plan lost or an entity loaded one by one fails the build.
+ * <p>
+ * The statements are counted by the {@link com.moxe.health.repository.jdbc.InstrumentedDataSource}, which every
+ * {@link com.moxe.health.IntegrationTest} runs with. Within a test transaction, the persistence context is flushed and
+ * cleared before the action, so that the entities of the test are not served from it, and flushed after the action,
+ * so that its pending writes are counted too.
+ */
+public final class StatementCount {
+
+    private final StatementScope scope;
+
+    private StatementCount(StatementScope scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Executes an action and counts the statements it runs, by kind.
+     * @param em The instance of the EntityManager
+     * @param action The action to execute
+     * @return The statements run
+     * @throws Exception if the action fails
+     */
+    public static StatementCount of(EntityManager em, Callable<?> action) throws Exception {
+        boolean transactional = TransactionSynchronizationManager.isActualTransactionActive();
+        if (transactional) {
+            em.flush();
+            em.clear();
+        }
+        try (StatementScope scope = StatementScope.open()) {
+            action.call();
+            if (transactional) {
+                em.flush();
+            }
+            return new StatementCount(scope);
+        }
+    }
+
+    public StatementCount selectsAtMost(int max) {
+        return atMost("select", max);
+    }
+
+    public StatementCount insertsAtMost(int max) {
+        return atMost("insert", max);
+    }
+
+    public StatementCount updatesAtMost(int max) {
+        return atMost("update", max);
+    }
+
+    public StatementCount deletesAtMost(int max) {
+        return atMost("delete", max);
+    }
+
+    /**
+     * @param max the maximum number of statements of any kind, such as the sequence increments.
+     */
+    public StatementCount statementsAtMost(int max) {
+        assertThat(scope.getStatements()).as("statements, of %s", this).isLessThanOrEqualTo(max);
+        return this;
+    }
+
+    private StatementCount atMost(String kind, int max) {
+        assertThat(scope.getStatements(kind)).as("%s statements, of %s", kind, this).isLessThanOrEqualTo(max);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "%d statements (%d selects, %d inserts, %d updates, %d deletes)",
+            scope.getStatements(),
+            scope.getStatements("select"),
+            scope.getStatements("insert"),
+            scope.getStatements("update"),
+            scope.getStatements("delete")
+        );
+    }
+}
@@ -0,0 +1,205 @@
+package com.moxe.health.web.session;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moxe.health.IntegrationTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+import javax.servlet.Filter;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the sessions stored by the {@link DatabaseSessionRepository}, through the
+ * {@link DatabaseSessionFilter}.
+ * <p>
+ * The tests are not transactional, as the sessions are written in their own transactions.
+ */
+@IntegrationTest
+@TestPropertySource(properties = "application.session.store=database")
+class DatabaseSessionIT {
+
+    @Autowired
+    private FilterRegistrationBean<DatabaseSessionFilter> databaseSessionFilter;
+
+    @Autowired
+    private DatabaseSessionRepository databaseSessionRepository;
+
+    @Autowired
+    private ClientRegistrationRepository clientRegistrationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> jdbcTemplate.update("delete from http_session"));
+    }
+
+    @Test
+    void sessionIsReadBackFromTheDatabase() throws Exception {
+        MockHttpServletResponse created = perform(null, request -> request.getSession().setAttribute("locale", "fr"));
+        Cookie cookie = created.getCookie(DatabaseSessionFilter.DEFAULT_COOKIE_NAME);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.isHttpOnly()).isTrue();
+
+        perform(
+            cookie,
+            request -> {
+                assertThat(request.isRequestedSessionIdValid()).isTrue();
+                assertThat(request.getSession(false).getAttribute("locale")).isEqualTo("fr");
+                assertThat(request.getSession(false).isNew()).isFalse();
+            }
+        );
+        assertThat(perform(null, request -> assertThat(request.getSession(false)).isNull()).getCookies()).isEmpty();
+        assertThat(count("http_session")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRequestsOnlyWriteTheirOwnAttributes() throws Exception {
+        Cookie cookie = perform(
+            null,
+            request -> {
+                request.getSession().setAttribute("a", "a1");
+                request.getSession().setAttribute("b", "b1");
+            }
+        )
+            .getCookie(DatabaseSessionFilter.DEFAULT_COOKIE_NAME);
+
+        // Both read the session before either writes it, as if served by two nodes
+        perform(
+            cookie,
+            request -> {
+                request.getSession().getAttribute("b");
+                request.getSession().setAttribute("a", "a2");
+                try {
+                    perform(cookie, other -> other.getSession().setAttribute("b", "b2"));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        );
+
+        perform(
+            cookie,
+            request -> {
+                assertThat(request.getSession().getAttribute("a")).isEqualTo("a2");
+                assertThat(request.getSession().getAttribute("b")).isEqualTo("b2");
+            }
+        );
+    }
+
+    @Test
+    void unchangedSessionIsNotWritten() throws Exception {
+        Cookie cookie = perform(null, request -> request.getSession().setAttribute("a", "a1")).getCookie(
+            DatabaseSessionFilter.DEFAULT_COOKIE_NAME
+        );
+        Long lastAccessTime = jdbcTemplate.queryForObject("select last_access_time from http_session", Long.class);
+
+        perform(
+            cookie,
+            request -> {
+                HttpSession session = request.getSession();
+                // Deleted behind the back of the session, to tell whether it is written again
+                new TransactionTemplate(transactionManager)
+                    .executeWithoutResult(status -> jdbcTemplate.update("delete from http_session_attribute"));
+                // Set to an equal value, as Spring Security does with the security context it read
+                session.setAttribute("a", session.getAttribute("a"));
+            }
+        );
+
+        assertThat(count("http_session_attribute")).isZero();
+        assertThat(jdbcTemplate.queryForObject("select last_access_time from http_session", Long.class)).isEqualTo(lastAccessTime);
+    }
+
+    @Test
+    void changedIdKeepsTheAttributes() throws Exception {
+        Cookie cookie = perform(null, request -> request.getSession().setAttribute("a", "a1")).getCookie(
+            DatabaseSessionFilter.DEFAULT_COOKIE_NAME
+        );
+
+        Cookie changed = perform(cookie, HttpServletRequest::changeSessionId).getCookie(DatabaseSessionFilter.DEFAULT_COOKIE_NAME);
+
+        assertThat(changed.getValue()).isNotEqualTo(cookie.getValue());
+        perform(cookie, request -> assertThat(request.getSession(false)).isNull());
+        perform(changed, request -> assertThat(request.getSession(false).getAttribute("a")).isEqualTo("a1"));
+    }
+
+    @Test
+    void invalidatedSessionIsDeleted() throws Exception {
+        Cookie cookie = perform(null, request -> request.getSession().setAttribute("a", "a1")).getCookie(
+            DatabaseSessionFilter.DEFAULT_COOKIE_NAME
+        );
+
+        MockHttpServletResponse response = perform(cookie, request -> request.getSession().invalidate());
+
+        assertThat(response.getCookie(DatabaseSessionFilter.DEFAULT_COOKIE_NAME).getMaxAge()).isZero();
+        assertThat(count("http_session")).isZero();
+        assertThat(count("http_session_attribute")).isZero();
+    }
+
+    @Test
+    void expiredSessionsAreDeletedInBatches() {
+        Clock past = Clock.fixed(Instant.now().minus(Duration.ofHours(1)), ZoneOffset.UTC);
+        DatabaseSessionRepository pastRepository = repository(past);
+        for (int i = 0; i < 5; i++) {
+            DatabaseSession session = pastRepository.create(null, () -> {});
+            session.setAttribute("a", "a" + i);
+            pastRepository.save(session);
+        }
+        DatabaseSession current = databaseSessionRepository.create(null, () -> {});
+        databaseSessionRepository.save(current);
+        assertThat(databaseSessionRepository.findById(current.getId(), null, () -> {})).isNotNull();
+
+        assertThat(repository(Clock.systemUTC()).deleteExpired()).isEqualTo(5);
+        assertThat(count("http_session")).isEqualTo(1);
+        assertThat(count("http_session_attribute")).isZero();
+    }
+
+    private DatabaseSessionRepository repository(Clock clock) {
+        return new DatabaseSessionRepository(
+            jdbcTemplate,
+            transactionManager,
+            new SessionAttributeCodec(clientRegistrationRepository),
+            Duration.ofMinutes(30),
+            Duration.ofMinutes(1),
+            2,
+            new SimpleMeterRegistry(),
+            clock
+        );
+    }
+
+    private MockHttpServletResponse perform(Cookie cookie, Consumer<HttpServletRequest> handler) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/account");
+        if (cookie != null) {
+            request.setCookies(cookie);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Filter filter = databaseSessionFilter.getFilter();
+        filter.doFilter(request, response, (req, res) -> handler.accept((HttpServletRequest) req));
+        return response;
+    }
+
+    private Integer count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Integer.class);
+    }
+}
@@ -0,0 +1,146 @@
+package com.moxe.health.web.session;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.OidcUserInfo;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Unit tests for {@link SessionAttributeCodec}.
+ */
+class SessionAttributeCodecTest {
+
+    private static final Instant ISSUED_AT = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static final ClientRegistration CLIENT_REGISTRATION = ClientRegistration
+        .withRegistrationId("oidc")
+        .clientId("web_app")
+        .clientSecret("web_app")
+        .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+        .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+        .authorizationUri("http://localhost:9080/auth")
+        .tokenUri("http://localhost:9080/token")
+        .build();
+
+    private final SessionAttributeCodec codec = new SessionAttributeCodec(new InMemoryClientRegistrationRepository(CLIENT_REGISTRATION));
+
+    @Test
+    void oidcSecurityContextIsEncodedCompactly() throws Exception {
+        SecurityContextImpl context = oidcSecurityContext();
+
+        byte[] bytes = codec.encode(context);
+
+        SecurityContextImpl decoded = (SecurityContextImpl) codec.decode(bytes);
+        assertThat(decoded).isEqualTo(context);
+        assertThat(decoded.getAuthentication().getName()).isEqualTo("user");
+        assertThat(((DefaultOidcUser) decoded.getAuthentication().getPrincipal()).getIdToken().getIssuer())
+            .isEqualTo(new URL("http://localhost:9080/realms/jhipster"));
+        assertThat(bytes.length).isLessThan(SerializationUtils.serialize(context).length / 2);
+    }
+
+    @Test
+    void authorizedClientsAreEncodedWithoutTheirRegistration() {
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(
+            OAuth2AccessToken.TokenType.BEARER,
+            "access-token",
+            ISSUED_AT,
+            ISSUED_AT.plusSeconds(300),
+            Set.of("openid", "profile")
+        );
+        OAuth2RefreshToken refreshToken = new OAuth2RefreshToken("refresh-token", ISSUED_AT, null);
+        Map<String, OAuth2AuthorizedClient> authorizedClients = new HashMap<>();
+        authorizedClients.put("oidc", new OAuth2AuthorizedClient(CLIENT_REGISTRATION, "user", accessToken, refreshToken));
+
+        byte[] bytes = codec.encode(authorizedClients);
+
+        @SuppressWarnings("unchecked")
+        Map<String, OAuth2AuthorizedClient> decoded = (Map<String, OAuth2AuthorizedClient>) codec.decode(bytes);
+        OAuth2AuthorizedClient authorizedClient = decoded.get("oidc");
+        assertThat(authorizedClient.getClientRegistration()).isSameAs(CLIENT_REGISTRATION);
+        assertThat(authorizedClient.getPrincipalName()).isEqualTo("user");
+        assertThat(authorizedClient.getAccessToken().getTokenValue()).isEqualTo("access-token");
+        assertThat(authorizedClient.getAccessToken().getExpiresAt()).isEqualTo(ISSUED_AT.plusSeconds(300));
+        assertThat(authorizedClient.getAccessToken().getScopes()).containsExactlyInAnyOrder("openid", "profile");
+        assertThat(authorizedClient.getRefreshToken().getTokenValue()).isEqualTo("refresh-token");
+        assertThat(authorizedClient.getRefreshToken().getExpiresAt()).isNull();
+        assertThat(new String(bytes, StandardCharsets.ISO_8859_1)).doesNotContain("http://localhost:9080/token");
+        // Added to by the repository of the authorized clients
+        assertThat(decoded).isInstanceOf(HashMap.class);
+    }
+
+    @Test
+    void otherAttributesAreSerialized() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("locale", "fr");
+
+        assertThat(codec.decode(codec.encode(value))).isEqualTo(value);
+        assertThat(codec.decode(codec.encode("value"))).isEqualTo("value");
+    }
+
+    @Test
+    void unreadableAttributeIsSkipped() {
+        byte[] bytes = codec.encode(oidcSecurityContext());
+
+        assertThat(codec.decode(new byte[] { 42 })).isNull();
+        assertThat(codec.decode(Arrays.copyOf(bytes, bytes.length / 2))).isNull();
+    }
+
+    private static SecurityContextImpl oidcSecurityContext() {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("iss", url("http://localhost:9080/realms/jhipster"));
+        claims.put("sub", "4c973896-5761-41fc-8217-07c5d13a004b");
+        claims.put("aud", List.of("web_app"));
+        claims.put("iat", ISSUED_AT);
+        claims.put("exp", ISSUED_AT.plusSeconds(300));
+        claims.put("email_verified", true);
+        claims.put("realm_access", Map.of("roles", List.of("ROLE_USER")));
+        claims.put("preferred_username", "user");
+        OidcIdToken idToken = new OidcIdToken("id-token", ISSUED_AT, ISSUED_AT.plusSeconds(300), claims);
+        OidcUserInfo userInfo = new OidcUserInfo(Map.of("sub", "4c973896-5761-41fc-8217-07c5d13a004b", "groups", List.of("ROLE_USER")));
+        DefaultOidcUser user = new DefaultOidcUser(
+            List.of(new OidcUserAuthority(idToken, userInfo), new SimpleGrantedAuthority("SCOPE_openid")),
+            idToken,
+            userInfo,
+            "preferred_username"
+        );
+        OAuth2AuthenticationToken authentication = new OAuth2AuthenticationToken(
+            user,
+            List.of(new SimpleGrantedAuthority("ROLE_USER")),
+            "oidc"
+        );
+        authentication.setDetails(new WebAuthenticationDetails("127.0.0.1", null));
+        return new SecurityContextImpl(authentication);
+    }
+
+    private static URL url(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}